@@ -46,6 +46,18 @@ public abstract class Aggregate {
         return new AggregateImpl("COUNT", "*");
     }
 
+    /**
+     * The values of the given variable, as they were recorded. This is not really an aggregate
+     * function: a report using it contains one record per stored (and not filtered out) record,
+     * with the value of the given variable, plus the values of the report variables.
+     * This provides access to the raw samples, for example for statistics that can not be
+     * expressed as an aggregate function.
+     * @see #isAggregating()
+     */
+    public static Aggregate values(Object variable) {
+        return new AggregateImpl(null, variable);
+    }
+
     /**
      * Returns the SQL representation of an aggregation. Examples: <tt>"AVG(SALARY)"</tt>,
      * </tt>MIN(TIME)</tt>, <tt>COUNT(*)</tt> etc.
@@ -65,19 +77,42 @@ public abstract class Aggregate {
      */
     public abstract DataType getResultType(Schema schema);
 
+    /**
+     * Returns whether this aggregate coalesces the values of each group of records into a single
+     * result (as in SQL's GROUP BY clause). Only {@link #values(Object)} returns false.
+     */
+    public abstract boolean isAggregating();
+
+    /**
+     * Returns the name of the aggregate function, i.e. one of <tt>SUM, AVG, MAX, MIN, COUNT</tt>,
+     * or <tt>null</tt> for {@link #values(Object)}.
+     */
+    public abstract String getFunctionName();
+
     private static class AggregateImpl extends Aggregate {
         private final String sqlAggregate;
         private final String variable;
 
         AggregateImpl(String sqlAggregate, Object variable) {
             this.sqlAggregate = sqlAggregate;
-            this.variable = Preconditions.checkNotNull(variable, "Null variable").toString().toUpperCase();
+            this.variable = Variable.nameOf(Preconditions.checkNotNull(variable, "Null variable"));
         }
 
         public String toSql() {
+            if (sqlAggregate == null) {
+                return variable;
+            }
             return sqlAggregate + "(" + variable + ")";
         }
 
+        public boolean isAggregating() {
+            return sqlAggregate != null;
+        }
+
+        public String getFunctionName() {
+            return sqlAggregate;
+        }
+
         @Override
         public String toString() {
             return toSql();
@@ -102,6 +102,17 @@ public class DataTypes {
         return new StringDataType("STRING(" + size + ")", size);
     }
 
+    /**
+     * Returns the type of dictionary-encoded strings with the specified maximum size. Prefer this
+     * to {@link #string(int)} for variables with relatively few distinct values, which repeat in
+     * many records.
+     * @param size the maximum size of strings
+     * @see EncodedDataType
+     */
+    public static EncodedDataType encodedString(int size) {
+        return new EncodedDataType(size);
+    }
+
     /**
      * Returns the type of decimals which have a specified number of digits,
      * some of which are used for the fractional part of the number.
@@ -149,6 +160,87 @@ public class DataTypes {
         return type;
     }
 
+    /**
+     * Returns the data type with the specified {@link DataType#getName() name}, for all types
+     * of this class. Unlike {@link #fromSql(String)}, the lengths of strings, the digits of decimals
+     * and the encoding of strings are preserved, and the constants of this class are returned as such.
+     * @param name the name of the type, e.g. <tt>SMALL_STRING</tt> or <tt>DECIMAL(6, 2)</tt>
+     * @return an (unbound) data type with the same name
+     */
+    public static DataType<?> fromName(String name) {
+        for (DataType<?> type : new DataType<?>[] { INTEGER, LONG, SHORT, DOUBLE, FLOAT, TIMESTAMP,
+                SMALL_STRING, MED_STRING, LONG_STRING }) {
+            if (type.getName().equals(name)) {
+                return type;
+            }
+        }
+        int open = name.indexOf('(');
+        if (open > 0 && name.endsWith(")")) {
+            String prefix = name.substring(0, open);
+            String[] arguments = name.substring(open + 1, name.length() - 1).split(",");
+            try {
+                if (prefix.equals("STRING") && arguments.length == 1) {
+                    return string(Integer.parseInt(arguments[0].trim()));
+                }
+                if (prefix.equals("ENCODED_STRING") && arguments.length == 1) {
+                    return encodedString(Integer.parseInt(arguments[0].trim()));
+                }
+                if (prefix.equals("DECIMAL") && arguments.length == 2) {
+                    return decimal(Integer.parseInt(arguments[0].trim()), Integer.parseInt(arguments[1].trim()));
+                }
+            } catch (NumberFormatException e) {
+                //fall through
+            }
+        }
+        throw new RuntimeException("Unknown type: '" + name + "'");
+    }
+
+    /**
+     * Returns the narrowest of the types of this class that can represent all the specified values,
+     * judging by their classes: integers (shorts or bytes) map to {@link #INTEGER}, longs (or mixed
+     * integral numbers) to {@link #LONG}, floats to {@link #FLOAT}, doubles (or mixed numbers)
+     * to {@link #DOUBLE}, timestamps to {@link #TIMESTAMP}, decimals to a {@link #decimal(int, int)},
+     * and any other (or mixed) values to a {@link #string(int)} long enough for their string
+     * representations. Nulls are ignored.
+     * @param values the values
+     */
+    public static DataType<?> inferFrom(Iterable<?> values) {
+        Class<?> common = null;
+        boolean integral = true;
+        boolean numeric = true;
+        int length = 1;
+        for (Object value : values) {
+            if (value == null) {
+                continue;
+            }
+            Class<?> c = value.getClass();
+            common = common == null || common == c ? c : Object.class;
+            if (value instanceof Number) {
+                integral &= value instanceof Integer || value instanceof Long ||
+                        value instanceof Short || value instanceof Byte;
+            } else {
+                numeric = false;
+            }
+            length = Math.max(length, String.valueOf(value).length());
+        }
+        if (common == Integer.class || common == Short.class || common == Byte.class) {
+            return INTEGER;
+        } else if (common == Long.class) {
+            return LONG;
+        } else if (common == Float.class) {
+            return FLOAT;
+        } else if (common == Double.class) {
+            return DOUBLE;
+        } else if (common == Timestamp.class) {
+            return TIMESTAMP;
+        } else if (common == BigDecimal.class) {
+            return decimal(31, 16);
+        } else if (common != null && numeric) {
+            return integral ? LONG : DOUBLE;
+        }
+        return string(length);
+    }
+
     private abstract static class AbstractDataType<T> implements DataType<T> {
         private final String name;
         private final String sqlDef;
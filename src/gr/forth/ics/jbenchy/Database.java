@@ -1,6 +1,11 @@
 package gr.forth.ics.jbenchy;
 
 import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.csv.CsvFormat;
+import gr.forth.ics.jbenchy.csv.CsvLoader;
+import gr.forth.ics.jbenchy.csv.LoadProgress;
+import java.io.File;
+import java.io.IOException;
 import java.sql.SQLException;
 
 /**
@@ -83,6 +88,68 @@ public abstract class Database {
      */
     public abstract Aggregator create(Schema schema, String name) throws SQLRuntimeException;
 
+    /**
+     * Bulk-loads the records of a delimited text file (such as CSV or TSV) into an aggregator of
+     * this database. The columns of the file are mapped to the variables of the schema of the
+     * aggregator by name, see {@link CsvLoader}.
+     * <p>
+     * The records are stored by {@link #load(Aggregator, RecordSource)}.
+     *
+     * @param aggregator the aggregator to load the records into
+     * @param file the file to load
+     * @param format the format of the file
+     * @param progress receives the progress of the load, or <tt>null</tt>
+     * @return the number of loaded records
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file does not match the schema of the aggregator;
+     * the records before the offending one may have been loaded
+     */
+    public long load(Aggregator aggregator, File file, CsvFormat format, LoadProgress progress) throws IOException {
+        Preconditions.checkNotNull(aggregator, "aggregator");
+        CsvLoader loader = CsvLoader.open(file, format, aggregator.getSchema(), progress);
+        try {
+            return load(aggregator, loader);
+        } finally {
+            loader.close();
+        }
+    }
+
+    /**
+     * Bulk-loads the records of a delimited text file into an aggregator of this database,
+     * without reporting progress.
+     * @see #load(Aggregator, File, CsvFormat, LoadProgress)
+     */
+    public long load(Aggregator aggregator, File file, CsvFormat format) throws IOException {
+        return load(aggregator, file, format, null);
+    }
+
+    /**
+     * Bulk-loads all the records of a source into an aggregator of this database. The records
+     * are read into records of the schema of the aggregator.
+     * <p>
+     * This implementation records each record through {@link Aggregator#record(Record)}, reusing
+     * a single {@link SchemaRecord}; databases override it if they have a faster way to store
+     * many records.
+     *
+     * @param aggregator the aggregator to load the records into
+     * @param source the source of the records
+     * @return the number of loaded records
+     * @throws IOException if the source cannot be read
+     * @throws IllegalArgumentException if the records of the source do not match the schema of the
+     * aggregator; the records before the offending one may have been loaded
+     */
+    public long load(Aggregator aggregator, RecordSource source) throws IOException {
+        Preconditions.checkNotNull(aggregator, "aggregator");
+        Preconditions.checkNotNull(source, "source");
+        SchemaRecord record = aggregator.getSchema().newRecord();
+        long count = 0;
+        while (source.next(record)) {
+            aggregator.record(record);
+            count++;
+        }
+        return count;
+    }
+
     /**
      * Attempts to cleanly shutdown the database.
      */
@@ -1,7 +1,9 @@
 package gr.forth.ics.jbenchy;
 
+import gr.forth.ics.jbenchy.impl.columnar.ColumnarFactory;
 import gr.forth.ics.jbenchy.impl.derby.ConnectionString;
 import gr.forth.ics.jbenchy.impl.derby.DerbyFactory;
+import gr.forth.ics.jbenchy.impl.log.LogFactory;
 
 /**
  * A provider of database factories.
@@ -40,4 +42,24 @@ public class DbFactories {
         return new DerbyFactory(
                 new ConnectionString.RemoteConnectionString(host, port, user, password));
     }
+
+    /**
+     * Returns a factory that creates in-memory databases, which store each variable as a column
+     * of off-heap segments. These are much faster and more compact than Derby databases for
+     * large numbers of records, but are not persistent, and only support filters created by
+     * {@link Filters}.
+     */
+    public static DbFactory columnar() {
+        return new ColumnarFactory();
+    }
+
+    /**
+     * Returns a factory of file-backed databases, whose aggregators append records to
+     * memory-mapped log files. The name of each database is the path of its directory.
+     * Appending is much cheaper than inserting into Derby, and logs are recovered up to their
+     * last complete record after a crash, but only filters created by {@link Filters} are supported.
+     */
+    public static DbFactory mappedLog() {
+        return new LogFactory();
+    }
 }
@@ -0,0 +1,178 @@
+package gr.forth.ics.jbenchy;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The type of dictionary-encoded strings, created by {@link DataTypes#encodedString(int)}.
+ * <p>
+ * Storage keeps a small integer code per record, plus a dictionary per aggregator that maps
+ * codes to distinct values, so that grouping and equality filters operate on codes, and
+ * reports decode each distinct value to a single, canonical (interned) string instance.
+ * This pays off for variables with few distinct values that repeat in many records,
+ * such as the names of benchmarks.
+ * <p>
+ * An aggregator {@link #bind(Dictionary) binds} the encoded types of its schema to its
+ * dictionaries; the {@link Aggregator#getSchema() schema} of the aggregator contains the
+ * bound types. Filters on variables of a bound type are translated to conditions on codes,
+ * see {@link #toSqlCondition(String, String, Object)}.
+ *
+ * @author andreou
+ */
+public final class EncodedDataType implements DataType<String> {
+    private final int size;
+    private final Dictionary dictionary;
+
+    EncodedDataType(int size) {
+        this(size, null);
+    }
+
+    private EncodedDataType(int size, Dictionary dictionary) {
+        Preconditions.checkArgument(size > 0, "Non-positive size");
+        this.size = size;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * The mapping between the codes and the values of a variable, kept by an aggregator.
+     * Codes are assigned consecutively, starting from zero.
+     */
+    public interface Dictionary {
+        /**
+         * Returns the code of a value, assigning (and storing) a new code if the value is new.
+         */
+        int encode(String value);
+
+        /**
+         * Returns the code of a value, or -1 if the value has no code.
+         */
+        int codeOf(String value);
+
+        /**
+         * Returns the canonical instance of the value with the specified code.
+         * @throws IndexOutOfBoundsException if no value has this code
+         */
+        String decode(int code);
+
+        /**
+         * Returns the number of codes.
+         */
+        int size();
+    }
+
+    /**
+     * Returns a type like this one, bound to the specified dictionary.
+     */
+    public EncodedDataType bind(Dictionary dictionary) {
+        return new EncodedDataType(size, Preconditions.checkNotNull(dictionary, "dictionary"));
+    }
+
+    /**
+     * Returns whether this type is bound to a dictionary.
+     */
+    public boolean isBound() {
+        return dictionary != null;
+    }
+
+    /**
+     * Returns the maximum size of the strings of this type.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public String getName() {
+        return "ENCODED_STRING(" + size + ")";
+    }
+
+    /**
+     * Returns the SQL definition of the codes, i.e. <tt>INTEGER</tt>.
+     */
+    public String getSqlDefinition() {
+        return "INTEGER";
+    }
+
+    public Class<String> getMappedType() {
+        return String.class;
+    }
+
+    public String parse(String value) {
+        return value;
+    }
+
+    /**
+     * Returns the string value as an SQL literal (not its code).
+     */
+    public String toSql(Object value) {
+        return "'" + value + "'";
+    }
+
+    /**
+     * Returns the code of a value, adding the value to the dictionary if it is new.
+     * @throws IllegalArgumentException if the value is longer than the {@link #getSize() size} of this type
+     * @throws IllegalStateException if this type is not bound
+     */
+    public int encode(Object value) {
+        String string = String.valueOf(value);
+        Preconditions.checkArgument(string.length() <= size, "Value: '%s' is longer than %s characters", string, size);
+        return checkBound().encode(string);
+    }
+
+    /**
+     * Returns the canonical value of a code.
+     * @throws IllegalStateException if this type is not bound
+     */
+    public String decode(int code) {
+        return checkBound().decode(code);
+    }
+
+    private Dictionary checkBound() {
+        if (dictionary == null) {
+            throw new IllegalStateException("Type " + getName() + " is not bound to a dictionary");
+        }
+        return dictionary;
+    }
+
+    /**
+     * Returns an SQL condition on the codes of a variable of this type, which is equivalent
+     * to comparing its values to the given one. Equality is decided by the code of the value,
+     * while other comparisons are evaluated on the dictionary, and result in the set of the
+     * matching codes. If this type is not bound, the condition compares values.
+     * @param variable the variable
+     * @param operator one of <tt>=, &lt;&gt;, &gt;, &gt;=, &lt;, &lt;=</tt>
+     * @param value the value to compare to
+     */
+    public String toSqlCondition(String variable, String operator, Object value) {
+        if (dictionary == null) {
+            return variable + operator + toSql(value);
+        }
+        String string = String.valueOf(value);
+        if (operator.equals("=") || operator.equals("<>")) {
+            int code = dictionary.codeOf(string);
+            if (code < 0) {
+                return operator.equals("=") ? "0=1" : "0=0";
+            }
+            return variable + operator + code;
+        }
+        StringBuilder codes = new StringBuilder();
+        final int count = dictionary.size();
+        for (int code = 0; code < count; code++) {
+            if (matches(operator, dictionary.decode(code).compareTo(string))) {
+                codes.append(codes.length() == 0 ? "" : ",").append(code);
+            }
+        }
+        return codes.length() == 0 ? "0=1" : variable + " IN (" + codes + ")";
+    }
+
+    private static boolean matches(String operator, int comparison) {
+        if (operator.equals(">")) return comparison > 0;
+        if (operator.equals(">=")) return comparison >= 0;
+        if (operator.equals("<")) return comparison < 0;
+        if (operator.equals("<=")) return comparison <= 0;
+        throw new IllegalArgumentException("Unknown operator: " + operator);
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
@@ -1,6 +1,7 @@
 package gr.forth.ics.jbenchy;
 
 import com.google.common.base.Preconditions;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
@@ -109,22 +110,87 @@ public class Filters {
         if (filters.isEmpty()) {
             return NULL_FILTER;
         } else {
-            return new Filter() {
-                public String toSql(Schema schema) {
-                    Iterator<Filter> i = filters.iterator();
-                    StringBuilder sb = new StringBuilder();
-                    sb.append(i.next().toSql(schema));
-                    while (i.hasNext()) {
-                        sb.append(" ").append(operator).append(" ").append(i.next().toSql(schema));
-                    }
-                    return sb.toString();
-                }
-                
-                @Override
-                public String toString() {
-                    return "[" + operator + " Filter: " + filters + "]";
-                }
-            };
+            return new CombinedFilter(filters, operator);
+        }
+    }
+
+    /**
+     * Evaluates filters without SQL, by interpreting their structure.
+     * @param <T> the type of the result of evaluating a filter
+     * @see Filters#accept(Filter, Visitor)
+     */
+    public interface Visitor<T> {
+        /**
+         * Evaluates {@link Filters#NULL_FILTER}, which accepts anything.
+         */
+        T visitAll();
+
+        /**
+         * Evaluates the AND combination of some filters, given their evaluations.
+         */
+        T visitAnd(List<T> operands);
+
+        /**
+         * Evaluates the OR combination of some filters, given their evaluations.
+         */
+        T visitOr(List<T> operands);
+
+        /**
+         * Evaluates the comparison of a variable to a value.
+         * @param variable the (normalized) variable
+         * @param operator one of <tt>=, &lt;&gt;, &gt;, &gt;=, &lt;, &lt;=</tt>
+         * @param value the value to compare to
+         */
+        T visitComparison(String variable, String operator, Object value);
+    }
+
+    /**
+     * Evaluates a filter created by this class with the specified visitor. This allows
+     * aggregators that are not based on SQL to apply filters.
+     * @throws UnsupportedOperationException if the filter (or a part of it) was not created by this class
+     */
+    public static <T> T accept(Filter filter, Visitor<T> visitor) {
+        Preconditions.checkNotNull(filter, "filter");
+        if (filter == NULL_FILTER) {
+            return visitor.visitAll();
+        }
+        if (filter instanceof VariableFilter) {
+            VariableFilter f = (VariableFilter) filter;
+            return visitor.visitComparison(f.variable, f.symbol, f.value);
+        }
+        if (filter instanceof CombinedFilter) {
+            CombinedFilter f = (CombinedFilter) filter;
+            List<T> operands = new ArrayList<T>(f.filters.size());
+            for (Filter operand : f.filters) {
+                operands.add(accept(operand, visitor));
+            }
+            return f.operator.equals("AND") ? visitor.visitAnd(operands) : visitor.visitOr(operands);
+        }
+        throw new UnsupportedOperationException("Filter can only be expressed in SQL: " + filter);
+    }
+
+    private static class CombinedFilter implements Filter {
+        private final Collection<Filter> filters;
+        private final String operator;
+
+        CombinedFilter(Collection<Filter> filters, String operator) {
+            this.filters = filters;
+            this.operator = operator;
+        }
+
+        public String toSql(Schema schema) {
+            Iterator<Filter> i = filters.iterator();
+            StringBuilder sb = new StringBuilder();
+            sb.append("(").append(i.next().toSql(schema));
+            while (i.hasNext()) {
+                sb.append(" ").append(operator).append(" ").append(i.next().toSql(schema));
+            }
+            return sb.append(")").toString();
+        }
+
+        @Override
+        public String toString() {
+            return "[" + operator + " Filter: " + filters + "]";
         }
     }
 
@@ -151,7 +217,7 @@ public class Filters {
         private final Object value;
 
         VariableFilter(Object variable, String symbol, Object value) {
-            this.variable = variable.toString().toUpperCase();
+            this.variable = Variable.nameOf(variable);
             this.symbol = symbol;
             this.value = value;
         }
@@ -163,6 +229,9 @@ public class Filters {
                         variable + " which does not belong to" +
                         " target schema: " + schema);
             }
+            if (valueType instanceof EncodedDataType) {
+                return ((EncodedDataType) valueType).toSqlCondition(variable, symbol, value);
+            }
             try {
                 String sql = valueType.toSql(value);
                 return variable + symbol + sql;
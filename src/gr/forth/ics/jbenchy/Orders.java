@@ -1,6 +1,8 @@
 package gr.forth.ics.jbenchy;
 
 import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 
@@ -63,6 +65,50 @@ public class Orders {
         return sb.toString();
     }
     
+    /**
+     * Returns a comparator of records (e.g. of a report) that applies the given orders in turn.
+     * Each order is applied to the value of the record for the variable it is defined on, i.e.
+     * the first word of its {@link Order#toSql() SQL}. As in SQL, where the aggregated column
+     * is named after the aggregated variable, an order on <tt>valueVariable</tt>, or on
+     * the COUNT aggregate column (see {@link #asc()}), is applied to {@link Record#getValue()}.
+     * @param orders the orders
+     * @param valueVariable the variable whose values were aggregated, or <tt>null</tt>
+     * @throws IllegalArgumentException when comparing records that lack an ordered variable
+     */
+    public static Comparator<Record> recordComparator(List<Order> orders, Object valueVariable) {
+        final List<Order> orderList = new ArrayList<Order>(orders);
+        final String[] variables = new String[orderList.size()];
+        final String value = valueVariable == null ? null : Variable.nameOf(valueVariable);
+        for (int i = 0; i < variables.length; i++) {
+            String sql = orderList.get(i).toSql().trim();
+            int space = sql.indexOf(' ');
+            variables[i] = (space < 0 ? sql : sql.substring(0, space)).toUpperCase();
+        }
+        return new Comparator<Record>() {
+            public int compare(Record r1, Record r2) {
+                for (int i = 0; i < variables.length; i++) {
+                    int c = orderList.get(i).compare(valueOf(r1, variables[i]), valueOf(r2, variables[i]));
+                    if (c != 0) {
+                        return c;
+                    }
+                }
+                return 0;
+            }
+
+            private Object valueOf(Record record, String variable) {
+                if (variable.equals(value) || variable.equals(ALIAS_FOR_COUNT_AGGREGATE)) {
+                    return record.getValue();
+                }
+                Object o = record.get(variable);
+                if (o == null) {
+                    throw new IllegalArgumentException("Cannot order by variable: '" + variable +
+                            "', which is not contained in: " + record);
+                }
+                return o;
+            }
+        };
+    }
+
     private static class OrderImpl implements Order {
         private final String variable;
         private final String sql;
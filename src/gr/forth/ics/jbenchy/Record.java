@@ -19,7 +19,8 @@ import java.util.Set;
  * string of a variable. {@link #get(Object) } and {@link #containsKey(Object)} 
  * also uppercases the string of the key to answer whether there is a binding
  * to the given variable; thus this class acts as a Map with case-insensitive 
- * string keys.
+ * string keys. {@link Variable} handles can be used as keys too; their names are used
+ * without being upper-cased again.
  * <p>
  * 
  * @author andreou
@@ -63,7 +64,7 @@ public class Record implements Map<String, Object> {
      * @return this
      */
     public Record add(Object var, Object value) {
-        put(var.toString().toUpperCase(), value);
+        values.put(Variable.nameOf(var), value);
         return this;
     }
 
@@ -79,7 +80,7 @@ public class Record implements Map<String, Object> {
         if (key == null) {
             return false;
         }
-        return values.containsKey(key.toString().toUpperCase());
+        return values.containsKey(Variable.nameOf(key));
     }
 
     public boolean containsValue(Object value) {
@@ -88,7 +89,7 @@ public class Record implements Map<String, Object> {
 
     public Object get(Object key) {
         if (key == null) return null;
-        return values.get(key.toString().toUpperCase());
+        return values.get(Variable.nameOf(key));
     }
     
     /**
@@ -115,7 +116,7 @@ public class Record implements Map<String, Object> {
     
     public Object remove(Object key) {
         if (key == null) return null;
-        return values.remove(key.toString().toUpperCase());
+        return values.remove(Variable.nameOf(key));
     }
 
     public void putAll(Map<? extends String, ? extends Object> m) {
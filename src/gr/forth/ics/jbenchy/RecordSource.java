@@ -0,0 +1,21 @@
+package gr.forth.ics.jbenchy;
+
+import java.io.IOException;
+
+/**
+ * A source of records that are read one at a time into a reused {@link SchemaRecord}, such as a
+ * file being bulk-loaded into an aggregator.
+ *
+ * @see Database#load(Aggregator, RecordSource)
+ * @author andreou
+ */
+public interface RecordSource {
+    /**
+     * Reads the next record into the specified record, binding all its variables.
+     * @param record a record of the schema of the records to read
+     * @return false if there are no more records (and the record is not modified)
+     * @throws IOException if the underlying source cannot be read
+     * @throws IllegalArgumentException if the next record does not match the schema of the record
+     */
+    boolean next(SchemaRecord record) throws IOException;
+}
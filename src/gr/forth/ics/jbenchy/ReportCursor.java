@@ -0,0 +1,61 @@
+package gr.forth.ics.jbenchy;
+
+import gr.forth.ics.jbenchy.fluent.ReportBuilder;
+import java.io.Closeable;
+
+/**
+ * Reads the records of a report one at a time, into a reused {@link SchemaRecord}, instead of
+ * materializing them as {@link Records}. Reports of {@link Aggregate#values(Object) values}
+ * are streamed from the storage of the aggregator where possible, so a report of any size can be
+ * exported with constant memory:
+ * <pre>
+ * ReportCursor cursor = aggregator.cursor(Aggregate.values("TIME"), "SIZE");
+ * try {
+ *     SchemaRecord record = cursor.getSchema().newRecord();
+ *     while (cursor.next(record)) {
+ *         ... record.getLong(0) ... record.getValue() ...
+ *     }
+ * } finally {
+ *     cursor.close();
+ * }
+ * </pre>
+ * A cursor may hold resources of its database (such as a connection) until it is exhausted or
+ * {@link #close() closed}, and other operations on the same database may wait for them, so
+ * cursors should be closed promptly, and not be interleaved with other operations on the same
+ * database by the same thread.
+ *
+ * @see ReportBuilder#cursor(Aggregate, Object[])
+ * @author andreou
+ */
+public interface ReportCursor extends Closeable {
+    /**
+     * Returns the schema of the records of the report: its variables, in order, with their types
+     * in the aggregator.
+     */
+    Schema getSchema();
+
+    /**
+     * Returns the aggregate of the report.
+     */
+    Aggregate getAggregate();
+
+    /**
+     * Returns the type of the {@link Record#getValue() values} of the records.
+     */
+    DataType<?> getValueType();
+
+    /**
+     * Reads the next record of the report into the specified record, binding its variables, and
+     * its value to the result of the aggregate function (which may be <tt>null</tt>, e.g. for the
+     * average of no records).
+     * @param record a record of the {@link #getSchema() schema} of this cursor (see {@link Schema#newRecord()})
+     * @return false if there are no more records (and the record is not modified)
+     * @throws SQLRuntimeException if the database throws an exception
+     */
+    boolean next(SchemaRecord record);
+
+    /**
+     * Releases the resources held by this cursor. Closing a cursor more than once has no effect.
+     */
+    void close();
+}
@@ -3,6 +3,7 @@ package gr.forth.ics.jbenchy;
 import com.google.common.base.Preconditions;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -15,6 +16,7 @@ import java.util.Map;
  */
 public class Schema {
     private final Map<String, DataType<?>> variables = new LinkedHashMap<String, DataType<?>>();
+    private final Map<String, Variable> handles = new HashMap<String, Variable>();
         
     public Schema() {
     }
@@ -42,10 +44,42 @@ public class Schema {
         if (variable == null) {
             return null;
         }
+        if (variable instanceof Variable && ((Variable) variable).getSchema() == this) {
+            return ((Variable) variable).getType();
+        }
         String var = StringUtils.normalizeVariable(variable);
         return variables.get(var.toUpperCase());
     }
 
+    /**
+     * Returns a handle to a variable of this schema, which carries its normalized name, index
+     * and type. Repeated calls for the same variable return the same handle.
+     * @param variable the variable's name (case-insensitive)
+     * @throws IllegalArgumentException if the variable does not belong to this schema
+     * @see Variable
+     */
+    public Variable variable(Object variable) {
+        String var = StringUtils.normalizeVariable(variable);
+        Variable handle = handles.get(var);
+        if (handle == null) {
+            DataType<?> type = getTypeOf(var);
+            if (type == null) {
+                throw new IllegalArgumentException("Unknown variable: '" + var + "', available " +
+                        "variables: " + getVariables());
+            }
+            int index = 0;
+            for (String v : getVariables()) {
+                if (v.equals(var)) {
+                    break;
+                }
+                index++;
+            }
+            handle = new Variable(this, var, index, type);
+            handles.put(var, handle);
+        }
+        return handle;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (!(o instanceof Schema)) {
@@ -84,6 +118,16 @@ public class Schema {
         return sb.toString();
     }
     
+    /**
+     * Creates a record bound to the variables of this schema, that stores values in primitive
+     * slots and can be reused across measurements. Variables added to this schema afterwards
+     * are not known to the record.
+     * @see SchemaRecord
+     */
+    public SchemaRecord newRecord() {
+        return new SchemaRecord(this);
+    }
+
     /**
      * Adds a variable to this schema with the specified data type.
      * 
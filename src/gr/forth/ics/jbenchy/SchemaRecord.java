@@ -0,0 +1,407 @@
+package gr.forth.ics.jbenchy;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A record bound to the variables of a {@link Schema}, storing its values in primitive slots.
+ * Instances are created through {@link Schema#newRecord()}.
+ * <p>
+ * Variables of integral types (e.g. {@link DataTypes#INTEGER}, {@link DataTypes#LONG}) are stored in
+ * a <tt>long[]</tt>, variables of floating point types in a <tt>double[]</tt>, and all others in an
+ * <tt>Object[]</tt>, each at the index of the variable in the schema (see {@link #indexOf(Object)}).
+ * Setting a value by index neither normalizes the variable name nor boxes the value, so a record
+ * can be filled in a hot loop without allocating. The record can be {@link #reset() reset} and
+ * reused for the next measurement:
+ * <pre>
+ * SchemaRecord record = schema.newRecord();
+ * final int time = record.indexOf(Variables.TIME);
+ * for (...) {
+ *     record.reset();
+ *     ...
+ *     record.set(time, elapsed);
+ *     aggregator.record(record);
+ * }
+ * </pre>
+ * Aggregators do not retain the records they are given, so reusing a record after
+ * {@link Aggregator#record(Record)} returns is safe. To keep the bindings of a record around,
+ * {@link #copy() copy} it.
+ * <p>
+ * The {@link Map} view of this record boxes values (to the {@link DataType#getMappedType() mapped type}
+ * of each variable), and only permits the variables of the schema, plus the <tt>null</tt> key.
+ * Variables added to the schema after the record was created are not known to it.
+ * {@link Variable} handles of the same schema access their slots directly.
+ *
+ * @see Schema#newRecord()
+ * @author andreou
+ */
+public final class SchemaRecord extends Record {
+    private static final int LONG = 0;
+    private static final int DOUBLE = 1;
+    private static final int OBJECT = 2;
+
+    private final Schema schema;
+    private final String[] variables;
+    private final Class<?>[] types;
+    private final int[] kinds;
+    private final Map<String, Integer> indexes;
+
+    private final long[] longs;
+    private final double[] doubles;
+    private final Object[] objects;
+    private final boolean[] bound;
+    private int boundCount;
+    private Object value;
+
+    SchemaRecord(Schema schema) {
+        this.schema = schema;
+        Collection<String> schemaVariables = schema.getVariables();
+        final int size = schemaVariables.size();
+        this.variables = schemaVariables.toArray(new String[size]);
+        this.types = new Class<?>[size];
+        this.kinds = new int[size];
+        this.indexes = new HashMap<String, Integer>(size * 2);
+        for (int i = 0; i < size; i++) {
+            Class<?> type = schema.getTypeOf(variables[i]).getMappedType();
+            types[i] = type;
+            if (type == Integer.class || type == Long.class || type == Short.class || type == Byte.class) {
+                kinds[i] = LONG;
+            } else if (type == Double.class || type == Float.class) {
+                kinds[i] = DOUBLE;
+            } else {
+                kinds[i] = OBJECT;
+            }
+            indexes.put(variables[i], i);
+        }
+        this.longs = new long[size];
+        this.doubles = new double[size];
+        this.objects = new Object[size];
+        this.bound = new boolean[size];
+    }
+
+    /**
+     * Returns the schema that this record is bound to.
+     */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Returns the index of a variable, for use with the setters and getters by index.
+     * @param variable the variable (case-insensitive)
+     * @throws IllegalArgumentException if the variable does not belong to the schema
+     */
+    public int indexOf(Object variable) {
+        int index = slotOf(variable);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown variable: '" + variable + "', available " +
+                    "variables: " + Arrays.asList(variables));
+        }
+        return index;
+    }
+
+    /**
+     * Returns the index of the slot of a variable, or -1 if the variable does not belong to the
+     * schema. Handles of the same schema are resolved without a lookup.
+     */
+    private int slotOf(Object variable) {
+        if (variable instanceof Variable && ((Variable) variable).getSchema() == schema) {
+            return ((Variable) variable).getIndex();
+        }
+        Integer index = indexes.get(Variable.nameOf(variable));
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the name of the variable at the specified index.
+     */
+    public String getVariable(int index) {
+        return variables[index];
+    }
+
+    /**
+     * Unbinds all variables (and the value), so that the record can be reused.
+     * @return this
+     */
+    public SchemaRecord reset() {
+        Arrays.fill(bound, false);
+        Arrays.fill(objects, null);
+        boundCount = 0;
+        value = null;
+        return this;
+    }
+
+    /**
+     * Binds the variable at the specified index to an integral value. If the variable is of a
+     * floating point type, the value is converted.
+     * @return this
+     * @throws IllegalArgumentException if the variable is not of a numeric type
+     */
+    public SchemaRecord set(int index, long value) {
+        switch (kinds[index]) {
+            case LONG: longs[index] = value; break;
+            case DOUBLE: doubles[index] = value; break;
+            default: throw notNumeric(index);
+        }
+        bind(index);
+        return this;
+    }
+
+    /**
+     * Binds the variable at the specified index to a floating point value. If the variable is of
+     * an integral type, the value is truncated.
+     * @return this
+     * @throws IllegalArgumentException if the variable is not of a numeric type
+     */
+    public SchemaRecord set(int index, double value) {
+        switch (kinds[index]) {
+            case LONG: longs[index] = (long) value; break;
+            case DOUBLE: doubles[index] = value; break;
+            default: throw notNumeric(index);
+        }
+        bind(index);
+        return this;
+    }
+
+    /**
+     * Binds the variable at the specified index to a value. Values of numeric variables must be
+     * {@link Number numbers}. A <tt>null</tt> value unbinds the variable.
+     * @return this
+     */
+    public SchemaRecord set(int index, Object value) {
+        if (value == null) {
+            if (bound[index]) {
+                bound[index] = false;
+                objects[index] = null;
+                boundCount--;
+            }
+            return this;
+        }
+        switch (kinds[index]) {
+            case LONG: longs[index] = ((Number) value).longValue(); break;
+            case DOUBLE: doubles[index] = ((Number) value).doubleValue(); break;
+            default: objects[index] = value;
+        }
+        bind(index);
+        return this;
+    }
+
+    private void bind(int index) {
+        if (!bound[index]) {
+            bound[index] = true;
+            boundCount++;
+        }
+    }
+
+    private IllegalArgumentException notNumeric(int index) {
+        return new IllegalArgumentException("Variable '" + variables[index] + "' is of type " +
+                types[index].getSimpleName() + ", not numeric");
+    }
+
+    /**
+     * Returns whether the variable at the specified index is bound.
+     */
+    public boolean isBound(int index) {
+        return bound[index];
+    }
+
+    /**
+     * Returns whether all variables of the schema are bound.
+     */
+    public boolean isComplete() {
+        return boundCount == variables.length;
+    }
+
+    /**
+     * Returns the value of an integral (or truncated floating point) variable, by index.
+     * @throws IllegalArgumentException if the variable is not of a numeric type
+     */
+    public long getLong(int index) {
+        switch (kinds[index]) {
+            case LONG: return longs[index];
+            case DOUBLE: return (long) doubles[index];
+            default: throw notNumeric(index);
+        }
+    }
+
+    /**
+     * Returns the value of a numeric variable, by index.
+     * @throws IllegalArgumentException if the variable is not of a numeric type
+     */
+    public double getDouble(int index) {
+        switch (kinds[index]) {
+            case LONG: return longs[index];
+            case DOUBLE: return doubles[index];
+            default: throw notNumeric(index);
+        }
+    }
+
+    /**
+     * Returns the value of a variable, by index, boxed to the mapped type of the variable,
+     * or <tt>null</tt> if the variable is not bound.
+     */
+    public Object get(int index) {
+        if (!bound[index]) {
+            return null;
+        }
+        switch (kinds[index]) {
+            case LONG:
+                long l = longs[index];
+                if (types[index] == Integer.class) return (int) l;
+                if (types[index] == Short.class) return (short) l;
+                if (types[index] == Byte.class) return (byte) l;
+                return l;
+            case DOUBLE:
+                double d = doubles[index];
+                if (types[index] == Float.class) return (float) d;
+                return d;
+            default:
+                return objects[index];
+        }
+    }
+
+    /**
+     * Returns the string representation of the value of a bound variable, by index, as it is
+     * stored in a database.
+     */
+    public String toString(int index) {
+        switch (kinds[index]) {
+            case LONG: return Long.toString(longs[index]);
+            case DOUBLE:
+                return types[index] == Float.class ?
+                    Float.toString((float) doubles[index]) : Double.toString(doubles[index]);
+            default: return String.valueOf(objects[index]);
+        }
+    }
+
+    /**
+     * Creates a plain {@link Record} with the same bindings as this record.
+     */
+    @Override
+    public Record copy() {
+        Record copy = new Record();
+        for (int i = 0; i < variables.length; i++) {
+            if (bound[i]) {
+                copy.add(variables[i], get(i));
+            }
+        }
+        if (value != null) {
+            copy.putValue(value);
+        }
+        return copy;
+    }
+
+    @Override
+    public SchemaRecord add(Object var, Object value) {
+        set(indexOf(var), value);
+        return this;
+    }
+
+    @Override
+    public int size() {
+        return boundCount + (value != null ? 1 : 0);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (key == null) {
+            return false;
+        }
+        int index = slotOf(key);
+        return index >= 0 && bound[index];
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return asMap().containsValue(value);
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (key == null) {
+            return null;
+        }
+        int index = slotOf(key);
+        return index < 0 ? null : get(index);
+    }
+
+    @Override
+    public Object getValue() {
+        return value;
+    }
+
+    @Override
+    public Object putValue(Object value) {
+        Object previous = this.value;
+        this.value = value;
+        return previous;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        int index = indexOf(key);
+        Object previous = get(index);
+        set(index, value);
+        return previous;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if (key == null) {
+            return null;
+        }
+        int index = slotOf(key);
+        if (index < 0) {
+            return null;
+        }
+        Object previous = get(index);
+        set(index, (Object) null);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        reset();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return asMap().keySet();
+    }
+
+    @Override
+    public Collection<Object> values() {
+        return asMap().values();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return asMap().entrySet();
+    }
+
+    /**
+     * Returns an unmodifiable snapshot of the bindings, in schema order, followed by the value.
+     */
+    private Map<String, Object> asMap() {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < variables.length; i++) {
+            if (bound[i]) {
+                map.put(variables[i], get(i));
+            }
+        }
+        if (value != null) {
+            map.put(null, value);
+        }
+        return Collections.unmodifiableMap(map);
+    }
+}
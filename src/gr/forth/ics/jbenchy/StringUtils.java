@@ -34,6 +34,9 @@ public class StringUtils {
      * @throws IllegalArgumentException if the resulting string is empty
      */
     public static String normalizeVariable(Object variable, String errorMessage) {
+        if (variable instanceof Variable) {
+            return ((Variable) variable).getName();
+        }
         Preconditions.checkNotNull(variable, errorMessage);
         String var = variable.toString().trim();
         Preconditions.checkArgument(var.length() > 0, errorMessage);
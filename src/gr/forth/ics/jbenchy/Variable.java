@@ -0,0 +1,99 @@
+package gr.forth.ics.jbenchy;
+
+/**
+ * A handle to a variable of a {@link Schema}, carrying the normalized (upper-cased) name of the
+ * variable, its index (position) in the schema, and its data type. Handles are obtained through
+ * {@link Schema#variable(Object)}.
+ * <p>
+ * Everywhere a variable is expected as an <tt>Object</tt> (e.g. {@link Record#add(Object, Object)},
+ * {@link Record#get(Object)}, {@link Schema#getTypeOf(Object)}, {@link Filters}, {@link Orders},
+ * {@link Aggregate}), a handle can be passed instead, and its name is used as is, without
+ * <tt>toString().toUpperCase()</tt>. A {@link SchemaRecord} of the same schema additionally
+ * accesses the slot of the variable directly, by its index:
+ * <pre>
+ * Variable time = schema.variable(Variables.TIME);
+ * SchemaRecord record = schema.newRecord();
+ * for (...) {
+ *     record.add(time, elapsed);
+ *     ...
+ * }
+ * </pre>
+ *
+ * @see Schema#variable(Object)
+ * @author andreou
+ */
+public final class Variable {
+    private final Schema schema;
+    private final String name;
+    private final int index;
+    private final DataType<?> type;
+
+    Variable(Schema schema, String name, int index, DataType<?> type) {
+        this.schema = schema;
+        this.name = name;
+        this.index = index;
+        this.type = type;
+    }
+
+    /**
+     * Returns the normalized (upper-cased) name of this variable.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the index of this variable in its schema, i.e. its position in
+     * {@link Schema#getVariables()}.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the data type of this variable.
+     */
+    public DataType<?> getType() {
+        return type;
+    }
+
+    /**
+     * Returns the schema that this variable belongs to.
+     */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Returns the normalized name of a variable: the name of a handle, or the upper-cased
+     * string of any other object.
+     */
+    static String nameOf(Object variable) {
+        if (variable instanceof Variable) {
+            return ((Variable) variable).name;
+        }
+        return variable.toString().toUpperCase();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Variable)) {
+            return false;
+        }
+        Variable that = (Variable) o;
+        return this.name.equals(that.name) && this.index == that.index && this.type.equals(that.type);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    /**
+     * Returns the name of this variable.
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+}
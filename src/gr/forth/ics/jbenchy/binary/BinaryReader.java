@@ -0,0 +1,469 @@
+package gr.forth.ics.jbenchy.binary;
+
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.Aggregator;
+import gr.forth.ics.jbenchy.DataType;
+import gr.forth.ics.jbenchy.DataTypes;
+import gr.forth.ics.jbenchy.Database;
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.RecordSource;
+import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.Schema;
+import gr.forth.ics.jbenchy.SchemaRecord;
+import gr.forth.ics.jbenchy.StringUtils;
+import gr.forth.ics.jbenchy.impl.Column;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads records written by a {@link BinaryWriter}, one chunk at a time. The columns of the file are
+ * mapped to the variables of the records they are read into by name, so a file can be read into
+ * records of any schema with the same variables (columns that are not variables of the schema are
+ * ignored), e.g. into the schema of an aggregator of another database:
+ * <pre>
+ * BinaryReader reader = BinaryReader.open(new File("results.jbc"));
+ * try {
+ *     database.load(aggregator, reader);
+ * } finally {
+ *     reader.close();
+ * }
+ * </pre>
+ * Records can be restricted to {@link #withRange(Object, Object, Object) ranges} of numeric or
+ * timestamp variables; chunks whose minimum and maximum (as recorded in the file) fall outside
+ * a range are skipped without being decoded, or even read, if the channel is a file.
+ *
+ * @see BinaryWriter
+ * @author andreou
+ */
+public final class BinaryReader implements RecordSource, Closeable {
+    private final ReadableByteChannel channel;
+    private final Schema schema;
+    private final boolean hasValue;
+    private final Chunk chunk;
+    private ByteBuffer buffer = Chunk.allocate(1 << 16);
+    private int row;
+    private boolean finished;
+    private long records;
+    private long skippedChunks;
+    private Range[] ranges = new Range[0];
+
+    //the columns of the variables of the last schema read into, by variable index
+    private Schema mappedSchema;
+    private int[] columns;
+    //per mapped variable, whether numbers of the file are converted to the decimals of the record
+    private boolean[] decimals;
+
+    private BinaryReader(ReadableByteChannel channel) throws IOException {
+        this.channel = channel;
+        buffer.limit(13);
+        Chunk.readFully(channel, buffer);
+        buffer.flip();
+        if (buffer.getInt() != Chunk.MAGIC) {
+            throw new IOException("Not a binary records file");
+        }
+        int version = buffer.getInt();
+        if (version < 1 || version > Chunk.VERSION) {
+            throw new IOException("Unsupported version: " + version);
+        }
+        final int size = buffer.getInt();
+        this.hasValue = buffer.get() != 0;
+        this.schema = new Schema();
+        DataType<?>[] types = new DataType<?>[size + (hasValue ? 1 : 0)];
+        for (int i = 0; i < size; i++) {
+            String variable = readString();
+            types[i] = DataTypes.fromName(readString());
+            schema.add(variable, types[i]);
+        }
+        if (hasValue) {
+            types[size] = DataTypes.fromName(readString());
+        }
+        this.chunk = new Chunk(types);
+        chunk.version = version;
+    }
+
+    private String readString() throws IOException {
+        buffer.clear().limit(4);
+        Chunk.readFully(channel, buffer);
+        final int length = buffer.getInt(0);
+        if (length < 0) {
+            throw new IOException("Corrupt header");
+        }
+        byte[] utf8 = new byte[length];
+        Chunk.readFully(channel, ByteBuffer.wrap(utf8));
+        return Chunk.string(utf8);
+    }
+
+    /**
+     * Opens a file written by a {@link BinaryWriter}, and reads its header.
+     * @throws IOException if the file cannot be read, or is not in the format of this package
+     */
+    public static BinaryReader open(File file) throws IOException {
+        Preconditions.checkNotNull(file, "file");
+        return open(new FileInputStream(file).getChannel());
+    }
+
+    /**
+     * Starts reading the records written by a {@link BinaryWriter} to a channel, such as a socket,
+     * and reads their header. The channel is closed when this reader is closed.
+     * @throws IOException if the channel cannot be read, or is not in the format of this package
+     */
+    public static BinaryReader open(ReadableByteChannel channel) throws IOException {
+        Preconditions.checkNotNull(channel, "channel");
+        try {
+            return new BinaryReader(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        } catch (RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the schema of the records, as they were written.
+     */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Returns whether the records have values (i.e. bindings of the <tt>null</tt> key).
+     */
+    public boolean hasValue() {
+        return hasValue;
+    }
+
+    /**
+     * Restricts the records that are read to those whose value of a variable is within a range.
+     * Records with a <tt>null</tt> value of the variable are not read. Ranges of several variables
+     * are combined conjunctively. Must be called before any record is read.
+     * @param variable a numeric or timestamp variable of the file
+     * @param min the minimum value (inclusive), or <tt>null</tt> for no minimum: a {@link Number}
+     * for numeric variables, or a {@link Timestamp} for timestamp variables
+     * @param max the maximum value (inclusive), or <tt>null</tt> for no maximum
+     * @return this
+     * @throws IllegalArgumentException if the variable is not in the file, is not numeric or a
+     * timestamp, or the bounds are not of its type
+     */
+    public BinaryReader withRange(Object variable, Object min, Object max) {
+        Preconditions.checkNotNull(variable, "variable");
+        Preconditions.checkState(records == 0 && chunk.rows == 0, "Records have already been read");
+        List<String> variables = new ArrayList<String>(schema.getVariables());
+        final int column = variables.indexOf(StringUtils.normalizeVariable(variable));
+        Preconditions.checkArgument(column >= 0, "Variable '%s' is not in the file, variables are: %s",
+                variable, variables);
+        Range range = new Range(column);
+        switch (chunk.kinds[column]) {
+            case Chunk.LONG:
+                checkBound(variable, min, Number.class);
+                checkBound(variable, max, Number.class);
+                if (min != null) range.minLong = isIntegral(min) ? ((Number) min).longValue() :
+                    (long) Math.ceil(((Number) min).doubleValue());
+                if (max != null) range.maxLong = isIntegral(max) ? ((Number) max).longValue() :
+                    (long) Math.floor(((Number) max).doubleValue());
+                break;
+            case Chunk.TIMESTAMP:
+                checkBound(variable, min, Timestamp.class);
+                checkBound(variable, max, Timestamp.class);
+                if (min != null) range.minLong = Column.encodeTimestamp((Timestamp) min);
+                if (max != null) range.maxLong = Column.encodeTimestamp((Timestamp) max);
+                break;
+            case Chunk.DOUBLE:
+            case Chunk.FLOAT:
+                checkBound(variable, min, Number.class);
+                checkBound(variable, max, Number.class);
+                if (min != null) range.minDouble = ((Number) min).doubleValue();
+                if (max != null) range.maxDouble = ((Number) max).doubleValue();
+                break;
+            default:
+                throw new IllegalArgumentException("Variable '" + variable + "' is of type " +
+                        chunk.types[column] + ", ranges are only supported for numbers and timestamps");
+        }
+        Range[] ranges = new Range[this.ranges.length + 1];
+        System.arraycopy(this.ranges, 0, ranges, 0, this.ranges.length);
+        ranges[this.ranges.length] = range;
+        this.ranges = ranges;
+        return this;
+    }
+
+    private static void checkBound(Object variable, Object bound, Class<?> type) {
+        Preconditions.checkArgument(bound == null || type.isInstance(bound),
+                "Bound of '%s' must be a %s, but was: %s", variable, type.getSimpleName(), bound);
+    }
+
+    private static boolean isIntegral(Object number) {
+        return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte;
+    }
+
+    /**
+     * Reads the next record into the specified record, binding the variables of its schema by name,
+     * and its {@link Record#getValue() value}, if the records have values. Null values of
+     * variables leave the variables unbound. Numbers are converted to the numeric type of their
+     * variable in the record (integral, floating point or decimal).
+     * @param record a record of any schema whose variables are variables of the file
+     * @return false if there are no more records (and the record is not modified)
+     * @throws IOException if the file cannot be read, or is truncated
+     * @throws IllegalArgumentException if a variable of the record is not in the file, or its
+     * type is incompatible with the type in the file
+     */
+    public boolean next(SchemaRecord record) throws IOException {
+        if (record.getSchema() != mappedSchema) {
+            map(record.getSchema());
+        }
+        while (true) {
+            if (row == chunk.rows) {
+                if (finished) {
+                    return false;
+                }
+                readChunk();
+                if (finished) {
+                    return false;
+                }
+            }
+            if (accepts(row)) {
+                break;
+            }
+            row++;
+        }
+        for (int i = 0; i < columns.length; i++) {
+            final int column = columns[i];
+            if (chunk.nulls[column][row]) {
+                record.set(i, (Object) null);
+                continue;
+            }
+            if (decimals[i]) {
+                record.set(i, toDecimal(column, row));
+                continue;
+            }
+            switch (chunk.kinds[column]) {
+                case Chunk.LONG: record.set(i, chunk.longs[column][row]); break;
+                case Chunk.TIMESTAMP: record.set(i, Column.decodeTimestamp(chunk.longs[column][row])); break;
+                case Chunk.DOUBLE:
+                case Chunk.FLOAT: record.set(i, chunk.doubles[column][row]); break;
+                default: record.set(i, chunk.objects[column][row]);
+            }
+        }
+        if (hasValue) {
+            record.putValue(valueAt(chunk.types.length - 1, row));
+        }
+        row++;
+        records++;
+        return true;
+    }
+
+    /**
+     * Reads the next chunk that may have records within the ranges, skipping the others.
+     */
+    private void readChunk() throws IOException {
+        row = 0;
+        while (true) {
+            buffer = chunk.readHeader(channel, buffer);
+            if (chunk.rows == 0) {
+                finished = true;
+                return;
+            }
+            if (overlaps()) {
+                buffer = chunk.readColumns(channel, buffer);
+                return;
+            }
+            chunk.skipColumns(channel, buffer);
+            chunk.rows = 0;
+            skippedChunks++;
+        }
+    }
+
+    private boolean overlaps() {
+        if (chunk.version < 2) {
+            //no statistics
+            return true;
+        }
+        for (Range range : ranges) {
+            final int column = range.column;
+            if (!chunk.hasStatistics[column]) {
+                return false;
+            }
+            if (chunk.kinds[column] == Chunk.LONG || chunk.kinds[column] == Chunk.TIMESTAMP) {
+                if (chunk.maxLongs[column] < range.minLong || chunk.minLongs[column] > range.maxLong) {
+                    return false;
+                }
+            } else if (chunk.maxDoubles[column] < range.minDouble || chunk.minDoubles[column] > range.maxDouble) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean accepts(int row) {
+        for (Range range : ranges) {
+            final int column = range.column;
+            if (chunk.nulls[column][row]) {
+                return false;
+            }
+            if (chunk.kinds[column] == Chunk.LONG || chunk.kinds[column] == Chunk.TIMESTAMP) {
+                final long value = chunk.longs[column][row];
+                if (value < range.minLong || value > range.maxLong) {
+                    return false;
+                }
+            } else {
+                final double value = chunk.doubles[column][row];
+                if (!(value >= range.minDouble && value <= range.maxDouble)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private Object valueAt(int column, int row) {
+        if (chunk.nulls[column][row]) {
+            return null;
+        }
+        switch (chunk.kinds[column]) {
+            case Chunk.LONG:
+                long value = chunk.longs[column][row];
+                return chunk.types[column].getMappedType() == Integer.class ? (Object) (int) value : (Object) value;
+            case Chunk.TIMESTAMP: return Column.decodeTimestamp(chunk.longs[column][row]);
+            case Chunk.DOUBLE: return chunk.doubles[column][row];
+            case Chunk.FLOAT: return (float) chunk.doubles[column][row];
+            default: return chunk.objects[column][row];
+        }
+    }
+
+    private BigDecimal toDecimal(int column, int row) {
+        switch (chunk.kinds[column]) {
+            case Chunk.LONG: return BigDecimal.valueOf(chunk.longs[column][row]);
+            case Chunk.DOUBLE:
+            case Chunk.FLOAT: return BigDecimal.valueOf(chunk.doubles[column][row]);
+            default: return new BigDecimal(chunk.objects[column][row].toString());
+        }
+    }
+
+    private static boolean isPrimitive(Class<?> type) {
+        return type == Integer.class || type == Long.class || type == Short.class || type == Byte.class ||
+                type == Double.class || type == Float.class;
+    }
+
+    private void map(Schema target) {
+        List<String> variables = new ArrayList<String>(schema.getVariables());
+        int[] columns = new int[target.getVariables().size()];
+        boolean[] decimals = new boolean[columns.length];
+        int i = 0;
+        for (String variable : target.getVariables()) {
+            columns[i] = variables.indexOf(variable);
+            if (columns[i] < 0) {
+                throw new IllegalArgumentException("Variable '" + variable + "' is not in the file, " +
+                        "variables are: " + variables);
+            }
+            Class<?> from = chunk.types[columns[i]].getMappedType();
+            Class<?> to = target.getTypeOf(variable).getMappedType();
+            if (from != to && !(Number.class.isAssignableFrom(from) && Number.class.isAssignableFrom(to))) {
+                throw new IllegalArgumentException("Variable '" + variable + "' is of type " +
+                        target.getTypeOf(variable) + ", but is " + chunk.types[columns[i]] + " in the file");
+            }
+            if (from != to && !isPrimitive(to)) {
+                //records keep numbers of such types as objects, so they must be converted
+                if (to != BigDecimal.class) {
+                    throw new IllegalArgumentException("Variable '" + variable + "' is of type " +
+                            target.getTypeOf(variable) + ", which numbers of type " + chunk.types[columns[i]] +
+                            " in the file cannot be converted to");
+                }
+                decimals[i] = true;
+            }
+            i++;
+        }
+        this.columns = columns;
+        this.decimals = decimals;
+        this.mappedSchema = target;
+    }
+
+    /**
+     * Returns the number of records read so far.
+     */
+    public long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * Returns the number of chunks that were skipped so far, because their records were outside
+     * the {@link #withRange(Object, Object, Object) ranges}.
+     */
+    public long getSkippedChunkCount() {
+        return skippedChunks;
+    }
+
+    /**
+     * Closes the channel.
+     */
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads all the records of a file, with their values, if they have any.
+     * @throws IOException if the file cannot be read
+     */
+    public static Records readRecords(File file) throws IOException {
+        BinaryReader reader = open(file);
+        try {
+            List<Record> records = new ArrayList<Record>();
+            SchemaRecord record = reader.getSchema().newRecord();
+            while (reader.next(record.reset())) {
+                records.add(record.copy());
+            }
+            return new Records(records, new ArrayList<String>(reader.getSchema().getVariables()));
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Loads all the records of a file into a new aggregator of a database, with the schema of the
+     * file. An existing aggregator with the same name is replaced.
+     * @param database the database of the aggregator
+     * @param file the file to read
+     * @param name the name of the aggregator
+     * @return the aggregator
+     * @throws IOException if the file cannot be read
+     * @see Database#load(Aggregator, RecordSource)
+     */
+    public static Aggregator importInto(Database database, File file, String name) throws IOException {
+        Preconditions.checkNotNull(database, "database");
+        BinaryReader reader = open(file);
+        try {
+            Aggregator aggregator = database.forceCreate(reader.getSchema(), name);
+            database.load(aggregator, reader);
+            return aggregator;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * A range of values of a column, in the representation of the column in chunks.
+     */
+    private static class Range {
+        final int column;
+        long minLong = Long.MIN_VALUE;
+        long maxLong = Long.MAX_VALUE;
+        double minDouble = Double.NEGATIVE_INFINITY;
+        double maxDouble = Double.POSITIVE_INFINITY;
+
+        Range(int column) {
+            this.column = column;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "[BinaryReader schema=" + schema + ", hasValue=" + hasValue + ", records=" + records + "]";
+    }
+}
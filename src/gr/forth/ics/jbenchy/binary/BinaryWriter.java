@@ -0,0 +1,303 @@
+package gr.forth.ics.jbenchy.binary;
+
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.Aggregate;
+import gr.forth.ics.jbenchy.Aggregator;
+import gr.forth.ics.jbenchy.DataType;
+import gr.forth.ics.jbenchy.DataTypes;
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.ReportCursor;
+import gr.forth.ics.jbenchy.Schema;
+import gr.forth.ics.jbenchy.SchemaRecord;
+import gr.forth.ics.jbenchy.impl.Column;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes records of a schema in the binary columnar format of this package, which can be read back
+ * by a {@link BinaryReader}. Records are buffered in columns, and written in chunks of up to 65536
+ * records, so that a file of any size can be written (and read) with constant memory. Each chunk
+ * records the minimum and maximum of its numeric and timestamp columns, so that readers can skip
+ * the chunks outside the ranges they are interested in.
+ * <p>
+ * The file starts with a header with the variables of the schema and the {@link DataType#getName() names}
+ * of their types, and optionally the type of a value (the <tt>null</tt> key of the records, as in the
+ * results of a report). The file must be {@link #close() closed} to be complete.
+ * <pre>
+ * BinaryWriter.export(aggregator, new File("results.jbc"));
+ * ...
+ * Aggregator copy = BinaryReader.importInto(otherDatabase, new File("results.jbc"), "RESULTS");
+ * </pre>
+ *
+ * @see BinaryReader
+ * @author andreou
+ */
+public final class BinaryWriter implements Closeable {
+    private final WritableByteChannel channel;
+    private final Schema schema;
+    private final String[] variables;
+    private final boolean hasValue;
+    private final Chunk chunk;
+    private ByteBuffer buffer = Chunk.allocate(1 << 16);
+    private long records;
+    private boolean closed;
+
+    private BinaryWriter(WritableByteChannel channel, Schema schema, DataType<?> valueType) throws IOException {
+        this.channel = channel;
+        this.schema = schema;
+        this.variables = schema.getVariables().toArray(new String[0]);
+        this.hasValue = valueType != null;
+        DataType<?>[] types = new DataType<?>[variables.length + (hasValue ? 1 : 0)];
+        buffer.putInt(Chunk.MAGIC).putInt(Chunk.VERSION).putInt(variables.length).put((byte) (hasValue ? 1 : 0));
+        for (int i = 0; i < variables.length; i++) {
+            types[i] = schema.getTypeOf(variables[i]);
+            putString(variables[i]);
+            putString(types[i].getName());
+        }
+        if (hasValue) {
+            types[variables.length] = valueType;
+            putString(valueType.getName());
+        }
+        this.chunk = new Chunk(types);
+        buffer.flip();
+        Chunk.writeFully(channel, buffer);
+    }
+
+    private void putString(String string) {
+        byte[] utf8 = Chunk.utf8(string);
+        buffer = Chunk.ensure(buffer, 4 + utf8.length);
+        buffer.putInt(utf8.length).put(utf8);
+    }
+
+    /**
+     * Creates (or overwrites) a file for writing records of the specified schema.
+     * @param file the file to write
+     * @param schema the schema of the records
+     * @param valueType the type of the values of the records, or <tt>null</tt> if records
+     * have no values
+     * @throws IOException if the file cannot be written
+     */
+    public static BinaryWriter create(File file, Schema schema, DataType<?> valueType) throws IOException {
+        Preconditions.checkNotNull(file, "file");
+        Preconditions.checkNotNull(schema, "schema");
+        WritableByteChannel channel = new FileOutputStream(file).getChannel();
+        try {
+            return new BinaryWriter(channel, schema, valueType);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts writing records of the specified schema to a channel, such as a socket.
+     * The channel is closed when this writer is closed.
+     * @param channel the channel to write to
+     * @param schema the schema of the records
+     * @param valueType the type of the values of the records, or <tt>null</tt> if records
+     * have no values
+     * @throws IOException if the channel cannot be written
+     */
+    public static BinaryWriter open(WritableByteChannel channel, Schema schema, DataType<?> valueType) throws IOException {
+        Preconditions.checkNotNull(channel, "channel");
+        Preconditions.checkNotNull(schema, "schema");
+        return new BinaryWriter(channel, schema, valueType);
+    }
+
+    /**
+     * Returns the schema of the records.
+     */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Writes a record. Records of the {@link #getSchema() schema} are read by index, and other
+     * records by variable name. Unbound variables (and values) are written as nulls.
+     * @throws IOException if writing a full chunk fails
+     */
+    public void write(Record record) throws IOException {
+        Preconditions.checkState(!closed, "Writer is closed");
+        final int row = chunk.rows;
+        if (record instanceof SchemaRecord && ((SchemaRecord) record).getSchema() == schema) {
+            SchemaRecord schemaRecord = (SchemaRecord) record;
+            for (int i = 0; i < variables.length; i++) {
+                if (!schemaRecord.isBound(i)) {
+                    set(i, row, null);
+                    continue;
+                }
+                chunk.nulls[i][row] = false;
+                switch (chunk.kinds[i]) {
+                    case Chunk.LONG: chunk.longs[i][row] = schemaRecord.getLong(i); break;
+                    case Chunk.DOUBLE:
+                    case Chunk.FLOAT: chunk.doubles[i][row] = schemaRecord.getDouble(i); break;
+                    default: set(i, row, schemaRecord.get(i));
+                }
+            }
+        } else {
+            for (int i = 0; i < variables.length; i++) {
+                set(i, row, record.get(variables[i]));
+            }
+        }
+        if (hasValue) {
+            set(variables.length, row, record.getValue());
+        }
+        records++;
+        if (++chunk.rows == Chunk.ROWS) {
+            flush();
+        }
+    }
+
+    private void set(int column, int row, Object value) {
+        chunk.nulls[column][row] = value == null;
+        if (value == null) {
+            return;
+        }
+        switch (chunk.kinds[column]) {
+            case Chunk.LONG: chunk.longs[column][row] = ((Number) value).longValue(); break;
+            case Chunk.TIMESTAMP: chunk.longs[column][row] = Column.encodeTimestamp((Timestamp) value); break;
+            case Chunk.DOUBLE:
+            case Chunk.FLOAT: chunk.doubles[column][row] = ((Number) value).doubleValue(); break;
+            default: chunk.objects[column][row] = value;
+        }
+    }
+
+    /**
+     * Writes the buffered records, if any, as a chunk.
+     * @throws IOException if writing fails
+     */
+    public void flush() throws IOException {
+        if (chunk.rows > 0) {
+            buffer = chunk.write(channel, buffer);
+            chunk.rows = 0;
+        }
+    }
+
+    /**
+     * Returns the number of records written so far.
+     */
+    public long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * Writes the buffered records and the end of the file, and closes the channel.
+     */
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+            buffer = chunk.write(channel, buffer);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes all the records of an aggregator to a file, with the schema of the aggregator. The
+     * records are read through a {@link ReportCursor cursor} over the values of the first variable.
+     * @return the number of written records
+     * @throws IOException if the file cannot be written
+     */
+    public static long export(Aggregator aggregator, File file) throws IOException {
+        Preconditions.checkNotNull(aggregator, "aggregator");
+        Schema schema = aggregator.getSchema();
+        List<String> variables = new ArrayList<String>(schema.getVariables());
+        Preconditions.checkArgument(!variables.isEmpty(), "Aggregator has no variables");
+        ReportCursor cursor = aggregator.cursor(Aggregate.values(variables.get(0)),
+                variables.subList(1, variables.size()).toArray());
+        try {
+            BinaryWriter writer = create(file, schema, null);
+            try {
+                SchemaRecord r = cursor.getSchema().newRecord();
+                SchemaRecord record = schema.newRecord();
+                final int[] kinds = writer.chunk.kinds;
+                while (cursor.next(r)) {
+                    record.set(0, r.getValue());
+                    for (int i = 1; i < kinds.length; i++) {
+                        switch (kinds[i]) {
+                            case Chunk.LONG: record.set(i, r.getLong(i - 1)); break;
+                            case Chunk.DOUBLE:
+                            case Chunk.FLOAT: record.set(i, r.getDouble(i - 1)); break;
+                            default: record.set(i, r.get(i - 1));
+                        }
+                    }
+                    writer.write(record);
+                }
+            } finally {
+                writer.close();
+            }
+            return writer.getRecordCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Writes the records of a report to a file, with their values, and closes the cursor.
+     * @return the number of written records
+     * @throws IOException if the file cannot be written
+     */
+    public static long write(ReportCursor cursor, File file) throws IOException {
+        Preconditions.checkNotNull(cursor, "cursor");
+        try {
+            BinaryWriter writer = create(file, cursor.getSchema(), cursor.getValueType());
+            try {
+                SchemaRecord record = cursor.getSchema().newRecord();
+                while (cursor.next(record)) {
+                    writer.write(record);
+                }
+            } finally {
+                writer.close();
+            }
+            return writer.getRecordCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Writes records (such as the results of a report) to a file. The types of the variables and of
+     * the values are {@link DataTypes#inferFrom(Iterable) inferred} from the classes of their values.
+     * @return the number of written records
+     * @throws IOException if the file cannot be written
+     */
+    public static long write(Records records, File file) throws IOException {
+        Preconditions.checkNotNull(records, "records");
+        Schema schema = new Schema();
+        List<Object> values = new ArrayList<Object>(records.list().size());
+        for (String variable : records.getVariables()) {
+            values.clear();
+            for (Record record : records) {
+                values.add(record.get(variable));
+            }
+            schema.add(variable, DataTypes.inferFrom(values));
+        }
+        values.clear();
+        boolean hasValue = false;
+        for (Record record : records) {
+            values.add(record.getValue());
+            hasValue |= record.getValue() != null;
+        }
+        BinaryWriter writer = create(file, schema, hasValue ? DataTypes.inferFrom(values) : null);
+        try {
+            for (Record record : records) {
+                writer.write(record);
+            }
+        } finally {
+            writer.close();
+        }
+        return writer.getRecordCount();
+    }
+}
@@ -0,0 +1,480 @@
+package gr.forth.ics.jbenchy.binary;
+
+import gr.forth.ics.jbenchy.DataType;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The columns of a chunk of rows, and their (de)serialization. A chunk starts with its size in
+ * bytes, its number of rows and (since version 2) the minimum and maximum of each numeric or
+ * timestamp column, so that readers can skip chunks without decoding (or reading) their columns.
+ * Each column of a chunk is then written as a flags byte (whether it has nulls), an optional null bitmap, and its values:
+ * <ul>
+ * <li>integral and timestamp (in nanoseconds) values as offsets from their minimum, in 0, 1, 2,
+ * 4 or 8 bytes each, depending on their range</li>
+ * <li>doubles in 8 bytes, and floats in 4</li>
+ * <li>any other values as a dictionary of their distinct UTF-8 strings, followed by codes
+ * of 1, 2 or 4 bytes</li>
+ * </ul>
+ *
+ * @author andreou
+ */
+class Chunk {
+    static final int MAGIC = 0x4A424E43;
+    static final int VERSION = 2;
+
+    /**
+     * The maximum number of rows of a chunk.
+     */
+    static final int ROWS = 1 << 16;
+
+    static final int LONG = 0;
+    static final int TIMESTAMP = 1;
+    static final int DOUBLE = 2;
+    static final int FLOAT = 3;
+    static final int OBJECT = 4;
+
+    private static final int HAS_NULLS = 1;
+    private static final int HAS_STATISTICS = 1;
+    //the bytes of the statistics of a numeric or timestamp column: a flags byte, the minimum and the maximum
+    private static final int STATISTICS_SIZE = 17;
+
+    final DataType<?>[] types;
+    final int[] kinds;
+    final long[][] longs;
+    final double[][] doubles;
+    final Object[][] objects;
+    final boolean[][] nulls;
+    int rows;
+
+    //the minimum and maximum of each numeric or timestamp column, over its non-null (and non-NaN) values
+    final boolean[] hasStatistics;
+    final long[] minLongs;
+    final long[] maxLongs;
+    final double[] minDoubles;
+    final double[] maxDoubles;
+
+    //the version of the format of the chunks that are read
+    int version = VERSION;
+    //the bytes of the columns of the last chunk whose header was read
+    private int remaining;
+
+    Chunk(DataType<?>[] types) {
+        this.types = types;
+        this.kinds = new int[types.length];
+        this.longs = new long[types.length][];
+        this.doubles = new double[types.length][];
+        this.objects = new Object[types.length][];
+        this.nulls = new boolean[types.length][ROWS];
+        this.hasStatistics = new boolean[types.length];
+        this.minLongs = new long[types.length];
+        this.maxLongs = new long[types.length];
+        this.minDoubles = new double[types.length];
+        this.maxDoubles = new double[types.length];
+        for (int i = 0; i < types.length; i++) {
+            kinds[i] = kindOf(types[i]);
+            switch (kinds[i]) {
+                case LONG:
+                case TIMESTAMP: longs[i] = new long[ROWS]; break;
+                case DOUBLE:
+                case FLOAT: doubles[i] = new double[ROWS]; break;
+                default: objects[i] = new Object[ROWS];
+            }
+        }
+    }
+
+    static int kindOf(DataType<?> type) {
+        Class<?> c = type.getMappedType();
+        if (c == Integer.class || c == Long.class || c == Short.class || c == Byte.class) {
+            return LONG;
+        } else if (c == Timestamp.class) {
+            return TIMESTAMP;
+        } else if (c == Double.class) {
+            return DOUBLE;
+        } else if (c == Float.class) {
+            return FLOAT;
+        }
+        return OBJECT;
+    }
+
+    /**
+     * Writes the rows of this chunk, prefixed by their size in bytes, their count and the statistics
+     * of the columns.
+     * @return the buffer, possibly grown, to reuse for the next chunk
+     */
+    ByteBuffer write(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        buffer.putInt(0).putInt(rows);
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] != OBJECT) {
+                buffer = writeStatistics(i, buffer);
+            }
+        }
+        for (int i = 0; i < kinds.length; i++) {
+            buffer = writeColumn(i, buffer);
+        }
+        buffer.flip();
+        buffer.putInt(0, buffer.limit() - 4);
+        writeFully(channel, buffer);
+        return buffer;
+    }
+
+    private ByteBuffer writeStatistics(int column, ByteBuffer buffer) {
+        final boolean[] isNull = nulls[column];
+        buffer = ensure(buffer, STATISTICS_SIZE);
+        if (kinds[column] == LONG || kinds[column] == TIMESTAMP) {
+            final long[] values = longs[column];
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            boolean found = false;
+            for (int row = 0; row < rows; row++) {
+                if (!isNull[row]) {
+                    found = true;
+                    if (values[row] < min) min = values[row];
+                    if (values[row] > max) max = values[row];
+                }
+            }
+            buffer.put((byte) (found ? HAS_STATISTICS : 0)).putLong(min).putLong(max);
+        } else {
+            final double[] values = doubles[column];
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            boolean found = false;
+            for (int row = 0; row < rows; row++) {
+                if (!isNull[row] && !Double.isNaN(values[row])) {
+                    found = true;
+                    if (values[row] < min) min = values[row];
+                    if (values[row] > max) max = values[row];
+                }
+            }
+            buffer.put((byte) (found ? HAS_STATISTICS : 0)).putDouble(min).putDouble(max);
+        }
+        return buffer;
+    }
+
+    private ByteBuffer writeColumn(int column, ByteBuffer buffer) {
+        final boolean[] isNull = nulls[column];
+        boolean hasNulls = false;
+        for (int row = 0; row < rows && !hasNulls; row++) {
+            hasNulls = isNull[row];
+        }
+        buffer = ensure(buffer, 1 + (hasNulls ? (rows + 7) / 8 : 0));
+        buffer.put((byte) (hasNulls ? HAS_NULLS : 0));
+        if (hasNulls) {
+            for (int row = 0; row < rows; row += 8) {
+                int bits = 0;
+                for (int b = 0; b < 8 && row + b < rows; b++) {
+                    if (isNull[row + b]) {
+                        bits |= 1 << b;
+                    }
+                }
+                buffer.put((byte) bits);
+            }
+        }
+        switch (kinds[column]) {
+            case LONG:
+            case TIMESTAMP: return writeLongs(longs[column], isNull, buffer);
+            case DOUBLE:
+                buffer = ensure(buffer, rows * 8);
+                for (int row = 0; row < rows; row++) {
+                    buffer.putDouble(doubles[column][row]);
+                }
+                return buffer;
+            case FLOAT:
+                buffer = ensure(buffer, rows * 4);
+                for (int row = 0; row < rows; row++) {
+                    buffer.putFloat((float) doubles[column][row]);
+                }
+                return buffer;
+            default: return writeObjects(objects[column], isNull, buffer);
+        }
+    }
+
+    private ByteBuffer writeLongs(long[] values, boolean[] isNull, ByteBuffer buffer) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int row = 0; row < rows; row++) {
+            if (!isNull[row]) {
+                min = Math.min(min, values[row]);
+                max = Math.max(max, values[row]);
+            }
+        }
+        if (min > max) {
+            min = max = 0;
+        }
+        final long range = max - min;
+        final int width = range == 0 ? 0 : widthOf(range);
+        buffer = ensure(buffer, 9 + rows * width);
+        buffer.put((byte) width).putLong(min);
+        for (int row = 0; row < rows; row++) {
+            long offset = isNull[row] ? 0 : values[row] - min;
+            switch (width) {
+                case 1: buffer.put((byte) offset); break;
+                case 2: buffer.putShort((short) offset); break;
+                case 4: buffer.putInt((int) offset); break;
+                case 8: buffer.putLong(offset); break;
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns the bytes needed for an unsigned value (a range that overflows a long is negative).
+     */
+    private static int widthOf(long unsigned) {
+        if (unsigned < 0 || unsigned >= 1L << 32) {
+            return 8;
+        }
+        return unsigned < 1 << 8 ? 1 : unsigned < 1 << 16 ? 2 : 4;
+    }
+
+    private ByteBuffer writeObjects(Object[] values, boolean[] isNull, ByteBuffer buffer) {
+        Map<String, Integer> codes = new HashMap<String, Integer>();
+        List<byte[]> entries = new ArrayList<byte[]>();
+        int[] rowCodes = new int[rows];
+        int bytes = 0;
+        for (int row = 0; row < rows; row++) {
+            if (isNull[row]) {
+                continue;
+            }
+            String string = String.valueOf(values[row]);
+            Integer code = codes.get(string);
+            if (code == null) {
+                code = entries.size();
+                codes.put(string, code);
+                byte[] utf8 = utf8(string);
+                entries.add(utf8);
+                bytes += 4 + utf8.length;
+            }
+            rowCodes[row] = code;
+        }
+        final int width = entries.size() <= 1 << 8 ? 1 : entries.size() <= 1 << 16 ? 2 : 4;
+        buffer = ensure(buffer, 5 + bytes + rows * width);
+        buffer.putInt(entries.size());
+        for (byte[] entry : entries) {
+            buffer.putInt(entry.length).put(entry);
+        }
+        buffer.put((byte) width);
+        for (int row = 0; row < rows; row++) {
+            switch (width) {
+                case 1: buffer.put((byte) rowCodes[row]); break;
+                case 2: buffer.putShort((short) rowCodes[row]); break;
+                default: buffer.putInt(rowCodes[row]);
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns the size of the header of a chunk (after its size): its number of rows and
+     * the statistics of its columns.
+     */
+    private int headerSize() {
+        int size = 4;
+        if (version >= 2) {
+            for (int kind : kinds) {
+                if (kind != OBJECT) {
+                    size += STATISTICS_SIZE;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Reads the header of the next chunk: its number of rows and the statistics of its columns.
+     * The columns must then be either {@link #readColumns(ReadableByteChannel, ByteBuffer) read}
+     * or {@link #skipColumns(ReadableByteChannel, ByteBuffer) skipped}.
+     * @return the buffer, possibly grown, to reuse for the next chunk
+     * @throws IOException if the channel ends before the end of the header
+     */
+    ByteBuffer readHeader(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.clear().limit(4);
+        readFully(channel, buffer);
+        final int length = buffer.getInt(0);
+        final int header = headerSize();
+        if (length < header) {
+            throw new IOException("Corrupt chunk of " + length + " bytes");
+        }
+        if (buffer.capacity() < length) {
+            buffer = allocate(length);
+        }
+        buffer.clear().limit(header);
+        readFully(channel, buffer);
+        buffer.flip();
+        rows = buffer.getInt();
+        if (rows < 0 || rows > ROWS) {
+            throw new IOException("Corrupt chunk of " + rows + " rows");
+        }
+        for (int i = 0; i < kinds.length; i++) {
+            hasStatistics[i] = false;
+            if (kinds[i] == OBJECT || version < 2) {
+                continue;
+            }
+            hasStatistics[i] = (buffer.get() & HAS_STATISTICS) != 0;
+            if (kinds[i] == LONG || kinds[i] == TIMESTAMP) {
+                minLongs[i] = buffer.getLong();
+                maxLongs[i] = buffer.getLong();
+            } else {
+                minDoubles[i] = buffer.getDouble();
+                maxDoubles[i] = buffer.getDouble();
+            }
+        }
+        remaining = length - header;
+        return buffer;
+    }
+
+    /**
+     * Reads the columns of the chunk whose header was just read.
+     * @return the buffer, to reuse for the next chunk
+     * @throws IOException if the channel ends before the end of the chunk
+     */
+    ByteBuffer readColumns(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.clear().limit(remaining);
+        readFully(channel, buffer);
+        buffer.flip();
+        remaining = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            readColumn(i, buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Skips the columns of the chunk whose header was just read; the columns are not read at all
+     * from files.
+     * @throws IOException if the channel ends before the end of the chunk
+     */
+    void skipColumns(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        if (channel instanceof FileChannel) {
+            FileChannel file = (FileChannel) channel;
+            file.position(file.position() + remaining);
+        } else {
+            buffer.clear().limit(remaining);
+            readFully(channel, buffer);
+        }
+        remaining = 0;
+    }
+
+    private void readColumn(int column, ByteBuffer buffer) {
+        final boolean[] isNull = nulls[column];
+        if ((buffer.get() & HAS_NULLS) != 0) {
+            for (int row = 0; row < rows; row += 8) {
+                int bits = buffer.get();
+                for (int b = 0; b < 8 && row + b < rows; b++) {
+                    isNull[row + b] = (bits & (1 << b)) != 0;
+                }
+            }
+        } else {
+            Arrays.fill(isNull, 0, rows, false);
+        }
+        switch (kinds[column]) {
+            case LONG:
+            case TIMESTAMP:
+                final long[] values = longs[column];
+                final int width = buffer.get();
+                final long min = buffer.getLong();
+                for (int row = 0; row < rows; row++) {
+                    switch (width) {
+                        case 0: values[row] = min; break;
+                        case 1: values[row] = min + (buffer.get() & 0xFFL); break;
+                        case 2: values[row] = min + (buffer.getShort() & 0xFFFFL); break;
+                        case 4: values[row] = min + (buffer.getInt() & 0xFFFFFFFFL); break;
+                        default: values[row] = min + buffer.getLong();
+                    }
+                }
+                break;
+            case DOUBLE:
+                for (int row = 0; row < rows; row++) {
+                    doubles[column][row] = buffer.getDouble();
+                }
+                break;
+            case FLOAT:
+                for (int row = 0; row < rows; row++) {
+                    doubles[column][row] = buffer.getFloat();
+                }
+                break;
+            default:
+                Object[] dictionary = new Object[buffer.getInt()];
+                for (int i = 0; i < dictionary.length; i++) {
+                    byte[] utf8 = new byte[buffer.getInt()];
+                    buffer.get(utf8);
+                    dictionary[i] = types[column].parse(string(utf8));
+                }
+                final int codeWidth = buffer.get();
+                for (int row = 0; row < rows; row++) {
+                    int code;
+                    switch (codeWidth) {
+                        case 1: code = buffer.get() & 0xFF; break;
+                        case 2: code = buffer.getShort() & 0xFFFF; break;
+                        default: code = buffer.getInt();
+                    }
+                    objects[column][row] = isNull[row] ? null : dictionary[code];
+                }
+        }
+    }
+
+    static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns a buffer with at least the specified number of bytes remaining: either the same one,
+     * or a larger copy of it.
+     */
+    static ByteBuffer ensure(ByteBuffer buffer, int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return buffer;
+        }
+        ByteBuffer grown = allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+
+    static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Reads bytes until the buffer is full.
+     * @throws EOFException if the channel ends first
+     */
+    static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Truncated file");
+            }
+        }
+    }
+
+    static byte[] utf8(String string) {
+        try {
+            return string.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    static String string(byte[] utf8) {
+        try {
+            return new String(utf8, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
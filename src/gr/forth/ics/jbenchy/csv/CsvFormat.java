@@ -0,0 +1,126 @@
+package gr.forth.ics.jbenchy.csv;
+
+import com.google.common.base.Preconditions;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The format of a delimited text file, such as CSV or TSV: the field delimiter, the quote character
+ * (if fields may be quoted), whether the first line is a header with the names of the columns,
+ * and optionally the names of the columns, if they are not given by a header.
+ * <p>
+ * Quoted fields may contain delimiters and line breaks, and quote characters escaped by doubling
+ * them, as in RFC 4180. Lines may end with <tt>\n</tt>, <tt>\r\n</tt> or <tt>\r</tt>, and empty
+ * lines are skipped. Files are read (and written, by {@link CsvWriter}) as UTF-8.
+ *
+ * @author andreou
+ */
+public final class CsvFormat {
+    private char delimiter;
+    private int quote;
+    private boolean header = true;
+    private List<String> columns;
+
+    private CsvFormat(char delimiter, int quote) {
+        this.delimiter = delimiter;
+        this.quote = quote;
+    }
+
+    /**
+     * Returns the format of comma-separated files, with double-quoted fields and a header line.
+     */
+    public static CsvFormat csv() {
+        return new CsvFormat(',', '"');
+    }
+
+    /**
+     * Returns the format of tab-separated files, without quoting, and with a header line.
+     */
+    public static CsvFormat tsv() {
+        return new CsvFormat('\t', -1);
+    }
+
+    /**
+     * Sets the field delimiter.
+     * @return this
+     */
+    public CsvFormat withDelimiter(char delimiter) {
+        Preconditions.checkArgument(delimiter != '\n' && delimiter != '\r' && delimiter != quote,
+                "Invalid delimiter: '%s'", delimiter);
+        Preconditions.checkArgument(delimiter < 0x80, "Delimiter must be an ASCII character");
+        this.delimiter = delimiter;
+        return this;
+    }
+
+    /**
+     * Sets the quote character.
+     * @return this
+     */
+    public CsvFormat withQuote(char quote) {
+        Preconditions.checkArgument(quote != delimiter && quote != '\n' && quote != '\r',
+                "Invalid quote: '%s'", quote);
+        Preconditions.checkArgument(quote < 0x80, "Quote must be an ASCII character");
+        this.quote = quote;
+        return this;
+    }
+
+    /**
+     * Disables quoting, so that quote characters are read as part of the fields.
+     * @return this
+     */
+    public CsvFormat withoutQuotes() {
+        this.quote = -1;
+        return this;
+    }
+
+    /**
+     * Sets whether the first line of the file is a header with the names of the columns. If the
+     * names of the columns are also {@link #withColumns(String...) given}, the header is skipped.
+     * @return this
+     */
+    public CsvFormat withHeader(boolean header) {
+        this.header = header;
+        return this;
+    }
+
+    /**
+     * Sets the names of the columns of the file, in order. A <tt>null</tt> name denotes a column
+     * that is ignored. Without explicit names, columns are named by the header line or, if there
+     * is none, they are the variables of the schema, in schema order.
+     * @return this
+     */
+    public CsvFormat withColumns(String... columns) {
+        this.columns = Collections.unmodifiableList(Arrays.asList(columns.clone()));
+        return this;
+    }
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    /**
+     * Returns the quote character, or -1 if fields are not quoted.
+     */
+    public int getQuote() {
+        return quote;
+    }
+
+    public boolean hasHeader() {
+        return header;
+    }
+
+    /**
+     * Returns the names of the columns of the file, or <tt>null</tt> if they are not given explicitly.
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    @Override
+    public String toString() {
+        return "[CsvFormat delimiter=" + (delimiter == '\t' ? "\\t" : String.valueOf(delimiter)) +
+                ", quote=" + (quote < 0 ? "none" : String.valueOf((char) quote)) +
+                ", header=" + header + (columns == null ? "" : ", columns=" + columns) + "]";
+    }
+}
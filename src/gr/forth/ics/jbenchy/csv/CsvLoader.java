@@ -0,0 +1,234 @@
+package gr.forth.ics.jbenchy.csv;
+
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.DataType;
+import gr.forth.ics.jbenchy.Database;
+import gr.forth.ics.jbenchy.RecordSource;
+import gr.forth.ics.jbenchy.Schema;
+import gr.forth.ics.jbenchy.SchemaRecord;
+import gr.forth.ics.jbenchy.StringUtils;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the records of a delimited text file (see {@link CsvFormat}) into {@link SchemaRecord}s of
+ * a schema. The columns of the file are mapped to the variables of the schema by name (columns
+ * that are not variables of the schema are ignored), and every variable must have a column.
+ * <p>
+ * The file is read through memory-mapped buffers, and integral and floating point values are
+ * parsed directly from its bytes, without creating strings. Other values are parsed by
+ * {@link DataType#parse(String)}, and consecutive equal strings of a column are created only once.
+ * <p>
+ * Typically used through {@link Database#load(gr.forth.ics.jbenchy.Aggregator, File, CsvFormat, LoadProgress)},
+ * which picks the fastest way to store the records in each database:
+ * <pre>
+ * long records = database.load(aggregator, new File("results.csv"), CsvFormat.csv(),
+ *         CsvLoader.printingTo(System.out));
+ * </pre>
+ *
+ * @author andreou
+ */
+public final class CsvLoader implements RecordSource {
+    /**
+     * The number of records between two reports of progress.
+     */
+    public static final int PROGRESS_INTERVAL = 1 << 16;
+
+    private static final int LONG = 0;
+    private static final int DOUBLE = 1;
+    private static final int OBJECT = 2;
+
+    private final CsvReader reader;
+    private final Schema schema;
+    private final DataType<?>[] types;
+    private final int[] kinds;
+    private final long[] minimums;
+    private final long[] maximums;
+    private final int[] fields;
+    private final int requiredFields;
+    private final LoadProgress progress;
+    private final long startTime = System.nanoTime();
+    private long records;
+    private boolean finished;
+
+    private CsvLoader(CsvReader reader, CsvFormat format, Schema schema, LoadProgress progress) throws IOException {
+        this.reader = reader;
+        this.schema = schema;
+        this.progress = progress;
+        List<String> columns = format.getColumns();
+        if (format.hasHeader()) {
+            List<String> header = new ArrayList<String>();
+            if (reader.next()) {
+                for (int i = 0; i < reader.getFieldCount(); i++) {
+                    header.add(reader.getString(i).trim());
+                }
+            }
+            if (columns == null) {
+                columns = header;
+            }
+        }
+        if (columns == null) {
+            columns = new ArrayList<String>(schema.getVariables());
+        }
+        final int size = schema.getVariables().size();
+        this.types = new DataType<?>[size];
+        this.kinds = new int[size];
+        this.minimums = new long[size];
+        this.maximums = new long[size];
+        this.fields = new int[size];
+        Arrays.fill(fields, -1);
+        List<String> variables = new ArrayList<String>(schema.getVariables());
+        for (int field = 0; field < columns.size(); field++) {
+            if (columns.get(field) == null) {
+                continue;
+            }
+            int index = variables.indexOf(StringUtils.normalizeVariable(columns.get(field)));
+            if (index >= 0) {
+                fields[index] = field;
+            }
+        }
+        int required = 0;
+        for (int i = 0; i < size; i++) {
+            String variable = variables.get(i);
+            if (fields[i] < 0) {
+                throw new IllegalArgumentException("No column for variable: '" + variable +
+                        "', columns are: " + columns);
+            }
+            required = Math.max(required, fields[i] + 1);
+            types[i] = schema.getTypeOf(variable);
+            Class<?> c = types[i].getMappedType();
+            if (c == Integer.class || c == Long.class || c == Short.class || c == Byte.class) {
+                kinds[i] = LONG;
+                minimums[i] = c == Integer.class ? Integer.MIN_VALUE : c == Short.class ? Short.MIN_VALUE :
+                    c == Byte.class ? Byte.MIN_VALUE : Long.MIN_VALUE;
+                maximums[i] = c == Integer.class ? Integer.MAX_VALUE : c == Short.class ? Short.MAX_VALUE :
+                    c == Byte.class ? Byte.MAX_VALUE : Long.MAX_VALUE;
+            } else if (c == Double.class || c == Float.class) {
+                kinds[i] = DOUBLE;
+            } else {
+                kinds[i] = OBJECT;
+            }
+        }
+        this.requiredFields = required;
+    }
+
+    /**
+     * Opens a file for reading records of the specified schema.
+     * @param file the file to read
+     * @param format the format of the file
+     * @param schema the schema of the records
+     * @param progress receives the progress of reading, or <tt>null</tt>
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a variable of the schema has no column in the file
+     */
+    public static CsvLoader open(File file, CsvFormat format, Schema schema, LoadProgress progress) throws IOException {
+        Preconditions.checkNotNull(file, "file");
+        Preconditions.checkNotNull(format, "format");
+        Preconditions.checkNotNull(schema, "schema");
+        CsvReader reader = new CsvReader(file, format);
+        try {
+            return new CsvLoader(reader, format, schema, progress);
+        } catch (IOException e) {
+            reader.close();
+            throw e;
+        } catch (RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the schema of the records.
+     */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Reads the next record of the file into the specified record, binding all its variables.
+     * @param record a record of the {@link #getSchema() schema}
+     * @return false if there are no more records (and the record is not modified)
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the record has too few fields, or a value cannot be parsed
+     * (or is out of the range of the type of its variable)
+     */
+    public boolean next(SchemaRecord record) throws IOException {
+        Preconditions.checkArgument(record.getSchema() == schema, "Record of a different schema");
+        if (!reader.next()) {
+            if (!finished) {
+                finished = true;
+                report();
+            }
+            return false;
+        }
+        records++;
+        if (reader.getFieldCount() < requiredFields) {
+            throw new IllegalArgumentException("Record " + records + " has " + reader.getFieldCount() +
+                    " fields, expected " + requiredFields);
+        }
+        int i = 0;
+        try {
+            for (; i < kinds.length; i++) {
+                switch (kinds[i]) {
+                    case LONG: record.set(i, checkRange(i, reader.getLong(fields[i]))); break;
+                    case DOUBLE: record.set(i, reader.getDouble(fields[i])); break;
+                    default: record.set(i, types[i].parse(reader.getString(fields[i])));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid value of variable '" + record.getVariable(i) +
+                    "' in record " + records + ": " + e.getMessage(), e);
+        }
+        if (progress != null && records % PROGRESS_INTERVAL == 0) {
+            report();
+        }
+        return true;
+    }
+
+    private long checkRange(int i, long value) {
+        if (value < minimums[i] || value > maximums[i]) {
+            throw new IllegalArgumentException("Value " + value + " is out of the range of " + types[i].getName());
+        }
+        return value;
+    }
+
+    private void report() {
+        if (progress != null) {
+            progress.progress(records, reader.getPosition(), reader.getLength(), System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Returns the number of records read so far.
+     */
+    public long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * Closes the file.
+     */
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Returns a progress listener that prints the number of records loaded, the percentage of the
+     * file read, and the throughput of the load.
+     */
+    public static LoadProgress printingTo(final PrintStream out) {
+        Preconditions.checkNotNull(out, "out");
+        return new LoadProgress() {
+            public void progress(long records, long bytes, long totalBytes, long elapsedNanos) {
+                double seconds = Math.max(elapsedNanos, 1) / 1e9;
+                out.println(String.format("%,d records (%.1f%%) in %.1f s: %,.0f records/s, %.1f MB/s",
+                        records, totalBytes == 0 ? 100.0 : 100.0 * bytes / totalBytes, seconds,
+                        records / seconds, bytes / seconds / (1 << 20)));
+            }
+        };
+    }
+}
@@ -0,0 +1,417 @@
+package gr.forth.ics.jbenchy.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Splits a delimited text file into records and fields, reading it through memory-mapped windows
+ * of {@link #WINDOW_SIZE} bytes. Fields are located by their offsets in the current window, and
+ * numbers are parsed directly from the bytes, without creating strings.
+ *
+ * @author andreou
+ */
+class CsvReader {
+    /**
+     * The size of the mapped windows of the file; no record may be longer than this.
+     */
+    static final int WINDOW_SIZE = 1 << 26;
+
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final RandomAccessFile file;
+    private final long length;
+    private final byte delimiter;
+    private final int quote;
+    private final int windowSize;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int position;
+
+    private int fields;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    //whether a field was quoted and contains escaped (doubled) quotes
+    private boolean[] escaped = new boolean[16];
+    private boolean firstQuoted;
+
+    //the last string created per field, reused while the field has the same bytes
+    private byte[][] lastBytes = new byte[16][];
+    private String[] lastStrings = new String[16];
+    private char[] chars = new char[64];
+
+    CsvReader(File file, CsvFormat format) throws IOException {
+        this(file, format, WINDOW_SIZE);
+    }
+
+    CsvReader(File file, CsvFormat format, int windowSize) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        this.length = this.file.length();
+        this.delimiter = (byte) format.getDelimiter();
+        this.quote = format.getQuote();
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Returns the size of the file.
+     */
+    long getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the offset in the file after the current record.
+     */
+    long getPosition() {
+        return windowStart + position;
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        position = 0;
+        window = file.getChannel().map(FileChannel.MapMode.READ_ONLY, start,
+                Math.min(windowSize, length - start));
+    }
+
+    /**
+     * Advances to the next (non-empty) record.
+     * @return false if there are no more records
+     * @throws IOException if a record is longer than the mapped window
+     */
+    boolean next() throws IOException {
+        while (true) {
+            if (getPosition() >= length) {
+                return false;
+            }
+            if (window == null) {
+                map(0);
+            }
+            if (!scan()) {
+                if (position == 0) {
+                    throw new IOException("Record at offset " + windowStart + " is longer than " +
+                            windowSize + " bytes, or has an unterminated quoted field");
+                }
+                map(getPosition());
+                continue;
+            }
+            //skip empty lines, but not a quoted empty string
+            if (fields > 1 || ends[0] > starts[0] || firstQuoted) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Locates the fields of the record at the current position.
+     * @return false if the record does not end within the window, and the window does not end at
+     * the end of the file
+     */
+    private boolean scan() {
+        final int limit = window.limit();
+        final boolean last = windowStart + limit == length;
+        int p = position;
+        fields = 0;
+        while (true) {
+            int start;
+            int end;
+            boolean doubled = false;
+            final boolean quoted = quote >= 0 && p < limit && window.get(p) == quote;
+            if (fields == 0) {
+                firstQuoted = quoted;
+            }
+            if (quoted) {
+                start = ++p;
+                while (true) {
+                    if (p >= limit) {
+                        return false;
+                    }
+                    if (window.get(p) == quote) {
+                        if (p + 1 < limit && window.get(p + 1) == quote) {
+                            doubled = true;
+                            p += 2;
+                            continue;
+                        }
+                        if (p + 1 >= limit && !last) {
+                            return false;
+                        }
+                        break;
+                    }
+                    p++;
+                }
+                end = p++;
+                //ignore any characters between the closing quote and the delimiter
+                while (p < limit && !isSeparator(window.get(p))) {
+                    p++;
+                }
+            } else {
+                start = p;
+                while (p < limit && !isSeparator(window.get(p))) {
+                    p++;
+                }
+                end = p;
+            }
+            addField(start, end, doubled);
+            if (p >= limit) {
+                if (!last) {
+                    return false;
+                }
+                position = p;
+                return true;
+            }
+            byte b = window.get(p++);
+            if (b == delimiter) {
+                continue;
+            }
+            if (b == '\r') {
+                if (p < limit && window.get(p) == '\n') {
+                    p++;
+                } else if (p >= limit && !last) {
+                    return false;
+                }
+            }
+            position = p;
+            return true;
+        }
+    }
+
+    private boolean isSeparator(byte b) {
+        return b == delimiter || b == '\n' || b == '\r';
+    }
+
+    private void addField(int start, int end, boolean doubled) {
+        if (fields == starts.length) {
+            starts = grow(starts);
+            ends = grow(ends);
+            boolean[] newEscaped = new boolean[fields * 2];
+            System.arraycopy(escaped, 0, newEscaped, 0, fields);
+            escaped = newEscaped;
+        }
+        starts[fields] = start;
+        ends[fields] = end;
+        escaped[fields] = doubled;
+        fields++;
+    }
+
+    private static int[] grow(int[] array) {
+        int[] grown = new int[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    /**
+     * Returns the number of fields of the current record.
+     */
+    int getFieldCount() {
+        return fields;
+    }
+
+    /**
+     * Returns a field of the current record as a string.
+     */
+    String getString(int field) {
+        final int start = starts[field];
+        final int length = ends[field] - start;
+        if (field >= lastBytes.length) {
+            byte[][] newBytes = new byte[Math.max(field + 1, lastBytes.length * 2)][];
+            System.arraycopy(lastBytes, 0, newBytes, 0, lastBytes.length);
+            lastBytes = newBytes;
+            String[] newStrings = new String[newBytes.length];
+            System.arraycopy(lastStrings, 0, newStrings, 0, lastStrings.length);
+            lastStrings = newStrings;
+        }
+        byte[] last = lastBytes[field];
+        if (last != null && last.length == length && !escaped[field]) {
+            int i = 0;
+            while (i < length && last[i] == window.get(start + i)) {
+                i++;
+            }
+            if (i == length) {
+                return lastStrings[field];
+            }
+        }
+        byte[] bytes = new byte[length];
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            bytes[i] = window.get(start + i);
+            ascii &= bytes[i] >= 0;
+        }
+        String string = ascii ? asciiString(bytes, length) : utf8String(bytes);
+        if (escaped[field]) {
+            char q = (char) quote;
+            return string.replace("" + q + q, "" + q);
+        }
+        lastBytes[field] = bytes;
+        lastStrings[field] = string;
+        return string;
+    }
+
+    private String asciiString(byte[] bytes, int length) {
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) bytes[i];
+        }
+        return new String(chars, 0, length);
+    }
+
+    private static String utf8String(byte[] bytes) {
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private NumberFormatException invalid(int field, String expected) {
+        return new NumberFormatException("Not " + expected + ": '" + getString(field) + "'");
+    }
+
+    /**
+     * Parses a field of the current record as a (decimal) long; surrounding spaces are ignored.
+     */
+    long getLong(int field) {
+        int p = starts[field];
+        int end = ends[field];
+        while (p < end && window.get(p) == ' ') p++;
+        while (end > p && window.get(end - 1) == ' ') end--;
+        if (p == end) {
+            throw invalid(field, "an integer");
+        }
+        boolean negative = false;
+        byte b = window.get(p);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            if (++p == end) {
+                throw invalid(field, "an integer");
+            }
+        }
+        //accumulate negatively, to reach Long.MIN_VALUE
+        long value = 0;
+        for (; p < end; p++) {
+            int digit = window.get(p) - '0';
+            if (digit < 0 || digit > 9 || value < (Long.MIN_VALUE + digit) / 10) {
+                throw invalid(field, "an integer");
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative) {
+            if (value == Long.MIN_VALUE) {
+                throw invalid(field, "an integer");
+            }
+            value = -value;
+        }
+        return value;
+    }
+
+    /**
+     * Parses a field of the current record as a double; surrounding spaces are ignored. Decimal
+     * numbers of up to 15 significant digits and small exponents are parsed directly (and exactly)
+     * from the bytes, and any others by {@link Double#parseDouble(String)}.
+     */
+    double getDouble(int field) {
+        int p = starts[field];
+        int end = ends[field];
+        while (p < end && window.get(p) == ' ') p++;
+        while (end > p && window.get(end - 1) == ' ') end--;
+        final int first = p;
+        boolean negative = false;
+        if (p < end && (window.get(p) == '-' || window.get(p) == '+')) {
+            negative = window.get(p++) == '-';
+        }
+        long mantissa = 0;
+        int significant = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean point = false;
+        for (; p < end; p++) {
+            byte b = window.get(p);
+            if (b == '.' && !point) {
+                point = true;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            digits++;
+            if (mantissa != 0 || digit != 0) {
+                if (++significant > 15) {
+                    return parseDouble(field);
+                }
+                mantissa = mantissa * 10 + digit;
+            }
+            if (point) {
+                exponent--;
+            }
+        }
+        if (digits == 0) {
+            return parseDouble(field);
+        }
+        if (p < end && (window.get(p) == 'e' || window.get(p) == 'E')) {
+            p++;
+            boolean negativeExponent = false;
+            if (p < end && (window.get(p) == '-' || window.get(p) == '+')) {
+                negativeExponent = window.get(p++) == '-';
+            }
+            int e = 0;
+            int start = p;
+            for (; p < end; p++) {
+                int digit = window.get(p) - '0';
+                if (digit < 0 || digit > 9 || e > 1000) {
+                    return parseDouble(field);
+                }
+                e = e * 10 + digit;
+            }
+            if (p == start) {
+                return parseDouble(field);
+            }
+            exponent += negativeExponent ? -e : e;
+        }
+        if (p != end || p == first) {
+            return parseDouble(field);
+        }
+        double value;
+        if (mantissa == 0) {
+            value = 0;
+        } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+            value = mantissa * POWERS_OF_TEN[exponent];
+        } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return parseDouble(field);
+        }
+        return negative ? -value : value;
+    }
+
+    private double parseDouble(int field) {
+        final int start = starts[field];
+        final int length = ends[field] - start;
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (window.get(start + i) & 0xFF);
+        }
+        try {
+            return Double.parseDouble(new String(chars, 0, length).trim());
+        } catch (NumberFormatException e) {
+            throw invalid(field, "a number");
+        }
+    }
+
+    void close() throws IOException {
+        window = null;
+        file.close();
+    }
+}
@@ -0,0 +1,378 @@
+package gr.forth.ics.jbenchy.csv;
+
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.DataType;
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.ReportCursor;
+import gr.forth.ics.jbenchy.Schema;
+import gr.forth.ics.jbenchy.SchemaRecord;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * Writes records of a schema to a delimited text file (such as CSV or TSV), in UTF-8, so that they
+ * can be read back by {@link gr.forth.ics.jbenchy.Database#load(gr.forth.ics.jbenchy.Aggregator, File, CsvFormat)}
+ * or by other tools. Records are written as they are given, through a buffer, so a report of any
+ * size can be streamed from a {@link ReportCursor cursor}:
+ * <pre>
+ * CsvWriter.write(aggregator.cursor(Aggregate.values("TIME"), "SIZE"), file, CsvFormat.csv());
+ * </pre>
+ * Numbers are formatted directly into the buffer: integral values digit by digit, and floating
+ * point values in the shortest fixed-point notation (of up to 9 decimals) that reads back as the
+ * same value, falling back to {@link Double#toString(double)} otherwise. Unbound variables and
+ * <tt>null</tt> values are written as empty fields. Fields that contain the delimiter, the quote
+ * character or line breaks are quoted.
+ *
+ * @author andreou
+ */
+public final class CsvWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_DECIMALS = 9;
+    private static final double[] POWERS_OF_TEN = new double[MAX_DECIMALS + 1];
+    private static final double MAX_EXACT = 9007199254740992.0; //2^53
+
+    private static final int INTEGRAL = 0;
+    private static final int DOUBLE = 1;
+    private static final int OTHER = 2;
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final WritableByteChannel channel;
+    private final Schema schema;
+    private final String[] variables;
+    private final int[] kinds;
+    private final boolean hasValue;
+    private final byte delimiter;
+    private final int quote;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final byte[] digits = new byte[20];
+    private int position;
+    private long records;
+    private boolean closed;
+
+    private CsvWriter(WritableByteChannel channel, Schema schema, DataType<?> valueType,
+            String valueColumn, CsvFormat format) throws IOException {
+        this.channel = channel;
+        this.schema = schema;
+        this.variables = schema.getVariables().toArray(new String[0]);
+        this.kinds = new int[variables.length];
+        for (int i = 0; i < variables.length; i++) {
+            Class<?> c = schema.getTypeOf(variables[i]).getMappedType();
+            kinds[i] = c == Integer.class || c == Long.class || c == Short.class || c == Byte.class ? INTEGRAL :
+                c == Double.class ? DOUBLE : OTHER;
+        }
+        this.hasValue = valueType != null;
+        this.delimiter = (byte) format.getDelimiter();
+        this.quote = format.getQuote();
+        if (format.hasHeader()) {
+            List<String> columns = format.getColumns();
+            final int count = variables.length + (hasValue ? 1 : 0);
+            Preconditions.checkArgument(columns == null || columns.size() == count,
+                    "Expected %s column names, but the format has: %s", count, columns);
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    put(delimiter);
+                }
+                String header = columns != null ? columns.get(i) : i < variables.length ? variables[i] : valueColumn;
+                Preconditions.checkArgument(header != null, "Null column name");
+                writeString(header);
+            }
+            put((byte) '\n');
+        }
+    }
+
+    /**
+     * Creates (or overwrites) a file for writing records of the specified schema.
+     * @param file the file to write
+     * @param schema the schema of the records, whose variables are the columns of the file
+     * @param valueType the type of the values of the records (see {@link Record#getValue()}), which
+     * are written in a last column named <tt>VALUE</tt>, or <tt>null</tt> to not write values
+     * @param format the format of the file; if it has a header, the header is written, naming the
+     * columns by the {@link CsvFormat#getColumns() columns} of the format, if given
+     * @throws IOException if the file cannot be created
+     */
+    public static CsvWriter open(File file, Schema schema, DataType<?> valueType, CsvFormat format) throws IOException {
+        return open(file, schema, valueType, "VALUE", format);
+    }
+
+    private static CsvWriter open(File file, Schema schema, DataType<?> valueType,
+            String valueColumn, CsvFormat format) throws IOException {
+        Preconditions.checkNotNull(file, "file");
+        Preconditions.checkNotNull(schema, "schema");
+        Preconditions.checkNotNull(format, "format");
+        WritableByteChannel channel = new FileOutputStream(file).getChannel();
+        try {
+            return new CsvWriter(channel, schema, valueType, valueColumn, format);
+        } catch (RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the schema of the records.
+     */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Writes a record as a line. Records of the {@link #getSchema() schema} are read by index,
+     * and other records by variable name.
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if a field would have to be quoted, but the format has no quotes
+     */
+    public void write(Record record) throws IOException {
+        Preconditions.checkState(!closed, "Writer is closed");
+        final SchemaRecord schemaRecord = record instanceof SchemaRecord &&
+                ((SchemaRecord) record).getSchema() == schema ? (SchemaRecord) record : null;
+        for (int i = 0; i < variables.length; i++) {
+            if (i > 0) {
+                put(delimiter);
+            }
+            if (schemaRecord == null) {
+                writeValue(record.get(variables[i]));
+            } else if (!schemaRecord.isBound(i)) {
+                continue;
+            } else if (kinds[i] == INTEGRAL) {
+                writeLong(schemaRecord.getLong(i));
+            } else if (kinds[i] == DOUBLE) {
+                writeDouble(schemaRecord.getDouble(i));
+            } else {
+                writeValue(schemaRecord.get(i));
+            }
+        }
+        if (hasValue) {
+            if (variables.length > 0) {
+                put(delimiter);
+            }
+            writeValue(record.getValue());
+        }
+        put((byte) '\n');
+        records++;
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            writeLong(((Number) value).longValue());
+        } else if (value instanceof Double) {
+            writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            writeAscii(Float.toString((Float) value));
+        } else {
+            writeString(value.toString());
+        }
+    }
+
+    private void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        ensure(20);
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (count > 0) {
+            buffer[position++] = digits[--count];
+        }
+    }
+
+    /**
+     * Writes a double as the fixed-point decimal with the fewest decimals that reads back as the
+     * same double: the unscaled value is an exact integer below 2^53, and both it and the power of
+     * ten are exact doubles, so their correctly rounded quotient is the value that
+     * {@link Double#parseDouble(String)} returns for the decimal.
+     */
+    private void writeDouble(double value) throws IOException {
+        if (value != 0 && Math.abs(value) < 1e15) {
+            for (int decimals = 0; decimals <= MAX_DECIMALS; decimals++) {
+                final double scaled = value * POWERS_OF_TEN[decimals];
+                if (Math.abs(scaled) >= MAX_EXACT) {
+                    break;
+                }
+                final long unscaled = Math.round(scaled);
+                if (unscaled / POWERS_OF_TEN[decimals] == value) {
+                    writeFixedPoint(unscaled, decimals);
+                    return;
+                }
+            }
+        }
+        writeAscii(Double.toString(value));
+    }
+
+    private void writeFixedPoint(long unscaled, int decimals) throws IOException {
+        ensure(22);
+        if (unscaled < 0) {
+            buffer[position++] = '-';
+            unscaled = -unscaled;
+        }
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + unscaled % 10);
+            unscaled /= 10;
+        } while (unscaled != 0 || count <= decimals);
+        while (count > decimals) {
+            buffer[position++] = digits[--count];
+        }
+        buffer[position++] = '.';
+        if (decimals == 0) {
+            buffer[position++] = '0';
+        }
+        while (count > 0) {
+            buffer[position++] = digits[--count];
+        }
+    }
+
+    private void writeAscii(String string) throws IOException {
+        final int length = string.length();
+        ensure(length);
+        for (int i = 0; i < length; i++) {
+            buffer[position++] = (byte) string.charAt(i);
+        }
+    }
+
+    private void writeString(String string) throws IOException {
+        final int length = string.length();
+        boolean ascii = true;
+        boolean quoted = false;
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (c >= 0x80) {
+                ascii = false;
+            } else if (c == delimiter || c == quote || c == '\n' || c == '\r') {
+                quoted = true;
+            }
+        }
+        if (quoted && quote < 0) {
+            throw new IllegalArgumentException("Cannot write a field with a delimiter or a line break " +
+                    "without quotes: '" + string + "'");
+        }
+        if (quoted) {
+            put((byte) quote);
+        }
+        if (ascii) {
+            for (int i = 0; i < length; i++) {
+                char c = string.charAt(i);
+                if (c == quote) {
+                    put((byte) quote);
+                }
+                put((byte) c);
+            }
+        } else {
+            byte[] utf8 = utf8(quoted ? string.replace(String.valueOf((char) quote),
+                    String.valueOf((char) quote) + (char) quote) : string);
+            for (byte b : utf8) {
+                put(b);
+            }
+        }
+        if (quoted) {
+            put((byte) quote);
+        }
+    }
+
+    private static byte[] utf8(String string) {
+        try {
+            return string.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private void put(byte b) throws IOException {
+        if (position == buffer.length) {
+            flush();
+        }
+        buffer[position++] = b;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.length - position < bytes) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the buffered lines to the file.
+     * @throws IOException if writing fails
+     */
+    public void flush() throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, position);
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        position = 0;
+    }
+
+    /**
+     * Returns the number of records written so far.
+     */
+    public long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * Writes the buffered lines and closes the file.
+     */
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes the records of a report to a file, and closes the cursor. The value of each record is
+     * written in a last column named after the {@link gr.forth.ics.jbenchy.Aggregate#getVariableName()
+     * variable} of the aggregate (e.g. <tt>TIME</tt> for the values or the average of <tt>TIME</tt>),
+     * so that a report of values can be loaded back into an aggregator of the same schema.
+     * @param cursor the cursor of the report
+     * @param file the file to create
+     * @param format the format of the file
+     * @return the number of written records
+     * @throws IOException if an error occurs while writing to the file
+     */
+    public static long write(ReportCursor cursor, File file, CsvFormat format) throws IOException {
+        Preconditions.checkNotNull(cursor, "cursor");
+        try {
+            CsvWriter writer = open(file, cursor.getSchema(), cursor.getValueType(),
+                    cursor.getAggregate().getVariableName(), format);
+            try {
+                SchemaRecord record = cursor.getSchema().newRecord();
+                while (cursor.next(record)) {
+                    writer.write(record);
+                }
+            } finally {
+                writer.close();
+            }
+            return writer.getRecordCount();
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package gr.forth.ics.jbenchy.csv;
+
+/**
+ * Receives the progress of a bulk load, periodically and once more when the load completes.
+ *
+ * @see CsvLoader#printingTo(java.io.PrintStream)
+ * @author andreou
+ */
+public interface LoadProgress {
+    /**
+     * Reports the progress of a load.
+     * @param records the number of records loaded so far
+     * @param bytes the number of bytes of the file read so far
+     * @param totalBytes the size of the file
+     * @param elapsedNanos the time since the load started, in nanoseconds
+     */
+    void progress(long records, long bytes, long totalBytes, long elapsedNanos);
+}
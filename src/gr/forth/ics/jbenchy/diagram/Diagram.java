@@ -86,6 +86,15 @@ public interface Diagram {
      * @return the record residing in the described cell
      */
     Record getRecordAt(int... variableIndices);
+
+    /**
+     * Returns the value of the record which resides in the specified diagram cell, as a double,
+     * without boxing it.
+     * @param variableIndices the indices that describe the position of the record, as in {@link #getRecordAt(int[])}
+     * @return the value of the record residing in the described cell, or <tt>NaN</tt> if there is
+     * no record there, or its value is not a number
+     */
+    double getValueAt(int... variableIndices);
     
     /**
      * Returns the ordered list of variables, corresponding to the dimensions of this diagram.
@@ -5,16 +5,26 @@ import gr.forth.ics.jbenchy.Order;
 import gr.forth.ics.jbenchy.Orders;
 import gr.forth.ics.jbenchy.Record;
 import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.ReportCursor;
+import gr.forth.ics.jbenchy.Schema;
+import gr.forth.ics.jbenchy.SchemaRecord;
+import gr.forth.ics.jbenchy.stats.RunningStatistics;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * A factory of diagrams, based on {@link gr.forth.ics.jbenchy.Aggregator} reports.
+ * <p>
+ * Diagrams are built in a single pass over the records (or a {@link ReportCursor cursor} of a
+ * report), which assigns an id to each distinct value of each variable, in a hash table per
+ * variable (keyed by the primitive values of numeric variables, when reading a cursor). Only the
+ * distinct values of each variable are then sorted, to translate ids to domain indices, so
+ * diagrams are built in time linear to the number of records. Diagrams read from a cursor only
+ * keep the value of each cell, and create its record when it is {@link Diagram#getRecordAt(int[])
+ * requested}.
  * @author andreou
  */
 public class DiagramFactory {
@@ -49,7 +59,11 @@ public class DiagramFactory {
         Preconditions.checkNotNull(orders, "orders");
         Preconditions.checkArgument(records.getVariables().size() == orders.size(),
                 "Exactly one comparator per variable must be given");
-        return new DiagramImpl(records, orders);
+        MatrixBuilder builder = new MatrixBuilder(records.getVariables().size(), records.list().size());
+        for (Record record : records) {
+            builder.add(record, records.getVariables());
+        }
+        return new DiagramImpl(records.getVariables(), orders, builder, Collections.<Statistic>emptyList());
     }
 
     /**
@@ -66,64 +80,223 @@ public class DiagramFactory {
         return newDiagram(records, Arrays.asList(orders));
     }
 
+    /**
+     * Creates and returns a diagram using the records of a report, read from a cursor (which is
+     * then closed), and assuming ascending order for every variable.
+     * @param cursor the cursor of the report
+     */
+    public static DiagramImpl newDiagram(ReportCursor cursor) {
+        Preconditions.checkNotNull(cursor, "cursor");
+        List<Order> orders = new ArrayList<Order>();
+        for (String variable : cursor.getSchema().getVariables()) {
+            orders.add(Orders.asc(variable));
+        }
+        return newDiagram(cursor, orders);
+    }
+
+    /**
+     * Creates and returns a diagram using the records of a report, read from a cursor (which is
+     * then closed), and uses for each variable the respective order provided.
+     * @param cursor the cursor of the report
+     * @param orders a list with one order per variable (of the schema of the cursor)
+     * @see #newDiagram(Records, List)
+     */
+    public static DiagramImpl newDiagram(ReportCursor cursor, List<Order> orders) {
+        return newDiagram(cursor, orders, Collections.<Statistic>emptyList());
+    }
+
+    /**
+     * Creates and returns a diagram whose cells carry statistics of the samples of a report of
+     * values (such as <tt>aggregator.cursor(Aggregate.values("TIME"), "SIZE")</tt>), read from a
+     * cursor (which is then closed), and assuming ascending order for every variable. So a single
+     * report provides, for example, both the mean and the standard deviation of each cell. Samples
+     * that are not numbers are ignored.
+     * @param cursor the cursor of a report of {@link gr.forth.ics.jbenchy.Aggregate#values(Object) values}
+     * @param statistics the statistics of each cell; the first is the value of the cell
+     * @see StatisticsDiagram
+     */
+    public static DiagramImpl newStatisticsDiagram(ReportCursor cursor, Statistic... statistics) {
+        Preconditions.checkNotNull(cursor, "cursor");
+        List<Order> orders = new ArrayList<Order>();
+        for (String variable : cursor.getSchema().getVariables()) {
+            orders.add(Orders.asc(variable));
+        }
+        return newStatisticsDiagram(cursor, orders, statistics);
+    }
+
+    /**
+     * Creates and returns a diagram whose cells carry statistics of the samples of a report of
+     * values, read from a cursor (which is then closed), and uses for each variable the respective
+     * order provided.
+     * @param cursor the cursor of a report of {@link gr.forth.ics.jbenchy.Aggregate#values(Object) values}
+     * @param orders a list with one order per variable (of the schema of the cursor)
+     * @param statistics the statistics of each cell; the first is the value of the cell
+     * @see #newStatisticsDiagram(ReportCursor, Statistic[])
+     */
+    public static DiagramImpl newStatisticsDiagram(ReportCursor cursor, List<Order> orders, Statistic... statistics) {
+        Preconditions.checkNotNull(cursor, "cursor");
+        List<Statistic> list = new ArrayList<Statistic>();
+        try {
+            Preconditions.checkArgument(statistics.length > 0, "No statistics");
+            Preconditions.checkArgument(!cursor.getAggregate().isAggregating(),
+                    "Expected a report of values, but was a report of: %s", cursor.getAggregate());
+            for (Statistic statistic : statistics) {
+                Preconditions.checkArgument(!list.contains(Preconditions.checkNotNull(statistic, "statistic")),
+                        "Statistic %s is given twice", statistic);
+                list.add(statistic);
+            }
+        } catch (RuntimeException e) {
+            cursor.close();
+            throw e;
+        }
+        return newDiagram(cursor, orders, Collections.unmodifiableList(list));
+    }
+
+    private static DiagramImpl newDiagram(ReportCursor cursor, List<Order> orders, List<Statistic> statistics) {
+        Preconditions.checkNotNull(cursor, "cursor");
+        Preconditions.checkNotNull(orders, "orders");
+        try {
+            Schema schema = cursor.getSchema();
+            List<String> variables = new ArrayList<String>(schema.getVariables());
+            Preconditions.checkArgument(variables.size() == orders.size(),
+                    "Exactly one comparator per variable must be given");
+            MatrixBuilder builder = new MatrixBuilder(schema);
+            SchemaRecord record = schema.newRecord();
+            while (cursor.next(record)) {
+                builder.add(record);
+            }
+            return new DiagramImpl(Collections.unmodifiableList(variables), orders, builder, statistics);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    //the value of the cells of a diagram read from a cursor, whose records have null values
+    private static final Object NO_VALUE = new Object();
+
     /**
      * A diagram implementation.
      */
-    public static class DiagramImpl implements Diagram {
-        private final Records records;
-        private final List<Order> orders;
+    public static class DiagramImpl implements StatisticsDiagram {
         private final List<String> variableNames;
         private final List<Variable> variables = new ArrayList<Variable>();
         private String title = "Title";
         private String rangeLabel = "Range";
         private final int[] domainSizes;
-        private final MultiDimensionalArray<Record> values;
+        //the record of each cell, or (if read from a cursor) its value, or NO_VALUE
+        private final MultiDimensionalArray<Object> values;
+        private final boolean hasRecords;
+        private final MultiDimensionalArray.Doubles numericValues;
+        private final List<Statistic> statistics;
+        private final MultiDimensionalArray.Doubles[] statisticValues;
 
-        private DiagramImpl(Records records, List<Order> orders) {
-            this.records = records;
-            this.orders = orders;
-            this.variableNames = records.getVariables();
-            this.domainSizes = new int[variableNames.size()];
-            int pos = 0;
-            for (String variable : variableNames) {
-                Variable var = Variable.create(variable, records, orders.get(pos));
-                variables.add(var);
-                domainSizes[pos++] = var.domain.size();
+        private DiagramImpl(List<String> variableNames, List<Order> orders, MatrixBuilder builder,
+                List<Statistic> statistics) {
+            this.variableNames = variableNames;
+            final int vars = variableNames.size();
+            this.domainSizes = new int[vars];
+            int[][] ranks = new int[vars][];
+            for (int pos = 0; pos < vars; pos++) {
+                List<Object> domain = builder.domains[pos].values;
+                ranks[pos] = rank(domain, orders.get(pos));
+                Object[] sorted = new Object[domain.size()];
+                for (int id = 0; id < sorted.length; id++) {
+                    sorted[ranks[pos][id]] = domain.get(id);
+                }
+                variables.add(new Variable(variableNames.get(pos), orders.get(pos), Arrays.asList(sorted)));
+                domainSizes[pos] = sorted.length;
+            }
+            final int cells = builder.count;
+            this.hasRecords = builder.records != null;
+            values = MultiDimensionalArray.create(cells, domainSizes);
+            numericValues = MultiDimensionalArray.createDoubles(cells, domainSizes);
+            this.statistics = statistics;
+            this.statisticValues = new MultiDimensionalArray.Doubles[statistics.size()];
+            if (!statistics.isEmpty()) {
+                summarize(builder, ranks);
+                return;
+            }
+            int[] index = new int[vars];
+            for (int cell = 0; cell < cells; cell++) {
+                for (int pos = 0; pos < vars; pos++) {
+                    index[pos] = ranks[pos][builder.ids[pos][cell]];
+                }
+                Object value;
+                if (hasRecords) {
+                    values.put(builder.records[cell], index);
+                    value = builder.records[cell].getValue();
+                } else {
+                    value = builder.values[cell];
+                    values.put(value == null ? NO_VALUE : value, index);
+                }
+                if (value instanceof Number) {
+                    numericValues.put(((Number) value).doubleValue(), index);
+                }
             }
-            values = createMatrix();
         }
-        
-        private MultiDimensionalArray<Record> createMatrix() {
-            MultiDimensionalArray<Record> array =
-                    new MultiDimensionalArray<Record>(domainSizes);
-            Map<String, Integer> variableIndices = new HashMap<String, Integer>();
-            int pos = 0;
-            for (String variable : records.getVariables()) {
-                variableIndices.put(variable, pos++);
-            }
-            
-            Map<String, Map<Object, Integer>> domainIndicesPerVariable =
-                    new HashMap<String, Map<Object, Integer>>();
-            pos = 0;
-            for (String variable : records.getVariables()) {
-                Map<Object, Integer> domainIndices = new HashMap<Object, Integer>();
-                int index = 0;
-                for (Object value : variables.get(pos++).domain) {
-                    domainIndices.put(value, index++);
+
+        /**
+         * Groups the samples (the values that the builder read from a report of values) by cell,
+         * and computes the statistics of each cell.
+         */
+        private void summarize(MatrixBuilder builder, int[][] ranks) {
+            boolean percentiles = false;
+            for (Statistic statistic : statistics) {
+                percentiles |= statistic.isPercentile();
+            }
+            MultiDimensionalArray<Samples> cells = MultiDimensionalArray.create(builder.count, domainSizes);
+            List<Samples> samplesOfCells = new ArrayList<Samples>();
+            int[] index = new int[ranks.length];
+            for (int sample = 0; sample < builder.count; sample++) {
+                Object value = builder.values[sample];
+                if (!(value instanceof Number)) {
+                    continue;
+                }
+                for (int pos = 0; pos < index.length; pos++) {
+                    index[pos] = ranks[pos][builder.ids[pos][sample]];
                 }
-                domainIndicesPerVariable.put(variable, domainIndices);
-            }
-            
-            final int vars = variables.size();
-            Integer[] index = new Integer[vars];
-            for (Record record : records) {
-                for (String variable : records.getVariables()) {
-                    Object variableValue = record.get(variable);
-                    index[variableIndices.get(variable)] = domainIndicesPerVariable.get(variable).get(variableValue);
+                Samples samples = cells.get(index);
+                if (samples == null) {
+                    samples = new Samples(index.clone(), percentiles);
+                    cells.put(samples, index);
+                    samplesOfCells.add(samples);
                 }
-                array.put(record, index);
+                samples.add(((Number) value).doubleValue());
             }
-            return array;
+            for (int i = 0; i < statisticValues.length; i++) {
+                statisticValues[i] = MultiDimensionalArray.createDoubles(samplesOfCells.size(), domainSizes);
+            }
+            for (Samples samples : samplesOfCells) {
+                double[] sorted = samples.sorted();
+                for (int i = 0; i < statisticValues.length; i++) {
+                    double value = statistics.get(i).valueOf(samples.statistics, sorted, samples.count);
+                    statisticValues[i].put(value, samples.index);
+                    if (i == 0) {
+                        values.put(value, samples.index);
+                        numericValues.put(value, samples.index);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the position of each value (by id) in the domain sorted by the order.
+         */
+        private static int[] rank(final List<Object> values, final Order order) {
+            Integer[] ids = new Integer[values.size()];
+            for (int id = 0; id < ids.length; id++) {
+                ids[id] = id;
+            }
+            Arrays.sort(ids, new Comparator<Integer>() {
+                public int compare(Integer id1, Integer id2) {
+                    return order.compare(values.get(id1), values.get(id2));
+                }
+            });
+            int[] ranks = new int[ids.length];
+            for (int rank = 0; rank < ids.length; rank++) {
+                ranks[ids[rank]] = rank;
+            }
+            return ranks;
         }
 
         /**
@@ -187,7 +360,32 @@ public class DiagramFactory {
         }
         
         public Record getRecordAt(int... variableIndices) {
-            return values.get(variableIndices);
+            Object cell = values.get(variableIndices);
+            if (hasRecords || cell == null) {
+                return (Record) cell;
+            }
+            Record record = new Record();
+            for (int pos = 0; pos < variableNames.size(); pos++) {
+                record.add(variableNames.get(pos), variables.get(pos).domain.get(variableIndices[pos]));
+            }
+            if (cell != NO_VALUE) {
+                record.putValue(cell);
+            }
+            return record;
+        }
+
+        public double getValueAt(int... variableIndices) {
+            return numericValues.get(variableIndices);
+        }
+
+        public List<Statistic> getStatistics() {
+            return statistics;
+        }
+
+        public double getStatisticAt(Statistic statistic, int... variableIndices) {
+            final int i = statistics.indexOf(statistic);
+            Preconditions.checkArgument(i >= 0, "Statistic %s is not one of: %s", statistic, statistics);
+            return statisticValues[i].get(variableIndices);
         }
         
         private static class Variable {
@@ -202,12 +400,231 @@ public class DiagramFactory {
                 this.order = order;
                 this.domain = Collections.unmodifiableList(orderedDomain);
             }
+        }
+    }
+
+    /**
+     * The samples of a cell of a statistics diagram.
+     */
+    private static class Samples {
+        final int[] index;
+        final RunningStatistics statistics = new RunningStatistics();
+        //kept only for percentiles
+        double[] values;
+        int count;
+
+        Samples(int[] index, boolean keepValues) {
+            this.index = index;
+            this.values = keepValues ? new double[4] : null;
+        }
+
+        void add(double value) {
+            statistics.add(value);
+            if (values != null) {
+                if (count == values.length) {
+                    double[] grown = new double[count * 2];
+                    System.arraycopy(values, 0, grown, 0, count);
+                    values = grown;
+                }
+                values[count] = value;
+            }
+            count++;
+        }
 
-            public static Variable create(String variable, Records records, Order order) {
-                List<Object> domain = new ArrayList<Object>(records.getDomainOf(variable));
-                Collections.sort(domain, order);
-                return new Variable(variable, order, domain);
+        double[] sorted() {
+            if (values == null) {
+                return null;
+            }
+            Arrays.sort(values, 0, count);
+            return values;
+        }
+    }
+
+    /**
+     * Collects the records of a diagram (or, from a cursor, just their values), with the ids of
+     * the values of their variables, in order of first appearance.
+     */
+    private static class MatrixBuilder {
+        final Domain[] domains;
+        int[][] ids;
+        Record[] records;
+        Object[] values;
+        int count;
+
+        private final int[] kinds;
+        private int capacity;
+
+        MatrixBuilder(int vars, int expectedRecords) {
+            this.domains = new Domain[vars];
+            this.kinds = new int[vars];
+            for (int pos = 0; pos < vars; pos++) {
+                domains[pos] = new Domain();
+                kinds[pos] = Domain.OBJECT;
+            }
+            this.capacity = Math.max(16, expectedRecords);
+            this.ids = new int[vars][capacity];
+            this.records = new Record[capacity];
+        }
+
+        MatrixBuilder(Schema schema) {
+            this(schema.getVariables().size(), 0);
+            this.values = new Object[capacity];
+            this.records = null;
+            int pos = 0;
+            for (String variable : schema.getVariables()) {
+                Class<?> c = schema.getTypeOf(variable).getMappedType();
+                kinds[pos++] = c == Integer.class || c == Long.class || c == Short.class || c == Byte.class ?
+                    Domain.LONG : c == Double.class || c == Float.class ? Domain.DOUBLE : Domain.OBJECT;
+            }
+        }
+
+        private void ensureCapacity() {
+            if (count < capacity) {
+                return;
+            }
+            capacity *= 2;
+            if (records != null) {
+                Record[] grown = new Record[capacity];
+                System.arraycopy(records, 0, grown, 0, count);
+                records = grown;
+            } else {
+                Object[] grown = new Object[capacity];
+                System.arraycopy(values, 0, grown, 0, count);
+                values = grown;
+            }
+            for (int pos = 0; pos < ids.length; pos++) {
+                int[] grownIds = new int[capacity];
+                System.arraycopy(ids[pos], 0, grownIds, 0, count);
+                ids[pos] = grownIds;
+            }
+        }
+
+        void add(Record record, List<String> variables) {
+            ensureCapacity();
+            for (int pos = 0; pos < domains.length; pos++) {
+                ids[pos][count] = domains[pos].idOf(record.get(variables.get(pos)));
+            }
+            records[count++] = record;
+        }
+
+        void add(SchemaRecord record) {
+            ensureCapacity();
+            for (int pos = 0; pos < domains.length; pos++) {
+                final Domain domain = domains[pos];
+                switch (record.isBound(pos) ? kinds[pos] : Domain.OBJECT) {
+                    case Domain.LONG: ids[pos][count] = domain.idOf(record.getLong(pos), record, pos); break;
+                    case Domain.DOUBLE: ids[pos][count] =
+                            domain.idOf(Double.doubleToLongBits(record.getDouble(pos)), record, pos); break;
+                    default: ids[pos][count] = domain.idOf(record.get(pos));
+                }
+            }
+            values[count++] = record.getValue();
+        }
+    }
+
+    /**
+     * The distinct values of a variable, by id, and open-addressing tables (with linear probing)
+     * from values to ids: one for objects, and one for the bits of primitive values.
+     */
+    private static class Domain {
+        static final int LONG = 0;
+        static final int DOUBLE = 1;
+        static final int OBJECT = 2;
+
+        final List<Object> values = new ArrayList<Object>();
+
+        private Object[] objectKeys = new Object[16];
+        private int[] objectIds = new int[16];
+        private int objectCount;
+
+        private long[] longKeys;
+        private int[] longIds;
+        private boolean[] used;
+        private int longCount;
+
+        private static int hash(int h) {
+            h *= 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        int idOf(Object value) {
+            final int mask = objectKeys.length - 1;
+            final int h = value == null ? 0 : value.hashCode();
+            int i = hash(h) & mask;
+            while (objectIds[i] != 0) {
+                Object key = objectKeys[i];
+                if (key == null ? value == null : key.equals(value)) {
+                    return objectIds[i] - 1;
+                }
+                i = (i + 1) & mask;
+            }
+            final int id = values.size();
+            values.add(value);
+            objectKeys[i] = value;
+            objectIds[i] = id + 1;
+            if (++objectCount * 2 > objectKeys.length) {
+                Object[] oldKeys = objectKeys;
+                int[] oldIds = objectIds;
+                objectKeys = new Object[oldKeys.length * 2];
+                objectIds = new int[oldKeys.length * 2];
+                final int newMask = objectKeys.length - 1;
+                for (int j = 0; j < oldKeys.length; j++) {
+                    if (oldIds[j] != 0) {
+                        int k = hash(oldKeys[j] == null ? 0 : oldKeys[j].hashCode()) & newMask;
+                        while (objectIds[k] != 0) {
+                            k = (k + 1) & newMask;
+                        }
+                        objectKeys[k] = oldKeys[j];
+                        objectIds[k] = oldIds[j];
+                    }
+                }
+            }
+            return id;
+        }
+
+        /**
+         * Returns the id of a primitive value, given by its bits; new values are boxed from the record.
+         */
+        int idOf(long bits, SchemaRecord record, int pos) {
+            if (longKeys == null) {
+                longKeys = new long[16];
+                longIds = new int[16];
+                used = new boolean[16];
+            }
+            final int mask = longKeys.length - 1;
+            int i = hash((int) (bits ^ (bits >>> 32))) & mask;
+            while (used[i]) {
+                if (longKeys[i] == bits) {
+                    return longIds[i];
+                }
+                i = (i + 1) & mask;
+            }
+            final int id = values.size();
+            values.add(record.get(pos));
+            used[i] = true;
+            longKeys[i] = bits;
+            longIds[i] = id;
+            if (++longCount * 2 > longKeys.length) {
+                long[] oldKeys = longKeys;
+                int[] oldIds = longIds;
+                boolean[] oldUsed = used;
+                longKeys = new long[oldKeys.length * 2];
+                longIds = new int[oldKeys.length * 2];
+                used = new boolean[oldKeys.length * 2];
+                final int newMask = longKeys.length - 1;
+                for (int j = 0; j < oldKeys.length; j++) {
+                    if (oldUsed[j]) {
+                        int k = hash((int) (oldKeys[j] ^ (oldKeys[j] >>> 32))) & newMask;
+                        while (used[k]) {
+                            k = (k + 1) & newMask;
+                        }
+                        used[k] = true;
+                        longKeys[k] = oldKeys[j];
+                        longIds[k] = oldIds[j];
+                    }
+                }
             }
+            return id;
         }
     }
 }
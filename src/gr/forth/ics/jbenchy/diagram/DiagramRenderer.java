@@ -0,0 +1,31 @@
+package gr.forth.ics.jbenchy.diagram;
+
+import java.io.IOException;
+
+/**
+ * Renders diagrams to files (such as images, or gnuplot command files), by name. Renderers are
+ * invoked by a {@link RenderBatch}, which renders several diagrams concurrently.
+ *
+ * @author andreou
+ */
+public interface DiagramRenderer {
+    /**
+     * Prepares the rendering of a diagram. A batch invokes this in the thread that renders it,
+     * in the order of its jobs, before rendering any diagram, so renderers that keep an index of
+     * their output (such as the master file of a
+     * {@link gr.forth.ics.jbenchy.diagram.gnuplot.GnuPlotWriter GnuPlotWriter}) should register it
+     * here: the index then does not depend on the order in which the diagrams are rendered.
+     * @param diagram the diagram that will be rendered
+     * @param name the name of the diagram, from which the names of its files are derived
+     * @throws IllegalArgumentException if the diagram cannot be rendered
+     */
+    void prepare(Diagram diagram, String name);
+
+    /**
+     * Renders a diagram. This may be invoked concurrently, for diagrams of different names.
+     * @param diagram the diagram to render
+     * @param name the name of the diagram, from which the names of its files are derived
+     * @throws IOException if writing the files of the diagram fails
+     */
+    void render(Diagram diagram, String name) throws IOException;
+}
@@ -0,0 +1,261 @@
+package gr.forth.ics.jbenchy.diagram;
+
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.Record;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Utility class that downsamples diagrams of one or two variables along their first variable
+ * (the axis), so that huge series (such as time series of hundreds of thousands of points) can be
+ * rendered quickly and readably. A downsampled diagram is a view of the diagram, restricted to a
+ * subset of the values of the axis, so it can be passed to any renderer:
+ * <pre>
+ * Chart chart = new ChartFactory(Downsampling.lttb(diagram, 1000)).newLineChart();
+ * </pre>
+ * Two methods are offered:
+ * <ul>
+ * <li>{@link #lttb(Diagram, int) Largest-Triangle-Three-Buckets}, which keeps, from each bucket of
+ * consecutive points, the point that forms the largest triangle with the point kept from the
+ * previous bucket and the average of the next bucket. It preserves the shape of the series,
+ * spikes included, and is the method of choice for line charts.
+ * <li>{@link #minMax(Diagram, int) Min/max per bucket}, which keeps the minimum and the maximum
+ * point of each bucket, so the envelope of the series is preserved exactly.
+ * </ul>
+ * The axis is measured by its values, if they are all numbers (or dates), and by their positions in
+ * its domain otherwise. Cells without a numeric value are not points. If the diagram has a second
+ * variable (a series per value), each series is downsampled separately, and the view keeps the
+ * union of the points that are kept from each series.
+ *
+ * @author andreou
+ */
+public class Downsampling {
+    private Downsampling() {
+    }
+
+    /**
+     * Downsamples a diagram with the Largest-Triangle-Three-Buckets method.
+     * @param diagram the diagram of one or two variables to downsample
+     * @param targetPoints the number of points to keep from each series (at least 3); series with
+     * fewer points are kept whole
+     * @return a view of the diagram over the kept values of the axis
+     */
+    public static Diagram lttb(Diagram diagram, int targetPoints) {
+        Preconditions.checkArgument(targetPoints >= 3, "Expected at least 3 target points, but was: %s", targetPoints);
+        return downsample(diagram, targetPoints, true);
+    }
+
+    /**
+     * Downsamples a diagram by keeping the first and the last point of each series, and the
+     * minimum and the maximum point of each of <tt>targetPoints / 2</tt> buckets of consecutive points.
+     * @param diagram the diagram of one or two variables to downsample
+     * @param targetPoints the number of points to keep from each series (at least 2, and up to
+     * two more than that); series with fewer points are kept whole
+     * @return a view of the diagram over the kept values of the axis
+     */
+    public static Diagram minMax(Diagram diagram, int targetPoints) {
+        Preconditions.checkArgument(targetPoints >= 2, "Expected at least 2 target points, but was: %s", targetPoints);
+        return downsample(diagram, targetPoints, false);
+    }
+
+    private static Diagram downsample(Diagram diagram, int targetPoints, boolean lttb) {
+        Preconditions.checkNotNull(diagram, "diagram");
+        Preconditions.checkArgument(diagram.getVariableCount() == 1 || diagram.getVariableCount() == 2,
+                "Only 1D and 2D diagrams can be downsampled");
+        final int size = diagram.getDomainSize(0);
+        final double[] axis = axisOf(diagram.getDomain(0));
+        final int seriesCount = diagram.getVariableCount() == 2 ? diagram.getDomainSize(1) : 1;
+        final boolean[] kept = new boolean[size];
+        final int[] rows = new int[size];
+        final double[] xs = new double[size];
+        final double[] ys = new double[size];
+        int[] index = new int[2];
+        for (index[1] = 0; index[1] < seriesCount; index[1]++) {
+            int n = 0;
+            for (index[0] = 0; index[0] < size; index[0]++) {
+                double y = diagram.getValueAt(index);
+                if (!Double.isNaN(y)) {
+                    rows[n] = index[0];
+                    xs[n] = axis[index[0]];
+                    ys[n] = y;
+                    n++;
+                }
+            }
+            if (n <= targetPoints) {
+                for (int i = 0; i < n; i++) {
+                    kept[rows[i]] = true;
+                }
+            } else if (lttb) {
+                lttb(xs, ys, rows, n, targetPoints, kept);
+            } else {
+                minMax(ys, rows, n, targetPoints, kept);
+            }
+        }
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (kept[row]) {
+                rows[count++] = row;
+            }
+        }
+        int[] keptRows = new int[count];
+        System.arraycopy(rows, 0, keptRows, 0, count);
+        return new Downsampled(diagram, keptRows);
+    }
+
+    private static double[] axisOf(List<Object> domain) {
+        double[] axis = new double[domain.size()];
+        for (int i = 0; i < axis.length; i++) {
+            Object value = domain.get(i);
+            if (value instanceof Number) {
+                axis[i] = ((Number) value).doubleValue();
+            } else if (value instanceof Date) {
+                axis[i] = ((Date) value).getTime();
+            } else {
+                for (int j = 0; j < axis.length; j++) {
+                    axis[j] = j;
+                }
+                break;
+            }
+        }
+        return axis;
+    }
+
+    private static void lttb(double[] xs, double[] ys, int[] rows, int n, int targetPoints, boolean[] kept) {
+        final double every = (double) (n - 2) / (targetPoints - 2);
+        int a = 0;
+        kept[rows[0]] = true;
+        for (int bucket = 0; bucket < targetPoints - 2; bucket++) {
+            //the average of the next bucket (or the last point, after the last bucket)
+            int nextStart = (int) ((bucket + 1) * every) + 1;
+            int nextEnd = Math.min((int) ((bucket + 2) * every) + 1, n);
+            if (nextStart >= nextEnd) {
+                nextStart = n - 1;
+                nextEnd = n;
+            }
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageX += xs[i];
+                averageY += ys[i];
+            }
+            averageX /= nextEnd - nextStart;
+            averageY /= nextEnd - nextStart;
+
+            final int start = (int) (bucket * every) + 1;
+            final int end = Math.min((int) ((bucket + 1) * every) + 1, n - 1);
+            double maxArea = -1;
+            int chosen = start;
+            for (int i = start; i < end; i++) {
+                //twice the area of the triangle (a, i, average)
+                double area = Math.abs((xs[a] - averageX) * (ys[i] - ys[a]) -
+                        (xs[a] - xs[i]) * (averageY - ys[a]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = i;
+                }
+            }
+            kept[rows[chosen]] = true;
+            a = chosen;
+        }
+        kept[rows[n - 1]] = true;
+    }
+
+    private static void minMax(double[] ys, int[] rows, int n, int targetPoints, boolean[] kept) {
+        kept[rows[0]] = true;
+        kept[rows[n - 1]] = true;
+        final int buckets = targetPoints / 2;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            final int start = (int) ((long) bucket * n / buckets);
+            final int end = (int) ((long) (bucket + 1) * n / buckets);
+            int min = start;
+            int max = start;
+            for (int i = start + 1; i < end; i++) {
+                if (ys[i] < ys[min]) {
+                    min = i;
+                } else if (ys[i] > ys[max]) {
+                    max = i;
+                }
+            }
+            kept[rows[min]] = true;
+            kept[rows[max]] = true;
+        }
+    }
+
+    private static class Downsampled implements StatisticsDiagram {
+        private final Diagram diagram;
+        private final int[] rows;
+        private final List<Object> axis;
+
+        Downsampled(final Diagram diagram, final int[] rows) {
+            this.diagram = diagram;
+            this.rows = rows;
+            final List<Object> domain = diagram.getDomain(0);
+            this.axis = new AbstractList<Object>() {
+                @Override
+                public Object get(int index) {
+                    return domain.get(rows[index]);
+                }
+
+                @Override
+                public int size() {
+                    return rows.length;
+                }
+            };
+        }
+
+        public String getTitle() {
+            return diagram.getTitle();
+        }
+
+        public String getRangeLabel() {
+            return diagram.getRangeLabel();
+        }
+
+        public String getLabelOf(int variableIndex) {
+            return diagram.getLabelOf(variableIndex);
+        }
+
+        public List<Object> getDomain(int variableIndex) {
+            return variableIndex == 0 ? axis : diagram.getDomain(variableIndex);
+        }
+
+        private int[] translate(int[] variableIndices) {
+            int[] index = variableIndices.clone();
+            index[0] = rows[index[0]];
+            return index;
+        }
+
+        public Record getRecordAt(int... variableIndices) {
+            return diagram.getRecordAt(translate(variableIndices));
+        }
+
+        public double getValueAt(int... variableIndices) {
+            return diagram.getValueAt(translate(variableIndices));
+        }
+
+        public List<Statistic> getStatistics() {
+            return diagram instanceof StatisticsDiagram ?
+                ((StatisticsDiagram) diagram).getStatistics() : Collections.<Statistic>emptyList();
+        }
+
+        public double getStatisticAt(Statistic statistic, int... variableIndices) {
+            Preconditions.checkArgument(diagram instanceof StatisticsDiagram,
+                    "Statistic %s is not one of: []", statistic);
+            return ((StatisticsDiagram) diagram).getStatisticAt(statistic, translate(variableIndices));
+        }
+
+        public List<String> getVariables() {
+            return diagram.getVariables();
+        }
+
+        public int getVariableCount() {
+            return diagram.getVariableCount();
+        }
+
+        public int getDomainSize(int variableIndex) {
+            return variableIndex == 0 ? rows.length : diagram.getDomainSize(variableIndex);
+        }
+    }
+}
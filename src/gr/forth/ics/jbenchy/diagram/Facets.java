@@ -0,0 +1,344 @@
+package gr.forth.ics.jbenchy.diagram;
+
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.Record;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The facets of a diagram of several variables: a grid of diagrams of one or two variables (an
+ * <em>axis</em>, and optionally a <em>series</em>), one for each combination of the values of the
+ * remaining variables (the <em>facet</em> variables). For example, a report of the average
+ * <tt>TIME</tt> by <tt>SIZE</tt>, <tt>ALGORITHM</tt>, <tt>THREADS</tt> and <tt>MACHINE</tt> can be
+ * plotted as a grid of diagrams of <tt>TIME</tt> by <tt>SIZE</tt> (axis) and <tt>ALGORITHM</tt>
+ * (series), with a row for each <tt>MACHINE</tt> and a column for each <tt>THREADS</tt>:
+ * <pre>
+ * Diagram diagram = DiagramFactory.newDiagram(aggregator.report(Aggregate.average("TIME"),
+ *         "SIZE", "ALGORITHM", "MACHINE", "THREADS"));
+ * Facets facets = Facets.of(diagram, "SIZE", "ALGORITHM", "MACHINE", "THREADS");
+ * </pre>
+ * Each facet is a {@link #slice(Diagram, List, int[]) slice} of the diagram (a view, which copies
+ * no cells), so it can be rendered by anything that renders diagrams of one or two variables.
+ * Facets that contain no record are omitted, but the rest keep their position in the grid.
+ *
+ * @author andreou
+ */
+public final class Facets implements Iterable<Facets.Facet> {
+    private final Diagram diagram;
+    private final List<String> facetVariables;
+    private final List<Facet> facets;
+    private final int rows;
+    private final int columns;
+
+    private Facets(Diagram diagram, List<String> facetVariables, List<Facet> facets, int rows, int columns) {
+        this.diagram = diagram;
+        this.facetVariables = facetVariables;
+        this.facets = facets;
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    /**
+     * Creates the facets of a diagram.
+     * @param diagram the diagram to facet
+     * @param axis the variable of the first (the only, if there is no series) variable of each facet
+     * @param series the second variable of each facet, or <tt>null</tt> for facets of a single variable
+     * @param facetVariables the variables whose combinations of values define the facets; the last
+     * one defines the columns of the grid, and the rest its rows (if there is a single facet
+     * variable, its values are laid out in a square grid instead). If none are given, all other
+     * variables of the diagram are facet variables, in the order of the diagram
+     * @throws IllegalArgumentException if a variable is not a variable of the diagram, is given
+     * twice, or if a variable of the diagram is neither the axis, the series, nor a facet variable
+     */
+    public static Facets of(Diagram diagram, String axis, String series, String... facetVariables) {
+        Preconditions.checkNotNull(diagram, "diagram");
+        Preconditions.checkNotNull(axis, "axis");
+        final List<String> variables = diagram.getVariables();
+        final List<String> sliceVariables = series == null ? Arrays.asList(axis) : Arrays.asList(axis, series);
+        List<String> facetList = new ArrayList<String>(Arrays.asList(facetVariables));
+        if (facetList.isEmpty()) {
+            for (String variable : variables) {
+                if (!sliceVariables.contains(variable)) {
+                    facetList.add(variable);
+                }
+            }
+        }
+        final int[] facetPositions = new int[facetList.size()];
+        boolean[] assigned = new boolean[variables.size()];
+        for (String variable : sliceVariables) {
+            assign(variables, variable, assigned);
+        }
+        for (int i = 0; i < facetPositions.length; i++) {
+            facetPositions[i] = assign(variables, facetList.get(i), assigned);
+        }
+        for (int i = 0; i < assigned.length; i++) {
+            Preconditions.checkArgument(assigned[i], "Variable %s is neither the axis, the series, " +
+                    "nor a facet variable", variables.get(i));
+        }
+        Preconditions.checkArgument(facetPositions.length > 0, "No facet variables: %s", variables);
+
+        long combinations = 1;
+        for (int position : facetPositions) {
+            combinations *= diagram.getDomainSize(position);
+            Preconditions.checkArgument(combinations <= Integer.MAX_VALUE, "Too many facets");
+        }
+        final int lastDomainSize = diagram.getDomainSize(facetPositions[facetPositions.length - 1]);
+        final int columns = facetPositions.length == 1 ?
+            (int) Math.ceil(Math.sqrt(lastDomainSize)) : lastDomainSize;
+        final int rows = columns == 0 ? 0 : (int) ((combinations + columns - 1) / columns);
+
+        //enumerate the combinations with the last facet variable varying fastest
+        List<Facet> facets = new ArrayList<Facet>();
+        final int[] fixed = new int[variables.size()];
+        for (int ordinal = 0; ordinal < combinations; ordinal++) {
+            int rest = ordinal;
+            for (int i = facetPositions.length - 1; i >= 0; i--) {
+                final int domainSize = diagram.getDomainSize(facetPositions[i]);
+                fixed[facetPositions[i]] = rest % domainSize;
+                rest /= domainSize;
+            }
+            Diagram slice = slice(diagram, sliceVariables, fixed);
+            if (isEmpty(slice)) {
+                continue;
+            }
+            List<Object> values = new ArrayList<Object>(facetPositions.length);
+            for (int position : facetPositions) {
+                values.add(diagram.getDomain(position).get(fixed[position]));
+            }
+            facets.add(new Facet(slice, Collections.unmodifiableList(values),
+                    ordinal / columns, ordinal % columns));
+        }
+        return new Facets(diagram, Collections.unmodifiableList(facetList),
+                Collections.unmodifiableList(facets), rows, columns);
+    }
+
+    private static int assign(List<String> variables, String variable, boolean[] assigned) {
+        final int position = variables.indexOf(variable);
+        Preconditions.checkArgument(position >= 0, "Variable %s is not one of: %s", variable, variables);
+        Preconditions.checkArgument(!assigned[position], "Variable %s is given twice", variable);
+        assigned[position] = true;
+        return position;
+    }
+
+    private static boolean isEmpty(Diagram diagram) {
+        final int[] index = new int[diagram.getVariableCount()];
+        final int second = index.length == 2 ? diagram.getDomainSize(1) : 1;
+        for (index[0] = 0; index[0] < diagram.getDomainSize(0); index[0]++) {
+            for (int j = 0; j < second; j++) {
+                if (index.length == 2) {
+                    index[1] = j;
+                }
+                if (diagram.getRecordAt(index) != null) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the faceted diagram.
+     */
+    public Diagram getDiagram() {
+        return diagram;
+    }
+
+    /**
+     * Returns the facet variables, in order.
+     */
+    public List<String> getFacetVariables() {
+        return facetVariables;
+    }
+
+    /**
+     * Returns the (non-empty) facets, in the order of the grid (row by row).
+     */
+    public List<Facet> getFacets() {
+        return facets;
+    }
+
+    public Iterator<Facet> iterator() {
+        return facets.iterator();
+    }
+
+    /**
+     * Returns the number of rows of the grid.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns of the grid.
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * A cell of the grid of facets.
+     */
+    public static final class Facet {
+        private final Diagram diagram;
+        private final List<Object> values;
+        private final int row;
+        private final int column;
+
+        Facet(Diagram diagram, List<Object> values, int row, int column) {
+            this.diagram = diagram;
+            this.values = values;
+            this.row = row;
+            this.column = column;
+        }
+
+        /**
+         * Returns the diagram of this facet, of the axis and the series variables.
+         */
+        public Diagram getDiagram() {
+            return diagram;
+        }
+
+        /**
+         * Returns the values of the facet variables in this facet, in the order of the variables.
+         */
+        public List<Object> getValues() {
+            return values;
+        }
+
+        /**
+         * Returns the row of this facet in the grid, counting from 0.
+         */
+        public int getRow() {
+            return row;
+        }
+
+        /**
+         * Returns the column of this facet in the grid, counting from 0.
+         */
+        public int getColumn() {
+            return column;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + row + ", " + column + "] " + values;
+        }
+    }
+
+    /**
+     * Returns a view of a diagram over some of its variables, with each other variable fixed to
+     * a value of its domain. The title of the view names the fixed values, and its domains, labels
+     * and range label are those of the diagram.
+     * @param diagram the diagram to slice
+     * @param variables the variables of the view, in order
+     * @param fixedIndices an index for each variable of the diagram, which fixes the variables that
+     * are not variables of the view to a value of their domain (the indices of the variables of the
+     * view are ignored)
+     * @return a diagram of the specified variables
+     */
+    public static Diagram slice(Diagram diagram, List<String> variables, int... fixedIndices) {
+        Preconditions.checkNotNull(diagram, "diagram");
+        Preconditions.checkArgument(fixedIndices.length == diagram.getVariableCount(),
+                "Expected %s fixed indices, but was: %s", diagram.getVariableCount(), Arrays.toString(fixedIndices));
+        final int[] positions = new int[variables.size()];
+        final int[] template = new int[fixedIndices.length];
+        System.arraycopy(fixedIndices, 0, template, 0, template.length);
+        boolean[] kept = new boolean[template.length];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = assign(diagram.getVariables(), variables.get(i), kept);
+            template[positions[i]] = 0;
+        }
+        StringBuilder title = new StringBuilder(diagram.getTitle());
+        String separator = " (";
+        for (int i = 0; i < template.length; i++) {
+            if (kept[i]) {
+                continue;
+            }
+            Preconditions.checkElementIndex(template[i], diagram.getDomainSize(i), diagram.getLabelOf(i));
+            title.append(separator).append(diagram.getLabelOf(i)).append('=').
+                    append(diagram.getDomain(i).get(template[i]));
+            separator = ", ";
+        }
+        if (separator.equals(", ")) {
+            title.append(')');
+        }
+        return new Slice(diagram, Collections.unmodifiableList(new ArrayList<String>(variables)),
+                positions, template, title.toString());
+    }
+
+    private static class Slice implements StatisticsDiagram {
+        private final Diagram diagram;
+        private final List<String> variables;
+        private final int[] positions;
+        private final int[] template;
+        private final String title;
+
+        Slice(Diagram diagram, List<String> variables, int[] positions, int[] template, String title) {
+            this.diagram = diagram;
+            this.variables = variables;
+            this.positions = positions;
+            this.template = template;
+            this.title = title;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getRangeLabel() {
+            return diagram.getRangeLabel();
+        }
+
+        public String getLabelOf(int variableIndex) {
+            return diagram.getLabelOf(positions[variableIndex]);
+        }
+
+        public List<Object> getDomain(int variableIndex) {
+            return diagram.getDomain(positions[variableIndex]);
+        }
+
+        private int[] translate(int[] variableIndices) {
+            Preconditions.checkArgument(variableIndices.length >= positions.length,
+                    "Expected at least %s indices, but was: %s", positions.length, Arrays.toString(variableIndices));
+            int[] index = template.clone();
+            for (int i = 0; i < positions.length; i++) {
+                index[positions[i]] = variableIndices[i];
+            }
+            return index;
+        }
+
+        public Record getRecordAt(int... variableIndices) {
+            return diagram.getRecordAt(translate(variableIndices));
+        }
+
+        public double getValueAt(int... variableIndices) {
+            return diagram.getValueAt(translate(variableIndices));
+        }
+
+        public List<Statistic> getStatistics() {
+            return diagram instanceof StatisticsDiagram ?
+                ((StatisticsDiagram) diagram).getStatistics() : Collections.<Statistic>emptyList();
+        }
+
+        public double getStatisticAt(Statistic statistic, int... variableIndices) {
+            Preconditions.checkArgument(diagram instanceof StatisticsDiagram,
+                    "Statistic %s is not one of: []", statistic);
+            return ((StatisticsDiagram) diagram).getStatisticAt(statistic, translate(variableIndices));
+        }
+
+        public List<String> getVariables() {
+            return variables;
+        }
+
+        public int getVariableCount() {
+            return positions.length;
+        }
+
+        public int getDomainSize(int variableIndex) {
+            return diagram.getDomainSize(positions[variableIndex]);
+        }
+    }
+}
@@ -1,57 +1,272 @@
 package gr.forth.ics.jbenchy.diagram;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
 
 /**
+ * An array of N dimensions, of fixed sizes. Cells are stored densely, in a flat array indexed by
+ * the position of each cell, unless only a small fraction of the cells is expected to be set
+ * (as in a diagram of several variables whose records do not cover every combination of their
+ * values), in which case the set cells are stored in an open-addressing table keyed by position.
+ * A dense array costs a reference (or a double) per cell, and a sparse one about 32 bytes per
+ * set cell, so arrays are sparse below a fill ratio of 1/4.
+ * <p>
+ * Indices are passed as <tt>int[]</tt> (or varargs), and translated to positions without
+ * allocating, so callers can reuse an index array while iterating over the cells.
  *
  * @author andreou
  */
 class MultiDimensionalArray<T> {
-    private final List<T> array;
+    //arrays of up to this many cells are always dense
+    private static final int SMALL = 1 << 10;
+    private static final int MIN_FILL_RATIO = 4;
+
     private final int[] dimensionSizes;
-    
+    private final Positions positions;
+    private Object[] values;
+
+    private MultiDimensionalArray(int[] dimensionSizes, boolean sparse) {
+        this.dimensionSizes = dimensionSizes;
+        if (sparse) {
+            this.positions = new Positions();
+            this.values = new Object[positions.capacity()];
+        } else {
+            this.positions = null;
+            this.values = new Object[(int) cellsOf(dimensionSizes)];
+        }
+    }
+
+    /**
+     * Creates a dense array of the specified dimension sizes.
+     */
     public MultiDimensionalArray(int... dimensionSizes) {
+        this(copy(dimensionSizes), false);
+    }
+
+    /**
+     * Creates an array of the specified dimension sizes, which is dense or sparse depending on the
+     * number of cells that are expected to be set.
+     * @param expectedCells the number of cells that are expected to be set
+     */
+    public static <T> MultiDimensionalArray<T> create(int expectedCells, int... dimensionSizes) {
+        int[] sizes = copy(dimensionSizes);
+        return new MultiDimensionalArray<T>(sizes, isSparse(cellsOf(sizes), expectedCells));
+    }
+
+    public void put(T value, int... index) {
+        final long position = translate(dimensionSizes, index);
+        if (positions == null) {
+            values[(int) position] = value;
+            return;
+        }
+        final int slot = positions.add(position);
+        if (slot == values.length) {
+            Object[] grown = new Object[positions.capacity()];
+            System.arraycopy(values, 0, grown, 0, values.length);
+            values = grown;
+        }
+        values[slot] = value;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int... index) {
+        final long position = translate(dimensionSizes, index);
+        if (positions == null) {
+            return (T) values[(int) position];
+        }
+        final int slot = positions.slotOf(position);
+        return slot < 0 ? null : (T) values[slot];
+    }
+
+    /**
+     * Returns whether the cells of this array are stored in a table, rather than a flat array.
+     */
+    public boolean isSparse() {
+        return positions != null;
+    }
+
+    /**
+     * Creates an array of doubles of the specified dimension sizes, which is dense or sparse
+     * depending on the number of cells that are expected to be set.
+     * @param expectedCells the number of cells that are expected to be set
+     */
+    public static Doubles createDoubles(int expectedCells, int... dimensionSizes) {
+        int[] sizes = copy(dimensionSizes);
+        return new Doubles(sizes, isSparse(cellsOf(sizes), expectedCells));
+    }
+
+    /**
+     * A multi-dimensional array of doubles, stored in a <tt>double[]</tt> (densely, or in the
+     * slots of a table of positions). Cells that are not set are <tt>NaN</tt>.
+     */
+    static class Doubles {
+        private final int[] dimensionSizes;
+        private final Positions positions;
+        private double[] values;
+
+        private Doubles(int[] dimensionSizes, boolean sparse) {
+            this.dimensionSizes = dimensionSizes;
+            if (sparse) {
+                this.positions = new Positions();
+                this.values = new double[positions.capacity()];
+            } else {
+                this.positions = null;
+                this.values = new double[(int) cellsOf(dimensionSizes)];
+                Arrays.fill(values, Double.NaN);
+            }
+        }
+
+        public void put(double value, int... index) {
+            final long position = translate(dimensionSizes, index);
+            if (positions == null) {
+                values[(int) position] = value;
+                return;
+            }
+            final int slot = positions.add(position);
+            if (slot == values.length) {
+                double[] grown = new double[positions.capacity()];
+                System.arraycopy(values, 0, grown, 0, values.length);
+                values = grown;
+            }
+            values[slot] = value;
+        }
+
+        public double get(int... index) {
+            final long position = translate(dimensionSizes, index);
+            if (positions == null) {
+                return values[(int) position];
+            }
+            final int slot = positions.slotOf(position);
+            return slot < 0 ? Double.NaN : values[slot];
+        }
+
+        public boolean isSparse() {
+            return positions != null;
+        }
+    }
+
+    private static int[] copy(int[] dimensionSizes) {
         int[] copy = new int[dimensionSizes.length];
         System.arraycopy(dimensionSizes, 0, copy, 0, dimensionSizes.length);
-        this.dimensionSizes = copy;
-        int totalValues = 1;
-        for (int dimensionSize : dimensionSizes) {
-            totalValues *= dimensionSize;
+        for (int size : copy) {
+            if (size < 0) {
+                throw new IllegalArgumentException("Negative dimension size: " + size);
+            }
         }
-        array = new ArrayList<T>(totalValues);
-        array.addAll(Collections.<T>nCopies(totalValues, null));
+        return copy;
     }
-    
-    public void put(T value, Integer... index) {
-        array.set(translate(index), value);
+
+    /**
+     * Returns the number of cells of an array, or <tt>Long.MAX_VALUE</tt> if they overflow a long.
+     */
+    private static long cellsOf(int[] dimensionSizes) {
+        long cells = 1;
+        for (int size : dimensionSizes) {
+            if (size != 0 && cells > Long.MAX_VALUE / size) {
+                return Long.MAX_VALUE;
+            }
+            cells *= size;
+        }
+        return cells;
     }
-    
-    public T get(Integer... index) {
-        return array.get(translate(index));
+
+    private static boolean isSparse(long cells, int expectedCells) {
+        if (cells > Integer.MAX_VALUE - 8) {
+            return true;
+        }
+        return cells > SMALL && cells / MIN_FILL_RATIO > expectedCells;
     }
-    
-    private int translate(Integer... index) {
-        int position = index[dimensionSizes.length - 1];
-        for (int i = dimensionSizes.length - 2; i >= 0; i--) {
-            position *= dimensionSizes[i];
-            position += index[i];
+
+    /**
+     * Translates an index to the position of its cell; the first dimension varies fastest. Indices
+     * beyond the dimensions of the array are ignored (so renderers may index a 1D diagram with the
+     * <tt>int[2]</tt> they use for 2D ones).
+     * @throws IndexOutOfBoundsException if the index is out of the bounds of the array
+     */
+    private static long translate(int[] dimensionSizes, int[] index) {
+        if (index.length < dimensionSizes.length) {
+            throw new IllegalArgumentException("Expected an index of at least " + dimensionSizes.length +
+                    " dimensions, but was: " + Arrays.toString(index));
+        }
+        long position = 0;
+        for (int i = dimensionSizes.length - 1; i >= 0; i--) {
+            if (index[i] < 0 || index[i] >= dimensionSizes[i]) {
+                throw new IndexOutOfBoundsException("Index: " + Arrays.toString(index) +
+                        ", dimension sizes: " + Arrays.toString(dimensionSizes));
+            }
+            position = position * dimensionSizes[i] + index[i];
         }
         return position;
     }
-    
-    public T get(int... index) {
-        return array.get(translate(index));
-    }
-    
-    private int translate(int... index) {
-        int position = index[dimensionSizes.length - 1];
-        for (int i = dimensionSizes.length - 2; i >= 0; i--) {
-            position *= dimensionSizes[i];
-            position += index[i];
+
+    /**
+     * An open-addressing table (with linear probing) that assigns consecutive slots to the
+     * positions of the set cells of a sparse array.
+     */
+    private static class Positions {
+        private static final long EMPTY = -1;
+
+        private long[] keys;
+        private int[] slots;
+        private int size;
+
+        Positions() {
+            allocate(16);
+        }
+
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            slots = new int[capacity];
+        }
+
+        /**
+         * Returns the number of slots that can be assigned before the table grows.
+         */
+        int capacity() {
+            return keys.length / 2;
+        }
+
+        private int indexOf(long position) {
+            final int mask = keys.length - 1;
+            int i = (int) ((position * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+            while (keys[i] != EMPTY && keys[i] != position) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        /**
+         * Returns the slot of a position, or -1 if it has none.
+         */
+        int slotOf(long position) {
+            final int i = indexOf(position);
+            return keys[i] == EMPTY ? -1 : slots[i];
+        }
+
+        /**
+         * Returns the slot of a position, assigning the next slot to it if it has none.
+         */
+        int add(long position) {
+            int i = indexOf(position);
+            if (keys[i] != EMPTY) {
+                return slots[i];
+            }
+            if (size == capacity()) {
+                long[] oldKeys = keys;
+                int[] oldSlots = slots;
+                allocate(keys.length * 2);
+                for (int j = 0; j < oldKeys.length; j++) {
+                    if (oldKeys[j] != EMPTY) {
+                        int k = indexOf(oldKeys[j]);
+                        keys[k] = oldKeys[j];
+                        slots[k] = oldSlots[j];
+                    }
+                }
+                i = indexOf(position);
+            }
+            keys[i] = position;
+            slots[i] = size;
+            return size++;
         }
-        return position;
     }
 }
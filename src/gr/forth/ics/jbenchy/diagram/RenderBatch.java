@@ -0,0 +1,165 @@
+package gr.forth.ics.jbenchy.diagram;
+
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.StringUtils;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A batch of diagrams to render, each by a {@link DiagramRenderer} and under a name, on a bounded
+ * number of threads. For example, to write a chart and a gnuplot diagram of each of many diagrams:
+ * <pre>
+ * RenderBatch batch = new RenderBatch();
+ * DiagramRenderer lines = ChartRenderer.lines(imageFolder);
+ * DiagramRenderer plots = gnuPlotWriter.newRenderer(context);
+ * for (...) {
+ *     batch.add(diagram, name, lines).add(diagram, name, plots);
+ * }
+ * batch.render();
+ * gnuPlotWriter.createMasterPlotFile("all.plt");
+ * </pre>
+ * Rendering sets the <tt>java.awt.headless</tt> system property to <tt>true</tt>, unless it is
+ * already set, so charts can be drawn on machines without a display.
+ *
+ * @author andreou
+ */
+public final class RenderBatch {
+    private final List<Job> jobs = new ArrayList<Job>();
+    private final Set<List<Object>> keys = new HashSet<List<Object>>();
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Creates an empty batch, that renders on as many threads as there are available processors.
+     */
+    public RenderBatch() {
+    }
+
+    /**
+     * Sets the maximum number of threads that render the diagrams of this batch.
+     */
+    public RenderBatch withThreads(int threads) {
+        Preconditions.checkArgument(threads > 0, "Non-positive threads: %s", threads);
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Adds a diagram to render.
+     * @param diagram the diagram to render
+     * @param name the name of the diagram, from which the names of its files are derived
+     * @param renderer the renderer of the diagram
+     * @throws IllegalArgumentException if the same renderer already renders a diagram of that name
+     */
+    public RenderBatch add(Diagram diagram, String name, DiagramRenderer renderer) {
+        Preconditions.checkNotNull(diagram, "diagram");
+        StringUtils.checkHasText(name, "Empty diagram name");
+        Preconditions.checkNotNull(renderer, "renderer");
+        List<Object> key = new ArrayList<Object>(2);
+        key.add(new Identity(renderer));
+        key.add(name);
+        Preconditions.checkArgument(keys.add(key), "Diagram %s is already rendered by: %s", name, renderer);
+        jobs.add(new Job(diagram, name, renderer));
+        return this;
+    }
+
+    /**
+     * Returns the number of diagrams of this batch.
+     */
+    public int size() {
+        return jobs.size();
+    }
+
+    /**
+     * Renders the diagrams of this batch, and waits until all are rendered. The diagrams are
+     * {@link DiagramRenderer#prepare(Diagram, String) prepared} in the order in which they were
+     * added, and then rendered concurrently. If rendering a diagram fails, the diagrams that are
+     * not yet rendered are cancelled, and the failure is thrown.
+     * @throws IOException if rendering a diagram fails
+     */
+    public void render() throws IOException {
+        if (System.getProperty("java.awt.headless") == null) {
+            System.setProperty("java.awt.headless", "true");
+        }
+        for (Job job : jobs) {
+            job.renderer.prepare(job.diagram, job.name);
+        }
+        if (jobs.isEmpty()) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, jobs.size()));
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>(jobs.size());
+            for (Job job : jobs) {
+                futures.add(executor.submit(job));
+            }
+            for (Future<Void> future : futures) {
+                get(future);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void get(Future<Void> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while rendering diagrams");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private static class Job implements Callable<Void> {
+        final Diagram diagram;
+        final String name;
+        final DiagramRenderer renderer;
+
+        Job(Diagram diagram, String name, DiagramRenderer renderer) {
+            this.diagram = diagram;
+            this.name = name;
+            this.renderer = renderer;
+        }
+
+        public Void call() throws IOException {
+            renderer.render(diagram, name);
+            return null;
+        }
+    }
+
+    private static class Identity {
+        private final Object object;
+
+        Identity(Object object) {
+            this.object = object;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Identity && ((Identity) o).object == object;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(object);
+        }
+    }
+}
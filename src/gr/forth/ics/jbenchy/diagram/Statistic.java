@@ -0,0 +1,141 @@
+package gr.forth.ics.jbenchy.diagram;
+
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.stats.RunningStatistics;
+
+/**
+ * A statistic of the samples of a cell of a {@link StatisticsDiagram}: the mean, the standard
+ * deviation, the minimum, the maximum, the count, or a percentile of the samples.
+ * <p>
+ * Statistics can also be used as the bounds of an interval around each cell (such as an error
+ * bar, or a band), see {@link #lowerBoundAt(StatisticsDiagram, int[])} and
+ * {@link #upperBoundAt(StatisticsDiagram, int[])}.
+ *
+ * @author andreou
+ */
+public final class Statistic {
+    /**
+     * The arithmetic mean of the samples.
+     */
+    public static final Statistic MEAN = new Statistic("MEAN", Double.NaN);
+
+    /**
+     * The (unbiased) sample standard deviation of the samples, which is <tt>NaN</tt> for less
+     * than two samples.
+     */
+    public static final Statistic STDDEV = new Statistic("STDDEV", Double.NaN);
+
+    /**
+     * The minimum of the samples.
+     */
+    public static final Statistic MIN = new Statistic("MIN", Double.NaN);
+
+    /**
+     * The maximum of the samples.
+     */
+    public static final Statistic MAX = new Statistic("MAX", Double.NaN);
+
+    /**
+     * The number of the samples.
+     */
+    public static final Statistic COUNT = new Statistic("COUNT", Double.NaN);
+
+    private final String name;
+    private final double percent;
+
+    private Statistic(String name, double percent) {
+        this.name = name;
+        this.percent = percent;
+    }
+
+    /**
+     * The specified percentile of the samples, interpolated linearly between the closest ranks
+     * (e.g. <tt>percentile(50)</tt> is the median).
+     * @param percent the percentage of the samples that are at most the percentile, from 0 to 100
+     */
+    public static Statistic percentile(double percent) {
+        Preconditions.checkArgument(percent >= 0 && percent <= 100, "Invalid percentile: %s", percent);
+        String number = percent == Math.rint(percent) ? String.valueOf((long) percent) : String.valueOf(percent);
+        return new Statistic("P" + number, percent);
+    }
+
+    /**
+     * Returns the name of this statistic, such as <tt>MEAN</tt>, or <tt>P95</tt>.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns whether this statistic is a percentile.
+     */
+    public boolean isPercentile() {
+        return !Double.isNaN(percent);
+    }
+
+    /**
+     * Returns the value of this statistic over some samples.
+     * @param statistics the running statistics of the samples
+     * @param sorted the samples, sorted (needed only by percentiles)
+     * @param count the number of samples
+     */
+    double valueOf(RunningStatistics statistics, double[] sorted, int count) {
+        if (this == MEAN) {
+            return statistics.getMean();
+        } else if (this == STDDEV) {
+            return statistics.getStandardDeviation();
+        } else if (this == MIN) {
+            return statistics.getMin();
+        } else if (this == MAX) {
+            return statistics.getMax();
+        } else if (this == COUNT) {
+            return statistics.getCount();
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        final double rank = percent / 100 * (count - 1);
+        final int below = (int) Math.floor(rank);
+        final int above = Math.min(below + 1, count - 1);
+        return sorted[below] + (rank - below) * (sorted[above] - sorted[below]);
+    }
+
+    /**
+     * Returns the lower bound of an interval at a cell of a diagram: the mean minus the standard
+     * deviation for {@link #STDDEV}, and the value of this statistic otherwise.
+     * @throws IllegalArgumentException if the diagram does not have the needed statistics
+     */
+    public double lowerBoundAt(StatisticsDiagram diagram, int... variableIndices) {
+        if (this == STDDEV) {
+            return diagram.getStatisticAt(MEAN, variableIndices) - diagram.getStatisticAt(STDDEV, variableIndices);
+        }
+        return diagram.getStatisticAt(this, variableIndices);
+    }
+
+    /**
+     * Returns the upper bound of an interval at a cell of a diagram: the mean plus the standard
+     * deviation for {@link #STDDEV}, and the value of this statistic otherwise.
+     * @throws IllegalArgumentException if the diagram does not have the needed statistics
+     */
+    public double upperBoundAt(StatisticsDiagram diagram, int... variableIndices) {
+        if (this == STDDEV) {
+            return diagram.getStatisticAt(MEAN, variableIndices) + diagram.getStatisticAt(STDDEV, variableIndices);
+        }
+        return diagram.getStatisticAt(this, variableIndices);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Statistic && ((Statistic) o).name.equals(name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
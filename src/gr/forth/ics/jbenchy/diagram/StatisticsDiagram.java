@@ -0,0 +1,28 @@
+package gr.forth.ics.jbenchy.diagram;
+
+import java.util.List;
+
+/**
+ * A diagram whose cells carry several {@link Statistic statistics} of the samples that fall in
+ * them (such as their mean, standard deviation and percentiles), computed from a single report of
+ * the samples (see {@link DiagramFactory#newStatisticsDiagram(gr.forth.ics.jbenchy.ReportCursor,
+ * List, Statistic[])}). The value of each cell (see {@link #getRecordAt(int[])}) is its first statistic.
+ *
+ * @author andreou
+ */
+public interface StatisticsDiagram extends Diagram {
+    /**
+     * Returns the statistics of the cells of this diagram (an empty list, if this diagram has
+     * only the values of its cells).
+     */
+    List<Statistic> getStatistics();
+
+    /**
+     * Returns a statistic of the samples in the specified cell.
+     * @param statistic one of the {@link #getStatistics() statistics} of this diagram
+     * @param variableIndices the indices that describe the position of the cell, as in {@link #getRecordAt(int[])}
+     * @return the statistic, or <tt>NaN</tt> if the cell has no samples
+     * @throws IllegalArgumentException if the statistic is not a statistic of this diagram
+     */
+    double getStatisticAt(Statistic statistic, int... variableIndices);
+}
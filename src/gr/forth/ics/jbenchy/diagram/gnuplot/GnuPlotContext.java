@@ -1,6 +1,7 @@
 package gr.forth.ics.jbenchy.diagram.gnuplot;
 
 import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.diagram.Statistic;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -20,6 +21,10 @@ public class GnuPlotContext {
     private final Map<Integer, PlotStyle> styles = new HashMap<Integer, PlotStyle>();
     private PlotStyle defaultStyle = PlotStyle.lines();
     
+    private Statistic lowerBound;
+    private Statistic upperBound;
+    private boolean bands;
+    
     /**
      * Creates an empty GnuPlotContext.
      */
@@ -268,6 +273,71 @@ public class GnuPlotContext {
         return set("boxwidth", Double.toString(width));
     }
     
+    /**
+     * Plots an error bar around each point, from a lower to an upper bound. The plotted diagrams
+     * must be {@link gr.forth.ics.jbenchy.diagram.StatisticsDiagram statistics diagrams} with the
+     * statistics of the bounds. For example, <tt>setErrorBars(Statistic.STDDEV, Statistic.STDDEV)</tt>
+     * plots the mean plus and minus the standard deviation (see
+     * {@link Statistic#lowerBoundAt(gr.forth.ics.jbenchy.diagram.StatisticsDiagram, int[])}), and
+     * <tt>setErrorBars(Statistic.MIN, Statistic.MAX)</tt> the range of the samples.
+     * @param lower the statistic of the lower bound
+     * @param upper the statistic of the upper bound
+     * @return this
+     */
+    public GnuPlotContext setErrorBars(Statistic lower, Statistic upper) {
+        return setInterval(lower, upper, false);
+    }
+    
+    /**
+     * Plots a filled band around each line, from a lower to an upper bound. The plotted diagrams
+     * must be {@link gr.forth.ics.jbenchy.diagram.StatisticsDiagram statistics diagrams} with the
+     * statistics of the bounds (see {@link #setErrorBars(Statistic, Statistic)}).
+     * @param lower the statistic of the lower bound
+     * @param upper the statistic of the upper bound
+     * @return this
+     */
+    public GnuPlotContext setBands(Statistic lower, Statistic upper) {
+        return setInterval(lower, upper, true);
+    }
+    
+    private GnuPlotContext setInterval(Statistic lower, Statistic upper, boolean bands) {
+        this.lowerBound = Preconditions.checkNotNull(lower, "lower");
+        this.upperBound = Preconditions.checkNotNull(upper, "upper");
+        this.bands = bands;
+        return this;
+    }
+    
+    /**
+     * Stops plotting error bars or bands.
+     * @return this
+     */
+    public GnuPlotContext clearInterval() {
+        lowerBound = upperBound = null;
+        bands = false;
+        return this;
+    }
+    
+    /**
+     * Returns the statistic of the lower bound of the error bars or bands, or <tt>null</tt> if none are plotted.
+     */
+    public Statistic getLowerBound() {
+        return lowerBound;
+    }
+    
+    /**
+     * Returns the statistic of the upper bound of the error bars or bands, or <tt>null</tt> if none are plotted.
+     */
+    public Statistic getUpperBound() {
+        return upperBound;
+    }
+    
+    /**
+     * Returns whether bands (rather than error bars) are plotted.
+     */
+    public boolean hasBands() {
+        return bands;
+    }
+    
     /**
      * Adds an entry of "terminal" with the specified value.
      * @return this
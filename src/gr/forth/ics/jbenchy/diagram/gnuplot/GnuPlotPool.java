@@ -0,0 +1,336 @@
+package gr.forth.ics.jbenchy.diagram.gnuplot;
+
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.diagram.Diagram;
+import gr.forth.ics.jbenchy.diagram.DiagramRenderer;
+import gr.forth.ics.jbenchy.diagram.StatisticsDiagram;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Renders diagrams by gnuplot directly, through a pool of long-lived gnuplot processes: the
+ * commands of each diagram, with its data inline, are streamed to the standard input of an idle
+ * process, which writes the diagram to the output folder (e.g. <tt>name.eps</tt>). So, unlike a
+ * {@link GnuPlotWriter}, no data or command files are written, and gnuplot is not started once per
+ * diagram. Since it is a {@link DiagramRenderer}, a pool can render the diagrams of a
+ * {@link gr.forth.ics.jbenchy.diagram.RenderBatch batch} concurrently, by up to as many processes
+ * as the pool has:
+ * <pre>
+ * GnuPlotPool pool = new GnuPlotPool(new File("eps"), 4);
+ * try {
+ *     new RenderBatch().withThreads(4).add(diagram, "myDiagram", pool).render();
+ * } finally {
+ *     pool.close();
+ * }
+ * </pre>
+ * After each diagram, a process is asked to print a marker, and everything it prints before the
+ * marker (other than warnings) is reported as a failure, in which case the process is discarded
+ * and a fresh one is started when needed. The gnuplot executable must be in the path, unless a
+ * different {@link #withCommand(String[]) command} is specified.
+ *
+ * @author andreou
+ */
+public class GnuPlotPool implements DiagramRenderer, Closeable {
+    private static final String MARKER = "jbenchy:done";
+
+    private final File outputFolder;
+    private final int maxProcesses;
+    private final LinkedList<GnuPlotProcess> idle = new LinkedList<GnuPlotProcess>();
+    private final List<GnuPlotProcess> processes = new ArrayList<GnuPlotProcess>();
+    private int startedCount;
+    private boolean closed;
+
+    private List<String> command = Arrays.asList("gnuplot");
+    private String terminal = "postscript eps monochrom \"Times-Roman\" 22";
+    private String extension = "eps";
+    private GnuPlotContext context = new GnuPlotContext();
+
+    /**
+     * Creates a pool of gnuplot processes, which are started when needed.
+     * @param outputFolder the folder of the rendered diagrams, which is created if it does not exist
+     * @param maxProcesses the maximum number of processes
+     */
+    public GnuPlotPool(File outputFolder, int maxProcesses) {
+        this.outputFolder = Preconditions.checkNotNull(outputFolder, "output folder");
+        Preconditions.checkArgument(maxProcesses > 0, "Non-positive processes: %s", maxProcesses);
+        this.maxProcesses = maxProcesses;
+    }
+
+    /**
+     * Sets the command that starts a gnuplot process (by default, <tt>gnuplot</tt>), which reads
+     * commands from its standard input.
+     */
+    public synchronized GnuPlotPool withCommand(String... command) {
+        Preconditions.checkArgument(command.length > 0, "Empty command");
+        this.command = Collections.unmodifiableList(new ArrayList<String>(Arrays.asList(command)));
+        return this;
+    }
+
+    /**
+     * Sets the gnuplot terminal of the diagrams, and the extension of their files (by default,
+     * <tt>postscript eps monochrom "Times-Roman" 22</tt>, and <tt>eps</tt>).
+     */
+    public synchronized GnuPlotPool withTerminal(String terminal, String extension) {
+        this.terminal = Preconditions.checkNotNull(terminal, "terminal");
+        this.extension = Preconditions.checkNotNull(extension, "extension");
+        return this;
+    }
+
+    /**
+     * Sets a custom context that customizes the gnuplot commands with extra settings and styles.
+     * The context must not be modified while rendering.
+     */
+    public synchronized GnuPlotPool withContext(GnuPlotContext context) {
+        this.context = context == null ? new GnuPlotContext() : context;
+        return this;
+    }
+
+    /**
+     * Returns the file of a diagram of the specified name.
+     */
+    public synchronized File getFile(String name) {
+        return new File(outputFolder, name + "." + extension);
+    }
+
+    /**
+     * Returns the number of processes that this pool has started so far (including the ones that
+     * were discarded after failures).
+     */
+    public synchronized int getStartedProcessCount() {
+        return startedCount;
+    }
+
+    public void prepare(Diagram diagram, String name) {
+        GnuPlotWriter.checkDiagram(diagram, name);
+    }
+
+    /**
+     * Renders a diagram by an idle process of this pool, waiting for one if all are busy.
+     * @throws IOException if the process cannot be started, or fails to render the diagram
+     */
+    public void render(Diagram diagram, String name) throws IOException {
+        GnuPlotWriter.checkDiagram(diagram, name);
+        if (!outputFolder.mkdirs() && !outputFolder.isDirectory()) {
+            throw new IOException("Folder: '" + outputFolder + "' could not be created");
+        }
+        final String terminal;
+        final GnuPlotContext context;
+        synchronized (this) {
+            terminal = this.terminal;
+            context = this.context;
+        }
+        File file = getFile(name);
+        GnuPlotProcess process = acquire();
+        boolean ok = false;
+        try {
+            process.plot(diagram, file, terminal, context);
+            ok = true;
+        } finally {
+            release(process, ok);
+        }
+    }
+
+    private synchronized GnuPlotProcess acquire() throws IOException {
+        while (true) {
+            Preconditions.checkState(!closed, "Pool is closed");
+            if (!idle.isEmpty()) {
+                return idle.removeFirst();
+            }
+            if (processes.size() < maxProcesses) {
+                GnuPlotProcess process = new GnuPlotProcess(new ProcessBuilder(command).redirectErrorStream(true).start());
+                processes.add(process);
+                startedCount++;
+                return process;
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a gnuplot process");
+            }
+        }
+    }
+
+    private synchronized void release(GnuPlotProcess process, boolean ok) {
+        if (ok && !closed) {
+            idle.addLast(process);
+        } else {
+            processes.remove(process);
+            process.destroy();
+        }
+        notifyAll();
+    }
+
+    /**
+     * Stops the processes of this pool. Diagrams that are being rendered are completed first, but
+     * their processes are stopped afterwards.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (GnuPlotProcess process : idle) {
+            processes.remove(process);
+            process.quit();
+        }
+        idle.clear();
+        notifyAll();
+    }
+
+    @Override
+    public String toString() {
+        return "GnuPlotPool[" + outputFolder + ", " + maxProcesses + " processes]";
+    }
+
+    private static class GnuPlotProcess {
+        private final Process process;
+        private final PrintWriter in;
+        private final BufferedReader out;
+
+        GnuPlotProcess(Process process) {
+            this.process = process;
+            this.in = new PrintWriter(new BufferedWriter(new OutputStreamWriter(process.getOutputStream())));
+            this.out = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        }
+
+        void plot(Diagram diagram, File file, String terminal, GnuPlotContext context) throws IOException {
+            in.println("reset");
+            in.println("set terminal " + terminal);
+            in.println("set output '" + file.getAbsolutePath() + "'");
+            GnuPlotWriter.printLabels(in, diagram);
+            context.doCreateContext(in);
+            printPlot(diagram, context);
+            context.doDestroyContext(in);
+            //closes the file of the diagram
+            in.println("set output");
+            in.println("print \"" + MARKER + "\"");
+            in.flush();
+            if (in.checkError()) {
+                throw new IOException("gnuplot exited before rendering: " + file + readAll());
+            }
+
+            List<String> errors = new ArrayList<String>();
+            for (String line = out.readLine(); ; line = out.readLine()) {
+                if (line == null) {
+                    errors.add("(gnuplot exited)");
+                    break;
+                } else if (line.equals(MARKER)) {
+                    break;
+                } else if (line.trim().length() > 0 && !line.trim().startsWith("warning:")) {
+                    errors.add(line);
+                }
+            }
+            if (!errors.isEmpty()) {
+                throw new IOException("gnuplot failed to render: " + file + ", output: " + errors);
+            }
+        }
+
+        /**
+         * Prints the plot command, with '-' (inline) data sets for each column of the diagram,
+         * followed by the data sets, each terminated by "e". With error bars or bands, each column
+         * has a data set of its values, and one of its intervals.
+         */
+        private void printPlot(Diagram diagram, GnuPlotContext context) {
+            final boolean is2D = diagram.getVariableCount() == 2;
+            final StatisticsDiagram intervals = GnuPlotWriter.intervalsOf(diagram, context);
+            List<Object> columns = is2D ? diagram.getDomain(1) : Arrays.<Object>asList(diagram.getLabelOf(0));
+            in.print("plot ");
+            for (int col = 0; col < columns.size(); col++) {
+                if (col > 0) {
+                    in.print(", ");
+                }
+                final String style = context.getStyle(col + 1).toGnuPlotCommand();
+                if (intervals == null) {
+                    in.print("'-' using 1:2 title '" + columns.get(col) + "' " + style);
+                } else if (context.hasBands()) {
+                    in.print("'-' using 1:2:3 notitle with filledcurves fs solid 0.25, ");
+                    in.print("'-' using 1:2 title '" + columns.get(col) + "' " + style);
+                } else {
+                    in.print("'-' using 1:2 notitle " + style + ", ");
+                    in.print("'-' using 1:2:3:4 title '" + columns.get(col) + "' with yerrorbars");
+                }
+            }
+            in.println();
+            final List<Object> rows = diagram.getDomain(0);
+            int[] index = new int[2];
+            for (index[1] = 0; index[1] < columns.size(); index[1]++) {
+                if (intervals != null && context.hasBands()) {
+                    printData(diagram, rows, index, context, false, true);
+                }
+                printData(diagram, rows, index, context, true, false);
+                if (intervals != null && !context.hasBands()) {
+                    printData(diagram, rows, index, context, true, true);
+                }
+            }
+        }
+
+        /**
+         * Prints an inline data set of a column, of its values and/or the bounds of its intervals.
+         */
+        private void printData(Diagram diagram, List<Object> rows, int[] index, GnuPlotContext context,
+                boolean values, boolean bounds) {
+            for (index[0] = 0; index[0] < rows.size(); index[0]++) {
+                double value = diagram.getValueAt(index);
+                if (Double.isNaN(value)) {
+                    continue;
+                }
+                in.print(rows.get(index[0]));
+                if (values) {
+                    in.print('\t');
+                    in.print(value);
+                }
+                if (bounds) {
+                    StatisticsDiagram intervals = (StatisticsDiagram) diagram;
+                    in.print('\t');
+                    in.print(context.getLowerBound().lowerBoundAt(intervals, index));
+                    in.print('\t');
+                    in.print(context.getUpperBound().upperBoundAt(intervals, index));
+                }
+                in.println();
+            }
+            in.println("e");
+        }
+
+        private String readAll() {
+            StringBuilder sb = new StringBuilder();
+            try {
+                for (String line = out.readLine(); line != null; line = out.readLine()) {
+                    sb.append('\n').append(line);
+                }
+            } catch (IOException ignored) {
+            }
+            return sb.toString();
+        }
+
+        void quit() {
+            in.println("quit");
+            in.close();
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        void destroy() {
+            process.destroy();
+            in.close();
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -5,9 +5,18 @@ import com.google.common.base.Preconditions;
 import gr.forth.ics.jbenchy.Record;
 import gr.forth.ics.jbenchy.StringUtils;
 import gr.forth.ics.jbenchy.diagram.Diagram;
+import gr.forth.ics.jbenchy.diagram.DiagramRenderer;
+import gr.forth.ics.jbenchy.diagram.Facets;
+import gr.forth.ics.jbenchy.diagram.RenderBatch;
+import gr.forth.ics.jbenchy.diagram.Statistic;
+import gr.forth.ics.jbenchy.diagram.StatisticsDiagram;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -17,10 +26,13 @@ import java.util.List;
 /**
  * Utility class that prints files which command gnuplot to generate 1D or 2D diagrams (diagrams
  * which depict the values of a measurement with regards to one or two variables that
- * affect it).
+ * affect it). Diagrams of more variables can be written as a grid of such diagrams, see
+ * {@link #writeFacets(Facets, String, GnuPlotContext)}.
  * @author andreou
  */
 public class GnuPlotWriter {
+    private static final int BUFFER_SIZE = 1 << 16;
+
     private final File rootFolder;
     private final String outputFolderName;
     private final Collection<File> plotFiles = Collections.synchronizedList(new ArrayList<File>());
@@ -59,7 +71,8 @@ public class GnuPlotWriter {
     /**
      * Writes a diagram with a specified name, and a custom gnuplot context. The diagram
      * must have one or two variables (i.e., <tt>diagram.getVariablesCount()</tt> should
-     * return 1 or 2). Diagrams with more variables are not supported.
+     * return 1 or 2). Diagrams with more variables can be written as a grid of
+     * {@link Facets facets} instead.
      * 
      * @param diagram the diagram to render with gnuplot commands
      * @param diagramName the name of the diagram-specific artifacts
@@ -69,30 +82,150 @@ public class GnuPlotWriter {
      * @throws java.io.IOException in case a IO failure occurs
      */
     public GnuPlotFiles writeDiagram(Diagram diagram, String diagramName, GnuPlotContext context) throws IOException {
+        checkDiagram(diagram, diagramName);
+        if (context == null) {
+            context = new GnuPlotContext();
+        }
+        GnuPlotFiles files = writeFiles(diagram, diagramName, context);
+        plotFiles.add(files.commandFile);
+        return files;
+    }
+
+    static void checkDiagram(Diagram diagram, String diagramName) {
         Preconditions.checkNotNull(diagram, "diagram");
         StringUtils.checkHasText(diagramName, "Empty diagram name");
         Preconditions.checkArgument(diagram.getVariableCount() == 1 ||
                 diagram.getVariableCount() == 2,
-                "Only 1D or 2D diagrams can be handled by gnuplot");
+                "Only 1D or 2D diagrams can be handled by gnuplot; see Facets for diagrams of more variables");
+    }
 
-        if (context == null) {
-            context = new GnuPlotContext();
-        }
+    /**
+     * Returns a renderer that writes diagrams as {@link #writeDiagram(Diagram, String, GnuPlotContext)}
+     * does, for rendering them in a {@link RenderBatch batch}. The command files of the diagrams
+     * are listed in the {@link #createMasterPlotFile(String) master file} in the order in which
+     * they were added to the batch, regardless of the order in which they are written.
+     * @param context a custom context that can customize the gnuplot commands with
+     * extra settings and styles, or <tt>null</tt>; it must not be modified while rendering
+     */
+    public DiagramRenderer newRenderer(GnuPlotContext context) {
+        final GnuPlotContext rendererContext = context == null ? new GnuPlotContext() : context;
+        return new DiagramRenderer() {
+            public void prepare(Diagram diagram, String name) {
+                checkDiagram(diagram, name);
+                plotFiles.add(new File(rootFolder, name + ".plt"));
+            }
 
+            public void render(Diagram diagram, String name) throws IOException {
+                writeFiles(diagram, name, rendererContext);
+            }
+
+            @Override
+            public String toString() {
+                return "GnuPlotWriter[" + rootFolder + "]";
+            }
+        };
+    }
+
+    private GnuPlotFiles writeFiles(Diagram diagram, String diagramName, GnuPlotContext context) throws IOException {
+        GnuPlotFiles files = filesOf(diagramName);
         createFolder(rootFolder);
-        File benchDataFolder = rootFolder;
-        File plotFolder = rootFolder;
-        File outputFolder =
-                createFolder(new File(rootFolder, outputFolderName));
-
-        File dataFile = new File(benchDataFolder, diagramName + ".dat");
-        File commandFile = new File(plotFolder, diagramName + ".plt");
-        File diagramFile = new File(outputFolder, diagramName + ".eps");
-        printDataFile(dataFile, diagram);
+        createFolder(files.targetPostscriptFile.getParentFile());
+        StatisticsDiagram intervals = intervalsOf(diagram, context);
+        if (intervals != null) {
+            printIntervalDataFile(files.dataFile, intervals, context.getLowerBound(), context.getUpperBound());
+        } else {
+            printDataFile(files.dataFile, diagram);
+        }
         printCommandFile(
-                commandFile, diagramFile, dataFile,
+                files.commandFile, files.targetPostscriptFile, files.dataFile,
                 diagram, context);
-        return new GnuPlotFiles(commandFile, dataFile, diagramFile);
+        return files;
+    }
+
+    /**
+     * Writes the facets of a diagram: the files of each facet, named after the diagram name and
+     * the row and column of the facet in the grid (e.g. <tt>name-0-1.dat</tt>), and a command file
+     * (<tt>name.plt</tt>) that plots all facets in a single postscript file (<tt>name.eps</tt>),
+     * laid out in the grid of the facets. The facets are written in parallel, in a
+     * {@link RenderBatch batch}, so the context must not be modified meanwhile.
+     *
+     * @param facets the facets to render with gnuplot commands
+     * @param diagramName the name of the diagram-specific artifacts
+     * @param context a custom context that can customize the gnuplot commands of each facet with
+     * extra settings and styles, or <tt>null</tt>
+     * @return the {@link GnuPlotFiles files} of the facets, in the order of the facets, followed by
+     * the files of the grid, whose data file is <tt>null</tt>
+     * @throws java.io.IOException in case a IO failure occurs
+     */
+    public List<GnuPlotFiles> writeFacets(Facets facets, String diagramName, GnuPlotContext context) throws IOException {
+        Preconditions.checkNotNull(facets, "facets");
+        StringUtils.checkHasText(diagramName, "Empty diagram name");
+        final GnuPlotContext facetContext = context == null ? new GnuPlotContext() : context;
+        final List<Facets.Facet> cells = facets.getFacets();
+        List<GnuPlotFiles> files = new ArrayList<GnuPlotFiles>(cells.size() + 1);
+        RenderBatch batch = new RenderBatch();
+        DiagramRenderer renderer = newRenderer(facetContext);
+        for (Facets.Facet facet : cells) {
+            final String facetName = diagramName + "-" + facet.getRow() + "-" + facet.getColumn();
+            batch.add(facet.getDiagram(), facetName, renderer);
+            files.add(filesOf(facetName));
+        }
+        batch.render();
+
+        GnuPlotFiles grid = filesOf(diagramName);
+        File commandFile = grid.commandFile;
+        File diagramFile = grid.targetPostscriptFile;
+        createFolder(rootFolder);
+        createFolder(diagramFile.getParentFile());
+        printGridCommandFile(commandFile, diagramFile, facets, files, facetContext);
+        plotFiles.add(commandFile);
+        files.add(new GnuPlotFiles(commandFile, null, diagramFile));
+        return files;
+    }
+
+    private GnuPlotFiles filesOf(String diagramName) {
+        return new GnuPlotFiles(new File(rootFolder, diagramName + ".plt"),
+                new File(rootFolder, diagramName + ".dat"),
+                new File(new File(rootFolder, outputFolderName), diagramName + ".eps"));
+    }
+
+    /**
+     * Opens a file for writing text through a large buffer, over the channel of the file.
+     */
+    private static PrintWriter newWriter(File file) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        return new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+                Channels.newOutputStream(out.getChannel())), BUFFER_SIZE));
+    }
+
+    /**
+     * Closes a writer, throwing an IOException if writing to it failed (which PrintWriter hides).
+     */
+    private static void close(PrintWriter out, File file) throws IOException {
+        out.close();
+        if (out.checkError()) {
+            throw new IOException("Could not write: " + file);
+        }
+    }
+
+    private void printGridCommandFile(File commandFile, File outputFile, Facets facets,
+            List<GnuPlotFiles> facetFiles, GnuPlotContext context) throws IOException {
+        final int rows = Math.max(1, facets.getRows());
+        final int columns = Math.max(1, facets.getColumns());
+        PrintWriter out = newWriter(commandFile);
+        out.println("set output '" + getRelativePath(outputFile) + "'");
+        out.println("set terminal postscript eps monochrom \"Times-Roman\" 22 size " +
+                (5 * columns) + "in," + (3.5 * rows) + "in");
+        out.println("set multiplot");
+        out.println("set size " + (1.0 / columns) + "," + (1.0 / rows));
+        for (int i = 0; i < facetFiles.size(); i++) {
+            Facets.Facet facet = facets.getFacets().get(i);
+            out.println("set origin " + ((double) facet.getColumn() / columns) + "," +
+                    ((double) (rows - 1 - facet.getRow()) / rows));
+            printPlot(out, facetFiles.get(i).dataFile, facet.getDiagram(), context);
+        }
+        out.println("unset multiplot");
+        close(out, commandFile);
     }
 
     private File createFolder(File folder) throws IOException {
@@ -109,7 +242,7 @@ public class GnuPlotWriter {
      * @param diagram the diagram of which the data to write
      */
     protected void printDataFile(File file, Diagram diagram) throws IOException {
-        PrintWriter out = new PrintWriter(file);
+        PrintWriter out = newWriter(file);
         printHeaderComments(out, diagram);
         final int domainSizeOfSecondVariable = diagram.getVariableCount() == 2 ?
             diagram.getDomainSize(1) : 1;
@@ -127,7 +260,52 @@ public class GnuPlotWriter {
             out.println();
             index[0]++;
         }
-        out.close();
+        close(out, file);
+    }
+
+    /**
+     * Returns the diagram as a statistics diagram, if the context plots error bars or bands.
+     */
+    static StatisticsDiagram intervalsOf(Diagram diagram, GnuPlotContext context) {
+        if (context.getLowerBound() == null) {
+            return null;
+        }
+        Preconditions.checkArgument(diagram instanceof StatisticsDiagram &&
+                !((StatisticsDiagram) diagram).getStatistics().isEmpty(),
+                "Error bars and bands can only be plotted for statistics diagrams");
+        return (StatisticsDiagram) diagram;
+    }
+
+    /**
+     * Writes into a file the data of a statistics diagram, as {@link #printDataFile(File, Diagram)}
+     * does, except that each value is followed by the lower and the upper bound of its interval.
+     * @param file the output file to create
+     * @param diagram the diagram of which the data to write
+     * @param lower the statistic of the lower bound
+     * @param upper the statistic of the upper bound
+     */
+    protected void printIntervalDataFile(File file, StatisticsDiagram diagram,
+            Statistic lower, Statistic upper) throws IOException {
+        PrintWriter out = newWriter(file);
+        printHeaderComments(out, diagram);
+        out.println("# Each value is followed by its lower bound [" + lower + "] and its upper bound [" + upper + "]");
+        final int domainSizeOfSecondVariable = diagram.getVariableCount() == 2 ?
+            diagram.getDomainSize(1) : 1;
+        int[] index = new int[2];
+        for (Object row : diagram.getDomain(0)) {
+            out.print(row);
+            for (index[1] = 0; index[1] < domainSizeOfSecondVariable; index[1]++) {
+                out.print("\t");
+                out.print(diagram.getValueAt(index));
+                out.print("\t");
+                out.print(lower.lowerBoundAt(diagram, index));
+                out.print("\t");
+                out.print(upper.upperBoundAt(diagram, index));
+            }
+            out.println();
+            index[0]++;
+        }
+        close(out, file);
     }
 
     /**
@@ -140,19 +318,33 @@ public class GnuPlotWriter {
      */
     protected void printCommandFile(File commandFile, File outputFile, File dataFile,
             Diagram diagram, GnuPlotContext context) throws IOException {
-        PrintWriter out = new PrintWriter(commandFile);
+        PrintWriter out = newWriter(commandFile);
         out.println("set output '" + getRelativePath(outputFile) + "'");
         out.println("set terminal postscript eps monochrom \"Times-Roman\" 22");
-        out.println("set xlabel '" + diagram.getLabelOf(0) + "'");
-        out.println("set ylabel '" + diagram.getRangeLabel() + "'");
-        out.println("set title '" + diagram.getTitle() + "'");
+        printPlot(out, dataFile, diagram, context);
+        close(out, commandFile);
+    }
+
+    private void printPlot(PrintWriter out, File dataFile, Diagram diagram, GnuPlotContext context) throws IOException {
+        printLabels(out, diagram);
         
         context.doCreateContext(out);
 
-        int col = 2;
         out.print("plot ");
         List<Object> columns = diagram.getVariableCount() == 2 ?
             diagram.getDomain(1) : Arrays.<Object>asList(diagram.getLabelOf(0));
+        if (intervalsOf(diagram, context) != null) {
+            printIntervalPlot(out, dataFile, columns, context);
+        } else {
+            printValuePlot(out, dataFile, columns, context);
+        }
+        out.println(";\n");
+        
+        context.doDestroyContext(out);
+    }
+
+    private void printValuePlot(PrintWriter out, File dataFile, List<Object> columns, GnuPlotContext context) throws IOException {
+        int col = 2;
         for (Object column : columns) {
             if (col > 2) {
                 out.print(", ");
@@ -162,12 +354,37 @@ public class GnuPlotWriter {
                     "' " + context.getStyle(col - 1).toGnuPlotCommand());
             col++;
         }
-        out.println(";\n");
-        
-        context.doDestroyContext(out);
-        
-        out.close();
-        plotFiles.add(commandFile);
+    }
+
+    /**
+     * Plots each column of values, followed by its lower and upper bounds, as a line with
+     * error bars, or as a line over a filled band.
+     */
+    private void printIntervalPlot(PrintWriter out, File dataFile, List<Object> columns,
+            GnuPlotContext context) throws IOException {
+        final String data = "'" + getRelativePath(dataFile) + "'";
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                out.print(", ");
+            }
+            final int col = 2 + 3 * i;
+            final String style = context.getStyle(i + 1).toGnuPlotCommand();
+            if (context.hasBands()) {
+                out.print(data + " using 1:" + (col + 1) + ":" + (col + 2) +
+                        " notitle with filledcurves fs solid 0.25, ");
+                out.print(data + " using 1:" + col + " title '" + columns.get(i) + "' " + style);
+            } else {
+                out.print(data + " using 1:" + col + " notitle " + style + ", ");
+                out.print(data + " using 1:" + col + ":" + (col + 1) + ":" + (col + 2) +
+                        " title '" + columns.get(i) + "' with yerrorbars");
+            }
+        }
+    }
+
+    static void printLabels(PrintWriter out, Diagram diagram) {
+        out.println("set xlabel '" + diagram.getLabelOf(0) + "'");
+        out.println("set ylabel '" + diagram.getRangeLabel() + "'");
+        out.println("set title '" + diagram.getTitle() + "'");
     }
 
     private String getRelativePath(File file) throws IOException {
@@ -186,13 +403,15 @@ public class GnuPlotWriter {
      */
     public File createMasterPlotFile(String masterFilename) throws IOException {
         File masterFile = new File(rootFolder, masterFilename);
-        PrintWriter out = new PrintWriter(masterFile);
-        for (File plot : plotFiles) {
-            out.print("load '");
-            out.print(getRelativePath(plot));
-            out.println("'");
+        PrintWriter out = newWriter(masterFile);
+        synchronized (plotFiles) {
+            for (File plot : plotFiles) {
+                out.print("load '");
+                out.print(getRelativePath(plot));
+                out.println("'");
+            }
         }
-        out.close();
+        close(out, masterFile);
         return masterFile;
     }
 
@@ -8,6 +8,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
 import javax.imageio.ImageIO;
 import org.jfree.chart.ChartPanel;
 import org.jfree.chart.JFreeChart;
@@ -17,6 +18,8 @@ import org.jfree.chart.JFreeChart;
  * @author andreou
  */
 public class Chart {
+    private static final int BUFFER_SIZE = 1 << 16;
+
     private final JFreeChart chart;
         
     protected Chart(JFreeChart chart) {
@@ -64,10 +67,19 @@ public class Chart {
      * @param height the height of the image written to file
      * @param format the format with which to encode the image (e.g., "jpeg")
      * @param file the file on which to write the image 
+     * @throws IllegalArgumentException if there is no image writer for the format
      */
     public void write(int width, int height, String format, File file) throws IOException {
-        ImageIO.write(newImage(width, height), format, new BufferedOutputStream(
-                new FileOutputStream(file)));
+        BufferedImage image = newImage(width, height);
+        OutputStream out = new BufferedOutputStream(
+                Channels.newOutputStream(new FileOutputStream(file).getChannel()), BUFFER_SIZE);
+        try {
+            if (!ImageIO.write(image, format, out)) {
+                throw new IllegalArgumentException("No image writer for format: " + format);
+            }
+        } finally {
+            out.close();
+        }
     }
 
     /**
@@ -1,7 +1,11 @@
 package gr.forth.ics.jbenchy.diagram.jfreechart;
 
+import com.google.common.base.Preconditions;
 import gr.forth.ics.jbenchy.diagram.Diagram;
+import gr.forth.ics.jbenchy.diagram.StatisticsDiagram;
+import org.jfree.chart.JFreeChart;
 import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.chart.renderer.category.StatisticalLineAndShapeRenderer;
 import org.jfree.data.category.CategoryDataset;
 
 /**
@@ -40,6 +44,22 @@ public class ChartFactory {
                 Datasets.newCategoryDataset(diagram), PlotOrientation.VERTICAL, true, false, true));
     }
 
+    /**
+     * Creates a chart with lines of the means, and error bars of the standard deviations. The
+     * diagram must be a {@link StatisticsDiagram} with the {@link gr.forth.ics.jbenchy.diagram.Statistic#MEAN}
+     * and {@link gr.forth.ics.jbenchy.diagram.Statistic#STDDEV} statistics.
+     */
+    public Chart newErrorBarChart() {
+        Preconditions.checkArgument(diagram instanceof StatisticsDiagram,
+                "Error bars can only be drawn for statistics diagrams");
+        JFreeChart chart = org.jfree.chart.ChartFactory.createLineChart(
+                diagram.getTitle(), getLabelOfX(), getLabelOfY(),
+                Datasets.newStatisticalCategoryDataset((StatisticsDiagram) diagram),
+                PlotOrientation.VERTICAL, true, false, true);
+        chart.getCategoryPlot().setRenderer(new StatisticalLineAndShapeRenderer(true, true));
+        return new Chart(chart);
+    }
+
     /**
      * Creates a chart with points (scatter plot).
      */
@@ -0,0 +1,91 @@
+package gr.forth.ics.jbenchy.diagram.jfreechart;
+
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.diagram.Diagram;
+import gr.forth.ics.jbenchy.diagram.DiagramRenderer;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Renders diagrams as images of charts, in a folder, for rendering them in a
+ * {@link gr.forth.ics.jbenchy.diagram.RenderBatch batch}. The image of a diagram is named after
+ * the name of the diagram and the format (e.g. <tt>name.png</tt>).
+ * <pre>
+ * DiagramRenderer renderer = ChartRenderer.lines(folder).withSize(800, 600).withFormat("jpeg");
+ * </pre>
+ *
+ * @author andreou
+ */
+public class ChartRenderer implements DiagramRenderer {
+    private final File folder;
+    private final boolean bars;
+    private int width = 800;
+    private int height = 600;
+    private String format = "png";
+
+    private ChartRenderer(File folder, boolean bars) {
+        this.folder = Preconditions.checkNotNull(folder, "folder");
+        this.bars = bars;
+    }
+
+    /**
+     * Creates a renderer of {@link ChartFactory#newLineChart() line charts}, as 800x600 PNG images.
+     * @param folder the folder of the images, which is created if it does not exist
+     */
+    public static ChartRenderer lines(File folder) {
+        return new ChartRenderer(folder, false);
+    }
+
+    /**
+     * Creates a renderer of {@link ChartFactory#newBarChart() bar charts}, as 800x600 PNG images.
+     * @param folder the folder of the images, which is created if it does not exist
+     */
+    public static ChartRenderer bars(File folder) {
+        return new ChartRenderer(folder, true);
+    }
+
+    /**
+     * Sets the size of the images.
+     */
+    public ChartRenderer withSize(int width, int height) {
+        Preconditions.checkArgument(width > 0 && height > 0, "Invalid size: %sx%s", width, height);
+        this.width = width;
+        this.height = height;
+        return this;
+    }
+
+    /**
+     * Sets the format of the images (e.g., "jpeg"), as in {@link Chart#write(int, int, String, File)}.
+     */
+    public ChartRenderer withFormat(String format) {
+        this.format = Preconditions.checkNotNull(format, "format");
+        return this;
+    }
+
+    /**
+     * Returns the image file of a diagram of the specified name.
+     */
+    public File getFile(String name) {
+        return new File(folder, name + "." + format);
+    }
+
+    public void prepare(Diagram diagram, String name) {
+        Preconditions.checkArgument(diagram.getVariableCount() == 1 || diagram.getVariableCount() == 2,
+                "Only 1D and 2D diagrams are supported; see Facets for diagrams of more variables");
+    }
+
+    public void render(Diagram diagram, String name) throws IOException {
+        if (!folder.mkdirs() && !folder.isDirectory()) {
+            throw new IOException("Folder: '" + folder + "' could not be created");
+        }
+        ChartFactory factory = new ChartFactory(diagram);
+        Chart chart = bars ? factory.newBarChart() : factory.newLineChart();
+        chart.write(width, height, format, getFile(name));
+    }
+
+    @Override
+    public String toString() {
+        return "ChartRenderer[" + folder + ", " + (bars ? "bars" : "lines") + ", " +
+                width + "x" + height + " " + format + "]";
+    }
+}
@@ -3,8 +3,14 @@ package gr.forth.ics.jbenchy.diagram.jfreechart;
 import com.google.common.base.Preconditions;
 import gr.forth.ics.jbenchy.Record;
 import gr.forth.ics.jbenchy.diagram.Diagram;
+import gr.forth.ics.jbenchy.diagram.Statistic;
+import gr.forth.ics.jbenchy.diagram.StatisticsDiagram;
 import org.jfree.data.category.CategoryDataset;
 import org.jfree.data.category.DefaultCategoryDataset;
+import org.jfree.data.category.DefaultIntervalCategoryDataset;
+import org.jfree.data.category.IntervalCategoryDataset;
+import org.jfree.data.statistics.DefaultStatisticalCategoryDataset;
+import org.jfree.data.statistics.StatisticalCategoryDataset;
 
 /**
  * Utility class that adapts {@link Diagram diagrams} to JFreeChart datasets.
@@ -15,12 +21,13 @@ public class Datasets {
     }
 
     /**
-     * Creates a JFreeChart's {@link CategoryDataset} from a {@link Diagram}.
+     * Creates a JFreeChart's {@link CategoryDataset} from a {@link Diagram} of one or two variables
+     * (such as a {@link gr.forth.ics.jbenchy.diagram.Facets.Facet#getDiagram() facet} of a diagram of more variables).
      */
     public static CategoryDataset newCategoryDataset(Diagram diagram) {
         Preconditions.checkArgument(diagram.getVariableCount() == 1 ||
                 diagram.getVariableCount() == 2,
-                "Only 1D and 2D diagrams are supported");
+                "Only 1D and 2D diagrams are supported; see Facets for diagrams of more variables");
         DefaultCategoryDataset dataset = new DefaultCategoryDataset();
         final boolean is2D = diagram.getVariableCount() == 2;
 
@@ -59,4 +66,88 @@ public class Datasets {
         }
         return dataset;
     }
+
+    /**
+     * Creates a JFreeChart's {@link StatisticalCategoryDataset} (of means and standard deviations)
+     * from a {@link StatisticsDiagram} of one or two variables, with the {@link Statistic#MEAN}
+     * and {@link Statistic#STDDEV} statistics. Cells without samples are omitted.
+     */
+    public static StatisticalCategoryDataset newStatisticalCategoryDataset(StatisticsDiagram diagram) {
+        checkStatistics(diagram, Statistic.MEAN, Statistic.STDDEV);
+        DefaultStatisticalCategoryDataset dataset = new DefaultStatisticalCategoryDataset();
+        final boolean is2D = diagram.getVariableCount() == 2;
+        int[] index = new int[2];
+        for (index[0] = 0; index[0] < diagram.getDomainSize(0); index[0]++) {
+            for (index[1] = 0; index[1] < (is2D ? diagram.getDomainSize(1) : 1); index[1]++) {
+                double mean = diagram.getStatisticAt(Statistic.MEAN, index);
+                if (Double.isNaN(mean)) {
+                    continue;
+                }
+                double deviation = diagram.getStatisticAt(Statistic.STDDEV, index);
+                dataset.add(mean, Double.isNaN(deviation) ? 0 : deviation, seriesKey(diagram, index), categoryKey(diagram, index));
+            }
+        }
+        return dataset;
+    }
+
+    /**
+     * Creates a JFreeChart's {@link IntervalCategoryDataset} from a {@link StatisticsDiagram} of one
+     * or two variables, with an interval per cell between a lower and an upper bound (see
+     * {@link Statistic#lowerBoundAt(StatisticsDiagram, int[])}), for example from
+     * {@link Statistic#MIN} to {@link Statistic#MAX}. Cells without samples have no interval.
+     * @param diagram the diagram
+     * @param lower the statistic of the lower bound
+     * @param upper the statistic of the upper bound
+     */
+    public static IntervalCategoryDataset newIntervalCategoryDataset(StatisticsDiagram diagram,
+            Statistic lower, Statistic upper) {
+        checkStatistics(diagram);
+        Preconditions.checkNotNull(lower, "lower");
+        Preconditions.checkNotNull(upper, "upper");
+        final boolean is2D = diagram.getVariableCount() == 2;
+        final int series = is2D ? diagram.getDomainSize(1) : 1;
+        final int categories = diagram.getDomainSize(0);
+        Comparable<?>[] seriesKeys = new Comparable<?>[series];
+        Comparable<?>[] categoryKeys = new Comparable<?>[categories];
+        Number[][] starts = new Number[series][categories];
+        Number[][] ends = new Number[series][categories];
+        int[] index = new int[2];
+        for (index[1] = 0; index[1] < series; index[1]++) {
+            seriesKeys[index[1]] = seriesKey(diagram, index);
+            for (index[0] = 0; index[0] < categories; index[0]++) {
+                categoryKeys[index[0]] = categoryKey(diagram, index);
+                double start = lower.lowerBoundAt(diagram, index);
+                double end = upper.upperBoundAt(diagram, index);
+                if (!Double.isNaN(start) && !Double.isNaN(end)) {
+                    starts[index[1]][index[0]] = start;
+                    ends[index[1]][index[0]] = end;
+                }
+            }
+        }
+        return new DefaultIntervalCategoryDataset(seriesKeys, categoryKeys, starts, ends);
+    }
+
+    private static void checkStatistics(StatisticsDiagram diagram, Statistic... statistics) {
+        Preconditions.checkArgument(diagram.getVariableCount() == 1 ||
+                diagram.getVariableCount() == 2,
+                "Only 1D and 2D diagrams are supported; see Facets for diagrams of more variables");
+        for (Statistic statistic : statistics) {
+            Preconditions.checkArgument(diagram.getStatistics().contains(statistic),
+                    "Statistic %s is not one of: %s", statistic, diagram.getStatistics());
+        }
+    }
+
+    private static Comparable<?> seriesKey(Diagram diagram, int[] index) {
+        Object key = diagram.getVariableCount() == 2 ? diagram.getDomain(1).get(index[1]) : diagram.getLabelOf(0);
+        Preconditions.checkArgument(key instanceof Comparable, "Domain value: '%s' of [column:%s] is not comparable",
+                key, index[1]);
+        return (Comparable<?>) key;
+    }
+
+    private static Comparable<?> categoryKey(Diagram diagram, int[] index) {
+        Object key = diagram.getDomain(0).get(index[0]);
+        Preconditions.checkArgument(key instanceof Comparable, "Domain value: '%s' of [row:%s] is not comparable",
+                key, index[0]);
+        return (Comparable<?>) key;
+    }
 }
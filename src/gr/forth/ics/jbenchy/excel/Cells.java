@@ -0,0 +1,56 @@
+package gr.forth.ics.jbenchy.excel;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.Timestamp;
+
+/**
+ * The kinds of spreadsheet cells that the {@link gr.forth.ics.jbenchy.DataType data types} of
+ * variables map to, and the escaping of their text.
+ *
+ * @author andreou
+ */
+class Cells {
+    static final int INTEGRAL = 0;
+    static final int DOUBLE = 1;
+    static final int FLOAT = 2;
+    static final int NUMBER = 3;
+    static final int DATE = 4;
+    static final int STRING = 5;
+
+    private Cells() { }
+
+    /**
+     * Returns the kind of cells of values of the specified (mapped) type.
+     */
+    static int kindOf(Class<?> c) {
+        if (c == Integer.class || c == Long.class || c == Short.class || c == Byte.class) {
+            return INTEGRAL;
+        } else if (c == Double.class) {
+            return DOUBLE;
+        } else if (c == Float.class) {
+            return FLOAT;
+        } else if (c == Timestamp.class) {
+            return DATE;
+        } else if (Number.class.isAssignableFrom(c)) {
+            return NUMBER;
+        }
+        return STRING;
+    }
+
+    /**
+     * Writes a string as XML character data.
+     */
+    static void escape(Writer out, String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<': out.write("&lt;"); break;
+                case '>': out.write("&gt;"); break;
+                case '&': out.write("&amp;"); break;
+                case '"': out.write("&quot;"); break;
+                default: out.write(c);
+            }
+        }
+    }
+}
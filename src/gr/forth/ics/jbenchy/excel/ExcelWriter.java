@@ -1,69 +1,314 @@
 package gr.forth.ics.jbenchy.excel;
 
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.DataType;
+import gr.forth.ics.jbenchy.DataTypes;
 import gr.forth.ics.jbenchy.Record;
 import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.Schema;
+import gr.forth.ics.jbenchy.SchemaRecord;
 import java.io.*;
+import java.nio.channels.Channels;
+import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 /**
  * A utility that writes a report in Microsoft Excel (XML) format.
+ * <p>
+ * Records are written as they are given, through a large buffer, so a report of any size can be
+ * streamed to a file, e.g. from an iterator:
+ * <pre>
+ * ExcelWriter writer = ExcelWriter.open(file, schema, DataTypes.DOUBLE);
+ * try {
+ *     while (...) {
+ *         writer.write(record);
+ *     }
+ * } finally {
+ *     writer.close();
+ * }
+ * </pre>
+ * The type of each cell is decided by the {@link DataType} of its variable: numeric types are
+ * written as numbers, timestamps as dates, and all others as strings. Since Excel does not open
+ * worksheets of more than 65536 rows, records beyond that are written to additional worksheets,
+ * each starting with the header row.
  *
  * @author Andreou Dimitris, email: jim.andreou (at) gmail (dot) com
  */
-public class ExcelWriter {
-    private ExcelWriter() { }
+public class ExcelWriter implements Closeable {
+    /**
+     * The default maximum number of rows of a worksheet, including its header row.
+     */
+    public static final int MAX_SHEET_ROWS = 1 << 16;
+
+    private static final String SHEET_NAME = "AggregatorResults";
+    private static final int BUFFER_SIZE = 1 << 18;
+
+    private final Writer out;
+    private final Schema schema;
+    private final String[] variables;
+    private final int[] kinds;
+    private final String[] headers;
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS");
+    private int sheetRows = MAX_SHEET_ROWS;
+    private int sheets;
+    private int rows;
+    private long records;
+    private boolean closed;
+
+    private ExcelWriter(Writer out, Schema schema, DataType<?> valueType) {
+        this.out = out;
+        this.schema = schema;
+        this.variables = schema.getVariables().toArray(new String[0]);
+        final int columns = variables.length + (valueType != null ? 1 : 0);
+        this.kinds = new int[columns];
+        this.headers = new String[columns];
+        for (int i = 0; i < columns; i++) {
+            DataType<?> type = i < variables.length ? schema.getTypeOf(variables[i]) : valueType;
+            kinds[i] = Cells.kindOf(type.getMappedType());
+            headers[i] = i < variables.length ? variables[i] : "VALUE";
+        }
+    }
+
+    /**
+     * Creates (or overwrites) a file for writing records of the specified schema.
+     * @param file the file to write
+     * @param schema the schema of the records, whose variables are the columns of the worksheets
+     * @param valueType the type of the values of the records (see {@link Record#getValue()}), which
+     * are written in a last column named <tt>VALUE</tt>, or <tt>null</tt> to not write values
+     * @throws IOException if the file cannot be created
+     */
+    public static ExcelWriter open(File file, Schema schema, DataType<?> valueType) throws IOException {
+        Preconditions.checkNotNull(file, "file");
+        Preconditions.checkNotNull(schema, "schema");
+        Writer out = new BufferedWriter(Channels.newWriter(new FileOutputStream(file).getChannel(), "UTF-8"),
+                BUFFER_SIZE);
+        return new ExcelWriter(out, schema, valueType);
+    }
+
+    /**
+     * Sets the maximum number of rows of each worksheet, including its header row. Must be called
+     * before any record is written.
+     * @return this
+     */
+    public ExcelWriter withSheetRows(int sheetRows) {
+        Preconditions.checkArgument(sheetRows > 1, "Sheets must have at least one row besides the header");
+        Preconditions.checkState(records == 0, "Records have already been written");
+        this.sheetRows = sheetRows;
+        return this;
+    }
 
     /**
-     * Writes the specified records to a target file, using Microsoft Excel's XML format.
+     * Returns the schema of the records.
+     */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Writes a record as a row. Records of the {@link #getSchema() schema} are read by index,
+     * and other records by variable name; missing values are written as empty cells.
+     * @throws IOException if writing fails
+     */
+    public void write(Record record) throws IOException {
+        Preconditions.checkState(!closed, "Writer is closed");
+        if (sheets == 0 || rows == sheetRows) {
+            startSheet();
+        }
+        final SchemaRecord schemaRecord = record instanceof SchemaRecord &&
+                ((SchemaRecord) record).getSchema() == schema ? (SchemaRecord) record : null;
+        out.write("   <Row>\n");
+        for (int i = 0; i < kinds.length; i++) {
+            if (i == variables.length) {
+                writeCell(i, record.getValue());
+            } else if (schemaRecord == null) {
+                writeCell(i, record.get(variables[i]));
+            } else if (!schemaRecord.isBound(i)) {
+                writeCell(i, null);
+            } else if (kinds[i] == Cells.INTEGRAL) {
+                writeNumber(Long.toString(schemaRecord.getLong(i)));
+            } else if (kinds[i] == Cells.DOUBLE || kinds[i] == Cells.FLOAT) {
+                writeDouble(i, schemaRecord.getDouble(i));
+            } else {
+                writeCell(i, schemaRecord.get(i));
+            }
+        }
+        out.write("   </Row>\n");
+        rows++;
+        records++;
+    }
+
+    private void writeCell(int column, Object value) throws IOException {
+        if (value == null) {
+            out.write("    <Cell/>\n");
+            return;
+        }
+        switch (kinds[column]) {
+            case Cells.INTEGRAL:
+            case Cells.NUMBER:
+                if (value instanceof Number) {
+                    writeNumber(value.toString());
+                    return;
+                }
+                break;
+            case Cells.DOUBLE:
+            case Cells.FLOAT:
+                if (value instanceof Number) {
+                    writeDouble(column, ((Number) value).doubleValue());
+                    return;
+                }
+                break;
+            case Cells.DATE:
+                if (value instanceof Timestamp) {
+                    out.write("    <Cell ss:StyleID=\"date\"><Data ss:Type=\"DateTime\">");
+                    out.write(dateFormat.format((Timestamp) value));
+                    out.write("</Data></Cell>\n");
+                    return;
+                }
+                break;
+        }
+        writeString(value.toString(), false);
+    }
+
+    private void writeNumber(String number) throws IOException {
+        out.write("    <Cell><Data ss:Type=\"Number\">");
+        out.write(number);
+        out.write("</Data></Cell>\n");
+    }
+
+    private void writeDouble(int column, double value) throws IOException {
+        String number = kinds[column] == Cells.FLOAT ? Float.toString((float) value) : Double.toString(value);
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            writeString(number, false);
+        } else {
+            writeNumber(number);
+        }
+    }
+
+    private void writeString(String value, boolean bold) throws IOException {
+        out.write(bold ? "    <Cell ss:StyleID=\"bold\"><Data ss:Type=\"String\">" :
+            "    <Cell><Data ss:Type=\"String\">");
+        Cells.escape(out, value);
+        out.write("</Data></Cell>\n");
+    }
+
+    private void startSheet() throws IOException {
+        if (sheets == 0) {
+            out.write("<?xml version=\"1.0\"?>\n");
+            out.write("<Workbook xmlns=\"urn:schemas-microsoft-com:office:spreadsheet\"\n");
+            out.write("xmlns:o=\"urn:schemas-microsoft-com:office:office\"\n");
+            out.write("xmlns:x=\"urn:schemas-microsoft-com:office:excel\"\n");
+            out.write("xmlns:ss=\"urn:schemas-microsoft-com:office:spreadsheet\"\n");
+            out.write("xmlns:html=\"http://www.w3.org/TR/REC-html40\">\n");
+
+            out.write(" <Styles>\n");
+            out.write("  <Style ss:ID=\"bold\">\n");
+            out.write("   <Font ss:Bold=\"1\"/>\n");
+            out.write("  </Style>\n");
+            out.write("  <Style ss:ID=\"date\">\n");
+            out.write("   <NumberFormat ss:Format=\"General Date\"/>\n");
+            out.write("  </Style>\n");
+            out.write(" </Styles>\n");
+        } else {
+            endSheet();
+        }
+        sheets++;
+        out.write(" <Worksheet ss:Name=\"" + SHEET_NAME + (sheets == 1 ? "" : " (" + sheets + ")") + "\">\n");
+        out.write("  <Table>\n");
+        out.write("   <Row>\n");
+        for (String header : headers) {
+            writeString(header, true);
+        }
+        out.write("   </Row>\n");
+        rows = 1;
+    }
+
+    private void endSheet() throws IOException {
+        out.write("  </Table>\n");
+        out.write(" </Worksheet>\n");
+    }
+
+    /**
+     * Returns the number of records written so far.
+     */
+    public long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * Returns the number of worksheets written so far.
+     */
+    public int getSheetCount() {
+        return sheets;
+    }
+
+    /**
+     * Completes the workbook (with an empty worksheet, if no record was written), and closes the file.
+     */
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (sheets == 0) {
+                startSheet();
+            }
+            endSheet();
+            out.write("</Workbook>\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes records to a target file, using Microsoft Excel's XML format.
+     *
+     * @param records the records to write
+     * @param schema the schema of the records
+     * @param valueType the type of the values of the records, or <tt>null</tt> to not write values
+     * @param file the file to create
+     * @return the number of written records
+     * @throws IOException if an error occurs while writing to the file
+     */
+    public static long write(Iterator<? extends Record> records, Schema schema, DataType<?> valueType,
+            File file) throws IOException {
+        ExcelWriter writer = open(file, schema, valueType);
+        try {
+            while (records.hasNext()) {
+                writer.write(records.next());
+            }
+        } finally {
+            writer.close();
+        }
+        return writer.getRecordCount();
+    }
+
+    /**
+     * Writes the specified records to a target file, using Microsoft Excel's XML format. The
+     * types of the cells of each variable are {@link DataTypes#inferFrom(Iterable) inferred} from
+     * its values.
      *
      * @param records the records to write
      * @param file the file in which to create
      * @throws IOException if an error occurs while writing to the file
      */
     public static void write(Records records, File file) throws IOException {
-        PrintWriter out = new PrintWriter(file);
-        SimpleDateFormat f = new SimpleDateFormat();
+        write(records.iterator(), schemaOf(records), null, file);
+    }
 
-        try {
-            out.println("<?xml version=\"1.0\"?>");
-            out.println("<Workbook xmlns=\"urn:schemas-microsoft-com:office:spreadsheet\"");
-            out.println("xmlns:o=\"urn:schemas-microsoft-com:office:office\"");
-            out.println("xmlns:x=\"urn:schemas-microsoft-com:office:excel\"");
-            out.println("xmlns:ss=\"urn:schemas-microsoft-com:office:spreadsheet\"");
-            out.println("xmlns:html=\"http://www.w3.org/TR/REC-html40\">");
-
-            out.println(" <Styles>");
-            out.println("  <Style ss:ID=\"bold\">");
-            out.println("   <Font ss:Bold=\"1\"/>");
-            out.println("  </Style>");
-            out.println(" </Styles>");
-
-            out.println(" <Worksheet ss:Name=\"AggregatorResults\">");
-            out.println("  <Table>");
-            out.println("   <Row>");
-            for (String var : records.getVariables()) {
-                out.println("    <Cell ss:StyleID=\"bold\"><Data ss:Type=\"String\">" + var + "</Data></Cell>");
+    static Schema schemaOf(Records records) {
+        Schema schema = new Schema();
+        List<Object> values = new ArrayList<Object>(records.list().size());
+        for (String variable : records.getVariables()) {
+            values.clear();
+            for (Record record : records) {
+                values.add(record.get(variable));
             }
-            out.println("   </Row>");
-             for (Record record : records) {
-                 out.println("   <Row>");
-                 for (String var : records.getVariables()) {
-                     String value = record.get(var).toString();
-                     String type = "Number";
-                     try {
-                         Integer.parseInt(value);
-                     } catch (NumberFormatException e) {
-                         type = "String";
-                     }
-                 out.println("    <Cell><Data ss:Type=\"" + type + "\">" + value + "</Data></Cell>");
-                 }
-                 out.println("   </Row>");
-             }
-             out.println("  </Table>");
-             out.println(" </Worksheet>");
-             out.println("</Workbook>");
-        } finally {
-            out.close();
+            schema.add(variable, DataTypes.inferFrom(values));
         }
+        return schema;
     }
 }
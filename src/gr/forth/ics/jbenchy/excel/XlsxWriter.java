@@ -0,0 +1,423 @@
+package gr.forth.ics.jbenchy.excel;
+
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.DataType;
+import gr.forth.ics.jbenchy.DataTypes;
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.Schema;
+import gr.forth.ics.jbenchy.SchemaRecord;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a report as an Office Open XML workbook (<tt>.xlsx</tt>), the native format of Excel 2007
+ * and later. Rows are streamed into the zipped worksheets as they are written, so only the
+ * distinct strings of the report are kept in memory: every string cell refers to a shared string
+ * table, which is written when the writer is {@link #close() closed}.
+ * <p>
+ * As with {@link ExcelWriter}, the type of each cell is decided by the {@link DataType} of its
+ * variable, and records beyond the rows of a worksheet are written to additional worksheets.
+ * The header row of each worksheet is bold and frozen.
+ * <pre>
+ * XlsxWriter writer = XlsxWriter.open(new File("report.xlsx"), schema, DataTypes.DOUBLE);
+ * try {
+ *     while (...) {
+ *         writer.write(record);
+ *     }
+ * } finally {
+ *     writer.close();
+ * }
+ * </pre>
+ *
+ * @author andreou
+ */
+public final class XlsxWriter implements Closeable {
+    /**
+     * The default (and maximum) number of rows of a worksheet, including its header row.
+     */
+    public static final int MAX_SHEET_ROWS = 1 << 20;
+
+    private static final String SHEET_NAME = "AggregatorResults";
+    private static final int BUFFER_SIZE = 1 << 18;
+
+    private static final String MAIN = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String RELATIONSHIPS = "http://schemas.openxmlformats.org/package/2006/relationships";
+    private static final String DOCUMENT = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.";
+
+    //indexes of the cell formats of styles.xml
+    private static final int BOLD = 1;
+    private static final int DATE = 2;
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+    //the serial number of 1970-01-01 in Excel's 1900 date system
+    private static final int EPOCH = 25569;
+
+    private final ZipOutputStream zip;
+    private final Writer out;
+    private final Schema schema;
+    private final String[] variables;
+    private final int[] kinds;
+    private final int[] headers;
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+    private final List<String> stringList = new ArrayList<String>();
+    private final TimeZone timeZone = TimeZone.getDefault();
+    private long stringCount;
+    private int sheetRows = MAX_SHEET_ROWS;
+    private int sheets;
+    private int rows;
+    private long records;
+    private boolean closed;
+
+    private XlsxWriter(ZipOutputStream zip, Schema schema, DataType<?> valueType) {
+        this.zip = zip;
+        this.out = new BufferedWriter(new OutputStreamWriter(zip, Charset.forName("UTF-8")), BUFFER_SIZE);
+        this.schema = schema;
+        this.variables = schema.getVariables().toArray(new String[0]);
+        final int columns = variables.length + (valueType != null ? 1 : 0);
+        this.kinds = new int[columns];
+        this.headers = new int[columns];
+        for (int i = 0; i < columns; i++) {
+            DataType<?> type = i < variables.length ? schema.getTypeOf(variables[i]) : valueType;
+            kinds[i] = Cells.kindOf(type.getMappedType());
+            headers[i] = stringIndex(i < variables.length ? variables[i] : "VALUE");
+        }
+    }
+
+    /**
+     * Creates (or overwrites) a file for writing records of the specified schema.
+     * @param file the file to write
+     * @param schema the schema of the records, whose variables are the columns of the worksheets
+     * @param valueType the type of the values of the records (see {@link Record#getValue()}), which
+     * are written in a last column named <tt>VALUE</tt>, or <tt>null</tt> to not write values
+     * @throws IOException if the file cannot be created
+     */
+    public static XlsxWriter open(File file, Schema schema, DataType<?> valueType) throws IOException {
+        Preconditions.checkNotNull(file, "file");
+        Preconditions.checkNotNull(schema, "schema");
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+        //the repetitive markup compresses well even at the fastest level, and writes much faster than the default level
+        zip.setLevel(Deflater.BEST_SPEED);
+        return new XlsxWriter(zip, schema, valueType);
+    }
+
+    /**
+     * Sets the maximum number of rows of each worksheet, including its header row. Must be called
+     * before any record is written.
+     * @return this
+     */
+    public XlsxWriter withSheetRows(int sheetRows) {
+        Preconditions.checkArgument(sheetRows > 1 && sheetRows <= MAX_SHEET_ROWS,
+                "Sheets must have between 2 and %s rows", MAX_SHEET_ROWS);
+        Preconditions.checkState(records == 0, "Records have already been written");
+        this.sheetRows = sheetRows;
+        return this;
+    }
+
+    /**
+     * Returns the schema of the records.
+     */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    private int stringIndex(String string) {
+        stringCount++;
+        Integer index = strings.get(string);
+        if (index == null) {
+            index = stringList.size();
+            strings.put(string, index);
+            stringList.add(string);
+        }
+        return index;
+    }
+
+    /**
+     * Writes a record as a row. Records of the {@link #getSchema() schema} are read by index,
+     * and other records by variable name; missing values are written as empty cells.
+     * @throws IOException if writing fails
+     */
+    public void write(Record record) throws IOException {
+        Preconditions.checkState(!closed, "Writer is closed");
+        if (sheets == 0 || rows == sheetRows) {
+            startSheet();
+        }
+        final SchemaRecord schemaRecord = record instanceof SchemaRecord &&
+                ((SchemaRecord) record).getSchema() == schema ? (SchemaRecord) record : null;
+        out.write("<row>");
+        for (int i = 0; i < kinds.length; i++) {
+            if (i == variables.length) {
+                writeCell(i, record.getValue());
+            } else if (schemaRecord == null) {
+                writeCell(i, record.get(variables[i]));
+            } else if (!schemaRecord.isBound(i)) {
+                out.write("<c/>");
+            } else if (kinds[i] == Cells.INTEGRAL) {
+                writeNumber(Long.toString(schemaRecord.getLong(i)));
+            } else if (kinds[i] == Cells.DOUBLE || kinds[i] == Cells.FLOAT) {
+                writeDouble(i, schemaRecord.getDouble(i));
+            } else {
+                writeCell(i, schemaRecord.get(i));
+            }
+        }
+        out.write("</row>\n");
+        rows++;
+        records++;
+    }
+
+    private void writeCell(int column, Object value) throws IOException {
+        if (value == null) {
+            out.write("<c/>");
+            return;
+        }
+        switch (kinds[column]) {
+            case Cells.INTEGRAL:
+            case Cells.NUMBER:
+                if (value instanceof Number) {
+                    writeNumber(value.toString());
+                    return;
+                }
+                break;
+            case Cells.DOUBLE:
+            case Cells.FLOAT:
+                if (value instanceof Number) {
+                    writeDouble(column, ((Number) value).doubleValue());
+                    return;
+                }
+                break;
+            case Cells.DATE:
+                if (value instanceof Timestamp) {
+                    long millis = ((Timestamp) value).getTime();
+                    double days = (double) (millis + timeZone.getOffset(millis)) / MILLIS_PER_DAY + EPOCH;
+                    out.write("<c s=\"" + DATE + "\"><v>");
+                    out.write(Double.toString(days));
+                    out.write("</v></c>");
+                    return;
+                }
+                break;
+        }
+        writeString(stringIndex(value.toString()), 0);
+    }
+
+    private void writeNumber(String number) throws IOException {
+        out.write("<c><v>");
+        out.write(number);
+        out.write("</v></c>");
+    }
+
+    private void writeDouble(int column, double value) throws IOException {
+        String number = kinds[column] == Cells.FLOAT ? Float.toString((float) value) : Double.toString(value);
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            writeString(stringIndex(number), 0);
+        } else {
+            writeNumber(number);
+        }
+    }
+
+    private void writeString(int index, int style) throws IOException {
+        out.write(style == 0 ? "<c t=\"s\"><v>" : "<c t=\"s\" s=\"" + style + "\"><v>");
+        out.write(Integer.toString(index));
+        out.write("</v></c>");
+    }
+
+    private void startEntry(String name) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+    }
+
+    private void endEntry() throws IOException {
+        out.flush();
+        zip.closeEntry();
+    }
+
+    private void startSheet() throws IOException {
+        if (sheets > 0) {
+            endSheet();
+        }
+        if (sheets++ > 0) {
+            stringCount += headers.length;
+        }
+        startEntry("xl/worksheets/sheet" + sheets + ".xml");
+        out.write("<worksheet xmlns=\"" + MAIN + "\">");
+        out.write("<sheetViews><sheetView workbookViewId=\"0\">");
+        out.write("<pane ySplit=\"1\" topLeftCell=\"A2\" activePane=\"bottomLeft\" state=\"frozen\"/>");
+        out.write("</sheetView></sheetViews>");
+        out.write("<sheetData>\n<row>");
+        for (int header : headers) {
+            writeString(header, BOLD);
+        }
+        out.write("</row>\n");
+        rows = 1;
+    }
+
+    private void endSheet() throws IOException {
+        out.write("</sheetData></worksheet>\n");
+        endEntry();
+    }
+
+    /**
+     * Returns the number of records written so far.
+     */
+    public long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * Returns the number of worksheets written so far.
+     */
+    public int getSheetCount() {
+        return sheets;
+    }
+
+    /**
+     * Returns the number of distinct strings written so far (including the headers).
+     */
+    public int getSharedStringCount() {
+        return stringList.size();
+    }
+
+    /**
+     * Completes the workbook (with an empty worksheet, if no record was written): writes the shared
+     * strings and the parts that describe the worksheets, and closes the file.
+     */
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (sheets == 0) {
+                startSheet();
+            }
+            endSheet();
+            writeSharedStrings();
+            writeWorkbook();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeSharedStrings() throws IOException {
+        startEntry("xl/sharedStrings.xml");
+        out.write("<sst xmlns=\"" + MAIN + "\" count=\"" + stringCount + "\" uniqueCount=\"" +
+                stringList.size() + "\">\n");
+        for (String string : stringList) {
+            out.write("<si><t xml:space=\"preserve\">");
+            Cells.escape(out, string);
+            out.write("</t></si>\n");
+        }
+        out.write("</sst>\n");
+        endEntry();
+    }
+
+    private void writeWorkbook() throws IOException {
+        startEntry("xl/workbook.xml");
+        out.write("<workbook xmlns=\"" + MAIN + "\" xmlns:r=\"" + DOCUMENT + "\"><sheets>");
+        for (int i = 1; i <= sheets; i++) {
+            out.write("<sheet name=\"" + SHEET_NAME + (i == 1 ? "" : " (" + i + ")") + "\" sheetId=\"" + i +
+                    "\" r:id=\"rId" + i + "\"/>");
+        }
+        out.write("</sheets></workbook>\n");
+        endEntry();
+
+        startEntry("xl/_rels/workbook.xml.rels");
+        out.write("<Relationships xmlns=\"" + RELATIONSHIPS + "\">");
+        for (int i = 1; i <= sheets; i++) {
+            out.write("<Relationship Id=\"rId" + i + "\" Type=\"" + DOCUMENT + "/worksheet\" " +
+                    "Target=\"worksheets/sheet" + i + ".xml\"/>");
+        }
+        out.write("<Relationship Id=\"rId" + (sheets + 1) + "\" Type=\"" + DOCUMENT + "/styles\" Target=\"styles.xml\"/>");
+        out.write("<Relationship Id=\"rId" + (sheets + 2) + "\" Type=\"" + DOCUMENT +
+                "/sharedStrings\" Target=\"sharedStrings.xml\"/>");
+        out.write("</Relationships>\n");
+        endEntry();
+
+        startEntry("xl/styles.xml");
+        out.write("<styleSheet xmlns=\"" + MAIN + "\">");
+        out.write("<fonts count=\"2\"><font><sz val=\"11\"/><name val=\"Calibri\"/></font>");
+        out.write("<font><b/><sz val=\"11\"/><name val=\"Calibri\"/></font></fonts>");
+        out.write("<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill>");
+        out.write("<fill><patternFill patternType=\"gray125\"/></fill></fills>");
+        out.write("<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>");
+        out.write("<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>");
+        out.write("<cellXfs count=\"3\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>");
+        out.write("<xf numFmtId=\"0\" fontId=\"1\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyFont=\"1\"/>");
+        out.write("<xf numFmtId=\"22\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>");
+        out.write("</cellXfs>");
+        out.write("<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>");
+        out.write("</styleSheet>\n");
+        endEntry();
+
+        startEntry("_rels/.rels");
+        out.write("<Relationships xmlns=\"" + RELATIONSHIPS + "\"><Relationship Id=\"rId1\" Type=\"" + DOCUMENT +
+                "/officeDocument\" Target=\"xl/workbook.xml\"/></Relationships>\n");
+        endEntry();
+
+        startEntry("[Content_Types].xml");
+        out.write("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">");
+        out.write("<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>");
+        out.write("<Default Extension=\"xml\" ContentType=\"application/xml\"/>");
+        out.write("<Override PartName=\"/xl/workbook.xml\" ContentType=\"" + CONTENT_TYPE + "sheet.main+xml\"/>");
+        for (int i = 1; i <= sheets; i++) {
+            out.write("<Override PartName=\"/xl/worksheets/sheet" + i + ".xml\" ContentType=\"" + CONTENT_TYPE +
+                    "worksheet+xml\"/>");
+        }
+        out.write("<Override PartName=\"/xl/styles.xml\" ContentType=\"" + CONTENT_TYPE + "styles+xml\"/>");
+        out.write("<Override PartName=\"/xl/sharedStrings.xml\" ContentType=\"" + CONTENT_TYPE + "sharedStrings+xml\"/>");
+        out.write("</Types>\n");
+        endEntry();
+    }
+
+    /**
+     * Writes records to an <tt>.xlsx</tt> file.
+     *
+     * @param records the records to write
+     * @param schema the schema of the records
+     * @param valueType the type of the values of the records, or <tt>null</tt> to not write values
+     * @param file the file to create
+     * @return the number of written records
+     * @throws IOException if an error occurs while writing to the file
+     */
+    public static long write(Iterator<? extends Record> records, Schema schema, DataType<?> valueType,
+            File file) throws IOException {
+        XlsxWriter writer = open(file, schema, valueType);
+        try {
+            while (records.hasNext()) {
+                writer.write(records.next());
+            }
+        } finally {
+            writer.close();
+        }
+        return writer.getRecordCount();
+    }
+
+    /**
+     * Writes the specified records to an <tt>.xlsx</tt> file. The types of the cells of each variable
+     * are {@link DataTypes#inferFrom(Iterable) inferred} from its values.
+     *
+     * @param records the records to write
+     * @param file the file to create
+     * @throws IOException if an error occurs while writing to the file
+     */
+    public static void write(Records records, File file) throws IOException {
+        write(records.iterator(), ExcelWriter.schemaOf(records), null, file);
+    }
+}
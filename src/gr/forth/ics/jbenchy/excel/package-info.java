@@ -1,8 +1,9 @@
 /**
- * Utility for writing aggregator results in Microsoft Excel (XML) format.
+ * Utilities for writing aggregator results in Microsoft Excel formats: the XML format of
+ * Excel 2003, and the zipped Office Open XML format (<tt>.xlsx</tt>) of later versions.
  * 
- * <p>See <a href="ExcelWriter.html">ExcelWriter</a> class.
+ * <p>See <a href="ExcelWriter.html">ExcelWriter</a> and <a href="XlsxWriter.html">XlsxWriter</a> classes.
  * 
  * @author Andreou Dimitris, email: jim.andreou (at) gmail (dot) com
  */
-package gr.forth.ics.jbenchy.excel;
\ No newline at end of file
+package gr.forth.ics.jbenchy.excel;
@@ -44,6 +44,13 @@ public interface AggregateBuilder {
      * @see Aggregator
      */
     PerClause count();
+
+    /**
+     * The values of a variable, one per record (no aggregation).
+     * @see Aggregate#values(Object)
+     * @see Aggregator
+     */
+    PerClause valuesOf(Object variable);
     
     interface PerClause {
         
@@ -16,6 +16,13 @@ public interface ReportBuilder extends AggregateBuilder {
      */
     Records report(Aggregate aggr, Object... variables);
 
+    /**
+     * Returns a cursor over the records of the same report as
+     * {@link #report(gr.forth.ics.jbenchy.Aggregate, Object[])}, which reads them one at a time.
+     * The cursor must be {@link ReportCursor#close() closed}.
+     */
+    ReportCursor cursor(Aggregate aggr, Object... variables);
+
     /**
      * Returns the union of all values that the specified variable takes,
      * honoring ordering and filtering imposed by this object.
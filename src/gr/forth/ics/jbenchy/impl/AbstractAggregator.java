@@ -13,12 +13,16 @@ import gr.forth.ics.jbenchy.Orders;
 import gr.forth.ics.jbenchy.fluent.ReportBuilder;
 import gr.forth.ics.jbenchy.Record;
 import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.ReportCursor;
 import gr.forth.ics.jbenchy.Schema;
+import gr.forth.ics.jbenchy.SchemaRecord;
 import gr.forth.ics.jbenchy.StringUtils;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 
@@ -49,6 +53,55 @@ public abstract class AbstractAggregator implements Aggregator {
     protected abstract Records report(Aggregate aggr,
             Filter filter, List<Order> orders, Object... variables);
 
+    public ReportCursor cursor(Aggregate aggr, Object... variables) {
+        Preconditions.checkNotNull(aggr, "aggregation");
+        Preconditions.checkNotNull(variables, "variables");
+        return cursor(aggr, Filters.NULL_FILTER, Collections.<Order>emptyList(), variables);
+    }
+
+    /**
+     * Returns a cursor over a report. This implementation materializes the report, through
+     * {@link #report(Aggregate, Filter, List, Object[])}; subclasses should override it to
+     * stream the records from their storage where they can.
+     */
+    protected ReportCursor cursor(Aggregate aggr,
+            Filter filter, List<Order> orders, Object... variables) {
+        return cursorOver(report(aggr, filter, orders, variables), aggr,
+                reportSchema(variables), aggr.getResultType(getSchema()));
+    }
+
+    /**
+     * Returns the schema of the records of a report over the specified variables, with their
+     * types in the schema of this aggregator.
+     * @throws IllegalArgumentException if a variable does not belong to the schema
+     */
+    protected Schema reportSchema(Object... variables) {
+        Schema schema = getSchema();
+        Schema reportSchema = new Schema();
+        for (Object variable : variables) {
+            Preconditions.checkNotNull(variable, "Null variable");
+            DataType<?> type = schema.getTypeOf(variable);
+            if (type == null) {
+                throw new IllegalArgumentException("Variable: '" + variable +
+                        "' does not belong to the schema: " + schema);
+            }
+            reportSchema.add(variable, type);
+        }
+        return reportSchema;
+    }
+
+    /**
+     * Returns a cursor over the (materialized) records of a report.
+     * @param records the records of the report
+     * @param aggr the aggregate of the report
+     * @param schema the schema of the report, see {@link #reportSchema(Object[])}
+     * @param valueType the type of the values of the records
+     */
+    protected static ReportCursor cursorOver(Records records, Aggregate aggr,
+            Schema schema, DataType<?> valueType) {
+        return new RecordsCursor(records.iterator(), aggr, schema, valueType);
+    }
+
     public PerClause averageOf(Object variable) {
         return aggregateBuilderImpl.averageOf(variable);
     }
@@ -68,10 +121,51 @@ public abstract class AbstractAggregator implements Aggregator {
     public PerClause sumOf(Object variable) {
         return aggregateBuilderImpl.sumOf(variable);
     }
+
+    public PerClause valuesOf(Object variable) {
+        return aggregateBuilderImpl.valuesOf(variable);
+    }
     
     protected abstract <T> List<T> domainOfVariable(Filter filter, List<Order> orders, Object variable, Class<T> expectedType);
     
     protected abstract void deleteRecords(Filter filter);
+
+    /**
+     * Returns a comparator of records that orders them by the values of the specified
+     * variables, in turn, as SQL does when grouping.
+     */
+    @SuppressWarnings("unchecked")
+    protected static Comparator<Record> naturalOrder(final Object[] variables) {
+        return new Comparator<Record>() {
+            public int compare(Record r1, Record r2) {
+                for (Object variable : variables) {
+                    int c = ((Comparable<Object>) r1.get(variable)).compareTo(r2.get(variable));
+                    if (c != 0) {
+                        return c;
+                    }
+                }
+                return 0;
+            }
+        };
+    }
+
+    /**
+     * Sorts the domain of a variable by the specified orders, then by the natural order of its values.
+     */
+    @SuppressWarnings("unchecked")
+    protected static <T> void sortDomain(List<T> domain, final List<Order> orders) {
+        Collections.sort(domain, new Comparator<T>() {
+            public int compare(T o1, T o2) {
+                for (Order order : orders) {
+                    int c = order.compare(o1, o2);
+                    if (c != 0) {
+                        return c;
+                    }
+                }
+                return ((Comparable<T>) o1).compareTo(o2);
+            }
+        });
+    }
     
     public Aggregator with(Object variable, Object value) {
         return new BoundAggregator(this, variable.toString(), value);
@@ -121,6 +215,10 @@ public abstract class AbstractAggregator implements Aggregator {
         public PerClause count() {
             return new PerClauseImpl(Aggregate.count());
         }
+
+        public PerClause valuesOf(final Object variable) {
+            return new PerClauseImpl(Aggregate.values(variable));
+        }
         
         private class PerClauseImpl implements PerClause {
             Aggregate aggregate;
@@ -158,6 +256,13 @@ public abstract class AbstractAggregator implements Aggregator {
             return AbstractAggregator.this.report(aggr,
                     Filters.and(filterList), orders, variables);
         }
+
+        public ReportCursor cursor(Aggregate aggr, Object... variables) {
+            Preconditions.checkNotNull(aggr, "aggregation");
+            Preconditions.checkNotNull(variables, "variables");
+            return AbstractAggregator.this.cursor(aggr,
+                    Filters.and(filterList), orders, variables);
+        }
         
         public <T> List<T> domainOf(Object variable, Class<T> expectedType) {
             Preconditions.checkNotNull(variable, "Null variable");
@@ -211,6 +316,14 @@ public abstract class AbstractAggregator implements Aggregator {
             return parent.filtered(Filters.and(boundVariableFilter(), filter)).
                     ordered(orders).report(aggr, variables);
         }
+
+        @Override
+        protected ReportCursor cursor(Aggregate aggr, Filter filter,
+                List<Order> orders, Object... variables) {
+            variables = addBoundedVariableIfAbsent(variables);
+            return parent.filtered(Filters.and(boundVariableFilter(), filter)).
+                    ordered(orders).cursor(aggr, variables);
+        }
         
         @Override
         protected <T> List<T> domainOfVariable(Filter filter, List<Order> orders, Object variable, Class<T> expectedType) {
@@ -241,6 +354,50 @@ public abstract class AbstractAggregator implements Aggregator {
         }
     }
     
+    private static class RecordsCursor implements ReportCursor {
+        private final Iterator<Record> records;
+        private final Aggregate aggregate;
+        private final Schema schema;
+        private final DataType<?> valueType;
+        private final String[] variables;
+
+        RecordsCursor(Iterator<Record> records, Aggregate aggregate, Schema schema, DataType<?> valueType) {
+            this.records = records;
+            this.aggregate = aggregate;
+            this.schema = schema;
+            this.valueType = valueType;
+            this.variables = schema.getVariables().toArray(new String[0]);
+        }
+
+        public Schema getSchema() {
+            return schema;
+        }
+
+        public Aggregate getAggregate() {
+            return aggregate;
+        }
+
+        public DataType<?> getValueType() {
+            return valueType;
+        }
+
+        public boolean next(SchemaRecord record) {
+            Preconditions.checkArgument(record.getSchema() == schema, "Record is not of the schema of the cursor");
+            if (!records.hasNext()) {
+                return false;
+            }
+            Record next = records.next();
+            for (int i = 0; i < variables.length; i++) {
+                record.set(i, next.get(variables[i]));
+            }
+            record.putValue(next.getValue());
+            return true;
+        }
+
+        public void close() {
+        }
+    }
+
     private static class FilteredSchema extends Schema {
         private final Schema delegate;
         private final String variableToHide;
@@ -294,6 +451,10 @@ public abstract class AbstractAggregator implements Aggregator {
         public PerClause count() {
             return new PerClauseImpl(Aggregate.count());
         }
+
+        public PerClause valuesOf(final Object variable) {
+            return new PerClauseImpl(Aggregate.values(variable));
+        }
         
         private class PerClauseImpl implements PerClause {
             private final Aggregate aggregate;
@@ -0,0 +1,525 @@
+package gr.forth.ics.jbenchy.impl;
+
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.Aggregate;
+import gr.forth.ics.jbenchy.DataType;
+import gr.forth.ics.jbenchy.Filter;
+import gr.forth.ics.jbenchy.Filters;
+import gr.forth.ics.jbenchy.Order;
+import gr.forth.ics.jbenchy.Orders;
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.ReportCursor;
+import gr.forth.ics.jbenchy.Schema;
+import gr.forth.ics.jbenchy.SchemaRecord;
+import gr.forth.ics.jbenchy.StringUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Abstract implementation of {@link gr.forth.ics.jbenchy.Aggregator} for storage engines that
+ * expose the values of each variable as a {@link Column}, instead of executing SQL.
+ * <p>
+ * Filters are evaluated column by column into a selection of rows, through
+ * {@link Filters#accept(Filter, Filters.Visitor)}; thus only filters created by {@link Filters}
+ * are supported. Reports group the selected rows by the keys of the grouping columns, in an
+ * open-addressing table of primitive key tuples, and accumulate the aggregated column per group
+ * in primitive arrays; rows are processed in batches, fetching a column at a time. As in SQL, the averages and sums of integral
+ * variables are integral, and reports without explicit orders are sorted by their variables.
+ * {@link gr.forth.ics.jbenchy.fluent.ReportBuilder#cursor(Aggregate, Object[]) Cursors} over
+ * unordered reports of values read the selected rows in batches as well, without materializing
+ * the report.
+ * <p>
+ * Report methods are synchronized on the aggregator, so subclasses should synchronize
+ * their mutators likewise.
+ *
+ * @author andreou
+ */
+public abstract class AbstractColumnAggregator extends AbstractAggregator {
+    //rows are grouped and accumulated in batches of this size, a column at a time
+    private static final int BATCH = 1024;
+
+    protected AbstractColumnAggregator(String name) {
+        super(name);
+    }
+
+    /**
+     * Returns the column of a (normalized) variable, or <tt>null</tt> if the variable does
+     * not belong to the schema.
+     */
+    protected abstract Column getColumn(String variable);
+
+    /**
+     * Returns the number of records (rows).
+     */
+    protected abstract int getRowCount();
+
+    private Column column(Object variable) {
+        Column column = getColumn(StringUtils.normalizeVariable(variable));
+        if (column == null) {
+            throw new IllegalArgumentException("Variable: '" + variable +
+                    "' does not belong to the schema: " + getSchema());
+        }
+        return column;
+    }
+
+    /**
+     * Returns the rows that pass the filter.
+     * @throws UnsupportedOperationException if the filter was not created by {@link Filters}
+     */
+    protected BitSet select(Filter filter) {
+        final int rows = getRowCount();
+        return Filters.accept(filter, new Filters.Visitor<BitSet>() {
+            public BitSet visitAll() {
+                BitSet all = new BitSet(rows);
+                all.set(0, rows);
+                return all;
+            }
+
+            public BitSet visitAnd(List<BitSet> operands) {
+                BitSet result = operands.get(0);
+                for (int i = 1; i < operands.size(); i++) {
+                    result.and(operands.get(i));
+                }
+                return result;
+            }
+
+            public BitSet visitOr(List<BitSet> operands) {
+                BitSet result = operands.get(0);
+                for (int i = 1; i < operands.size(); i++) {
+                    result.or(operands.get(i));
+                }
+                return result;
+            }
+
+            public BitSet visitComparison(String variable, String operator, Object value) {
+                BitSet selection = new BitSet(rows);
+                column(variable).select(operator, value, selection);
+                return selection;
+            }
+        });
+    }
+
+    /**
+     * Converts the values of a record to the mapped types of the schema, in schema order,
+     * checking that the record binds exactly the variables of the schema.
+     * @throws IllegalArgumentException if the record does not match the schema
+     */
+    protected Object[] toRow(Record record) {
+        Schema schema = getSchema();
+        Object[] row = new Object[schema.getVariables().size()];
+        int i = 0;
+        for (String variable : schema.getVariables()) {
+            Object value = record.get(variable);
+            if (value == null) {
+                throw new IllegalArgumentException("Record had no value for variable: '" + variable + "'. " +
+                        "Record was: " + record + ", Schema was: " + schema);
+            }
+            row[i++] = Column.convert(schema.getTypeOf(variable), value);
+        }
+        if (record.size() != row.length) {
+            for (String variable : record.keySet()) {
+                Preconditions.checkNotNull(variable, "Record with at least one null variable name detected");
+                if (schema.getTypeOf(variable) == null) {
+                    throw new IllegalArgumentException("Unknown variable: '" + variable + "', available " +
+                            "variables: " + schema.getVariables());
+                }
+            }
+        }
+        return row;
+    }
+
+    @Override
+    protected synchronized Records report(Aggregate aggr, Filter filter,
+            List<Order> orders, Object... variables) {
+        Preconditions.checkNotNull(aggr, "aggregator");
+        BitSet selection = select(filter);
+        Column[] groupColumns = new Column[variables.length];
+        for (int i = 0; i < variables.length; i++) {
+            groupColumns[i] = column(variables[i]);
+        }
+        List<Record> records;
+        if (!aggr.isAggregating()) {
+            Column values = column(aggr.getVariableName());
+            records = new ArrayList<Record>(selection.cardinality());
+            for (int row = selection.nextSetBit(0); row >= 0; row = selection.nextSetBit(row + 1)) {
+                Record record = new Record();
+                for (int i = 0; i < variables.length; i++) {
+                    record.add(variables[i], groupColumns[i].get(row));
+                }
+                record.putValue(values.get(row));
+                records.add(record);
+            }
+        } else {
+            records = aggregate(aggr, selection, groupColumns, variables);
+            if (orders.isEmpty()) {
+                Collections.sort(records, naturalOrder(variables));
+            }
+        }
+        if (!orders.isEmpty()) {
+            Collections.sort(records, Orders.recordComparator(orders, aggr.getVariableName()));
+        }
+        return new Records(records, Arrays.asList(variables));
+    }
+
+    /**
+     * Streams unordered reports of values from the columns; the selection of rows is computed
+     * when the cursor is created. Other reports are materialized.
+     */
+    @Override
+    protected synchronized ReportCursor cursor(Aggregate aggr, Filter filter,
+            List<Order> orders, Object... variables) {
+        Preconditions.checkNotNull(aggr, "aggregator");
+        if (aggr.isAggregating() || !orders.isEmpty()) {
+            return super.cursor(aggr, filter, orders, variables);
+        }
+        Column[] columns = new Column[variables.length];
+        for (int i = 0; i < variables.length; i++) {
+            columns[i] = column(variables[i]);
+        }
+        return new ColumnCursor(aggr, select(filter), columns, column(aggr.getVariableName()),
+                reportSchema(variables), aggr.getResultType(getSchema()));
+    }
+
+    private List<Record> aggregate(Aggregate aggr, BitSet selection, Column[] groupColumns, Object[] variables) {
+        final String function = aggr.getFunctionName();
+        final Column measured = function.equals("COUNT") ? null : column(aggr.getVariableName());
+        final GroupTable groups = new GroupTable(groupColumns.length);
+        final Accumulators accumulators = new Accumulators(measured);
+        final int[] rows = new int[BATCH];
+        final int[] batchGroups = new int[BATCH];
+        final long[][] keys = new long[groupColumns.length][BATCH];
+        int row = selection.nextSetBit(0);
+        while (row >= 0) {
+            int count = 0;
+            for (; count < BATCH && row >= 0; row = selection.nextSetBit(row + 1)) {
+                rows[count++] = row;
+            }
+            for (int i = 0; i < groupColumns.length; i++) {
+                groupColumns[i].getKeys(rows, count, keys[i]);
+            }
+            groups.groupsOf(keys, count, batchGroups);
+            accumulators.add(rows, batchGroups, count, groups.size());
+        }
+        if (groups.size() == 0 && groupColumns.length == 0) {
+            groups.groupsOf(keys, 0, batchGroups);
+            accumulators.add(rows, batchGroups, 0, 1);
+        }
+        DataType<?> resultType = aggr.getResultType(getSchema());
+        List<Record> records = new ArrayList<Record>(groups.size());
+        for (int group = 0; group < groups.size(); group++) {
+            Record record = new Record();
+            for (int i = 0; i < groupColumns.length; i++) {
+                record.add(variables[i], groupColumns[i].valueOfKey(groups.keyOf(group, i)));
+            }
+            Object result = accumulators.result(group, function);
+            record.putValue(result == null ? null : Column.convert(resultType, result));
+            records.add(record);
+        }
+        return records;
+    }
+
+    @Override
+    protected synchronized <T> List<T> domainOfVariable(Filter filter, List<Order> orders,
+            Object variable, Class<T> expectedType) {
+        BitSet selection = select(filter);
+        Column column = column(variable);
+        final GroupTable keys = new GroupTable(1);
+        final int[] rows = new int[BATCH];
+        final int[] groups = new int[BATCH];
+        final long[][] batch = new long[1][BATCH];
+        int row = selection.nextSetBit(0);
+        while (row >= 0) {
+            int count = 0;
+            for (; count < BATCH && row >= 0; row = selection.nextSetBit(row + 1)) {
+                rows[count++] = row;
+            }
+            column.getKeys(rows, count, batch[0]);
+            keys.groupsOf(batch, count, groups);
+        }
+        List<T> domain = new ArrayList<T>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            domain.add(expectedType.cast(column.valueOfKey(keys.keyOf(i, 0))));
+        }
+        sortDomain(domain, orders);
+        return domain;
+    }
+
+    /**
+     * Reads the values of the selected rows in batches (while holding the lock of the
+     * aggregator), a column at a time, and binds them to records by index.
+     */
+    private class ColumnCursor implements ReportCursor {
+        private final Aggregate aggregate;
+        private final BitSet selection;
+        private final Column[] columns;
+        private final Column values;
+        private final Schema schema;
+        private final DataType<?> valueType;
+        private final boolean[] integral;
+        private final boolean[] floating;
+        private final long[][] longs;
+        private final double[][] doubles;
+        private final Object[][] objects;
+        private final Object[] batchValues = new Object[BATCH];
+        private final int[] rows = new int[BATCH];
+        private int row;
+        private int count;
+        private int position;
+
+        ColumnCursor(Aggregate aggregate, BitSet selection, Column[] columns, Column values,
+                Schema schema, DataType<?> valueType) {
+            this.aggregate = aggregate;
+            this.selection = selection;
+            this.columns = columns;
+            this.values = values;
+            this.schema = schema;
+            this.valueType = valueType;
+            this.integral = new boolean[columns.length];
+            this.floating = new boolean[columns.length];
+            this.longs = new long[columns.length][];
+            this.doubles = new double[columns.length][];
+            this.objects = new Object[columns.length][];
+            for (int i = 0; i < columns.length; i++) {
+                Class<?> type = columns[i].getType().getMappedType();
+                integral[i] = columns[i].isIntegral();
+                floating[i] = type == Double.class || type == Float.class;
+                if (integral[i]) {
+                    longs[i] = new long[BATCH];
+                } else if (floating[i]) {
+                    doubles[i] = new double[BATCH];
+                } else {
+                    objects[i] = new Object[BATCH];
+                }
+            }
+            this.row = selection.nextSetBit(0);
+        }
+
+        public Schema getSchema() {
+            return schema;
+        }
+
+        public Aggregate getAggregate() {
+            return aggregate;
+        }
+
+        public DataType<?> getValueType() {
+            return valueType;
+        }
+
+        public boolean next(SchemaRecord record) {
+            Preconditions.checkArgument(record.getSchema() == schema, "Record is not of the schema of the cursor");
+            if (position == count) {
+                if (row < 0) {
+                    return false;
+                }
+                fill();
+            }
+            final int j = position++;
+            for (int i = 0; i < columns.length; i++) {
+                if (integral[i]) {
+                    record.set(i, longs[i][j]);
+                } else if (floating[i]) {
+                    record.set(i, doubles[i][j]);
+                } else {
+                    record.set(i, objects[i][j]);
+                }
+            }
+            record.putValue(batchValues[j]);
+            return true;
+        }
+
+        private void fill() {
+            synchronized (AbstractColumnAggregator.this) {
+                count = 0;
+                for (; count < BATCH && row >= 0; row = selection.nextSetBit(row + 1)) {
+                    rows[count++] = row;
+                }
+                for (int i = 0; i < columns.length; i++) {
+                    if (integral[i]) {
+                        columns[i].getLongs(rows, count, longs[i]);
+                    } else if (floating[i]) {
+                        columns[i].getDoubles(rows, count, doubles[i]);
+                    } else {
+                        for (int j = 0; j < count; j++) {
+                            objects[i][j] = columns[i].get(rows[j]);
+                        }
+                    }
+                }
+                for (int j = 0; j < count; j++) {
+                    batchValues[j] = values.get(rows[j]);
+                }
+                position = 0;
+            }
+        }
+
+        public void close() {
+            row = -1;
+            count = position = 0;
+        }
+    }
+
+    /**
+     * Accumulates the count, sum, minimum and maximum of the measured column per group, in
+     * arrays indexed by group. Integral columns are accumulated exactly, as longs.
+     */
+    private static class Accumulators {
+        private final Column column;
+        private final boolean integral;
+        private final boolean numeric;
+        private final long[] longValues;
+        private final double[] doubleValues;
+        private int[] counts = new int[16];
+        private long[] longSums;
+        private long[] longMins;
+        private long[] longMaxs;
+        private double[] doubleSums;
+        private double[] doubleMins;
+        private double[] doubleMaxs;
+        private Object[] mins;
+        private Object[] maxs;
+
+        Accumulators(Column column) {
+            this.column = column;
+            this.integral = column != null && column.isIntegral();
+            this.numeric = column != null && column.isNumeric();
+            this.longValues = integral ? new long[BATCH] : null;
+            this.doubleValues = numeric && !integral ? new double[BATCH] : null;
+            if (integral) {
+                longSums = new long[16];
+                longMins = fill(new long[16], 0, Long.MAX_VALUE);
+                longMaxs = fill(new long[16], 0, Long.MIN_VALUE);
+            } else if (numeric) {
+                doubleSums = new double[16];
+                doubleMins = fill(new double[16], 0, Double.POSITIVE_INFINITY);
+                doubleMaxs = fill(new double[16], 0, Double.NEGATIVE_INFINITY);
+            } else if (column != null) {
+                mins = new Object[16];
+                maxs = new Object[16];
+            }
+        }
+
+        private static long[] fill(long[] array, int from, long value) {
+            Arrays.fill(array, from, array.length, value);
+            return array;
+        }
+
+        private static double[] fill(double[] array, int from, double value) {
+            Arrays.fill(array, from, array.length, value);
+            return array;
+        }
+
+        private static long[] grow(long[] array, int capacity, long value) {
+            long[] grown = new long[capacity];
+            System.arraycopy(array, 0, grown, 0, array.length);
+            return fill(grown, array.length, value);
+        }
+
+        private static double[] grow(double[] array, int capacity, double value) {
+            double[] grown = new double[capacity];
+            System.arraycopy(array, 0, grown, 0, array.length);
+            return fill(grown, array.length, value);
+        }
+
+        private static Object[] grow(Object[] array, int capacity) {
+            Object[] grown = new Object[capacity];
+            System.arraycopy(array, 0, grown, 0, array.length);
+            return grown;
+        }
+
+        private void ensureCapacity(int groups) {
+            final int length = counts.length;
+            if (groups <= length) {
+                return;
+            }
+            final int capacity = Math.max(groups, length * 2);
+            int[] grownCounts = new int[capacity];
+            System.arraycopy(counts, 0, grownCounts, 0, length);
+            counts = grownCounts;
+            if (integral) {
+                longSums = grow(longSums, capacity, 0);
+                longMins = grow(longMins, capacity, Long.MAX_VALUE);
+                longMaxs = grow(longMaxs, capacity, Long.MIN_VALUE);
+            } else if (numeric) {
+                doubleSums = grow(doubleSums, capacity, 0);
+                doubleMins = grow(doubleMins, capacity, Double.POSITIVE_INFINITY);
+                doubleMaxs = grow(doubleMaxs, capacity, Double.NEGATIVE_INFINITY);
+            } else if (column != null) {
+                mins = grow(mins, capacity);
+                maxs = grow(maxs, capacity);
+            }
+        }
+
+        /**
+         * Accumulates a batch of rows into their groups.
+         * @param groupCount the number of groups so far
+         */
+        @SuppressWarnings("unchecked")
+        void add(int[] rows, int[] groups, int count, int groupCount) {
+            ensureCapacity(groupCount);
+            for (int j = 0; j < count; j++) {
+                counts[groups[j]]++;
+            }
+            if (integral) {
+                column.getLongs(rows, count, longValues);
+                for (int j = 0; j < count; j++) {
+                    final int group = groups[j];
+                    final long value = longValues[j];
+                    longSums[group] += value;
+                    if (value < longMins[group]) longMins[group] = value;
+                    if (value > longMaxs[group]) longMaxs[group] = value;
+                }
+            } else if (numeric) {
+                column.getDoubles(rows, count, doubleValues);
+                for (int j = 0; j < count; j++) {
+                    final int group = groups[j];
+                    final double value = doubleValues[j];
+                    doubleSums[group] += value;
+                    if (value < doubleMins[group]) doubleMins[group] = value;
+                    if (value > doubleMaxs[group]) doubleMaxs[group] = value;
+                }
+            } else if (column != null) {
+                for (int j = 0; j < count; j++) {
+                    final int group = groups[j];
+                    Comparable<Object> value = (Comparable<Object>) column.get(rows[j]);
+                    if (mins[group] == null || value.compareTo(mins[group]) < 0) mins[group] = value;
+                    if (maxs[group] == null || value.compareTo(maxs[group]) > 0) maxs[group] = value;
+                }
+            }
+        }
+
+        Object result(int group, String function) {
+            final int count = counts[group];
+            if (function.equals("COUNT")) {
+                return count;
+            }
+            if (count == 0) {
+                return null;
+            }
+            if (function.equals("SUM")) {
+                requireNumeric(function);
+                return integral ? (Object) longSums[group] : (Object) doubleSums[group];
+            }
+            if (function.equals("AVG")) {
+                requireNumeric(function);
+                return integral ? (Object) (longSums[group] / count) : (Object) (doubleSums[group] / count);
+            }
+            if (function.equals("MIN")) {
+                return integral ? (Object) longMins[group] : numeric ? (Object) doubleMins[group] : mins[group];
+            }
+            if (function.equals("MAX")) {
+                return integral ? (Object) longMaxs[group] : numeric ? (Object) doubleMaxs[group] : maxs[group];
+            }
+            throw new UnsupportedOperationException("Unknown aggregate function: " + function);
+        }
+
+        private void requireNumeric(String function) {
+            if (!numeric) {
+                throw new IllegalArgumentException("Cannot apply " + function + " to the non-numeric column: " + column);
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package gr.forth.ics.jbenchy.impl;
+
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.DataType;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.BitSet;
+import java.util.Date;
+
+/**
+ * Read access to the values of a single variable, for all records of an aggregator, by row number.
+ * Used by {@link AbstractColumnAggregator} to evaluate reports without SQL.
+ * <p>
+ * Besides its (boxed) value, each row has a <em>key</em>: a <tt>long</tt> that is equal for two rows
+ * if and only if their values are equal, such as the value itself for integral columns, or a code
+ * for dictionary-encoded columns. Grouping and counting distinct values operate on keys, and only
+ * {@link #valueOfKey(long) decode} one key per group.
+ *
+ * @author andreou
+ */
+public abstract class Column {
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private final String variable;
+    private final DataType<?> type;
+
+    protected Column(String variable, DataType<?> type) {
+        this.variable = Preconditions.checkNotNull(variable, "variable");
+        this.type = Preconditions.checkNotNull(type, "type");
+    }
+
+    /**
+     * Returns the (normalized) variable of this column.
+     */
+    public String getVariable() {
+        return variable;
+    }
+
+    /**
+     * Returns the data type of this column.
+     */
+    public DataType<?> getType() {
+        return type;
+    }
+
+    /**
+     * Returns the number of rows.
+     */
+    public abstract int size();
+
+    /**
+     * Returns the value of a row, as an instance of the {@link DataType#getMappedType() mapped type}.
+     */
+    public abstract Object get(int row);
+
+    /**
+     * Returns the key of a row.
+     */
+    public abstract long getKey(int row);
+
+    /**
+     * Returns the value of the rows with the specified key.
+     */
+    public abstract Object valueOfKey(long key);
+
+    /**
+     * Returns whether this column holds numbers, so that {@link #getDouble(int)} can be used.
+     */
+    public boolean isNumeric() {
+        return Number.class.isAssignableFrom(type.getMappedType());
+    }
+
+    /**
+     * Returns whether this column holds integral numbers, so that {@link #getLong(int)} can be used.
+     */
+    public boolean isIntegral() {
+        Class<?> c = type.getMappedType();
+        return c == Integer.class || c == Long.class || c == Short.class || c == Byte.class;
+    }
+
+    /**
+     * Returns the value of a row of a numeric column, as a double.
+     */
+    public double getDouble(int row) {
+        return ((Number) get(row)).doubleValue();
+    }
+
+    /**
+     * Returns the value of a row of an integral column, as a long.
+     */
+    public long getLong(int row) {
+        return ((Number) get(row)).longValue();
+    }
+
+    /**
+     * Fetches the keys of a batch of rows. This implementation calls {@link #getKey(int)} per row;
+     * subclasses may override it with tighter loops.
+     * @param rows the rows
+     * @param count the number of rows
+     * @param keys receives the key of each row
+     */
+    public void getKeys(int[] rows, int count, long[] keys) {
+        for (int j = 0; j < count; j++) {
+            keys[j] = getKey(rows[j]);
+        }
+    }
+
+    /**
+     * Fetches the values of a batch of rows of an integral column.
+     * @see #getKeys(int[], int, long[])
+     */
+    public void getLongs(int[] rows, int count, long[] values) {
+        for (int j = 0; j < count; j++) {
+            values[j] = getLong(rows[j]);
+        }
+    }
+
+    /**
+     * Fetches the values of a batch of rows of a numeric column.
+     * @see #getKeys(int[], int, long[])
+     */
+    public void getDoubles(int[] rows, int count, double[] values) {
+        for (int j = 0; j < count; j++) {
+            values[j] = getDouble(rows[j]);
+        }
+    }
+
+    /**
+     * Marks, in the selection, the rows whose value compares to the given value as the operator
+     * specifies. The rows in the selection that do not match are not cleared. This implementation
+     * compares boxed values row by row; subclasses should override it with tighter loops.
+     * @param operator one of <tt>=, &lt;&gt;, &gt;, &gt;=, &lt;, &lt;=</tt>
+     * @param value the value to compare to (converted to the type of this column)
+     * @param selection the selection in which to mark matching rows
+     */
+    @SuppressWarnings("unchecked")
+    public void select(String operator, Object value, BitSet selection) {
+        Comparable<Object> v = (Comparable<Object>) convert(value);
+        final int size = size();
+        for (int row = 0; row < size; row++) {
+            if (matches(operator, ((Comparable<Object>) get(row)).compareTo(v))) {
+                selection.set(row);
+            }
+        }
+    }
+
+    /**
+     * Converts a value to the mapped type of this column; numbers are converted to other
+     * number types, and other values are parsed from their string representation.
+     */
+    public Object convert(Object value) {
+        return convert(type, value);
+    }
+
+    /**
+     * Converts a value to the mapped type of the specified data type.
+     * @see #convert(Object)
+     */
+    public static Object convert(DataType<?> type, Object value) {
+        Class<?> c = type.getMappedType();
+        if (c.isInstance(value)) {
+            return value;
+        }
+        if (value instanceof Number) {
+            Number n = (Number) value;
+            if (c == Integer.class) return n.intValue();
+            if (c == Long.class) return n.longValue();
+            if (c == Short.class) return n.shortValue();
+            if (c == Byte.class) return n.byteValue();
+            if (c == Double.class) return n.doubleValue();
+            if (c == Float.class) return n.floatValue();
+            if (c == BigDecimal.class) return new BigDecimal(n.toString());
+        }
+        if (value instanceof Date && c == Timestamp.class) {
+            return new Timestamp(((Date) value).getTime());
+        }
+        return type.parse(String.valueOf(value));
+    }
+
+    /**
+     * Returns whether the result of a comparison satisfies an operator.
+     * @param operator one of <tt>=, &lt;&gt;, &gt;, &gt;=, &lt;, &lt;=</tt>
+     * @param comparison the result of comparing a row's value to the operand
+     */
+    public static boolean matches(String operator, int comparison) {
+        if (operator.equals("=")) return comparison == 0;
+        if (operator.equals("<>")) return comparison != 0;
+        if (operator.equals(">")) return comparison > 0;
+        if (operator.equals(">=")) return comparison >= 0;
+        if (operator.equals("<")) return comparison < 0;
+        if (operator.equals("<=")) return comparison <= 0;
+        throw new IllegalArgumentException("Unknown operator: " + operator);
+    }
+
+    /**
+     * Encodes a timestamp as nanoseconds since the epoch, so that it can be stored in a <tt>long</tt>
+     * (for dates between the years 1678 and 2261).
+     * @see #decodeTimestamp(long)
+     */
+    public static long encodeTimestamp(Timestamp timestamp) {
+        long seconds = timestamp.getTime() / 1000;
+        if (timestamp.getTime() % 1000 < 0) {
+            seconds--;
+        }
+        return seconds * NANOS_PER_SECOND + timestamp.getNanos();
+    }
+
+    /**
+     * Decodes a timestamp {@link #encodeTimestamp(Timestamp) encoded} as nanoseconds since the epoch.
+     */
+    public static Timestamp decodeTimestamp(long nanos) {
+        long seconds = nanos / NANOS_PER_SECOND;
+        int remainder = (int) (nanos % NANOS_PER_SECOND);
+        if (remainder < 0) {
+            seconds--;
+            remainder += NANOS_PER_SECOND;
+        }
+        Timestamp timestamp = new Timestamp(seconds * 1000);
+        timestamp.setNanos(remainder);
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "[Column " + variable + " " + type + ", rows=" + size() + "]";
+    }
+}
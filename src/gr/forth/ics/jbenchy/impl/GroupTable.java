@@ -0,0 +1,160 @@
+package gr.forth.ics.jbenchy.impl;
+
+/**
+ * An open-addressing hash table that maps tuples of {@link Column#getKey(int) keys} (one per
+ * grouping column) to consecutive group numbers, in order of first appearance. The tuples are
+ * stored flat in a single <tt>long</tt> array, so that grouping allocates nothing per row or group.
+ *
+ * @author andreou
+ */
+final class GroupTable {
+    private final int width;
+    private long[] keys;
+    private int[] hashes;
+    //group + 1 per slot, or 0 if the slot is empty
+    private int[] slots;
+    private int size;
+
+    /**
+     * Creates a table of tuples of the specified width (the number of grouping columns).
+     */
+    GroupTable(int width) {
+        this.width = width;
+        this.keys = new long[Math.max(1, width) * 16];
+        this.hashes = new int[16];
+        this.slots = new int[32];
+    }
+
+    /**
+     * Returns the number of groups.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the key of a grouping column for a group.
+     */
+    long keyOf(int group, int column) {
+        return keys[group * width + column];
+    }
+
+    /**
+     * Maps a batch of tuples to their groups, adding new groups as needed.
+     * @param columns the keys, per grouping column and then per tuple
+     * @param count the number of tuples
+     * @param groups receives the group of each tuple
+     */
+    void groupsOf(long[][] columns, int count, int[] groups) {
+        if (width == 0) {
+            if (size == 0) {
+                add(columns, 0, 0);
+            }
+            for (int j = 0; j < count; j++) {
+                groups[j] = 0;
+            }
+            return;
+        }
+        if (width == 1) {
+            final long[] column = columns[0];
+            for (int j = 0; j < count; j++) {
+                groups[j] = groupOf(column[j], columns, j);
+            }
+            return;
+        }
+        for (int j = 0; j < count; j++) {
+            groups[j] = groupOf(columns, j);
+        }
+    }
+
+    /**
+     * The single-column case of {@link #groupOf(long[][], int)}.
+     */
+    private int groupOf(long key, long[][] columns, int j) {
+        final int hash = hash(key);
+        final int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int group = slots[slot] - 1;
+            if (group < 0) {
+                return add(columns, j, hash);
+            }
+            if (keys[group] == key) {
+                return group;
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        long hash = (1 ^ key) * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) ^ (int) hash;
+    }
+
+    /**
+     * Returns the group of a tuple, adding a new group if the tuple is new.
+     */
+    private int groupOf(long[][] columns, int j) {
+        final int hash = hash(columns, j);
+        final int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int group = slots[slot] - 1;
+            if (group < 0) {
+                return add(columns, j, hash);
+            }
+            if (hashes[group] == hash && equals(group, columns, j)) {
+                return group;
+            }
+        }
+    }
+
+    private int hash(long[][] columns, int j) {
+        long hash = width;
+        for (int i = 0; i < width; i++) {
+            hash = (hash ^ columns[i][j]) * 0x9E3779B97F4A7C15L;
+        }
+        return (int) (hash >>> 32) ^ (int) hash;
+    }
+
+    private boolean equals(int group, long[][] columns, int j) {
+        final int offset = group * width;
+        for (int i = 0; i < width; i++) {
+            if (keys[offset + i] != columns[i][j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int add(long[][] columns, int j, int hash) {
+        final int group = size++;
+        if (size > hashes.length) {
+            long[] newKeys = new long[keys.length * 2];
+            System.arraycopy(keys, 0, newKeys, 0, keys.length);
+            keys = newKeys;
+            int[] newHashes = new int[hashes.length * 2];
+            System.arraycopy(hashes, 0, newHashes, 0, hashes.length);
+            hashes = newHashes;
+        }
+        for (int i = 0; i < width; i++) {
+            keys[group * width + i] = columns[i][j];
+        }
+        hashes[group] = hash;
+        if (size * 2 > slots.length) {
+            slots = new int[slots.length * 2];
+            for (int g = 0; g < size; g++) {
+                place(g);
+            }
+        } else {
+            place(group);
+        }
+        return group;
+    }
+
+    private void place(int group) {
+        final int mask = slots.length - 1;
+        int slot = hashes[group] & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = group + 1;
+    }
+}
@@ -0,0 +1,278 @@
+package gr.forth.ics.jbenchy.impl.columnar;
+
+import java.nio.LongBuffer;
+
+/**
+ * A compression scheme for a block of values, each represented as a <tt>long</tt>: integral
+ * values and timestamps as such, and floating point values as their (raw) bits.
+ *
+ * @author andreou
+ */
+abstract class Codec {
+    /**
+     * Frame-of-reference bit packing: the minimum value, then each value minus the minimum, in
+     * as many bits as the greatest difference needs. Suits integers of a narrow range, such as
+     * parameters and dictionary codes.
+     */
+    static final Codec BIT_PACKING = new Codec() {
+        @Override
+        long[] encode(long[] values, int count) {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < count; i++) {
+                min = Math.min(min, values[i]);
+                max = Math.max(max, values[i]);
+            }
+            int width = 64 - Long.numberOfLeadingZeros(max - min);
+            BitWriter out = new BitWriter(count * width + 71);
+            out.write(min, 64);
+            out.write(width, 7);
+            for (int i = 0; i < count; i++) {
+                out.write(values[i] - min, width);
+            }
+            return out.toArray();
+        }
+
+        @Override
+        void decode(LongBuffer encoded, long[] values, int count) {
+            BitReader in = new BitReader(encoded);
+            long min = in.read(64);
+            int width = (int) in.read(7);
+            for (int i = 0; i < count; i++) {
+                values[i] = min + in.read(width);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "BIT_PACKING";
+        }
+    };
+
+    /**
+     * Delta-of-delta encoding, as in Facebook's Gorilla: each value is represented by the change of
+     * its difference from the previous value, in a variable number of bits (a single bit if
+     * the difference is unchanged). Suits timestamps and other regularly increasing values.
+     */
+    static final Codec DELTA_OF_DELTA = new Codec() {
+        private final int[] widths = { 7, 9, 12, 32, 64 };
+
+        @Override
+        long[] encode(long[] values, int count) {
+            BitWriter out = new BitWriter(count * 4 + 64);
+            long previous = 0;
+            long previousDelta = 0;
+            for (int i = 0; i < count; i++) {
+                long delta = values[i] - previous;
+                long deltaOfDelta = delta - previousDelta;
+                long zigzag = (deltaOfDelta << 1) ^ (deltaOfDelta >> 63);
+                if (i == 0) {
+                    out.write(values[i], 64);
+                } else if (zigzag == 0) {
+                    out.write(0, 1);
+                } else {
+                    int bucket = 0;
+                    while (bucket < widths.length - 1 && (zigzag >>> widths[bucket]) != 0) {
+                        bucket++;
+                    }
+                    //unary bucket prefix: 10, 110, 1110, 11110, 11111
+                    out.write((1L << (bucket + 1)) - 1, bucket + 1);
+                    if (bucket < widths.length - 1) {
+                        out.write(0, 1);
+                    }
+                    out.write(zigzag, widths[bucket]);
+                }
+                previous = values[i];
+                previousDelta = i == 0 ? 0 : delta;
+            }
+            return out.toArray();
+        }
+
+        @Override
+        void decode(LongBuffer encoded, long[] values, int count) {
+            BitReader in = new BitReader(encoded);
+            long previous = 0;
+            long previousDelta = 0;
+            for (int i = 0; i < count; i++) {
+                if (i == 0) {
+                    values[0] = in.read(64);
+                    previous = values[0];
+                    continue;
+                }
+                long zigzag = 0;
+                if (in.read(1) != 0) {
+                    int bucket = 0;
+                    while (bucket < widths.length - 1 && in.read(1) != 0) {
+                        bucket++;
+                    }
+                    zigzag = in.read(widths[bucket]);
+                }
+                long delta = previousDelta + ((zigzag >>> 1) ^ -(zigzag & 1));
+                values[i] = previous + delta;
+                previous = values[i];
+                previousDelta = delta;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "DELTA_OF_DELTA";
+        }
+    };
+
+    /**
+     * XOR encoding of floating point values, as in Facebook's Gorilla: each value is XOR-ed with the
+     * previous one, and only the meaningful bits of the result are stored (a single bit if the value
+     * is repeated). Suits slowly changing measurements.
+     */
+    static final Codec XOR = new Codec() {
+        @Override
+        long[] encode(long[] values, int count) {
+            BitWriter out = new BitWriter(count * 16 + 64);
+            int previousLeading = -1;
+            int previousTrailing = 0;
+            for (int i = 0; i < count; i++) {
+                if (i == 0) {
+                    out.write(values[0], 64);
+                    continue;
+                }
+                long xor = values[i] ^ values[i - 1];
+                if (xor == 0) {
+                    out.write(0, 1);
+                    continue;
+                }
+                out.write(1, 1);
+                int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+                int trailing = Long.numberOfTrailingZeros(xor);
+                if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                    out.write(0, 1);
+                    out.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+                } else {
+                    int significant = 64 - leading - trailing;
+                    out.write(1, 1);
+                    out.write(leading, 5);
+                    out.write(significant - 1, 6);
+                    out.write(xor >>> trailing, significant);
+                    previousLeading = leading;
+                    previousTrailing = trailing;
+                }
+            }
+            return out.toArray();
+        }
+
+        @Override
+        void decode(LongBuffer encoded, long[] values, int count) {
+            BitReader in = new BitReader(encoded);
+            int leading = 0;
+            int trailing = 0;
+            for (int i = 0; i < count; i++) {
+                if (i == 0) {
+                    values[0] = in.read(64);
+                    continue;
+                }
+                if (in.read(1) == 0) {
+                    values[i] = values[i - 1];
+                    continue;
+                }
+                if (in.read(1) != 0) {
+                    leading = (int) in.read(5);
+                    trailing = 64 - leading - ((int) in.read(6) + 1);
+                }
+                values[i] = values[i - 1] ^ (in.read(64 - leading - trailing) << trailing);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "XOR";
+        }
+    };
+
+    /**
+     * Encodes the first <tt>count</tt> values.
+     */
+    abstract long[] encode(long[] values, int count);
+
+    /**
+     * Decodes <tt>count</tt> values that were encoded by this codec into the specified array. The
+     * encoded words are read by absolute index, so they may be kept off-heap, in a direct buffer.
+     */
+    abstract void decode(LongBuffer encoded, long[] values, int count);
+
+    /**
+     * Appends bits to a growing array of words, least significant bits first.
+     */
+    static class BitWriter {
+        private long[] words;
+        private long position;
+
+        BitWriter(long expectedBits) {
+            words = new long[(int) Math.max(1, (expectedBits + 63) >>> 6)];
+        }
+
+        /**
+         * Writes the <tt>count</tt> (0 to 64) least significant bits of a value.
+         */
+        void write(long value, int count) {
+            if (count == 0) {
+                return;
+            }
+            int index = (int) (position >>> 6);
+            int offset = (int) (position & 63);
+            if (index + 1 >= words.length) {
+                long[] grown = new long[words.length * 2 + 2];
+                System.arraycopy(words, 0, grown, 0, words.length);
+                words = grown;
+            }
+            if (count < 64) {
+                value &= (1L << count) - 1;
+            }
+            words[index] |= value << offset;
+            if (offset + count > 64) {
+                words[index + 1] |= value >>> (64 - offset);
+            }
+            position += count;
+        }
+
+        /**
+         * Returns the written words, trimmed.
+         */
+        long[] toArray() {
+            long[] trimmed = new long[(int) ((position + 63) >>> 6)];
+            System.arraycopy(words, 0, trimmed, 0, trimmed.length);
+            return trimmed;
+        }
+    }
+
+    /**
+     * Reads the bits written by a {@link BitWriter}.
+     */
+    static class BitReader {
+        private final LongBuffer words;
+        private long position;
+
+        BitReader(LongBuffer words) {
+            this.words = words;
+        }
+
+        /**
+         * Reads the next <tt>count</tt> (0 to 64) bits.
+         */
+        long read(int count) {
+            if (count == 0) {
+                return 0;
+            }
+            int index = (int) (position >>> 6);
+            int offset = (int) (position & 63);
+            long value = words.get(index) >>> offset;
+            if (offset + count > 64) {
+                value |= words.get(index + 1) << (64 - offset);
+            }
+            if (count < 64) {
+                value &= (1L << count) - 1;
+            }
+            position += count;
+            return value;
+        }
+    }
+}
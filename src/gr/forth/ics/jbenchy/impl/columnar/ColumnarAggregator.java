@@ -0,0 +1,124 @@
+package gr.forth.ics.jbenchy.impl.columnar;
+
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.Filter;
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Schema;
+import gr.forth.ics.jbenchy.SchemaRecord;
+import gr.forth.ics.jbenchy.impl.AbstractColumnAggregator;
+import gr.forth.ics.jbenchy.impl.Column;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ *
+ * @author andreou
+ */
+class ColumnarAggregator extends AbstractColumnAggregator {
+    private final Schema schema;
+    private final StoredColumn[] columns;
+    private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+    //the converted object slots of the record being appended through the fast path
+    private final Object[] converted;
+    private int rows;
+
+    ColumnarAggregator(Schema schema, String name) {
+        super(name);
+        this.schema = Preconditions.checkNotNull(schema, "schema");
+        this.columns = new StoredColumn[schema.getVariables().size()];
+        this.converted = new Object[columns.length];
+        int i = 0;
+        for (String variable : schema.getVariables()) {
+            columns[i] = StoredColumn.create(variable, schema.getTypeOf(variable));
+            indexes.put(variable, i++);
+        }
+    }
+
+    public Schema getSchema() {
+        return schema;
+    }
+
+    @Override
+    protected Column getColumn(String variable) {
+        Integer index = indexes.get(variable);
+        return index == null ? null : columns[index];
+    }
+
+    @Override
+    protected synchronized int getRowCount() {
+        return rows;
+    }
+
+    public synchronized void record(Record record) {
+        if (record instanceof SchemaRecord && ((SchemaRecord)record).getSchema() == schema
+                && ((SchemaRecord)record).isComplete() && record.getValue() == null) {
+            recordSlots((SchemaRecord)record);
+        } else {
+            Object[] row = toRow(record);
+            for (int i = 0; i < columns.length; i++) {
+                columns[i].append(row[i]);
+            }
+        }
+        rows++;
+    }
+
+    private static boolean isUnboxed(StoredColumn column) {
+        return column instanceof FixedColumn && column.isNumeric();
+    }
+
+    /**
+     * Fast path for records created by our own schema: numeric slots are appended unboxed.
+     * All other slots are converted before any column is appended to, so that a value that
+     * fails to convert leaves the columns aligned.
+     */
+    private void recordSlots(SchemaRecord record) {
+        try {
+            for (int i = 0; i < columns.length; i++) {
+                if (!isUnboxed(columns[i])) {
+                    converted[i] = columns[i].convert(record.get(i));
+                }
+            }
+            for (int i = 0; i < columns.length; i++) {
+                StoredColumn column = columns[i];
+                if (!isUnboxed(column)) {
+                    column.append(converted[i]);
+                } else if (column.isIntegral()) {
+                    ((FixedColumn)column).appendLong(record.getLong(i));
+                } else {
+                    ((FixedColumn)column).appendDouble(record.getDouble(i));
+                }
+            }
+        } finally {
+            Arrays.fill(converted, null);
+        }
+    }
+
+    /**
+     * Returns the number of bytes that store the rows of this aggregator, raw or encoded.
+     */
+    synchronized long getFootprint() {
+        long footprint = 0;
+        for (StoredColumn column : columns) {
+            footprint += column.getFootprint();
+        }
+        return footprint;
+    }
+
+    @Override
+    protected synchronized void deleteRecords(Filter filter) {
+        BitSet deleted = select(filter);
+        if (deleted.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < columns.length; i++) {
+            StoredColumn kept = columns[i].emptyCopy();
+            for (int row = deleted.nextClearBit(0); row < rows; row = deleted.nextClearBit(row + 1)) {
+                kept.appendFrom(columns[i], row);
+            }
+            columns[i] = kept;
+        }
+        rows -= deleted.cardinality();
+    }
+}
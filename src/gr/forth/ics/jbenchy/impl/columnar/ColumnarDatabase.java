@@ -0,0 +1,52 @@
+package gr.forth.ics.jbenchy.impl.columnar;
+
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.Aggregator;
+import gr.forth.ics.jbenchy.Database;
+import gr.forth.ics.jbenchy.SQLRuntimeException;
+import gr.forth.ics.jbenchy.Schema;
+import gr.forth.ics.jbenchy.StringUtils;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ *
+ * @author andreou
+ */
+class ColumnarDatabase extends Database {
+    private final String dbName;
+    private final ColumnarFactory factory;
+    private final Map<String, ColumnarAggregator> aggregators = new HashMap<String, ColumnarAggregator>();
+
+    ColumnarDatabase(String dbName, ColumnarFactory factory) {
+        this.dbName = dbName;
+        this.factory = factory;
+    }
+
+    public synchronized Aggregator get(String name) {
+        StringUtils.checkHasText(name);
+        return aggregators.get(name.toUpperCase());
+    }
+
+    public synchronized Aggregator create(Schema schema, String name) throws SQLRuntimeException {
+        Preconditions.checkNotNull(schema, "schema");
+        StringUtils.checkHasText(name, "name");
+        name = name.toUpperCase();
+        if (aggregators.containsKey(name)) {
+            throw new IllegalArgumentException("Aggregator: '" + name + "' already exists");
+        }
+        ColumnarAggregator aggregator = new ColumnarAggregator(schema, name);
+        aggregators.put(name, aggregator);
+        return aggregator;
+    }
+
+    public synchronized boolean delete(String name) {
+        StringUtils.checkHasText(name);
+        return aggregators.remove(name.toUpperCase()) != null;
+    }
+
+    public synchronized void shutDown() {
+        aggregators.clear();
+        factory.release(dbName);
+    }
+}
@@ -0,0 +1,54 @@
+package gr.forth.ics.jbenchy.impl.columnar;
+
+import gr.forth.ics.jbenchy.Database;
+import gr.forth.ics.jbenchy.DbFactory;
+import gr.forth.ics.jbenchy.StringUtils;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A factory of in-memory, columnar databases. Databases are shared by all factories of this
+ * process (like embedded Derby databases), and live until they are {@link Database#shutDown() shut down}.
+ *
+ * @author andreou
+ */
+public class ColumnarFactory implements DbFactory {
+    private static final Map<String, ColumnarDatabase> databases = new HashMap<String, ColumnarDatabase>();
+
+    public Database get(String dbName) {
+        StringUtils.checkHasText(dbName, "Empty db name");
+        synchronized (databases) {
+            ColumnarDatabase db = databases.get(dbName);
+            if (db == null) {
+                throw new RuntimeException("Database: '" + dbName +
+                        "' does not exist");
+            }
+            return db;
+        }
+    }
+
+    public boolean exists(String dbName) {
+        StringUtils.checkHasText(dbName, "Empty db name");
+        synchronized (databases) {
+            return databases.containsKey(dbName);
+        }
+    }
+
+    public Database getOrCreate(String dbName) {
+        StringUtils.checkHasText(dbName, "Empty db name");
+        synchronized (databases) {
+            ColumnarDatabase db = databases.get(dbName);
+            if (db == null) {
+                db = new ColumnarDatabase(dbName, this);
+                databases.put(dbName, db);
+            }
+            return db;
+        }
+    }
+
+    void release(String dbName) {
+        synchronized (databases) {
+            databases.remove(dbName);
+        }
+    }
+}
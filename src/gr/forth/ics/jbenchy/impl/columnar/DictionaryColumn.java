@@ -0,0 +1,107 @@
+package gr.forth.ics.jbenchy.impl.columnar;
+
+import gr.forth.ics.jbenchy.DataType;
+import gr.forth.ics.jbenchy.EncodedDataType;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A dictionary-encoded column: each distinct value is stored once, on-heap, and rows store
+ * the <tt>int</tt> code of their value in an off-heap {@link FixedColumn}. The code of a row is
+ * also its key.
+ *
+ * @author andreou
+ */
+class DictionaryColumn extends StoredColumn {
+    private final List<Object> values;
+    private final Map<Object, Integer> codes;
+    private final FixedColumn rows;
+
+    DictionaryColumn(String variable, DataType<?> type) {
+        this(variable, type, new ArrayList<Object>(), new HashMap<Object, Integer>());
+    }
+
+    private DictionaryColumn(String variable, DataType<?> type, List<Object> values, Map<Object, Integer> codes) {
+        super(variable, type);
+        this.values = values;
+        this.codes = codes;
+        this.rows = new FixedColumn(variable, CODE_TYPE);
+    }
+
+    @Override
+    public int size() {
+        return rows.size();
+    }
+
+    @Override
+    void append(Object value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            values.add(getType() instanceof EncodedDataType ? ((String) value).intern() : value);
+            codes.put(value, code);
+        }
+        rows.appendLong(code);
+    }
+
+    @Override
+    void appendFrom(StoredColumn column, int row) {
+        //copies share the dictionary
+        rows.appendLong(((DictionaryColumn) column).rows.getLong(row));
+    }
+
+    @Override
+    StoredColumn emptyCopy() {
+        return new DictionaryColumn(getVariable(), getType(), values, codes);
+    }
+
+    /**
+     * Returns the footprint of the codes; the distinct values are not counted.
+     */
+    @Override
+    long getFootprint() {
+        return rows.getFootprint();
+    }
+
+    @Override
+    public long getKey(int row) {
+        return rows.getLong(row);
+    }
+
+    @Override
+    public Object valueOfKey(long key) {
+        return values.get((int) key);
+    }
+
+    @Override
+    public Object get(int row) {
+        return values.get((int) rows.getLong(row));
+    }
+
+    /**
+     * Evaluates the comparison once per distinct value, then marks the rows whose code matches.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void select(String operator, Object value, BitSet selection) {
+        Comparable<Object> operand = (Comparable<Object>) convert(value);
+        BitSet matchingCodes = new BitSet(values.size());
+        for (int code = 0; code < values.size(); code++) {
+            if (matches(operator, ((Comparable<Object>) values.get(code)).compareTo(operand))) {
+                matchingCodes.set(code);
+            }
+        }
+        if (matchingCodes.isEmpty()) {
+            return;
+        }
+        final int size = rows.size();
+        for (int row = 0; row < size; row++) {
+            if (matchingCodes.get((int) rows.getLong(row))) {
+                selection.set(row);
+            }
+        }
+    }
+}
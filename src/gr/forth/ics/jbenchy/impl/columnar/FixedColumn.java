@@ -0,0 +1,363 @@
+package gr.forth.ics.jbenchy.impl.columnar;
+
+import gr.forth.ics.jbenchy.DataType;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A column of fixed-width values (integral, floating point, or timestamps), stored natively in
+ * off-heap segments of {@link #SEGMENT_ROWS} rows each. Timestamps are stored as nanoseconds since
+ * the epoch.
+ * <p>
+ * Once a segment is full, it is <em>sealed</em>: it is compressed by the {@link Codec codecs} that suit
+ * the type of the column (delta-of-delta for longs and timestamps, XOR for floating point values,
+ * bit packing for integral values), keeping the smallest encoding, unless it is not smaller than the
+ * segment itself. Encoded segments are kept off-heap too, in direct buffers of their exact size.
+ * Reading a row of a sealed segment decodes the whole segment, which is cached until another sealed
+ * segment is read; scans decode each segment once.
+ *
+ * @author andreou
+ */
+class FixedColumn extends StoredColumn {
+    static final int SEGMENT_SHIFT = 16;
+    static final int SEGMENT_ROWS = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_ROWS - 1;
+
+    private static final int INT = 0;
+    private static final int SHORT = 1;
+    private static final int LONG = 2;
+    private static final int FLOAT = 3;
+    private static final int DOUBLE = 4;
+    private static final int TIMESTAMP = 5;
+
+    private final int kind;
+    private final int width;
+    private final Codec[] candidates;
+    //per segment, either the raw segment, or the encoded segment and its codec
+    private final List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+    private final List<LongBuffer> encodedSegments = new ArrayList<LongBuffer>();
+    private final List<Codec> codecs = new ArrayList<Codec>();
+    private int size;
+
+    private long[] decoded;
+    private int decodedSegment = -1;
+
+    FixedColumn(String variable, DataType<?> type) {
+        super(variable, type);
+        Class<?> c = type.getMappedType();
+        if (c == Integer.class) { kind = INT; width = 4; }
+        else if (c == Short.class) { kind = SHORT; width = 2; }
+        else if (c == Long.class) { kind = LONG; width = 8; }
+        else if (c == Float.class) { kind = FLOAT; width = 4; }
+        else if (c == Double.class) { kind = DOUBLE; width = 8; }
+        else if (c == Timestamp.class) { kind = TIMESTAMP; width = 8; }
+        else throw new IllegalArgumentException("Not a fixed-width type: " + type);
+        switch (kind) {
+            case INT: case SHORT: candidates = new Codec[] { Codec.BIT_PACKING }; break;
+            case FLOAT: case DOUBLE: candidates = new Codec[] { Codec.XOR }; break;
+            default: candidates = new Codec[] { Codec.DELTA_OF_DELTA, Codec.BIT_PACKING };
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether values are stored as longs (integral values and timestamps).
+     */
+    boolean isLongBacked() {
+        return kind != FLOAT && kind != DOUBLE;
+    }
+
+    private ByteBuffer segmentForAppend() {
+        if ((size & SEGMENT_MASK) == 0 && (size >>> SEGMENT_SHIFT) == segments.size()) {
+            segments.add(ByteBuffer.allocateDirect(SEGMENT_ROWS * width).order(ByteOrder.nativeOrder()));
+            encodedSegments.add(null);
+            codecs.add(null);
+        }
+        return segments.get(size >>> SEGMENT_SHIFT);
+    }
+
+    private void appended() {
+        size++;
+        if ((size & SEGMENT_MASK) == 0) {
+            seal((size >>> SEGMENT_SHIFT) - 1);
+        }
+    }
+
+    /**
+     * Replaces a full segment by its smallest encoding, if that is smaller than the segment.
+     */
+    private void seal(int s) {
+        ByteBuffer segment = segments.get(s);
+        long[] values = new long[SEGMENT_ROWS];
+        for (int i = 0; i < SEGMENT_ROWS; i++) {
+            values[i] = rawBits(segment, i);
+        }
+        Codec best = null;
+        long[] smallest = null;
+        for (Codec codec : candidates) {
+            long[] encoded = codec.encode(values, SEGMENT_ROWS);
+            if (smallest == null || encoded.length < smallest.length) {
+                best = codec;
+                smallest = encoded;
+            }
+        }
+        if (smallest.length * 8L >= SEGMENT_ROWS * width) {
+            return;
+        }
+        LongBuffer encoded = ByteBuffer.allocateDirect(smallest.length * 8).
+                order(ByteOrder.nativeOrder()).asLongBuffer();
+        encoded.put(smallest);
+        segments.set(s, null);
+        encodedSegments.set(s, encoded);
+        codecs.set(s, best);
+        decoded = values;
+        decodedSegment = s;
+    }
+
+    /**
+     * Returns the values of a sealed segment, decoding it unless it is the cached one.
+     */
+    private long[] decode(int s) {
+        if (decodedSegment != s) {
+            if (decoded == null) {
+                decoded = new long[SEGMENT_ROWS];
+            }
+            codecs.get(s).decode(encodedSegments.get(s), decoded, SEGMENT_ROWS);
+            decodedSegment = s;
+        }
+        return decoded;
+    }
+
+    /**
+     * Returns the value at a position of a raw segment as a long: integral values and timestamps
+     * as such, and floating point values as the bits of their <tt>double</tt> value.
+     */
+    private long rawBits(ByteBuffer segment, int i) {
+        switch (kind) {
+            case INT: return segment.getInt(i << 2);
+            case SHORT: return segment.getShort(i << 1);
+            case FLOAT: return Double.doubleToRawLongBits(segment.getFloat(i << 2));
+            case DOUBLE: return Double.doubleToRawLongBits(segment.getDouble(i << 3));
+            default: return segment.getLong(i << 3);
+        }
+    }
+
+    private long bitsAt(int row) {
+        final int s = row >>> SEGMENT_SHIFT;
+        ByteBuffer segment = segments.get(s);
+        return segment != null ? rawBits(segment, row & SEGMENT_MASK) : decode(s)[row & SEGMENT_MASK];
+    }
+
+    @Override
+    long getFootprint() {
+        long footprint = 0;
+        for (int s = 0; s < segments.size(); s++) {
+            footprint += segments.get(s) != null ? segments.get(s).capacity() : encodedSegments.get(s).capacity() * 8L;
+        }
+        return footprint;
+    }
+
+    /**
+     * Appends a long-backed value: an integral value, or an {@link #encodeTimestamp(Timestamp) encoded} timestamp.
+     */
+    void appendLong(long value) {
+        ByteBuffer segment = segmentForAppend();
+        int offset = (size & SEGMENT_MASK) * width;
+        switch (kind) {
+            case INT: segment.putInt(offset, (int) value); break;
+            case SHORT: segment.putShort(offset, (short) value); break;
+            case LONG: case TIMESTAMP: segment.putLong(offset, value); break;
+            default: appendDouble(value); return;
+        }
+        appended();
+    }
+
+    /**
+     * Appends a floating point value.
+     */
+    void appendDouble(double value) {
+        if (isLongBacked()) {
+            appendLong((long) value);
+            return;
+        }
+        ByteBuffer segment = segmentForAppend();
+        int offset = (size & SEGMENT_MASK) * width;
+        if (kind == FLOAT) {
+            segment.putFloat(offset, (float) value);
+        } else {
+            segment.putDouble(offset, value);
+        }
+        appended();
+    }
+
+    @Override
+    void append(Object value) {
+        if (kind == TIMESTAMP) {
+            appendLong(encodeTimestamp((Timestamp) value));
+        } else if (isLongBacked()) {
+            appendLong(((Number) value).longValue());
+        } else {
+            appendDouble(((Number) value).doubleValue());
+        }
+    }
+
+    @Override
+    void appendFrom(StoredColumn column, int row) {
+        FixedColumn source = (FixedColumn) column;
+        if (isLongBacked()) {
+            appendLong(source.getRawLong(row));
+        } else {
+            appendDouble(source.getDouble(row));
+        }
+    }
+
+    @Override
+    StoredColumn emptyCopy() {
+        return new FixedColumn(getVariable(), getType());
+    }
+
+    private long getRawLong(int row) {
+        return isLongBacked() ? bitsAt(row) : (long) getDouble(row);
+    }
+
+    @Override
+    public long getLong(int row) {
+        return getRawLong(row);
+    }
+
+    @Override
+    public double getDouble(int row) {
+        long bits = bitsAt(row);
+        return isLongBacked() ? bits : Double.longBitsToDouble(bits);
+    }
+
+    @Override
+    public long getKey(int row) {
+        return isLongBacked() ? bitsAt(row) : Double.doubleToLongBits(getDouble(row));
+    }
+
+    @Override
+    public void getKeys(int[] rows, int count, long[] keys) {
+        if (!isLongBacked()) {
+            super.getKeys(rows, count, keys);
+            return;
+        }
+        fetchBits(rows, count, keys);
+    }
+
+    /**
+     * Fetches the bits of a batch of rows, in any order, looking up the segment once per run of
+     * consecutive rows in the same segment (so ascending rows look up each segment once).
+     */
+    private void fetchBits(int[] rows, int count, long[] bits) {
+        int j = 0;
+        while (j < count) {
+            final int s = rows[j] >>> SEGMENT_SHIFT;
+            ByteBuffer segment = segments.get(s);
+            if (segment == null) {
+                long[] values = decode(s);
+                for (; j < count && rows[j] >>> SEGMENT_SHIFT == s; j++) {
+                    bits[j] = values[rows[j] & SEGMENT_MASK];
+                }
+            } else {
+                for (; j < count && rows[j] >>> SEGMENT_SHIFT == s; j++) {
+                    bits[j] = rawBits(segment, rows[j] & SEGMENT_MASK);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void getLongs(int[] rows, int count, long[] values) {
+        if (isLongBacked()) {
+            getKeys(rows, count, values);
+        } else {
+            super.getLongs(rows, count, values);
+        }
+    }
+
+    @Override
+    public void getDoubles(int[] rows, int count, double[] values) {
+        final boolean longBacked = isLongBacked();
+        long[] bits = new long[count];
+        fetchBits(rows, count, bits);
+        for (int j = 0; j < count; j++) {
+            values[j] = longBacked ? bits[j] : Double.longBitsToDouble(bits[j]);
+        }
+    }
+
+    @Override
+    public Object valueOfKey(long key) {
+        switch (kind) {
+            case INT: return (int) key;
+            case SHORT: return (short) key;
+            case LONG: return key;
+            case TIMESTAMP: return decodeTimestamp(key);
+            case FLOAT: return (float) Double.longBitsToDouble(key);
+            default: return Double.longBitsToDouble(key);
+        }
+    }
+
+    @Override
+    public Object get(int row) {
+        return valueOfKey(getKey(row));
+    }
+
+    @Override
+    public void select(String operator, Object value, BitSet selection) {
+        Object converted = convert(value);
+        if (kind == TIMESTAMP) {
+            selectLongs(operator, encodeTimestamp((Timestamp) converted), selection);
+        } else if (isLongBacked() && isExactLong(value)) {
+            selectLongs(operator, ((Number) value).longValue(), selection);
+        } else {
+            selectDoubles(operator, ((Number) (value instanceof Number ? value : converted)).doubleValue(), selection);
+        }
+    }
+
+    private static boolean isExactLong(Object value) {
+        return value instanceof Long || value instanceof Integer ||
+                value instanceof Short || value instanceof Byte;
+    }
+
+    private void selectLongs(String operator, long value, BitSet selection) {
+        for (int s = 0; s < segments.size(); s++) {
+            ByteBuffer segment = segments.get(s);
+            long[] values = segment == null ? decode(s) : null;
+            final int base = s << SEGMENT_SHIFT;
+            final int rows = Math.min(SEGMENT_ROWS, size - base);
+            for (int i = 0; i < rows; i++) {
+                long v = values != null ? values[i] : rawBits(segment, i);
+                if (matches(operator, v < value ? -1 : (v == value ? 0 : 1))) {
+                    selection.set(base + i);
+                }
+            }
+        }
+    }
+
+    private void selectDoubles(String operator, double value, BitSet selection) {
+        final boolean longBacked = isLongBacked();
+        for (int s = 0; s < segments.size(); s++) {
+            ByteBuffer segment = segments.get(s);
+            long[] values = segment == null ? decode(s) : null;
+            final int base = s << SEGMENT_SHIFT;
+            final int rows = Math.min(SEGMENT_ROWS, size - base);
+            for (int i = 0; i < rows; i++) {
+                long bits = values != null ? values[i] : rawBits(segment, i);
+                double v = longBacked ? bits : Double.longBitsToDouble(bits);
+                if (matches(operator, Double.compare(v, value))) {
+                    selection.set(base + i);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package gr.forth.ics.jbenchy.impl.columnar;
+
+import gr.forth.ics.jbenchy.DataType;
+import gr.forth.ics.jbenchy.DataTypes;
+import gr.forth.ics.jbenchy.impl.Column;
+import java.sql.Timestamp;
+
+/**
+ * A column that stores its values, and can be appended to.
+ *
+ * @author andreou
+ */
+abstract class StoredColumn extends Column {
+    /**
+     * The type of the codes of dictionary-encoded columns.
+     */
+    static final DataType<Integer> CODE_TYPE = DataTypes.INTEGER;
+
+    StoredColumn(String variable, DataType<?> type) {
+        super(variable, type);
+    }
+
+    /**
+     * Creates an empty column for a variable of the specified type: fixed-width types are stored
+     * natively in off-heap segments, and all others are dictionary-encoded.
+     */
+    static StoredColumn create(String variable, DataType<?> type) {
+        Class<?> c = type.getMappedType();
+        if (c == Integer.class || c == Short.class || c == Long.class ||
+                c == Double.class || c == Float.class || c == Timestamp.class) {
+            return new FixedColumn(variable, type);
+        }
+        return new DictionaryColumn(variable, type);
+    }
+
+    /**
+     * Appends a value, already {@link #convert(Object) converted} to the mapped type.
+     */
+    abstract void append(Object value);
+
+    /**
+     * Appends the value of a row of another column of the same type and variable.
+     */
+    abstract void appendFrom(StoredColumn column, int row);
+
+    /**
+     * Returns an empty column of the same type and variable.
+     */
+    abstract StoredColumn emptyCopy();
+
+    /**
+     * Returns the number of bytes that store the rows of this column, raw or encoded.
+     */
+    abstract long getFootprint();
+}
@@ -4,14 +4,21 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import gr.forth.ics.jbenchy.Aggregate;
+import gr.forth.ics.jbenchy.DataType;
+import gr.forth.ics.jbenchy.EncodedDataType;
 import gr.forth.ics.jbenchy.Filter;
 import gr.forth.ics.jbenchy.Order;
 import gr.forth.ics.jbenchy.impl.AbstractAggregator;
 import gr.forth.ics.jbenchy.Orders;
 import gr.forth.ics.jbenchy.Schema;
+import gr.forth.ics.jbenchy.SchemaRecord;
 import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.RecordSource;
 import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.ReportCursor;
+import gr.forth.ics.jbenchy.SQLRuntimeException;
 import gr.forth.ics.jbenchy.StringUtils;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -32,10 +39,21 @@ class AggregatorImpl extends AbstractAggregator {
     private final Schema schema;
     private final DataSource dataSource;
     private final String tableName;
+    private final EncodedDataType[] encodedTypes;
+    private final boolean hasEncodedTypes;
+    //per variable, how it is bound to statements: as a long (integral values and codes), a double, or an object
+    private final int[] slotKinds;
     
     private final String insertSql;
     
     private static final Joiner commaJoiner = Joiner.on(",");
+
+    //the number of records that a bulk load inserts per transaction
+    private static final int LOAD_BATCH = 8192;
+
+    private static final int LONG_SLOT = 0;
+    private static final int DOUBLE_SLOT = 1;
+    private static final int OBJECT_SLOT = 2;
     
     public AggregatorImpl(
             DataSource dataSource,
@@ -44,10 +62,32 @@ class AggregatorImpl extends AbstractAggregator {
         super(name);
         ;
         StringUtils.checkHasText(name, "Aggregator name");
-        this.schema = Preconditions.checkNotNull(schema, "schema");
+        Preconditions.checkNotNull(schema, "schema");
         this.dataSource = Preconditions.checkNotNull(dataSource, "dataSource");
         this.tableName = name.toUpperCase();
+        this.schema = DerbyDictionary.bind(dataSource, tableName, schema);
         this.insertSql = createInsertSql(schema);
+        this.encodedTypes = new EncodedDataType[schema.getVariables().size()];
+        this.slotKinds = new int[encodedTypes.length];
+        boolean hasEncodedTypes = false;
+        int i = 0;
+        for (String variable : this.schema.getVariables()) {
+            DataType<?> type = this.schema.getTypeOf(variable);
+            Class<?> c = type.getMappedType();
+            if (type instanceof EncodedDataType) {
+                encodedTypes[i] = (EncodedDataType) type;
+                hasEncodedTypes = true;
+                slotKinds[i] = LONG_SLOT;
+            } else if (c == Integer.class || c == Long.class || c == Short.class || c == Byte.class) {
+                slotKinds[i] = LONG_SLOT;
+            } else if (c == Double.class || c == Float.class) {
+                slotKinds[i] = DOUBLE_SLOT;
+            } else {
+                slotKinds[i] = OBJECT_SLOT;
+            }
+            i++;
+        }
+        this.hasEncodedTypes = hasEncodedTypes;
     }
     
     public Schema getSchema() {
@@ -66,18 +106,155 @@ class AggregatorImpl extends AbstractAggregator {
     }
     
     public void record(final Record record) {
+        if (record instanceof SchemaRecord && ((SchemaRecord)record).getSchema() == schema) {
+            recordSlots((SchemaRecord)record);
+            return;
+        }
         checkRecord(record);
+        final String[] values = new String[encodedTypes.length];
+        int i = 0;
+        for (String variable : schema.getVariables()) {
+            Object value = record.get(variable);
+            if (value == null) {
+                throw new IllegalArgumentException("Record had no value for variable: '" + variable + "'. " +
+                        "Record was: " + record + ", Schema was: " + schema);
+            }
+            values[i] = encodedTypes[i] == null ? String.valueOf(value) : String.valueOf(encodedTypes[i].encode(value));
+            i++;
+        }
+        insert(values);
+    }
+
+    /**
+     * Inserts a row, given the string representations of its values (or codes), in schema order.
+     */
+    private void insert(final String[] values) {
+        JdbcUtils.executeInConnection(dataSource, new SQLAction<Connection, Void>() {
+            public Void execute(Connection con) throws SQLException {
+                PreparedStatement ps = con.prepareStatement(insertSql);
+                for (int i = 0; i < values.length; i++) {
+                    ps.setObject(i + 1, values[i]);
+                }
+                ps.execute();
+                return null;
+            }
+        });
+    }
+    
+    /**
+     * Bulk-loads the records of a source in batches. Each batch is read first, encoding its values
+     * of encoded variables (which may store new dictionary entries), and then inserted through a
+     * single batched statement, in its own transaction.
+     * @return the number of loaded records
+     */
+    long load(RecordSource source) throws IOException {
+        final int size = encodedTypes.length;
+        final long[][] longs = new long[size][];
+        final double[][] doubles = new double[size][];
+        final Object[][] objects = new Object[size][];
+        for (int i = 0; i < size; i++) {
+            switch (slotKinds[i]) {
+                case LONG_SLOT: longs[i] = new long[LOAD_BATCH]; break;
+                case DOUBLE_SLOT: doubles[i] = new double[LOAD_BATCH]; break;
+                default: objects[i] = new Object[LOAD_BATCH];
+            }
+        }
+        SchemaRecord record = schema.newRecord();
+        long loaded = 0;
+        boolean more = true;
+        while (more) {
+            int count = 0;
+            while (count < LOAD_BATCH && (more = source.next(record))) {
+                for (int i = 0; i < size; i++) {
+                    if (encodedTypes[i] != null) {
+                        longs[i][count] = encodedTypes[i].encode(record.get(i));
+                    } else if (longs[i] != null) {
+                        longs[i][count] = record.getLong(i);
+                    } else if (doubles[i] != null) {
+                        doubles[i][count] = record.getDouble(i);
+                    } else {
+                        objects[i][count] = record.get(i);
+                    }
+                }
+                count++;
+            }
+            if (count > 0) {
+                insertBatch(longs, doubles, objects, count);
+                loaded += count;
+            }
+        }
+        return loaded;
+    }
+
+    private void insertBatch(final long[][] longs, final double[][] doubles, final Object[][] objects, final int count) {
+        JdbcUtils.executeInConnection(dataSource, new SQLAction<Connection, Void>() {
+            public Void execute(Connection con) throws SQLException {
+                final boolean autoCommit = con.getAutoCommit();
+                con.setAutoCommit(false);
+                try {
+                    PreparedStatement ps = con.prepareStatement(insertSql);
+                    for (int row = 0; row < count; row++) {
+                        for (int i = 0; i < longs.length; i++) {
+                            if (longs[i] != null) {
+                                ps.setLong(i + 1, longs[i][row]);
+                            } else if (doubles[i] != null) {
+                                ps.setDouble(i + 1, doubles[i][row]);
+                            } else {
+                                ps.setObject(i + 1, objects[i][row]);
+                            }
+                        }
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    ps.close();
+                    con.commit();
+                } catch (SQLException e) {
+                    con.rollback();
+                    throw e;
+                } finally {
+                    con.setAutoCommit(autoCommit);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Fast path for records created by our own schema: no variable names to check or normalize,
+     * and values are bound to the statement from the slots of the record, without converting them
+     * to strings.
+     */
+    private void recordSlots(final SchemaRecord record) {
+        if (!record.isComplete()) {
+            for (int i = 0; i < schema.getVariables().size(); i++) {
+                if (!record.isBound(i)) {
+                    throw new IllegalArgumentException("Record had no value for variable: '" +
+                            record.getVariable(i) + "'. " + "Record was: " + record + ", Schema was: " + schema);
+                }
+            }
+        }
+        Preconditions.checkArgument(record.getValue() == null,
+                "Record with at least one null variable name detected");
+        //codes are computed before the statement, since encoding may store new dictionary entries
+        final long[] codes = hasEncodedTypes ? new long[encodedTypes.length] : null;
+        for (int i = 0; hasEncodedTypes && i < codes.length; i++) {
+            if (encodedTypes[i] != null) {
+                codes[i] = encodedTypes[i].encode(record.get(i));
+            }
+        }
         JdbcUtils.executeInConnection(dataSource, new SQLAction<Connection, Void>() {
             public Void execute(Connection con) throws SQLException {
                 PreparedStatement ps = con.prepareStatement(insertSql);
-                int pos = 1;
-                for (String variable : schema.getVariables()) {
-                    Object value = record.get(variable);
-                    if (value == null) {
-                        throw new IllegalArgumentException("Record had no value for variable: '" + variable + "'. " +
-                                "Record was: " + record + ", Schema was: " + schema);
+                for (int i = 0; i < slotKinds.length; i++) {
+                    if (encodedTypes[i] != null) {
+                        ps.setLong(i + 1, codes[i]);
+                        continue;
+                    }
+                    switch (slotKinds[i]) {
+                        case LONG_SLOT: ps.setLong(i + 1, record.getLong(i)); break;
+                        case DOUBLE_SLOT: ps.setDouble(i + 1, record.getDouble(i)); break;
+                        default: ps.setObject(i + 1, record.get(i));
                     }
-                    ps.setObject(pos++, String.valueOf(value));
                 }
                 ps.execute();
                 return null;
@@ -86,6 +263,15 @@ class AggregatorImpl extends AbstractAggregator {
     }
     
     private void checkRecord(Record record) {
+        int bound = 0;
+        for (String variable : schema.getVariables()) {
+            if (record.containsKey(variable)) {
+                bound++;
+            }
+        }
+        if (bound == record.size() && bound == schema.getVariables().size()) {
+            return;
+        }
         Set<String> variables = new HashSet<String>(schema.getVariables());
         for (String variable : record.keySet()) {
             Preconditions.checkNotNull(variable, "Record with at least one null variable name detected");
@@ -110,16 +296,18 @@ class AggregatorImpl extends AbstractAggregator {
         List<Record> records = JdbcUtils.executeInResultSet(dataSource, groupBySql(aggr, filter, orders, variables), 
                 new SQLAction<ResultSet, List<Record>>() {
             final String aggregatedColumnAlias = aggr.getVariableName();
+            //MIN and MAX of encoded variables are computed on the dictionary, see groupBySql
+            final boolean decodeMeasurement = !aggr.isAggregating();
             public List<Record> execute(ResultSet rs) throws SQLException {
                 List<Record> records = Lists.newArrayListWithCapacity(32);
                 while (rs.next()) {
-                    Object measurement = aggr.getResultType(schema).parse(
-                            rs.getString(aggregatedColumnAlias));
+                    DataType<?> resultType = aggr.getResultType(schema);
+                    Object measurement = decodeMeasurement ?
+                        valueOf(rs, aggregatedColumnAlias, resultType) :
+                        resultType.parse(rs.getString(aggregatedColumnAlias));
                     Record record = new Record();
                     for (Object variable : variables) {
-                        record.add(variable,
-                                schema.getTypeOf(variable).parse(
-                                    rs.getString(variable.toString())));
+                        record.add(variable, valueOf(rs, variable.toString(), schema.getTypeOf(variable)));
                     }
                     record.putValue(measurement);
                     records.add(record);
@@ -127,8 +315,172 @@ class AggregatorImpl extends AbstractAggregator {
                 return records;
             }
         });
+        if (hasEncodedTypes && (aggr.isAggregating() || !orders.isEmpty())) {
+            //codes are not ordered like their values
+            Collections.sort(records, orders.isEmpty() ? naturalOrder(variables) :
+                Orders.recordComparator(orders, aggr.getVariableName()));
+        }
         return new Records(records, Arrays.asList(variables));
     }
+
+    /**
+     * Reads a value from a result set, decoding it if it is of an encoded type.
+     */
+    private static Object valueOf(ResultSet rs, String column, DataType<?> type) throws SQLException {
+        return valueOf(rs, rs.findColumn(column), type);
+    }
+
+    private static Object valueOf(ResultSet rs, int column, DataType<?> type) throws SQLException {
+        if (type instanceof EncodedDataType) {
+            return ((EncodedDataType) type).decode(rs.getInt(column));
+        }
+        return type.parse(rs.getString(column));
+    }
+
+    /**
+     * Streams the result set of the report, unless its records would have to be sorted in memory
+     * (see {@link #report(Aggregate, Filter, List, Object[])}). A streaming cursor holds a
+     * connection until it is exhausted or closed.
+     */
+    @Override
+    protected ReportCursor cursor(Aggregate aggr, Filter filter,
+            List<Order> orders, Object... variables) {
+        Preconditions.checkNotNull(aggr, "aggregator");
+        if (hasEncodedTypes && (aggr.isAggregating() || !orders.isEmpty())) {
+            return super.cursor(aggr, filter, orders, variables);
+        }
+        Schema reportSchema = reportSchema(variables);
+        String sql = groupBySql(aggr, filter, orders, variables);
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+            Statement st = connection.createStatement();
+            ResultSet rs = st.executeQuery(sql);
+            ResultSetCursor cursor = new ResultSetCursor(connection, rs, aggr, reportSchema, aggr.getResultType(schema));
+            connection = null;
+            return cursor;
+        } catch (SQLException e) {
+            throw new SQLRuntimeException(e);
+        } finally {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException ignored) {
+                    //the original exception is more informative
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a result set into records by index; integral and floating point variables are read
+     * as primitives. The value is the last column.
+     */
+    private static class ResultSetCursor implements ReportCursor {
+        private static final int INTEGRAL = 0;
+        private static final int FLOATING = 1;
+        private static final int OTHER = 2;
+
+        private final Aggregate aggregate;
+        private final Schema schema;
+        private final DataType<?> valueType;
+        private final DataType<?>[] types;
+        private final int[] kinds;
+        //MIN and MAX of encoded variables are computed on the dictionary, see groupBySql
+        private final boolean decodeValue;
+        private Connection connection;
+        private ResultSet rs;
+
+        ResultSetCursor(Connection connection, ResultSet rs, Aggregate aggregate, Schema schema, DataType<?> valueType) {
+            this.connection = connection;
+            this.rs = rs;
+            this.aggregate = aggregate;
+            this.schema = schema;
+            this.valueType = valueType;
+            this.decodeValue = !aggregate.isAggregating();
+            String[] variables = schema.getVariables().toArray(new String[0]);
+            this.types = new DataType<?>[variables.length];
+            this.kinds = new int[variables.length];
+            for (int i = 0; i < variables.length; i++) {
+                types[i] = schema.getTypeOf(variables[i]);
+                Class<?> c = types[i].getMappedType();
+                if (types[i] instanceof EncodedDataType) {
+                    kinds[i] = OTHER;
+                } else if (c == Integer.class || c == Long.class || c == Short.class || c == Byte.class) {
+                    kinds[i] = INTEGRAL;
+                } else if (c == Double.class || c == Float.class) {
+                    kinds[i] = FLOATING;
+                } else {
+                    kinds[i] = OTHER;
+                }
+            }
+        }
+
+        public Schema getSchema() {
+            return schema;
+        }
+
+        public Aggregate getAggregate() {
+            return aggregate;
+        }
+
+        public DataType<?> getValueType() {
+            return valueType;
+        }
+
+        public boolean next(SchemaRecord record) {
+            Preconditions.checkArgument(record.getSchema() == schema, "Record is not of the schema of the cursor");
+            if (rs == null) {
+                return false;
+            }
+            try {
+                if (!rs.next()) {
+                    close();
+                    return false;
+                }
+                for (int i = 0; i < kinds.length; i++) {
+                    switch (kinds[i]) {
+                        case INTEGRAL: record.set(i, rs.getLong(i + 1)); break;
+                        case FLOATING: record.set(i, rs.getDouble(i + 1)); break;
+                        default: record.set(i, valueOf(rs, i + 1, types[i]));
+                    }
+                }
+                final int column = kinds.length + 1;
+                record.putValue(decodeValue ? valueOf(rs, column, valueType) :
+                    valueType.parse(rs.getString(column)));
+                return true;
+            } catch (SQLException e) {
+                close();
+                throw new SQLRuntimeException(e);
+            }
+        }
+
+        public void close() {
+            if (connection == null) {
+                return;
+            }
+            Connection c = connection;
+            connection = null;
+            try {
+                try {
+                    Statement st = rs.getStatement();
+                    rs.close();
+                    st.close();
+                } finally {
+                    c.close();
+                }
+            } catch (SQLException e) {
+                throw new SQLRuntimeException(e);
+            } finally {
+                rs = null;
+            }
+        }
+    }
+
+    private EncodedDataType encodedTypeOf(String variable) {
+        DataType<?> type = schema.getTypeOf(variable);
+        return type instanceof EncodedDataType ? (EncodedDataType) type : null;
+    }
     
     private String groupBySql(Aggregate aggr, Filter filter, List<Order> orders, Object... variables) {
         StringBuilder sb = new StringBuilder();
@@ -141,12 +493,24 @@ class AggregatorImpl extends AbstractAggregator {
             sb.append(commaDelimitedDimensions);
             sb.append(",");
         }
-        sb.append(aggr.toSql())
-        .append(" AS ").append(aggr.getVariableName())
-        .append(" FROM APP.").append(tableName)
-        .append(" WHERE ")
-        .append(filter.toSql(schema));
-        if (variables.length > 0) {
+        String function = aggr.getFunctionName();
+        if (("MIN".equals(function) || "MAX".equals(function)) && encodedTypeOf(aggr.getVariableName()) != null) {
+            //join with the dictionary, to compare values instead of codes
+            sb.append(function).append("(D.DICT_VALUE)")
+            .append(" AS ").append(aggr.getVariableName())
+            .append(" FROM APP.").append(tableName)
+            .append(", APP.").append(tableName).append(DerbyDictionary.TABLE_SUFFIX).append(" D")
+            .append(" WHERE D.DICT_VARIABLE = '").append(aggr.getVariableName())
+            .append("' AND D.DICT_CODE = ").append(aggr.getVariableName())
+            .append(" AND ").append(filter.toSql(schema));
+        } else {
+            sb.append(aggr.toSql())
+            .append(" AS ").append(aggr.getVariableName())
+            .append(" FROM APP.").append(tableName)
+            .append(" WHERE ")
+            .append(filter.toSql(schema));
+        }
+        if (variables.length > 0 && aggr.isAggregating()) {
             sb.append(" GROUP BY ").append(commaDelimitedDimensions);
         }
         sb.append(" ").append(Orders.toSqlOrderByClause(orders));
@@ -155,15 +519,20 @@ class AggregatorImpl extends AbstractAggregator {
     
     @Override
     @SuppressWarnings({"unchecked"})
-    protected <T> List<T> domainOfVariable(Filter filter, List<Order> orders, final Object variable, final Class<T> expectedType) {
+    protected <T> List<T> domainOfVariable(Filter filter, final List<Order> orders, final Object variable, final Class<T> expectedType) {
         return JdbcUtils.executeInResultSet(dataSource, domainSql(filter, orders, variable),
                 new SQLAction<ResultSet, List<T>>() {
             public List<T> execute(ResultSet rs) throws SQLException {
                 List<T> objects = Lists.newArrayListWithCapacity(64);
+                EncodedDataType encodedType = encodedTypeOf(variable.toString());
                 while (rs.next()) {
-                    objects.add(expectedType.cast(
-                            schema.getTypeOf(variable).parse(
-                                    rs.getString(1))));
+                    objects.add(expectedType.cast(encodedType != null ?
+                        encodedType.decode(rs.getInt(1)) :
+                        schema.getTypeOf(variable).parse(rs.getString(1))));
+                }
+                if (encodedType != null) {
+                    //codes are not ordered like their values
+                    sortDomain(objects, orders);
                 }
                 return objects;
             }
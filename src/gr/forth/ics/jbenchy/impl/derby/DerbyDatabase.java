@@ -5,9 +5,11 @@ import gr.forth.ics.jbenchy.Aggregator;
 import gr.forth.ics.jbenchy.DataType;
 import gr.forth.ics.jbenchy.DataTypes;
 import gr.forth.ics.jbenchy.Database;
+import gr.forth.ics.jbenchy.RecordSource;
 import gr.forth.ics.jbenchy.SQLRuntimeException;
 import gr.forth.ics.jbenchy.Schema;
 import gr.forth.ics.jbenchy.StringUtils;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
@@ -56,18 +58,33 @@ class DerbyDatabase extends Database {
         });
     }
     
+    /**
+     * Inserts the records of the source in batches, each in a single transaction, rather than
+     * one by one.
+     */
+    @Override
+    public long load(Aggregator aggregator, RecordSource source) throws IOException {
+        if (!(aggregator instanceof AggregatorImpl)) {
+            return super.load(aggregator, source);
+        }
+        Preconditions.checkNotNull(source, "source");
+        return ((AggregatorImpl) aggregator).load(source);
+    }
+
     public void shutDown() {
         connectionString.shutdown(dbName);
     }
     
-    public Aggregator create(Schema schema, String name) throws SQLRuntimeException {
+    public Aggregator create(final Schema schema, String name) throws SQLRuntimeException {
         Preconditions.checkNotNull(schema, "schema");
         StringUtils.checkHasText(name, "name");
         name = name.toUpperCase();
+        final String tableName = name;
         final String createTableSql = createTableSql(schema, name);
         JdbcUtils.executeInStatement(dataSource, new SQLAction<Statement, Void>() {
             public Void execute(Statement st) throws SQLException {
                 st.execute(createTableSql);
+                DerbyDictionary.createTable(st, tableName, schema);
                 return null;
             }
         });
@@ -97,6 +114,7 @@ class DerbyDatabase extends Database {
             public Boolean execute(Statement st) {
                 try {
                     st.execute("DROP TABLE APP." + name);
+                    DerbyDictionary.dropTable(st, name.toUpperCase());
                     return true;
                 } catch (SQLException ignore) {
                     //thrown when table does not exist
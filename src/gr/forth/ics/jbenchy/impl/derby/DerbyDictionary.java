@@ -0,0 +1,165 @@
+package gr.forth.ics.jbenchy.impl.derby;
+
+import gr.forth.ics.jbenchy.DataType;
+import gr.forth.ics.jbenchy.DataTypes;
+import gr.forth.ics.jbenchy.EncodedDataType;
+import gr.forth.ics.jbenchy.Schema;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+
+/**
+ * The dictionary of a variable of an {@link EncodedDataType encoded type}, cached in memory and
+ * stored in the dictionary table of the aggregator: a table named after the table of the aggregator
+ * plus {@link #TABLE_SUFFIX}, with a row per variable and code. An extra row per variable, with
+ * code -1, records the size of the type, so that the encoding survives reopening the aggregator.
+ *
+ * @author andreou
+ */
+class DerbyDictionary implements EncodedDataType.Dictionary {
+    static final String TABLE_SUFFIX = "__DICT";
+    private static final int SIZE_CODE = -1;
+
+    private final DataSource dataSource;
+    private final String insertSql;
+    private final List<String> values = new ArrayList<String>();
+    private final Map<String, Integer> codes = new HashMap<String, Integer>();
+
+    private DerbyDictionary(DataSource dataSource, String tableName, final String variable) {
+        this.dataSource = dataSource;
+        final String dictionaryTable = tableName + TABLE_SUFFIX;
+        this.insertSql = "INSERT INTO APP." + dictionaryTable +
+                "(DICT_VARIABLE, DICT_CODE, DICT_VALUE) VALUES ('" + variable + "', ?, ?)";
+        JdbcUtils.executeInResultSet(dataSource, "SELECT DICT_VALUE FROM APP." + dictionaryTable +
+                " WHERE DICT_VARIABLE = '" + variable + "' AND DICT_CODE >= 0 ORDER BY DICT_CODE",
+                new SQLAction<ResultSet, Void>() {
+            public Void execute(ResultSet rs) throws SQLException {
+                while (rs.next()) {
+                    add(rs.getString(1));
+                }
+                return null;
+            }
+        });
+    }
+
+    private int add(String value) {
+        int code = values.size();
+        value = value.intern();
+        values.add(value);
+        codes.put(value, code);
+        return code;
+    }
+
+    /**
+     * Creates the dictionary table of an aggregator, if its schema has encoded variables.
+     */
+    static void createTable(Statement st, String tableName, Schema schema) throws SQLException {
+        boolean created = false;
+        for (String variable : schema.getVariables()) {
+            DataType<?> type = schema.getTypeOf(variable);
+            if (!(type instanceof EncodedDataType)) {
+                continue;
+            }
+            if (!created) {
+                st.execute("CREATE TABLE APP." + tableName + TABLE_SUFFIX +
+                        "(DICT_VARIABLE VARCHAR(128) NOT NULL, DICT_CODE INTEGER NOT NULL, " +
+                        "DICT_VALUE VARCHAR(32672) NOT NULL, PRIMARY KEY (DICT_VARIABLE, DICT_CODE))");
+                created = true;
+            }
+            st.execute("INSERT INTO APP." + tableName + TABLE_SUFFIX + " VALUES ('" + variable + "', " +
+                    SIZE_CODE + ", '" + ((EncodedDataType) type).getSize() + "')");
+        }
+    }
+
+    /**
+     * Returns a schema like the given one (or the same, if there are no encoded variables), whose
+     * encoded variables are bound to their dictionaries. Variables that are recorded as encoded in
+     * the dictionary table are encoded, even if the given schema has a different type for them,
+     * e.g. one read from the metadata of the table.
+     */
+    static Schema bind(final DataSource dataSource, final String tableName, Schema schema) {
+        final Map<String, Integer> sizes = JdbcUtils.executeInConnection(dataSource,
+                new SQLAction<Connection, Map<String, Integer>>() {
+            public Map<String, Integer> execute(Connection con) throws SQLException {
+                Map<String, Integer> sizes = new HashMap<String, Integer>();
+                ResultSet table = con.getMetaData().getTables(null, "APP", tableName + TABLE_SUFFIX, null);
+                if (!table.next()) {
+                    return sizes;
+                }
+                PreparedStatement ps = con.prepareStatement("SELECT DICT_VARIABLE, DICT_VALUE FROM APP." +
+                        tableName + TABLE_SUFFIX + " WHERE DICT_CODE = " + SIZE_CODE);
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) {
+                    sizes.put(rs.getString(1), Integer.valueOf(rs.getString(2)));
+                }
+                rs.close();
+                ps.close();
+                return sizes;
+            }
+        });
+        if (sizes.isEmpty()) {
+            return schema;
+        }
+        Schema bound = new Schema();
+        for (String variable : schema.getVariables()) {
+            DataType<?> type = schema.getTypeOf(variable);
+            Integer size = sizes.get(variable);
+            if (size != null) {
+                EncodedDataType encoded = type instanceof EncodedDataType ?
+                    (EncodedDataType) type : DataTypes.encodedString(size);
+                type = encoded.bind(new DerbyDictionary(dataSource, tableName, variable));
+            }
+            bound.add(variable, type);
+        }
+        return bound;
+    }
+
+    /**
+     * Drops the dictionary table of an aggregator, if it exists.
+     */
+    static void dropTable(Statement st, String tableName) {
+        try {
+            st.execute("DROP TABLE APP." + tableName + TABLE_SUFFIX);
+        } catch (SQLException ignore) {
+            //thrown when table does not exist
+        }
+    }
+
+    public synchronized int encode(final String value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        JdbcUtils.executeInConnection(dataSource, new SQLAction<Connection, Void>() {
+            public Void execute(Connection con) throws SQLException {
+                PreparedStatement ps = con.prepareStatement(insertSql);
+                ps.setInt(1, values.size());
+                ps.setString(2, value);
+                ps.execute();
+                ps.close();
+                return null;
+            }
+        });
+        return add(value);
+    }
+
+    public synchronized int codeOf(String value) {
+        Integer code = codes.get(value);
+        return code == null ? -1 : code;
+    }
+
+    public synchronized String decode(int code) {
+        return values.get(code);
+    }
+
+    public synchronized int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,134 @@
+package gr.forth.ics.jbenchy.impl.log;
+
+import gr.forth.ics.jbenchy.DataType;
+import gr.forth.ics.jbenchy.EncodedDataType;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The values of the dictionary-encoded variables of a log, in an append-only side file.
+ * <p>
+ * The code of a value is its position among the distinct values of its variable, in order of
+ * first appearance. Each new value is appended as an entry of the variable index, the UTF-8 bytes
+ * of the value, and a checksum, before any record that uses its code. Recovery keeps the longest
+ * prefix of complete entries.
+ *
+ * @author andreou
+ */
+class Dictionary {
+    private static final String UTF_8 = "UTF-8";
+
+    private final FileChannel channel;
+    private final DataType<?>[] types;
+    private final List<List<Object>> values = new ArrayList<List<Object>>();
+    private final List<Map<Object, Integer>> codes = new ArrayList<Map<Object, Integer>>();
+    private long end;
+
+    /**
+     * Opens (or creates) the dictionary file of a log, recovering its complete entries.
+     * @param types the type of each variable of the log, in schema order
+     */
+    Dictionary(File file, DataType<?>[] types) throws IOException {
+        this.types = types;
+        for (int i = 0; i < types.length; i++) {
+            values.add(new ArrayList<Object>());
+            codes.add(new HashMap<Object, Integer>());
+        }
+        this.channel = new RandomAccessFile(file, "rw").getChannel();
+        recover();
+    }
+
+    private void recover() throws IOException {
+        ByteBuffer contents = ByteBuffer.allocate((int) channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        while (contents.hasRemaining()) {
+            if (channel.read(contents, contents.position()) < 0) {
+                break;
+            }
+        }
+        contents.flip();
+        while (contents.remaining() >= 12) {
+            int variable = contents.getInt();
+            int length = contents.getInt();
+            if (variable < 0 || variable >= types.length || length < 0 || contents.remaining() < length + 4) {
+                break;
+            }
+            byte[] bytes = new byte[length];
+            contents.get(bytes);
+            if (contents.getInt() != checksum(variable, bytes)) {
+                break;
+            }
+            add(variable, types[variable].parse(new String(bytes, UTF_8)));
+            end = contents.position();
+        }
+        if (end < channel.size()) {
+            channel.truncate(end);
+        }
+    }
+
+    private static int checksum(int variable, byte[] bytes) {
+        int hash = 0x7F4A7C15 ^ variable;
+        for (byte b : bytes) {
+            hash = hash * 31 + b;
+        }
+        return hash;
+    }
+
+    private int add(int variable, Object value) {
+        if (types[variable] instanceof EncodedDataType) {
+            value = ((String) value).intern();
+        }
+        List<Object> list = values.get(variable);
+        int code = list.size();
+        list.add(value);
+        codes.get(variable).put(value, code);
+        return code;
+    }
+
+    /**
+     * Returns the code of a value of a variable, appending the value if it is new.
+     */
+    int encode(int variable, Object value) throws IOException {
+        Integer code = codes.get(variable).get(value);
+        if (code != null) {
+            return code;
+        }
+        byte[] bytes = String.valueOf(value).getBytes(UTF_8);
+        ByteBuffer entry = ByteBuffer.allocate(bytes.length + 12).order(ByteOrder.LITTLE_ENDIAN);
+        entry.putInt(variable).putInt(bytes.length).put(bytes).putInt(checksum(variable, bytes));
+        entry.flip();
+        while (entry.hasRemaining()) {
+            end += channel.write(entry, end);
+        }
+        return add(variable, value);
+    }
+
+    /**
+     * Returns the value of a variable with the specified code.
+     */
+    Object decode(int variable, int code) {
+        return values.get(variable).get(code);
+    }
+
+    /**
+     * Returns the values of a variable, indexed by code.
+     */
+    List<Object> valuesOf(int variable) {
+        return values.get(variable);
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,196 @@
+package gr.forth.ics.jbenchy.impl.log;
+
+import gr.forth.ics.jbenchy.DataType;
+import gr.forth.ics.jbenchy.DataTypes;
+import gr.forth.ics.jbenchy.Schema;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+
+/**
+ * The binary layout of a log, derived from its schema.
+ * <p>
+ * Every segment file starts with a header that holds the schema (the name and the
+ * {@link DataType#getName() type name} of each variable), followed by fixed-size
+ * record slots. A slot starts with an <tt>int</tt> <em>seal</em>, a non-zero checksum of the rest
+ * of the slot, followed by one fixed-width field per variable, in schema order: integral and
+ * floating point values and timestamps (as nanoseconds since the epoch) natively, and all other
+ * values as <tt>int</tt> codes of a {@link Dictionary}. The seal is written last, so a slot whose
+ * seal does not match its fields was never completely written.
+ *
+ * @author andreou
+ */
+class Layout {
+    private static final int MAGIC = 0x4A424C47;
+    private static final int VERSION = 2;
+    static final int SEAL_WIDTH = 4;
+
+    static final int INT = 0;
+    static final int SHORT = 1;
+    static final int LONG = 2;
+    static final int FLOAT = 3;
+    static final int DOUBLE = 4;
+    static final int TIMESTAMP = 5;
+    static final int CODE = 6;
+
+    private final Schema schema;
+    private final int[] kinds;
+    private final int[] offsets;
+    private final int recordSize;
+    private final byte[] header;
+
+    Layout(Schema schema) {
+        this.schema = schema;
+        final int size = schema.getVariables().size();
+        this.kinds = new int[size];
+        this.offsets = new int[size];
+        int offset = SEAL_WIDTH;
+        int i = 0;
+        for (String variable : schema.getVariables()) {
+            kinds[i] = kindOf(schema.getTypeOf(variable));
+            offsets[i] = offset;
+            offset += widthOf(kinds[i]);
+            i++;
+        }
+        this.recordSize = offset;
+        this.header = serialize(schema, recordSize);
+    }
+
+    private static int kindOf(DataType<?> type) {
+        Class<?> c = type.getMappedType();
+        if (c == Integer.class) return INT;
+        if (c == Short.class) return SHORT;
+        if (c == Long.class) return LONG;
+        if (c == Float.class) return FLOAT;
+        if (c == Double.class) return DOUBLE;
+        if (c == Timestamp.class) return TIMESTAMP;
+        return CODE;
+    }
+
+    private static int widthOf(int kind) {
+        switch (kind) {
+            case SHORT: return 2;
+            case INT: case FLOAT: case CODE: return 4;
+            default: return 8;
+        }
+    }
+
+    private static byte[] serialize(Schema schema, int recordSize) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(recordSize);
+            out.writeInt(schema.getVariables().size());
+            for (String variable : schema.getVariables()) {
+                out.writeUTF(variable);
+                out.writeUTF(schema.getTypeOf(variable).getName());
+            }
+            out.flush();
+            //records start at a multiple of 8 bytes
+            int length = bytes.size() + 4;
+            ByteArrayOutputStream padded = new ByteArrayOutputStream();
+            out = new DataOutputStream(padded);
+            out.writeInt((length + 7) & ~7);
+            bytes.writeTo(out);
+            while (padded.size() % 8 != 0) {
+                out.writeByte(0);
+            }
+            return padded.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads the layout from the header of a segment.
+     * @throws IOException if the segment does not start with a valid header
+     */
+    static Layout read(final ByteBuffer segment) throws IOException {
+        DataInputStream in = new DataInputStream(new InputStream() {
+            private int position;
+
+            @Override
+            public int read() {
+                return position < segment.limit() ? segment.get(position++) & 0xFF : -1;
+            }
+        });
+        in.readInt();
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a log segment");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported log version: " + version);
+        }
+        int recordSize = in.readInt();
+        int variables = in.readInt();
+        Schema schema = new Schema();
+        for (int i = 0; i < variables; i++) {
+            String variable = in.readUTF();
+            schema.add(variable, DataTypes.fromName(in.readUTF()));
+        }
+        Layout layout = new Layout(schema);
+        if (layout.recordSize != recordSize) {
+            throw new IOException("Corrupt log header: record size " + recordSize +
+                    " does not match schema: " + schema);
+        }
+        return layout;
+    }
+
+    Schema getSchema() {
+        return schema;
+    }
+
+    int getHeaderSize() {
+        return header.length;
+    }
+
+    int getRecordSize() {
+        return recordSize;
+    }
+
+    int getKind(int index) {
+        return kinds[index];
+    }
+
+    int getOffset(int index) {
+        return offsets[index];
+    }
+
+    void writeHeader(ByteBuffer segment) {
+        for (int i = 0; i < header.length; i++) {
+            segment.put(i, header[i]);
+        }
+    }
+
+    /**
+     * Computes the seal of the slot at the specified offset, from its fields.
+     */
+    int seal(ByteBuffer segment, int slot) {
+        long hash = recordSize;
+        int position = slot + SEAL_WIDTH;
+        final int end = slot + recordSize;
+        for (; position + 8 <= end; position += 8) {
+            hash = (hash ^ segment.getLong(position)) * 0x9E3779B97F4A7C15L;
+        }
+        for (; position < end; position++) {
+            hash = (hash ^ segment.get(position)) * 0x9E3779B97F4A7C15L;
+        }
+        int seal = (int) (hash ^ (hash >>> 32));
+        return seal == 0 ? 1 : seal;
+    }
+
+    /**
+     * Returns whether the slot at the specified offset holds a completely written record.
+     */
+    boolean isSealed(ByteBuffer segment, int slot) {
+        int seal = segment.getInt(slot);
+        return seal != 0 && seal == seal(segment, slot);
+    }
+}
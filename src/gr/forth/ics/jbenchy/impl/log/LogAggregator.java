@@ -0,0 +1,321 @@
+package gr.forth.ics.jbenchy.impl.log;
+
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.DataType;
+import gr.forth.ics.jbenchy.Filter;
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Schema;
+import gr.forth.ics.jbenchy.SchemaRecord;
+import gr.forth.ics.jbenchy.impl.AbstractColumnAggregator;
+import gr.forth.ics.jbenchy.impl.Column;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An aggregator that appends its records to memory-mapped segment files, in the binary
+ * {@link Layout} of its schema, and evaluates reports by reading the segments in place.
+ * <p>
+ * Each segment holds {@link #SEGMENT_ROWS} record slots. When a log is opened, all segments but
+ * the first one that is not full are known to be complete, and the records of that segment are
+ * recovered up to the first slot that is not {@link Layout#isSealed(ByteBuffer, int) sealed}; any
+ * slots after it are cleared, so that the next records are appended right after the last valid one.
+ *
+ * @author andreou
+ */
+class LogAggregator extends AbstractColumnAggregator {
+    static final int SEGMENT_SHIFT = 18;
+    static final int SEGMENT_ROWS = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_ROWS - 1;
+
+    private final File directory;
+    private final Layout layout;
+    private final Dictionary dictionary;
+    private final LogColumn[] columns;
+    private final Map<String, LogColumn> columnsByVariable = new HashMap<String, LogColumn>();
+    private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+    private int rows;
+    private boolean closed;
+
+    private LogAggregator(File directory, String name, Layout layout) throws IOException {
+        super(name);
+        Preconditions.checkArgument((long) SEGMENT_ROWS * layout.getRecordSize() < Integer.MAX_VALUE,
+                "Too many variables: %s", layout.getSchema().getVariables());
+        this.directory = directory;
+        this.layout = layout;
+        Schema schema = layout.getSchema();
+        final int size = schema.getVariables().size();
+        DataType<?>[] types = new DataType<?>[size];
+        int i = 0;
+        for (String variable : schema.getVariables()) {
+            types[i++] = schema.getTypeOf(variable);
+        }
+        this.dictionary = new Dictionary(dictionaryFile(directory, name), types);
+        this.columns = new LogColumn[size];
+        i = 0;
+        for (String variable : schema.getVariables()) {
+            columns[i] = new LogColumn(variable, types[i], this, layout.getKind(i), layout.getOffset(i),
+                    dictionary.valuesOf(i));
+            columnsByVariable.put(variable, columns[i]);
+            i++;
+        }
+    }
+
+    private static File segmentFile(File directory, String name, int index) {
+        return new File(directory, name + "." + index + ".seg");
+    }
+
+    private static File dictionaryFile(File directory, String name) {
+        return new File(directory, name + ".dict");
+    }
+
+    static boolean exists(File directory, String name) {
+        return segmentFile(directory, name, 0).exists();
+    }
+
+    /**
+     * Creates a new, empty log.
+     */
+    static LogAggregator create(File directory, String name, Schema schema) throws IOException {
+        dictionaryFile(directory, name).delete();
+        LogAggregator log = new LogAggregator(directory, name, new Layout(schema));
+        log.segments.add(log.newSegment(0));
+        return log;
+    }
+
+    /**
+     * Opens an existing log, recovering from an unclean shutdown if needed.
+     */
+    static LogAggregator open(File directory, String name) throws IOException {
+        MappedByteBuffer first = mapExisting(segmentFile(directory, name, 0));
+        LogAggregator log = new LogAggregator(directory, name, Layout.read(first));
+        log.segments.add(first);
+        for (int i = 1; segmentFile(directory, name, i).exists(); i++) {
+            log.segments.add(mapExisting(segmentFile(directory, name, i)));
+        }
+        log.recover();
+        return log;
+    }
+
+    /**
+     * Deletes the files of a (closed) log.
+     * @return whether the log existed
+     */
+    static boolean delete(File directory, String name) {
+        boolean existed = exists(directory, name);
+        for (int i = 0; segmentFile(directory, name, i).exists(); i++) {
+            segmentFile(directory, name, i).delete();
+        }
+        dictionaryFile(directory, name).delete();
+        return existed;
+    }
+
+    private static MappedByteBuffer mapExisting(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            MappedByteBuffer segment = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            return segment;
+        } finally {
+            raf.close();
+        }
+    }
+
+    private MappedByteBuffer newSegment(int index) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(segmentFile(directory, getName(), index), "rw");
+        try {
+            long size = layout.getHeaderSize() + (long) SEGMENT_ROWS * layout.getRecordSize();
+            raf.setLength(size);
+            MappedByteBuffer segment = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            layout.writeHeader(segment);
+            return segment;
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void recover() {
+        int segment = 0;
+        while (segment < segments.size() - 1 && isValid((segment << SEGMENT_SHIFT) + SEGMENT_MASK)) {
+            segment++;
+        }
+        int row = segment << SEGMENT_SHIFT;
+        final int end = Math.min(row + SEGMENT_ROWS, segments.size() << SEGMENT_SHIFT);
+        while (row < end && isValid(row)) {
+            row++;
+        }
+        rows = row;
+        clear(rows, segments.size() << SEGMENT_SHIFT);
+    }
+
+    /**
+     * Returns whether a slot holds a complete record, whose dictionary codes are all recovered.
+     */
+    private boolean isValid(int row) {
+        ByteBuffer segment = segmentOf(row);
+        int slot = slotOf(row);
+        if (!layout.isSealed(segment, slot)) {
+            return false;
+        }
+        for (int i = 0; i < columns.length; i++) {
+            if (layout.getKind(i) == Layout.CODE &&
+                    segment.getInt(slot + layout.getOffset(i)) >= dictionary.valuesOf(i).size()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Unseals the slots in the specified range of rows.
+     */
+    private void clear(int from, int to) {
+        for (int row = from; row < to; row++) {
+            ByteBuffer segment = segmentOf(row);
+            int slot = slotOf(row);
+            if (segment.getInt(slot) != 0) {
+                segment.putInt(slot, 0);
+            }
+        }
+    }
+
+    Layout getLayout() {
+        return layout;
+    }
+
+    ByteBuffer segmentOf(int row) {
+        return segments.get(row >>> SEGMENT_SHIFT);
+    }
+
+    int slotOf(int row) {
+        return layout.getHeaderSize() + (row & SEGMENT_MASK) * layout.getRecordSize();
+    }
+
+    public Schema getSchema() {
+        return layout.getSchema();
+    }
+
+    @Override
+    protected Column getColumn(String variable) {
+        return columnsByVariable.get(variable);
+    }
+
+    @Override
+    protected synchronized int getRowCount() {
+        checkOpen();
+        return rows;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Log: '" + getName() + "' is closed");
+        }
+    }
+
+    public synchronized void record(Record record) {
+        checkOpen();
+        try {
+            if (rows >>> SEGMENT_SHIFT == segments.size()) {
+                segments.add(newSegment(segments.size()));
+            }
+            ByteBuffer segment = segmentOf(rows);
+            int slot = slotOf(rows);
+            if (record instanceof SchemaRecord && ((SchemaRecord)record).getSchema() == getSchema()
+                    && ((SchemaRecord)record).isComplete() && record.getValue() == null) {
+                SchemaRecord schemaRecord = (SchemaRecord)record;
+                for (int i = 0; i < columns.length; i++) {
+                    int position = slot + layout.getOffset(i);
+                    switch (layout.getKind(i)) {
+                        case Layout.INT: segment.putInt(position, (int) schemaRecord.getLong(i)); break;
+                        case Layout.SHORT: segment.putShort(position, (short) schemaRecord.getLong(i)); break;
+                        case Layout.LONG: segment.putLong(position, schemaRecord.getLong(i)); break;
+                        case Layout.FLOAT: segment.putFloat(position, (float) schemaRecord.getDouble(i)); break;
+                        case Layout.DOUBLE: segment.putDouble(position, schemaRecord.getDouble(i)); break;
+                        default: write(segment, position, i, columns[i].convert(schemaRecord.get(i)));
+                    }
+                }
+            } else {
+                Object[] values = toRow(record);
+                for (int i = 0; i < columns.length; i++) {
+                    write(segment, slot + layout.getOffset(i), i, values[i]);
+                }
+            }
+            segment.putInt(slot, layout.seal(segment, slot));
+            rows++;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void write(ByteBuffer segment, int position, int index, Object value) throws IOException {
+        switch (layout.getKind(index)) {
+            case Layout.INT: segment.putInt(position, ((Number) value).intValue()); break;
+            case Layout.SHORT: segment.putShort(position, ((Number) value).shortValue()); break;
+            case Layout.LONG: segment.putLong(position, ((Number) value).longValue()); break;
+            case Layout.FLOAT: segment.putFloat(position, ((Number) value).floatValue()); break;
+            case Layout.DOUBLE: segment.putDouble(position, ((Number) value).doubleValue()); break;
+            case Layout.TIMESTAMP: segment.putLong(position, Column.encodeTimestamp((Timestamp) value)); break;
+            default: segment.putInt(position, dictionary.encode(index, value));
+        }
+    }
+
+    /**
+     * Compacts the log in place, moving the remaining records over the deleted ones.
+     * Unlike appending, this is not atomic with respect to crashes.
+     */
+    @Override
+    protected synchronized void deleteRecords(Filter filter) {
+        checkOpen();
+        BitSet deleted = select(filter);
+        if (deleted.isEmpty()) {
+            return;
+        }
+        byte[] slot = new byte[layout.getRecordSize()];
+        int kept = 0;
+        for (int row = deleted.nextClearBit(0); row < rows; row = deleted.nextClearBit(row + 1)) {
+            if (row != kept) {
+                ByteBuffer source = segmentOf(row).duplicate();
+                source.position(slotOf(row));
+                source.get(slot);
+                ByteBuffer target = segmentOf(kept).duplicate();
+                target.position(slotOf(kept));
+                target.put(slot);
+            }
+            kept++;
+        }
+        clear(kept, rows);
+        rows = kept;
+    }
+
+    /**
+     * Forces the segments and the dictionary to the storage device, and closes the log.
+     */
+    synchronized void close() {
+        if (closed) {
+            return;
+        }
+        try {
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+            dictionary.force();
+            dictionary.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            closed = true;
+            segments.clear();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package gr.forth.ics.jbenchy.impl.log;
+
+import gr.forth.ics.jbenchy.DataType;
+import gr.forth.ics.jbenchy.impl.Column;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A field of the records of a {@link LogAggregator}, read in place from the mapped segments.
+ *
+ * @author andreou
+ */
+class LogColumn extends Column {
+    private final LogAggregator log;
+    private final int kind;
+    private final int offset;
+    private final List<Object> dictionary;
+
+    /**
+     * @param dictionary the values of the variable indexed by code, if dictionary-encoded
+     */
+    LogColumn(String variable, DataType<?> type, LogAggregator log, int kind, int offset, List<Object> dictionary) {
+        super(variable, type);
+        this.log = log;
+        this.kind = kind;
+        this.offset = offset;
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public int size() {
+        return log.getRowCount();
+    }
+
+    private boolean isLongBacked() {
+        return kind != Layout.FLOAT && kind != Layout.DOUBLE;
+    }
+
+    private long getRawLong(ByteBuffer segment, int position) {
+        switch (kind) {
+            case Layout.INT: case Layout.CODE: return segment.getInt(position);
+            case Layout.SHORT: return segment.getShort(position);
+            case Layout.FLOAT: return (long) segment.getFloat(position);
+            case Layout.DOUBLE: return (long) segment.getDouble(position);
+            default: return segment.getLong(position);
+        }
+    }
+
+    private double getRawDouble(ByteBuffer segment, int position) {
+        switch (kind) {
+            case Layout.FLOAT: return segment.getFloat(position);
+            case Layout.DOUBLE: return segment.getDouble(position);
+            default: return getRawLong(segment, position);
+        }
+    }
+
+    @Override
+    public long getKey(int row) {
+        ByteBuffer segment = log.segmentOf(row);
+        int position = log.slotOf(row) + offset;
+        return isLongBacked() ? getRawLong(segment, position) :
+            Double.doubleToLongBits(getRawDouble(segment, position));
+    }
+
+    @Override
+    public Object valueOfKey(long key) {
+        switch (kind) {
+            case Layout.INT: return (int) key;
+            case Layout.SHORT: return (short) key;
+            case Layout.LONG: return key;
+            case Layout.TIMESTAMP: return decodeTimestamp(key);
+            case Layout.FLOAT: return (float) Double.longBitsToDouble(key);
+            case Layout.DOUBLE: return Double.longBitsToDouble(key);
+            default: return dictionary.get((int) key);
+        }
+    }
+
+    @Override
+    public Object get(int row) {
+        return valueOfKey(getKey(row));
+    }
+
+    @Override
+    public long getLong(int row) {
+        return kind == Layout.CODE ? super.getLong(row) :
+            getRawLong(log.segmentOf(row), log.slotOf(row) + offset);
+    }
+
+    @Override
+    public double getDouble(int row) {
+        return kind == Layout.CODE ? super.getDouble(row) :
+            getRawDouble(log.segmentOf(row), log.slotOf(row) + offset);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void select(String operator, Object value, BitSet selection) {
+        Object converted = convert(value);
+        if (kind == Layout.CODE) {
+            BitSet codes = new BitSet(dictionary.size());
+            for (int code = 0; code < dictionary.size(); code++) {
+                if (matches(operator, ((Comparable<Object>) dictionary.get(code)).compareTo(converted))) {
+                    codes.set(code);
+                }
+            }
+            if (!codes.isEmpty()) {
+                selectCodes(codes, selection);
+            }
+        } else if (kind == Layout.TIMESTAMP) {
+            selectLongs(operator, encodeTimestamp((Timestamp) converted), selection);
+        } else if (isLongBacked() && (value instanceof Long || value instanceof Integer ||
+                value instanceof Short || value instanceof Byte)) {
+            selectLongs(operator, ((Number) value).longValue(), selection);
+        } else {
+            selectDoubles(operator, ((Number) (value instanceof Number ? value : converted)).doubleValue(), selection);
+        }
+    }
+
+    private void selectCodes(BitSet codes, BitSet selection) {
+        final int rows = size();
+        final int recordSize = log.getLayout().getRecordSize();
+        for (int base = 0; base < rows; base += LogAggregator.SEGMENT_ROWS) {
+            ByteBuffer segment = log.segmentOf(base);
+            int position = log.slotOf(base) + offset;
+            final int end = Math.min(rows, base + LogAggregator.SEGMENT_ROWS);
+            for (int row = base; row < end; row++, position += recordSize) {
+                if (codes.get(segment.getInt(position))) {
+                    selection.set(row);
+                }
+            }
+        }
+    }
+
+    private void selectLongs(String operator, long value, BitSet selection) {
+        final int rows = size();
+        final int recordSize = log.getLayout().getRecordSize();
+        for (int base = 0; base < rows; base += LogAggregator.SEGMENT_ROWS) {
+            ByteBuffer segment = log.segmentOf(base);
+            int position = log.slotOf(base) + offset;
+            final int end = Math.min(rows, base + LogAggregator.SEGMENT_ROWS);
+            for (int row = base; row < end; row++, position += recordSize) {
+                long v = getRawLong(segment, position);
+                if (matches(operator, v < value ? -1 : (v == value ? 0 : 1))) {
+                    selection.set(row);
+                }
+            }
+        }
+    }
+
+    private void selectDoubles(String operator, double value, BitSet selection) {
+        final int rows = size();
+        final int recordSize = log.getLayout().getRecordSize();
+        for (int base = 0; base < rows; base += LogAggregator.SEGMENT_ROWS) {
+            ByteBuffer segment = log.segmentOf(base);
+            int position = log.slotOf(base) + offset;
+            final int end = Math.min(rows, base + LogAggregator.SEGMENT_ROWS);
+            for (int row = base; row < end; row++, position += recordSize) {
+                if (matches(operator, Double.compare(getRawDouble(segment, position), value))) {
+                    selection.set(row);
+                }
+            }
+        }
+    }
+}
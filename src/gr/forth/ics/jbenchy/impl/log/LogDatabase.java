@@ -0,0 +1,84 @@
+package gr.forth.ics.jbenchy.impl.log;
+
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.Aggregator;
+import gr.forth.ics.jbenchy.Database;
+import gr.forth.ics.jbenchy.SQLRuntimeException;
+import gr.forth.ics.jbenchy.Schema;
+import gr.forth.ics.jbenchy.StringUtils;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A directory of logs, one per aggregator. Each log is opened at most once, and stays
+ * open until it is deleted or the database is shut down.
+ *
+ * @author andreou
+ */
+class LogDatabase extends Database {
+    private final File directory;
+    private final LogFactory factory;
+    private final Map<String, LogAggregator> logs = new HashMap<String, LogAggregator>();
+
+    LogDatabase(File directory, LogFactory factory) {
+        this.directory = directory;
+        this.factory = factory;
+    }
+
+    public synchronized Aggregator get(String name) {
+        StringUtils.checkHasText(name);
+        name = name.toUpperCase();
+        LogAggregator log = logs.get(name);
+        if (log == null && LogAggregator.exists(directory, name)) {
+            try {
+                log = LogAggregator.open(directory, name);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not open log: '" + name + "' in " + directory, e);
+            }
+            logs.put(name, log);
+        }
+        return log;
+    }
+
+    public synchronized Aggregator create(Schema schema, String name) throws SQLRuntimeException {
+        Preconditions.checkNotNull(schema, "schema");
+        StringUtils.checkHasText(name, "name");
+        name = name.toUpperCase();
+        if (logs.containsKey(name) || LogAggregator.exists(directory, name)) {
+            throw new IllegalArgumentException("Aggregator: '" + name + "' already exists");
+        }
+        try {
+            LogAggregator log = LogAggregator.create(directory, name, schema);
+            logs.put(name, log);
+            return log;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not create log: '" + name + "' in " + directory, e);
+        }
+    }
+
+    public synchronized boolean delete(String name) {
+        StringUtils.checkHasText(name);
+        name = name.toUpperCase();
+        LogAggregator log = logs.remove(name);
+        if (log != null) {
+            log.close();
+        }
+        return LogAggregator.delete(directory, name);
+    }
+
+    /**
+     * Forces all open logs to the storage device, and closes them.
+     */
+    public synchronized void shutDown() {
+        try {
+            for (LogAggregator log : logs.values()) {
+                log.close();
+            }
+        } finally {
+            logs.clear();
+            factory.release(directory);
+        }
+    }
+}
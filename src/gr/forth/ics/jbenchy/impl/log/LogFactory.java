@@ -0,0 +1,66 @@
+package gr.forth.ics.jbenchy.impl.log;
+
+import gr.forth.ics.jbenchy.Database;
+import gr.forth.ics.jbenchy.DbFactory;
+import gr.forth.ics.jbenchy.StringUtils;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A factory of log databases. The name of a database is the path of its directory; a database
+ * is shared by all factories of this process, until it is {@link Database#shutDown() shut down}.
+ *
+ * @author andreou
+ */
+public class LogFactory implements DbFactory {
+    private static final Map<File, LogDatabase> databases = new HashMap<File, LogDatabase>();
+
+    private static File directoryOf(String dbName) {
+        StringUtils.checkHasText(dbName, "Empty db name");
+        try {
+            return new File(dbName).getCanonicalFile();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public Database get(String dbName) {
+        File directory = directoryOf(dbName);
+        if (!directory.isDirectory()) {
+            throw new RuntimeException("Database: '" + dbName +
+                    "' does not exist");
+        }
+        return open(directory);
+    }
+
+    public boolean exists(String dbName) {
+        return directoryOf(dbName).isDirectory();
+    }
+
+    public Database getOrCreate(String dbName) {
+        File directory = directoryOf(dbName);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new RuntimeException("Could not create directory: '" + directory + "'");
+        }
+        return open(directory);
+    }
+
+    private LogDatabase open(File directory) {
+        synchronized (databases) {
+            LogDatabase db = databases.get(directory);
+            if (db == null) {
+                db = new LogDatabase(directory, this);
+                databases.put(directory, db);
+            }
+            return db;
+        }
+    }
+
+    void release(File directory) {
+        synchronized (databases) {
+            databases.remove(directory);
+        }
+    }
+}
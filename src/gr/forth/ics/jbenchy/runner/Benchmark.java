@@ -0,0 +1,26 @@
+package gr.forth.ics.jbenchy.runner;
+
+import gr.forth.ics.jbenchy.Record;
+
+/**
+ * The body of an experiment, executed by a {@link Runner} once per sample, for each
+ * parameter cell of a sweep.
+ *
+ * @see Runner
+ * @see Sweep
+ * @author andreou
+ */
+public interface Benchmark {
+    /**
+     * Executes the experiment once, for the given parameter cell.
+     * <p>
+     * The returned value is consumed by the runner, so that the computation which produced
+     * it cannot be eliminated as dead code by the JIT compiler. Return <tt>null</tt> if there is no
+     * meaningful result.
+     *
+     * @param cell the variable bindings (parameters) of the current cell. Must not be modified
+     * @return the result of the experiment, or <tt>null</tt>
+     * @throws Exception if the experiment fails; this aborts the run
+     */
+    Object run(Record cell) throws Exception;
+}
@@ -0,0 +1,66 @@
+package gr.forth.ics.jbenchy.runner;
+
+/**
+ * Consumes values so that the JIT compiler cannot prove them unused, and thus cannot eliminate
+ * the computations that produced them as dead code.
+ * <p>
+ * Consuming is much cheaper than writing to a volatile field on every call: primitives are
+ * compared against two volatile fields that can never both match, and references are only
+ * published once in a (growing) while, chosen by a pseudo-random sequence the compiler cannot
+ * predict. A blackhole is not thread-safe; use one per thread.
+ *
+ * @see ThroughputRunner
+ * @author andreou
+ */
+public class Blackhole {
+    private volatile long long1 = 1L;
+    private volatile long long2 = 2L;
+    private volatile double double1 = 1.0;
+    private volatile double double2 = 2.0;
+    private volatile int mask = 1;
+
+    private int seed = (int) System.nanoTime();
+    private Object published;
+
+    /**
+     * Consumes an object.
+     */
+    public void consume(Object value) {
+        int currentMask = mask;
+        seed = seed * 1664525 + 1013904223;
+        if ((seed & currentMask) == 0) {
+            published = value;
+            mask = (currentMask << 1) + 1;
+        }
+    }
+
+    /**
+     * Consumes a long (or int, short, char, byte).
+     */
+    public void consume(long value) {
+        if (value == long1 & value == long2) {
+            published = this; //never happens
+        }
+    }
+
+    /**
+     * Consumes a double (or float).
+     */
+    public void consume(double value) {
+        if (value == double1 & value == double2) {
+            published = this; //never happens
+        }
+    }
+
+    /**
+     * Consumes a boolean.
+     */
+    public void consume(boolean value) {
+        consume(value ? 1L : 0L);
+    }
+
+    @Override
+    public String toString() {
+        return "[Blackhole" + (published != null ? "*" : "") + "]";
+    }
+}
@@ -0,0 +1,221 @@
+package gr.forth.ics.jbenchy.runner;
+
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.Aggregator;
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.stats.RunningStatistics;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Measures how the throughput of an operation scales with the number of threads that
+ * execute it concurrently.
+ * <p>
+ * For every cell and every thread count <tt>N</tt>, the runner starts <tt>N</tt> worker threads,
+ * which execute the benchmark in lockstep windows, as defined by a {@link ThroughputRunner}: all
+ * workers wait on a start barrier, measure one window each, and wait on an end barrier. Each worker
+ * keeps its samples in its own buffer, so that no synchronization takes place while measuring; the
+ * buffers are merged into the aggregator by the calling thread after each window. Every sample is
+ * tagged with the number of {@link #THREADS} and the {@link #THREAD_ID} of the worker (0 to N-1),
+ * so the schema must include these two variables, besides those that the throughput runner requires:
+ * <pre>
+ * Schema schema = new Schema()
+ *     ...
+ *     .add(ContentionRunner.THREADS, DataTypes.INTEGER)
+ *     .add(ContentionRunner.THREAD_ID, DataTypes.INTEGER);
+ *
+ * new ContentionRunner(new ThroughputRunner(aggregator, Variables.OPS), 8).run(sweep, benchmark);
+ * Records perThread = aggregator.averageOf(Variables.OPS).per(ContentionRunner.THREADS);
+ * </pre>
+ * The benchmark must be safe to execute concurrently. Worker threads are created by a
+ * {@link ThreadFactory}; on platforms that support them, a factory of virtual threads can be used.
+ *
+ * @see ThroughputRunner
+ * @author andreou
+ */
+public class ContentionRunner {
+    /**
+     * The variable bound to the number of threads that were measured concurrently.
+     */
+    public static final String THREADS = "THREADS";
+
+    /**
+     * The variable bound to the index of the worker thread that took a sample.
+     */
+    public static final String THREAD_ID = "THREAD_ID";
+
+    private final ThroughputRunner throughput;
+    private int[] threadCounts;
+    private ThreadFactory threadFactory = Executors.defaultThreadFactory();
+
+    /**
+     * Creates a contention runner that measures every thread count from 1 to <tt>maxThreads</tt>.
+     * @param throughput defines the windows, the measured variable, and the target aggregator
+     * @param maxThreads the maximum number of concurrent threads
+     */
+    public ContentionRunner(ThroughputRunner throughput, int maxThreads) {
+        this.throughput = Preconditions.checkNotNull(throughput, "throughput");
+        Preconditions.checkArgument(maxThreads > 0, "Non-positive maxThreads");
+        threadCounts = new int[maxThreads];
+        for (int i = 0; i < maxThreads; i++) {
+            threadCounts[i] = i + 1;
+        }
+    }
+
+    /**
+     * Sets the thread counts to measure, instead of <tt>1..maxThreads</tt>; e.g. <tt>1, 2, 4, 8</tt>.
+     * @return this
+     */
+    public ContentionRunner withThreadCounts(int... threadCounts) {
+        Preconditions.checkArgument(threadCounts.length > 0, "No thread counts");
+        for (int count : threadCounts) {
+            Preconditions.checkArgument(count > 0, "Non-positive thread count");
+        }
+        this.threadCounts = threadCounts.clone();
+        return this;
+    }
+
+    /**
+     * Sets the factory of the worker threads. Default is {@link Executors#defaultThreadFactory()}.
+     * @return this
+     */
+    public ContentionRunner withThreadFactory(ThreadFactory threadFactory) {
+        this.threadFactory = Preconditions.checkNotNull(threadFactory, "threadFactory");
+        return this;
+    }
+
+    /**
+     * Measures the benchmark for every cell and thread count, recording one sample per worker
+     * and window in the aggregator.
+     *
+     * @param cells the parameter cells, e.g. a {@link Sweep}. All cells must bind the same variables
+     * @param benchmark the operation to measure
+     * @return a summary with one record per cell and thread count, containing the bindings of the cell,
+     * the number of {@link #THREADS}, the mean total operations per second (of all workers) as
+     * {@link Record#getValue() value}, and the number of windows and the relative error under the
+     * {@link Runner#SAMPLES} and {@link Runner#RELATIVE_ERROR} keys respectively
+     * @throws Exception if the benchmark throws an exception
+     */
+    public Records run(Iterable<Record> cells, Benchmark benchmark) throws Exception {
+        Preconditions.checkNotNull(benchmark, "benchmark");
+        List<Record> summary = new ArrayList<Record>();
+        List<String> variables = null;
+        for (Record cell : cells) {
+            if (variables == null) {
+                variables = new ArrayList<String>(cell.keySet());
+                variables.add(THREADS);
+            }
+            for (int threads : threadCounts) {
+                Record record = throughput.summarize(cell.copy().add(THREADS, threads),
+                        measure(cell, benchmark, threads));
+                summary.add(record);
+            }
+        }
+        if (variables == null) {
+            variables = new ArrayList<String>();
+        }
+        return new Records(summary, variables);
+    }
+
+    /**
+     * Measures a cell with the specified number of workers, and returns the statistics of the
+     * total throughput per window.
+     */
+    private RunningStatistics measure(final Record cell, final Benchmark benchmark, final int threads)
+            throws Exception {
+        final CyclicBarrier start = new CyclicBarrier(threads + 1);
+        final CyclicBarrier end = new CyclicBarrier(threads + 1);
+        //the first failure of a worker, including errors, which would otherwise leave the barriers waiting
+        final Throwable[] failure = new Throwable[1];
+        final boolean[] stop = new boolean[1];
+        final List<List<Record>> buffers = new ArrayList<List<Record>>(threads);
+        List<Thread> workers = new ArrayList<Thread>(threads);
+        for (int i = 0; i < threads; i++) {
+            final int threadId = i;
+            final List<Record> buffer = new ArrayList<Record>();
+            buffers.add(buffer);
+            Thread worker = threadFactory.newThread(new Runnable() {
+                public void run() {
+                    Blackhole blackhole = new Blackhole();
+                    try {
+                        while (true) {
+                            start.await();
+                            if (stop[0]) {
+                                return;
+                            }
+                            try {
+                                buffer.add(throughput.measureWindow(cell, benchmark, blackhole).
+                                        add(THREADS, threads).
+                                        add(THREAD_ID, threadId));
+                            } catch (Throwable e) {
+                                synchronized (failure) {
+                                    if (failure[0] == null) {
+                                        failure[0] = e;
+                                    }
+                                }
+                            }
+                            end.await();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (BrokenBarrierException e) {
+                        //the run was aborted
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        final String measuredVariable = throughput.getMeasuredVariable();
+        final Aggregator aggregator = throughput.getAggregator();
+        RunningStatistics stats = new RunningStatistics();
+        try {
+            for (int window = 0; window < throughput.getWarmupWindows() + throughput.getWindows(); window++) {
+                start.await();
+                end.await();
+                synchronized (failure) {
+                    if (failure[0] instanceof Error) {
+                        throw (Error) failure[0];
+                    } else if (failure[0] instanceof Exception) {
+                        throw (Exception) failure[0];
+                    } else if (failure[0] != null) {
+                        throw new RuntimeException(failure[0]);
+                    }
+                }
+                boolean warmup = window < throughput.getWarmupWindows();
+                double total = 0.0;
+                for (List<Record> buffer : buffers) {
+                    for (Record sample : buffer) {
+                        if (!warmup) {
+                            aggregator.record(sample);
+                        }
+                        total += ((Number) sample.get(measuredVariable)).doubleValue();
+                    }
+                    buffer.clear();
+                }
+                if (!warmup) {
+                    stats.add(total);
+                }
+            }
+            stop[0] = true;
+            start.await();
+        } finally {
+            //after a failure, workers may reach a barrier after it is reset; interrupting them
+            //makes sure that none waits on a barrier forever
+            start.reset();
+            end.reset();
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+        return stats;
+    }
+}
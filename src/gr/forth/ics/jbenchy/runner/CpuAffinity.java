@@ -0,0 +1,188 @@
+package gr.forth.ics.jbenchy.runner;
+
+import com.google.common.base.Preconditions;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Utilities to partition the available CPUs into disjoint sets, and to pin threads to them.
+ * <p>
+ * Pinning is only supported on Linux, through the <tt>taskset</tt> utility: a thread pins
+ * itself by passing its own native thread id (as found in <tt>/proc/thread-self</tt>) to
+ * <tt>taskset -p</tt>. On other platforms, or when <tt>taskset</tt> is not installed,
+ * {@link #pinCurrentThread(String)} simply returns false.
+ *
+ * @see ParallelRunner
+ * @author andreou
+ */
+public class CpuAffinity {
+    private static final File THREAD_SELF = new File("/proc/thread-self");
+    private static final File STATUS = new File("/proc/self/status");
+    private static volatile Boolean supported;
+
+    private CpuAffinity() {
+    }
+
+    /**
+     * Returns the ids of the CPUs that this process is allowed to run on. On Linux, this honors
+     * the affinity mask of the process; elsewhere, the ids <tt>0..N-1</tt> are returned, where N is
+     * the number of available processors.
+     */
+    public static List<Integer> availableCpus() {
+        if (STATUS.canRead()) {
+            try {
+                BufferedReader in = new BufferedReader(new FileReader(STATUS));
+                try {
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        if (line.startsWith("Cpus_allowed_list:")) {
+                            return parseCpuList(line.substring(line.indexOf(':') + 1).trim());
+                        }
+                    }
+                } finally {
+                    in.close();
+                }
+            } catch (IOException ignore) {
+                //fall back to the number of available processors
+            }
+        }
+        List<Integer> cpus = new ArrayList<Integer>();
+        for (int i = 0; i < Runtime.getRuntime().availableProcessors(); i++) {
+            cpus.add(i);
+        }
+        return cpus;
+    }
+
+    /**
+     * Partitions the {@link #availableCpus() available CPUs} into a number of disjoint sets of
+     * (almost) equal size, each expressed as a CPU list in <tt>taskset</tt> syntax, e.g. <tt>"0-3"</tt>.
+     * @param sets the number of sets to create
+     * @return the CPU sets
+     * @throws IllegalArgumentException if there are less available CPUs than the requested sets
+     */
+    public static List<String> partition(int sets) {
+        Preconditions.checkArgument(sets > 0, "Non-positive number of CPU sets");
+        List<Integer> cpus = availableCpus();
+        Preconditions.checkArgument(sets <= cpus.size(), "Cannot create " + sets +
+                " disjoint CPU sets out of " + cpus.size() + " available CPUs");
+        List<String> partition = new ArrayList<String>(sets);
+        int from = 0;
+        for (int i = 0; i < sets; i++) {
+            int to = from + (cpus.size() - from) / (sets - i);
+            partition.add(toCpuList(cpus.subList(from, to)));
+            from = to;
+        }
+        return partition;
+    }
+
+    /**
+     * Returns whether threads can be pinned to CPUs in this platform.
+     */
+    public static boolean isSupported() {
+        Boolean result = supported;
+        if (result == null) {
+            result = THREAD_SELF.exists() && execute("taskset", "-p", selfId()) != null;
+            supported = result;
+        }
+        return result;
+    }
+
+    /**
+     * Restricts the current thread to run only on the specified CPUs.
+     * @param cpuList the CPUs, in <tt>taskset</tt> syntax, e.g. <tt>"0-3"</tt> or <tt>"0,2,4"</tt>
+     * @return true if the thread was pinned, false if pinning is not supported or failed
+     */
+    public static boolean pinCurrentThread(String cpuList) {
+        Preconditions.checkNotNull(cpuList, "cpuList");
+        if (!isSupported()) {
+            return false;
+        }
+        String threadId;
+        try {
+            threadId = THREAD_SELF.getCanonicalFile().getName();
+        } catch (IOException e) {
+            return false;
+        }
+        return execute("taskset", "-p", "-c", cpuList, threadId) != null;
+    }
+
+    private static String selfId() {
+        try {
+            return new File("/proc/self").getCanonicalFile().getName();
+        } catch (IOException e) {
+            return "1";
+        }
+    }
+
+    /**
+     * Executes a command, returning its output, or null if it failed.
+     */
+    private static String execute(String... command) {
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            StringBuilder output = new StringBuilder();
+            InputStream in = process.getInputStream();
+            try {
+                int c;
+                while ((c = in.read()) != -1) {
+                    output.append((char) c);
+                }
+            } finally {
+                in.close();
+            }
+            return process.waitFor() == 0 ? output.toString() : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    static List<Integer> parseCpuList(String cpuList) {
+        List<Integer> cpus = new ArrayList<Integer>();
+        for (String part : cpuList.split(",")) {
+            part = part.trim();
+            if (part.length() == 0) {
+                continue;
+            }
+            int dash = part.indexOf('-');
+            if (dash < 0) {
+                cpus.add(Integer.parseInt(part));
+            } else {
+                int to = Integer.parseInt(part.substring(dash + 1));
+                for (int cpu = Integer.parseInt(part.substring(0, dash)); cpu <= to; cpu++) {
+                    cpus.add(cpu);
+                }
+            }
+        }
+        Collections.sort(cpus);
+        return cpus;
+    }
+
+    static String toCpuList(List<Integer> cpus) {
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        while (i < cpus.size()) {
+            int j = i;
+            while (j + 1 < cpus.size() && cpus.get(j + 1) == cpus.get(j) + 1) {
+                j++;
+            }
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(cpus.get(i));
+            if (j > i) {
+                sb.append('-').append(cpus.get(j));
+            }
+            i = j + 1;
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,190 @@
+package gr.forth.ics.jbenchy.runner;
+
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.Aggregator;
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.stats.RunningStatistics;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Issues requests at a constant rate, and records latencies corrected for <em>coordinated
+ * omission</em>.
+ * <p>
+ * A load generator that waits for each response before sending the next request stops sending
+ * while the system under test stalls; the requests that would have been sent during the stall are
+ * never measured, and high percentiles come out far too optimistic. Instead, this generator
+ * schedules the <tt>i</tt>-th request at the intended time <tt>start + i / rate</tt>, and records
+ * for each request both its {@link #SERVICE_TIME} (from actually sending it to its completion) and
+ * its {@link #RESPONSE_TIME} (from its intended send time to its completion), in nanoseconds. The
+ * response time is the latency that a user of the system would experience.
+ * <p>
+ * After a stall, the generator by default catches up, sending the delayed requests back-to-back.
+ * With {@link #withBackfill(boolean) backfilling}, it rather skips the send times that have already
+ * passed, and records a synthesized sample for each, with the response time that the request would
+ * have had at least (from its intended send time to the end of the stall), flagged by
+ * {@link #BACKFILLED} 1. Backfilling keeps the offered load from bursting after stalls, while still
+ * accounting for every intended request.
+ * <p>
+ * Samples are buffered in memory and recorded in the aggregator after each cell, so recording does
+ * not disturb the schedule. The schema must include the three variables:
+ * <pre>
+ * Schema schema = new Schema()
+ *     ...
+ *     .add(LoadGenerator.SERVICE_TIME, DataTypes.LONG)
+ *     .add(LoadGenerator.RESPONSE_TIME, DataTypes.LONG)
+ *     .add(LoadGenerator.BACKFILLED, DataTypes.INTEGER);
+ *
+ * new LoadGenerator(aggregator, 1000).withDuration(1, TimeUnit.MINUTES).run(sweep, request);
+ * </pre>
+ * Since backfilled samples were never sent, their service time is set to their response time;
+ * filter them out with <tt>Filters.eq(LoadGenerator.BACKFILLED, 0)</tt> when studying service times.
+ *
+ * @see Runner
+ * @author andreou
+ */
+public class LoadGenerator {
+    /**
+     * The variable bound to the time from actually sending a request to its completion, in nanoseconds.
+     */
+    public static final String SERVICE_TIME = "SERVICE_TIME";
+
+    /**
+     * The variable bound to the time from the intended send time of a request to its completion,
+     * in nanoseconds.
+     */
+    public static final String RESPONSE_TIME = "RESPONSE_TIME";
+
+    /**
+     * The variable bound to 1 for synthesized samples of skipped requests, 0 otherwise.
+     */
+    public static final String BACKFILLED = "BACKFILLED";
+
+    /**
+     * Waiting times above this are spent parked, the rest spinning.
+     */
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final Aggregator aggregator;
+    private final long intervalNanos;
+    private long durationNanos = TimeUnit.SECONDS.toNanos(10);
+    private boolean backfill;
+
+    private volatile Object sink;
+
+    /**
+     * Creates a load generator.
+     * @param aggregator the aggregator in which to record samples
+     * @param requestsPerSecond the rate at which to send requests
+     */
+    public LoadGenerator(Aggregator aggregator, double requestsPerSecond) {
+        this.aggregator = Preconditions.checkNotNull(aggregator, "aggregator");
+        Preconditions.checkArgument(requestsPerSecond > 0.0 && requestsPerSecond <= 1e9,
+                "Rate not in (0, 1e9] range");
+        this.intervalNanos = Math.round(1e9 / requestsPerSecond);
+    }
+
+    /**
+     * Sets the time during which requests are scheduled, per cell. Default is 10 seconds.
+     * @return this
+     */
+    public LoadGenerator withDuration(long duration, TimeUnit unit) {
+        Preconditions.checkArgument(duration > 0, "Non-positive duration");
+        this.durationNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /**
+     * Sets whether send times that have passed during a stall are skipped and backfilled with
+     * synthesized samples, rather than sent late. Default is false.
+     * @return this
+     */
+    public LoadGenerator withBackfill(boolean backfill) {
+        this.backfill = backfill;
+        return this;
+    }
+
+    /**
+     * Generates load for every cell, recording one sample per intended request in the aggregator.
+     *
+     * @param cells the parameter cells, e.g. a {@link Sweep}. All cells must bind the same variables
+     * @param request the request to send; its result is ignored
+     * @return a summary with one record per cell, containing the bindings of the cell, the mean
+     * response time as {@link Record#getValue() value}, the number of samples under the
+     * {@link Runner#SAMPLES} key, and the number of those that were backfilled under the
+     * {@link #BACKFILLED} key
+     * @throws Exception if the request throws an exception
+     */
+    public Records run(Iterable<Record> cells, Benchmark request) throws Exception {
+        Preconditions.checkNotNull(request, "request");
+        List<Record> cellList = new ArrayList<Record>();
+        for (Record cell : cells) {
+            cellList.add(cell);
+        }
+        List<Record> summary = new ArrayList<Record>(cellList.size());
+        for (Record cell : cellList) {
+            List<Record> samples = generate(cell, request);
+            RunningStatistics responseTimes = new RunningStatistics();
+            int backfilled = 0;
+            for (Record sample : samples) {
+                aggregator.record(sample);
+                responseTimes.add(((Number) sample.get(RESPONSE_TIME)).doubleValue());
+                backfilled += (Integer) sample.get(BACKFILLED);
+            }
+            Record record = cell.copy();
+            record.putValue(responseTimes.getMean());
+            record.add(Runner.SAMPLES, responseTimes.getCount());
+            record.add(BACKFILLED, backfilled);
+            summary.add(record);
+        }
+        List<String> variables = cellList.isEmpty() ?
+            Collections.<String>emptyList() : new ArrayList<String>(cellList.get(0).keySet());
+        return new Records(summary, variables);
+    }
+
+    private List<Record> generate(Record cell, Benchmark request) throws Exception {
+        final long requests = Math.max(1, durationNanos / intervalNanos);
+        List<Record> samples = new ArrayList<Record>((int) Math.min(requests, 1 << 20));
+        final long start = System.nanoTime();
+        long i = 0;
+        while (i < requests) {
+            final long intended = start + i * intervalNanos;
+            waitUntil(intended);
+            final long sent = System.nanoTime();
+            sink = request.run(cell);
+            final long done = System.nanoTime();
+            samples.add(sample(cell, done - sent, done - intended, 0));
+            i++;
+            if (backfill) {
+                long skipped;
+                while (i < requests && (skipped = start + i * intervalNanos) < done) {
+                    samples.add(sample(cell, done - skipped, done - skipped, 1));
+                    i++;
+                }
+            }
+        }
+        return samples;
+    }
+
+    private static Record sample(Record cell, long serviceTime, long responseTime, int backfilled) {
+        return cell.copy().
+                add(SERVICE_TIME, serviceTime).
+                add(RESPONSE_TIME, responseTime).
+                add(BACKFILLED, backfilled);
+    }
+
+    private static void waitUntil(long time) {
+        long remaining;
+        while ((remaining = time - System.nanoTime()) > 0) {
+            if (remaining > SPIN_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_NANOS);
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+}
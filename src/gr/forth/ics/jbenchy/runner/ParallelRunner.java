@@ -0,0 +1,280 @@
+package gr.forth.ics.jbenchy.runner;
+
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.Aggregator;
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.stats.RunningStatistics;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs independent parameter cells concurrently, each worker thread pinned to its own,
+ * disjoint set of CPUs (see {@link CpuAffinity}).
+ * <p>
+ * Sampling of each cell is delegated to a {@link Runner}, so warmup, {@link SamplingPolicy sampling}
+ * and time budgets behave exactly as in a sequential run. Every recorded sample is additionally
+ * tagged with the {@link #CPU_SET} that the sample ran on, and the {@link #CONCURRENCY} of the run,
+ * so the aggregator's schema must include these two variables, for example:
+ * <pre>
+ * Schema schema = new Schema()
+ *     ...
+ *     .add(ParallelRunner.CPU_SET, DataTypes.SMALL_STRING)
+ *     .add(ParallelRunner.CONCURRENCY, DataTypes.INTEGER);
+ * </pre>
+ * Concurrent cells share caches, memory bandwidth and the aggregator itself, so they may
+ * interfere with each other. {@link #calibrate(Record, Benchmark)} quantifies that interference
+ * for a sample cell, before committing to a parallel sweep.
+ *
+ * @see Runner
+ * @author andreou
+ */
+public class ParallelRunner {
+    /**
+     * The variable bound to the CPU list (in <tt>taskset</tt> syntax) that a sample ran on,
+     * or to {@link #ANY_CPU} if the worker was not pinned.
+     */
+    public static final String CPU_SET = "CPU_SET";
+
+    /**
+     * The variable bound to the number of cells that were run concurrently.
+     */
+    public static final String CONCURRENCY = "CONCURRENCY";
+
+    /**
+     * The value of {@link #CPU_SET} for samples taken by workers that are not pinned.
+     */
+    public static final String ANY_CPU = "*";
+
+    private final Runner runner;
+    private final int concurrency;
+    private boolean pinning = true;
+
+    /**
+     * Creates a parallel runner.
+     * @param runner the runner that samples each cell, and defines the target aggregator
+     * @param concurrency the number of cells to run concurrently. When pinning, this must not
+     * exceed the number of available CPUs
+     */
+    public ParallelRunner(Runner runner, int concurrency) {
+        this.runner = Preconditions.checkNotNull(runner, "runner");
+        Preconditions.checkArgument(concurrency > 0, "Non-positive concurrency");
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Sets whether worker threads are pinned to disjoint CPU sets (the default). Pinning is silently
+     * skipped on platforms where it is {@link CpuAffinity#isSupported() not supported}.
+     * @return this
+     */
+    public ParallelRunner withPinning(boolean pinning) {
+        this.pinning = pinning;
+        return this;
+    }
+
+    /**
+     * Returns the number of cells that are run concurrently.
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Runs the benchmark for every cell, with up to {@link #getConcurrency()} cells running at a time.
+     * The benchmark must be safe to execute concurrently, for different cells.
+     *
+     * @param cells the parameter cells, e.g. a {@link Sweep}. All cells must bind the same variables
+     * @param benchmark the experiment to run
+     * @return a summary, as in {@link Runner#run(Iterable, Benchmark)}, in the order of the given cells
+     * @throws Exception if the benchmark throws an exception (errors thrown by the benchmark are rethrown as well)
+     */
+    public Records run(Iterable<Record> cells, Benchmark benchmark) throws Exception {
+        Preconditions.checkNotNull(benchmark, "benchmark");
+        List<Record> cellList = new ArrayList<Record>();
+        for (Record cell : cells) {
+            cellList.add(cell);
+        }
+        Record[] summary = execute(cellList, benchmark, concurrency, false);
+        List<String> variables = cellList.isEmpty() ?
+            Collections.<String>emptyList() : new ArrayList<String>(cellList.get(0).keySet());
+        return new Records(Arrays.asList(summary), variables);
+    }
+
+    /**
+     * Measures the interference between concurrently running cells. The given cell is first
+     * sampled alone (with {@link #CONCURRENCY} 1) on the first CPU set, then simultaneously by all
+     * workers, each on its own CPU set. All samples are recorded, tagged accordingly.
+     *
+     * @param cell the cell to sample
+     * @param benchmark the experiment to run
+     * @return the comparison of the isolated run to the concurrent runs
+     * @throws Exception if the benchmark throws an exception
+     */
+    public Calibration calibrate(Record cell, Benchmark benchmark) throws Exception {
+        Preconditions.checkNotNull(cell, "cell");
+        Preconditions.checkNotNull(benchmark, "benchmark");
+        Record isolated = execute(Collections.singletonList(cell), benchmark, 1, false)[0];
+        Record[] concurrent = execute(Collections.nCopies(concurrency, cell), benchmark, concurrency, true);
+        RunningStatistics concurrentMeans = new RunningStatistics();
+        for (Record record : concurrent) {
+            concurrentMeans.add(((Number) record.getValue()).doubleValue());
+        }
+        return new Calibration(((Number) isolated.getValue()).doubleValue(),
+                concurrentMeans.getMean(), concurrentMeans.getMax(), concurrency);
+    }
+
+    /**
+     * Samples the cells with the specified number of pinned worker threads.
+     * @param lockstep if true, worker <tt>i</tt> takes exactly cell <tt>i</tt>, so that all cells run
+     * simultaneously; otherwise, workers take the next unsampled cell when they are done with the previous
+     */
+    private Record[] execute(final List<Record> cells, final Benchmark benchmark,
+            final int workers, final boolean lockstep) throws Exception {
+        final Record[] summary = new Record[cells.size()];
+        final AtomicInteger nextCell = new AtomicInteger();
+        //the first failure of a worker, including errors such as AssertionError or OutOfMemoryError
+        final Throwable[] failure = new Throwable[1];
+        //partitioned by the full concurrency, so that an isolated run gets as many CPUs as a concurrent one
+        final List<String> cpuSets = pinning && CpuAffinity.isSupported() ?
+            CpuAffinity.partition(concurrency) : null;
+        final long totalBudget = runner.getTotalTimeBudgetNanos();
+        final long deadline = System.nanoTime() + totalBudget;
+
+        List<Thread> threads = new ArrayList<Thread>(workers);
+        for (int i = 0; i < workers; i++) {
+            final int worker = i;
+            Thread thread = new Thread("ParallelRunner-worker-" + i) {
+                @Override
+                public void run() {
+                    String cpuSet = ANY_CPU;
+                    if (cpuSets != null && CpuAffinity.pinCurrentThread(cpuSets.get(worker))) {
+                        cpuSet = cpuSets.get(worker);
+                    }
+                    Aggregator target = runner.getAggregator().
+                            with(CPU_SET, cpuSet).
+                            with(CONCURRENCY, workers);
+                    try {
+                        while (true) {
+                            int index = lockstep ? worker : nextCell.getAndIncrement();
+                            if (index >= cells.size() || isFailed()) {
+                                return;
+                            }
+                            long cellBudget = 0;
+                            if (totalBudget > 0) {
+                                long remainingRounds = (cells.size() - index + workers - 1) / workers;
+                                cellBudget = Math.max(1, (deadline - System.nanoTime()) / remainingRounds);
+                            }
+                            Record cell = cells.get(index);
+                            Record result = runner.summarize(cell,
+                                    runner.sample(target, cell, benchmark, cellBudget));
+                            result.add(CPU_SET, cpuSet);
+                            result.add(CONCURRENCY, workers);
+                            summary[index] = result;
+                            if (lockstep) {
+                                return;
+                            }
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failure) {
+                            if (failure[0] == null) {
+                                failure[0] = e;
+                            }
+                        }
+                    }
+                }
+
+                private boolean isFailed() {
+                    synchronized (failure) {
+                        return failure[0] != null;
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure[0] instanceof Error) {
+            throw (Error) failure[0];
+        } else if (failure[0] instanceof Exception) {
+            throw (Exception) failure[0];
+        } else if (failure[0] != null) {
+            throw new RuntimeException(failure[0]);
+        }
+        return summary;
+    }
+
+    /**
+     * The outcome of {@link ParallelRunner#calibrate(Record, Benchmark)}: the mean of a cell when
+     * sampled in isolation, versus its means when sampled concurrently by all workers.
+     */
+    public static class Calibration {
+        private final double isolatedMean;
+        private final double concurrentMean;
+        private final double worstConcurrentMean;
+        private final int concurrency;
+
+        Calibration(double isolatedMean, double concurrentMean, double worstConcurrentMean, int concurrency) {
+            this.isolatedMean = isolatedMean;
+            this.concurrentMean = concurrentMean;
+            this.worstConcurrentMean = worstConcurrentMean;
+            this.concurrency = concurrency;
+        }
+
+        /**
+         * Returns the mean of the cell when sampled alone.
+         */
+        public double getIsolatedMean() {
+            return isolatedMean;
+        }
+
+        /**
+         * Returns the average of the means of the cell over all concurrent workers.
+         */
+        public double getConcurrentMean() {
+            return concurrentMean;
+        }
+
+        /**
+         * Returns the greatest mean of the cell among all concurrent workers.
+         */
+        public double getWorstConcurrentMean() {
+            return worstConcurrentMean;
+        }
+
+        /**
+         * Returns the concurrency with which the concurrent means were measured.
+         */
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        /**
+         * Returns the ratio of the worst concurrent mean to the isolated mean; for example,
+         * 1.15 means that running concurrently made the cell (up to) 15% slower.
+         */
+        public double getSlowdown() {
+            return worstConcurrentMean / isolatedMean;
+        }
+
+        /**
+         * Returns whether the {@link #getSlowdown() slowdown} exceeds the given tolerance;
+         * for example, with tolerance 0.05, a slowdown over 1.05 is considered as interference.
+         */
+        public boolean isInterfering(double tolerance) {
+            Preconditions.checkArgument(tolerance >= 0.0, "Negative tolerance");
+            return getSlowdown() > 1.0 + tolerance;
+        }
+
+        @Override
+        public String toString() {
+            return "[Calibration: isolated=" + isolatedMean + ", concurrent=" + concurrentMean +
+                    ", worst=" + worstConcurrentMean + ", concurrency=" + concurrency +
+                    ", slowdown=" + getSlowdown() + "]";
+        }
+    }
+}
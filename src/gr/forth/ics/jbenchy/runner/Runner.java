@@ -0,0 +1,190 @@
+package gr.forth.ics.jbenchy.runner;
+
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.Aggregator;
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.SchemaRecord;
+import gr.forth.ics.jbenchy.StringUtils;
+import gr.forth.ics.jbenchy.stats.RunningStatistics;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes a {@link Benchmark} for every cell of a parameter space (typically a {@link Sweep}),
+ * and records each timed execution in an {@link Aggregator}.
+ * <p>
+ * For every cell, the runner first executes a number of untimed warmup iterations, then takes
+ * samples, each of which is recorded as the bindings of the cell plus the elapsed time of the
+ * execution (in nanoseconds) bound to the measured variable. The number of samples per cell is
+ * decided by a {@link SamplingPolicy}:
+ * <pre>
+ * Runner runner = new Runner(aggregator, Variables.ELAPSED_TIME)
+ *     .withWarmup(10)
+ *     .withSampling(SamplingPolicy.adaptive(0.02).withMaxSamples(1000))
+ *     .withTotalTimeBudget(10, TimeUnit.MINUTES);
+ * Records summary = runner.run(sweep, new Benchmark() {
+ *     public Object run(Record cell) {
+ *         return race((String)cell.get(Variables.CAR), (Integer)cell.get(Variables.CARGO));
+ *     }
+ * });
+ * </pre>
+ * The aggregator must have a schema with the variables of the cells, plus the measured variable
+ * (of a numeric type, e.g. {@link gr.forth.ics.jbenchy.DataTypes#LONG}).
+ * <p>
+ * When a total time budget is specified, each cell may spend at most an equal share of the
+ * remaining budget. Time left over by cells that converge quickly is thus spent on later,
+ * noisier cells.
+ *
+ * @see Sweep
+ * @see SamplingPolicy
+ * @author andreou
+ */
+public class Runner {
+    /**
+     * The key of the number of samples taken for a cell, in the summary that
+     * {@link #run(Iterable, Benchmark)} returns.
+     */
+    public static final String SAMPLES = "SAMPLES";
+
+    /**
+     * The key of the achieved relative half-width of the confidence interval of a cell's mean,
+     * in the summary that {@link #run(Iterable, Benchmark)} returns.
+     */
+    public static final String RELATIVE_ERROR = "RELATIVE_ERROR";
+
+    private final Aggregator aggregator;
+    private final String measuredVariable;
+    private SamplingPolicy sampling = SamplingPolicy.fixed(100);
+    private int warmupIterations;
+    private long totalTimeBudgetNanos;
+
+    private volatile Object sink;
+
+    /**
+     * Creates a runner that records samples in the specified aggregator.
+     * @param aggregator the aggregator in which to record samples
+     * @param measuredVariable the variable to bind to the elapsed time (in nanoseconds) of each sample
+     */
+    public Runner(Aggregator aggregator, Object measuredVariable) {
+        this.aggregator = Preconditions.checkNotNull(aggregator, "aggregator");
+        this.measuredVariable = StringUtils.normalizeVariable(measuredVariable);
+    }
+
+    /**
+     * Sets the sampling policy. Default is {@code SamplingPolicy.fixed(100)}.
+     * @return this
+     */
+    public Runner withSampling(SamplingPolicy sampling) {
+        this.sampling = Preconditions.checkNotNull(sampling, "sampling");
+        return this;
+    }
+
+    /**
+     * Sets the number of untimed (and unrecorded) executions of the benchmark before sampling
+     * each cell. Default is zero.
+     * @return this
+     */
+    public Runner withWarmup(int iterations) {
+        Preconditions.checkArgument(iterations >= 0, "Negative warmup iterations");
+        this.warmupIterations = iterations;
+        return this;
+    }
+
+    /**
+     * Sets the maximum time to spend for the whole run. Zero means no limit (the default).
+     * @return this
+     */
+    public Runner withTotalTimeBudget(long duration, TimeUnit unit) {
+        Preconditions.checkArgument(duration >= 0, "Negative duration");
+        this.totalTimeBudgetNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /**
+     * Returns the aggregator in which samples are recorded.
+     */
+    public Aggregator getAggregator() {
+        return aggregator;
+    }
+
+    /**
+     * Returns the variable that is bound to the measurement of each sample.
+     */
+    public String getMeasuredVariable() {
+        return measuredVariable;
+    }
+
+    long getTotalTimeBudgetNanos() {
+        return totalTimeBudgetNanos;
+    }
+
+    /**
+     * Runs the benchmark for every cell, recording all samples in the aggregator.
+     *
+     * @param cells the parameter cells, e.g. a {@link Sweep}. All cells must bind the same variables
+     * @param benchmark the experiment to run
+     * @return a summary with one record per cell, containing the bindings of the cell, the mean of its
+     * samples as {@link Record#getValue() value}, and the number of samples and the relative
+     * error under the {@link #SAMPLES} and {@link #RELATIVE_ERROR} keys respectively
+     * @throws Exception if the benchmark throws an exception
+     */
+    public Records run(Iterable<Record> cells, Benchmark benchmark) throws Exception {
+        Preconditions.checkNotNull(benchmark, "benchmark");
+        List<Record> cellList = new ArrayList<Record>();
+        for (Record cell : cells) {
+            cellList.add(cell);
+        }
+        List<Record> summary = new ArrayList<Record>(cellList.size());
+        final long deadline = System.nanoTime() + totalTimeBudgetNanos;
+        int remainingCells = cellList.size();
+        for (Record cell : cellList) {
+            long cellBudget = 0;
+            if (totalTimeBudgetNanos > 0) {
+                cellBudget = Math.max(1, (deadline - System.nanoTime()) / remainingCells);
+            }
+            RunningStatistics stats = sample(aggregator, cell, benchmark, cellBudget);
+            summary.add(summarize(cell, stats));
+            remainingCells--;
+        }
+        List<String> variables = cellList.isEmpty() ?
+            Collections.<String>emptyList() : new ArrayList<String>(cellList.get(0).keySet());
+        return new Records(summary, variables);
+    }
+
+    /**
+     * Warms up and samples a single cell, recording each sample in the target aggregator.
+     * @param budgetNanos additional time limit for this cell, or zero
+     */
+    RunningStatistics sample(Aggregator target, Record cell, Benchmark benchmark, long budgetNanos) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            sink = benchmark.run(cell);
+        }
+        SchemaRecord sample = target.getSchema().newRecord();
+        sample.putAll(cell);
+        final int measured = sample.indexOf(measuredVariable);
+        RunningStatistics stats = new RunningStatistics();
+        final long start = System.nanoTime();
+        long elapsed;
+        do {
+            long time = System.nanoTime();
+            Object result = benchmark.run(cell);
+            time = System.nanoTime() - time;
+            sink = result;
+            target.record(sample.set(measured, time));
+            stats.add(time);
+            elapsed = System.nanoTime() - start;
+        } while (!sampling.isSatisfied(stats, elapsed) && (budgetNanos == 0 || elapsed < budgetNanos));
+        return stats;
+    }
+
+    Record summarize(Record cell, RunningStatistics stats) {
+        Record record = cell.copy();
+        record.putValue(stats.getMean());
+        record.add(SAMPLES, stats.getCount());
+        record.add(RELATIVE_ERROR, stats.getRelativeConfidenceHalfWidth(sampling.getConfidence()));
+        return record;
+    }
+}
@@ -0,0 +1,136 @@
+package gr.forth.ics.jbenchy.runner;
+
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.stats.RunningStatistics;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how many samples a {@link Runner} takes for each parameter cell.
+ * <p>
+ * A {@link #fixed(int) fixed} policy takes exactly the same number of samples for every cell.
+ * An {@link #adaptive(double) adaptive} policy keeps sampling a cell until the confidence
+ * interval of its mean is tight enough, relative to the mean itself, so that stable cells
+ * finish after a few samples while noisy cells get as many as they need. Both can be
+ * bounded by a time budget per cell.
+ *
+ * @see Runner#withSampling(SamplingPolicy)
+ * @author andreou
+ */
+public class SamplingPolicy {
+    private int minSamples;
+    private int maxSamples;
+    private final double targetRelativeError;
+    private double confidence = 0.95;
+    private long timeBudgetNanos;
+
+    private SamplingPolicy(int minSamples, int maxSamples, double targetRelativeError) {
+        this.minSamples = minSamples;
+        this.maxSamples = maxSamples;
+        this.targetRelativeError = targetRelativeError;
+    }
+
+    /**
+     * Returns a policy that takes exactly the specified number of samples per cell
+     * (unless a {@link #withTimeBudget(long, TimeUnit) time budget} runs out first).
+     * @param samples the number of samples per cell
+     */
+    public static SamplingPolicy fixed(int samples) {
+        Preconditions.checkArgument(samples > 0, "Non-positive samples");
+        return new SamplingPolicy(samples, samples, 0.0);
+    }
+
+    /**
+     * Returns a policy that samples each cell until the half-width of the confidence
+     * interval of the mean, divided by the mean, falls below the specified target.
+     * By default, at least 5 and at most 100000 samples are taken per cell, at a 95%
+     * confidence level.
+     * @param targetRelativeError the target relative half-width of the confidence interval,
+     * for example 0.01 for &plusmn;1%
+     */
+    public static SamplingPolicy adaptive(double targetRelativeError) {
+        Preconditions.checkArgument(targetRelativeError > 0.0, "Non-positive target relative error");
+        return new SamplingPolicy(5, 100000, targetRelativeError);
+    }
+
+    /**
+     * Sets the minimum number of samples per cell. Ignored when the time budget runs out.
+     * @return this
+     */
+    public SamplingPolicy withMinSamples(int minSamples) {
+        Preconditions.checkArgument(minSamples > 1, "Minimum samples must be at least 2");
+        Preconditions.checkArgument(minSamples <= maxSamples, "Minimum samples greater than maximum samples");
+        this.minSamples = minSamples;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of samples per cell.
+     * @return this
+     */
+    public SamplingPolicy withMaxSamples(int maxSamples) {
+        Preconditions.checkArgument(maxSamples >= minSamples, "Maximum samples less than minimum samples");
+        this.maxSamples = maxSamples;
+        return this;
+    }
+
+    /**
+     * Sets the confidence level of the confidence interval (default is 0.95).
+     * @return this
+     */
+    public SamplingPolicy withConfidence(double confidence) {
+        Preconditions.checkArgument(confidence > 0.0 && confidence < 1.0, "Confidence not in (0, 1) range");
+        this.confidence = confidence;
+        return this;
+    }
+
+    /**
+     * Sets the maximum time to spend sampling a single cell. Zero means no limit (the default).
+     * @return this
+     */
+    public SamplingPolicy withTimeBudget(long duration, TimeUnit unit) {
+        Preconditions.checkArgument(duration >= 0, "Negative duration");
+        this.timeBudgetNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /**
+     * Returns the confidence level used to evaluate the confidence interval.
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * Returns the time budget per cell, in nanoseconds, or zero if there is none.
+     */
+    public long getTimeBudgetNanos() {
+        return timeBudgetNanos;
+    }
+
+    /**
+     * Returns whether a cell has been sampled enough.
+     * @param stats the statistics of the samples taken so far for the cell
+     * @param elapsedNanos the time spent so far sampling the cell
+     * @return true if no more samples should be taken
+     */
+    public boolean isSatisfied(RunningStatistics stats, long elapsedNanos) {
+        long samples = stats.getCount();
+        if (samples >= maxSamples) {
+            return true;
+        }
+        if (timeBudgetNanos > 0 && elapsedNanos >= timeBudgetNanos) {
+            return true;
+        }
+        if (samples < minSamples || targetRelativeError == 0.0) {
+            return false;
+        }
+        return stats.getRelativeConfidenceHalfWidth(confidence) <= targetRelativeError;
+    }
+
+    @Override
+    public String toString() {
+        return "[SamplingPolicy: samples=[" + minSamples + ", " + maxSamples + "]" +
+                (targetRelativeError > 0.0 ? ", target=" + targetRelativeError + " at " + confidence : "") +
+                (timeBudgetNanos > 0 ? ", budget=" + timeBudgetNanos + "ns" : "") + "]";
+    }
+}
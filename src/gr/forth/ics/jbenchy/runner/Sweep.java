@@ -0,0 +1,135 @@
+package gr.forth.ics.jbenchy.runner;
+
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.StringUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The parameter space of an experiment: the cartesian product of the domains of a
+ * number of variables. Each element (or <em>cell</em>) is a {@link Record} binding every
+ * variable to one value of its domain.
+ * <p>
+ * For example, this describes 3 x 4 = 12 cells:
+ * <pre>
+ * Sweep sweep = new Sweep()
+ *     .vary(Variables.CAR, "McLaren", "Ferrari", "FIAT")
+ *     .vary(Variables.CARGO, 10, 40, 70, 100);
+ * </pre>
+ * Cells are iterated in the order that a nested loop would: the first variable
+ * changes slowest, the last one fastest.
+ *
+ * @see Runner
+ * @author andreou
+ */
+public class Sweep implements Iterable<Record> {
+    private final List<String> variables = new ArrayList<String>();
+    private final List<List<Object>> domains = new ArrayList<List<Object>>();
+
+    /**
+     * Creates a sweep with no variables (which consists of a single, empty cell).
+     */
+    public Sweep() {
+    }
+
+    /**
+     * Adds a variable with the specified domain to this sweep.
+     * @param variable the variable to vary
+     * @param values the values of the variable, in the order they are to be tried
+     * @return this
+     */
+    public Sweep vary(Object variable, Object... values) {
+        return vary(variable, Arrays.asList(values));
+    }
+
+    /**
+     * Adds a variable with the specified domain to this sweep.
+     * @param variable the variable to vary
+     * @param values the values of the variable, in the order they are to be tried
+     * @return this
+     */
+    public Sweep vary(Object variable, Iterable<?> values) {
+        String var = StringUtils.normalizeVariable(variable);
+        Preconditions.checkArgument(!variables.contains(var), "Variable '" + var + "' already varies");
+        List<Object> domain = new ArrayList<Object>();
+        for (Object value : values) {
+            domain.add(Preconditions.checkNotNull(value, "Null value"));
+        }
+        Preconditions.checkArgument(!domain.isEmpty(), "Empty domain for variable '" + var + "'");
+        variables.add(var);
+        domains.add(domain);
+        return this;
+    }
+
+    /**
+     * Returns the variables of this sweep (uppercased), in the order they were added.
+     */
+    public List<String> getVariables() {
+        return Collections.unmodifiableList(variables);
+    }
+
+    /**
+     * Returns the number of cells of this sweep.
+     */
+    public int size() {
+        int size = 1;
+        for (List<Object> domain : domains) {
+            size *= domain.size();
+        }
+        return size;
+    }
+
+    /**
+     * Returns an iterator over the cells of this sweep. Each cell is a new Record instance.
+     */
+    public Iterator<Record> iterator() {
+        return new Iterator<Record>() {
+            final int[] position = new int[domains.size()];
+            boolean hasNext = true;
+
+            public boolean hasNext() {
+                return hasNext;
+            }
+
+            public Record next() {
+                if (!hasNext) {
+                    throw new NoSuchElementException();
+                }
+                Record cell = new Record();
+                for (int i = 0; i < position.length; i++) {
+                    cell.add(variables.get(i), domains.get(i).get(position[i]));
+                }
+                advance();
+                return cell;
+            }
+
+            private void advance() {
+                for (int i = position.length - 1; i >= 0; i--) {
+                    if (++position[i] < domains.get(i).size()) {
+                        return;
+                    }
+                    position[i] = 0;
+                }
+                hasNext = false;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[Sweep:");
+        for (int i = 0; i < variables.size(); i++) {
+            sb.append(" ").append(variables.get(i)).append("=").append(domains.get(i));
+        }
+        return sb.append("]").toString();
+    }
+}
@@ -0,0 +1,212 @@
+package gr.forth.ics.jbenchy.runner;
+
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.Aggregator;
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.StringUtils;
+import gr.forth.ics.jbenchy.stats.RunningStatistics;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of operations that are too short to be timed individually.
+ * <p>
+ * Where a {@link Runner} times and records every execution of a benchmark, a throughput runner
+ * executes the benchmark in a tight loop for a fixed time window, and records a single sample
+ * per window: the operations per second bound to the measured variable, plus the raw number of
+ * operations and the actual length of the window (in nanoseconds), under the {@link #OPERATIONS}
+ * and {@link #WINDOW_NANOS} variables. Thus neither {@link Aggregator#record(Record)} nor
+ * {@link System#nanoTime()} is in the measured loop. The results of the benchmark are consumed
+ * by a {@link Blackhole}. The aggregator's schema must include the two additional variables:
+ * <pre>
+ * Schema schema = new Schema()
+ *     ...
+ *     .add(Variables.OPS, DataTypes.DOUBLE)
+ *     .add(ThroughputRunner.OPERATIONS, DataTypes.LONG)
+ *     .add(ThroughputRunner.WINDOW_NANOS, DataTypes.LONG);
+ *
+ * Records summary = new ThroughputRunner(aggregator, Variables.OPS)
+ *     .withWindow(1, TimeUnit.SECONDS)
+ *     .withWindows(5)
+ *     .run(sweep, benchmark);
+ * </pre>
+ *
+ * @see Runner
+ * @author andreou
+ */
+public class ThroughputRunner {
+    /**
+     * The variable bound to the number of operations executed in a window.
+     */
+    public static final String OPERATIONS = "OPERATIONS";
+
+    /**
+     * The variable bound to the actual length of a window, in nanoseconds.
+     */
+    public static final String WINDOW_NANOS = "WINDOW_NANOS";
+
+    /**
+     * The fraction of the window after which the clock is checked, at most; the loop
+     * executes batches of operations, doubling the batch while it is shorter than this.
+     */
+    private static final int BATCHES_PER_WINDOW = 100;
+
+    private final Aggregator aggregator;
+    private final String measuredVariable;
+    private long windowNanos = TimeUnit.SECONDS.toNanos(1);
+    private int windows = 5;
+    private int warmupWindows = 1;
+    private double confidence = 0.95;
+
+    /**
+     * Creates a throughput runner that records samples in the specified aggregator.
+     * @param aggregator the aggregator in which to record samples
+     * @param measuredVariable the variable to bind to the operations per second of each window
+     */
+    public ThroughputRunner(Aggregator aggregator, Object measuredVariable) {
+        this.aggregator = Preconditions.checkNotNull(aggregator, "aggregator");
+        this.measuredVariable = StringUtils.normalizeVariable(measuredVariable);
+    }
+
+    /**
+     * Sets the length of each window. Default is one second.
+     * @return this
+     */
+    public ThroughputRunner withWindow(long duration, TimeUnit unit) {
+        Preconditions.checkArgument(duration > 0, "Non-positive duration");
+        this.windowNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /**
+     * Sets the number of measured (and recorded) windows per cell. Default is 5.
+     * @return this
+     */
+    public ThroughputRunner withWindows(int windows) {
+        Preconditions.checkArgument(windows > 0, "Non-positive windows");
+        this.windows = windows;
+        return this;
+    }
+
+    /**
+     * Sets the number of unrecorded windows before measuring each cell. Default is one.
+     * @return this
+     */
+    public ThroughputRunner withWarmupWindows(int warmupWindows) {
+        Preconditions.checkArgument(warmupWindows >= 0, "Negative warmup windows");
+        this.warmupWindows = warmupWindows;
+        return this;
+    }
+
+    /**
+     * Sets the confidence level of the relative error in the summary (default is 0.95).
+     * @return this
+     */
+    public ThroughputRunner withConfidence(double confidence) {
+        Preconditions.checkArgument(confidence > 0.0 && confidence < 1.0, "Confidence not in (0, 1) range");
+        this.confidence = confidence;
+        return this;
+    }
+
+    /**
+     * Returns the aggregator in which samples are recorded.
+     */
+    public Aggregator getAggregator() {
+        return aggregator;
+    }
+
+    /**
+     * Returns the variable that is bound to the operations per second of each window.
+     */
+    public String getMeasuredVariable() {
+        return measuredVariable;
+    }
+
+    long getWindowNanos() {
+        return windowNanos;
+    }
+
+    int getWindows() {
+        return windows;
+    }
+
+    int getWarmupWindows() {
+        return warmupWindows;
+    }
+
+    /**
+     * Measures the benchmark for every cell, recording one sample per window in the aggregator.
+     *
+     * @param cells the parameter cells, e.g. a {@link Sweep}. All cells must bind the same variables
+     * @param benchmark the operation to measure
+     * @return a summary with one record per cell, containing the bindings of the cell, the mean
+     * operations per second as {@link Record#getValue() value}, and the number of windows and the
+     * relative error under the {@link Runner#SAMPLES} and {@link Runner#RELATIVE_ERROR} keys respectively
+     * @throws Exception if the benchmark throws an exception
+     */
+    public Records run(Iterable<Record> cells, Benchmark benchmark) throws Exception {
+        Preconditions.checkNotNull(benchmark, "benchmark");
+        List<Record> cellList = new ArrayList<Record>();
+        for (Record cell : cells) {
+            cellList.add(cell);
+        }
+        Blackhole blackhole = new Blackhole();
+        List<Record> summary = new ArrayList<Record>(cellList.size());
+        for (Record cell : cellList) {
+            for (int i = 0; i < warmupWindows; i++) {
+                measureWindow(cell, benchmark, blackhole);
+            }
+            RunningStatistics stats = new RunningStatistics();
+            for (int i = 0; i < windows; i++) {
+                Record sample = measureWindow(cell, benchmark, blackhole);
+                aggregator.record(sample);
+                stats.add(((Number) sample.get(measuredVariable)).doubleValue());
+            }
+            summary.add(summarize(cell, stats));
+        }
+        List<String> variables = cellList.isEmpty() ?
+            Collections.<String>emptyList() : new ArrayList<String>(cellList.get(0).keySet());
+        return new Records(summary, variables);
+    }
+
+    /**
+     * Executes the benchmark in a loop for one window, and returns the resulting sample
+     * (the bindings of the cell, plus the measured variable, {@link #OPERATIONS} and {@link #WINDOW_NANOS}).
+     * The sample is not recorded.
+     */
+    Record measureWindow(Record cell, Benchmark benchmark, Blackhole blackhole) throws Exception {
+        final long maxBatchNanos = Math.max(1, windowNanos / BATCHES_PER_WINDOW);
+        long operations = 0;
+        long batch = 1;
+        final long start = System.nanoTime();
+        final long end = start + windowNanos;
+        long now = start;
+        do {
+            long batchStart = now;
+            for (long i = 0; i < batch; i++) {
+                blackhole.consume(benchmark.run(cell));
+            }
+            operations += batch;
+            now = System.nanoTime();
+            if (now - batchStart < maxBatchNanos && now + 2 * (now - batchStart) < end) {
+                batch <<= 1;
+            }
+        } while (now < end);
+        long elapsed = now - start;
+        return cell.copy()
+                .add(measuredVariable, operations * 1e9 / elapsed)
+                .add(OPERATIONS, operations)
+                .add(WINDOW_NANOS, elapsed);
+    }
+
+    Record summarize(Record cell, RunningStatistics stats) {
+        Record record = cell.copy();
+        record.putValue(stats.getMean());
+        record.add(Runner.SAMPLES, stats.getCount());
+        record.add(Runner.RELATIVE_ERROR, stats.getRelativeConfidenceHalfWidth(confidence));
+        return record;
+    }
+}
@@ -0,0 +1,56 @@
+package gr.forth.ics.jbenchy.stats;
+
+import com.google.common.base.Preconditions;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Bootstrap confidence intervals, for statistics whose sampling distribution is not known
+ * in closed form.
+ *
+ * @author andreou
+ */
+public class Bootstrap {
+    private Bootstrap() {
+    }
+
+    /**
+     * Returns a percentile bootstrap confidence interval of the ratio of the mean of the candidate
+     * sample to the mean of the baseline sample. Each resample draws, with replacement, as many
+     * values from each sample as the sample contains.
+     *
+     * @param baseline the baseline sample
+     * @param candidate the candidate sample
+     * @param confidence the confidence level, e.g. 0.95
+     * @param resamples the number of resamples, e.g. 1000
+     * @param random the source of randomness; pass a seeded instance for reproducible intervals
+     * @return a two-element array with the lower and upper bound of the interval
+     */
+    public static double[] ratioOfMeansInterval(double[] baseline, double[] candidate,
+            double confidence, int resamples, Random random) {
+        Preconditions.checkArgument(baseline.length > 0 && candidate.length > 0, "Empty sample");
+        Preconditions.checkArgument(confidence > 0.0 && confidence < 1.0, "Confidence not in (0, 1) range");
+        Preconditions.checkArgument(resamples > 0, "Non-positive resamples");
+        Preconditions.checkNotNull(random, "random");
+        double[] ratios = new double[resamples];
+        for (int i = 0; i < resamples; i++) {
+            ratios[i] = resampledMean(candidate, random) / resampledMean(baseline, random);
+        }
+        Arrays.sort(ratios);
+        double tail = (1.0 - confidence) / 2.0;
+        return new double[] { percentile(ratios, tail), percentile(ratios, 1.0 - tail) };
+    }
+
+    private static double resampledMean(double[] sample, Random random) {
+        double sum = 0.0;
+        for (int i = 0; i < sample.length; i++) {
+            sum += sample[random.nextInt(sample.length)];
+        }
+        return sum / sample.length;
+    }
+
+    private static double percentile(double[] sorted, double p) {
+        int index = (int) Math.round(p * (sorted.length - 1));
+        return sorted[index];
+    }
+}
@@ -0,0 +1,94 @@
+package gr.forth.ics.jbenchy.stats;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Quantile and cumulative distribution functions of a few common distributions.
+ *
+ * @author andreou
+ */
+public class Distributions {
+    private Distributions() {
+    }
+
+    // Coefficients of Acklam's rational approximation of the inverse normal distribution.
+    private static final double[] A = {
+        -3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02,
+        1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00 };
+    private static final double[] B = {
+        -5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02,
+        6.680131188771972e+01, -1.328068155288572e+01 };
+    private static final double[] C = {
+        -7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00,
+        -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00 };
+    private static final double[] D = {
+        7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00,
+        3.754408661907416e+00 };
+    private static final double P_LOW = 0.02425;
+
+    /**
+     * Returns the quantile of the standard normal distribution, i.e. the value <tt>z</tt> for which
+     * <tt>P(Z &lt;= z) = p</tt>. The relative error is less than 1.2e-9.
+     * @param p the cumulative probability, in (0, 1)
+     */
+    public static double normalQuantile(double p) {
+        Preconditions.checkArgument(p > 0.0 && p < 1.0, "Probability not in (0, 1) range");
+        if (p < P_LOW) {
+            double q = Math.sqrt(-2 * Math.log(p));
+            return (((((C[0] * q + C[1]) * q + C[2]) * q + C[3]) * q + C[4]) * q + C[5]) /
+                    ((((D[0] * q + D[1]) * q + D[2]) * q + D[3]) * q + 1);
+        }
+        if (p > 1 - P_LOW) {
+            return -normalQuantile(1 - p);
+        }
+        double q = p - 0.5;
+        double r = q * q;
+        return (((((A[0] * r + A[1]) * r + A[2]) * r + A[3]) * r + A[4]) * r + A[5]) * q /
+                (((((B[0] * r + B[1]) * r + B[2]) * r + B[3]) * r + B[4]) * r + 1);
+    }
+
+    /**
+     * Returns the cumulative distribution function of the standard normal distribution, i.e.
+     * <tt>P(Z &lt;= z)</tt>. Computed through a Chebyshev approximation of the complementary error
+     * function, with fractional error less than 1.2e-7 everywhere.
+     */
+    public static double normalCdf(double z) {
+        return 1.0 - 0.5 * erfc(z / Math.sqrt(2.0));
+    }
+
+    private static double erfc(double x) {
+        double z = Math.abs(x);
+        double t = 1.0 / (1.0 + 0.5 * z);
+        double r = t * Math.exp(-z * z - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418 +
+                t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587 +
+                t * (-0.82215223 + t * 0.17087277)))))))));
+        return x >= 0 ? r : 2.0 - r;
+    }
+
+    /**
+     * Returns the quantile of Student's t distribution with the specified degrees of freedom.
+     * Exact for one and two degrees of freedom, otherwise uses the Cornish-Fisher expansion
+     * around the normal quantile (Abramowitz &amp; Stegun, 26.7.5), which is accurate to
+     * about three significant digits even for three degrees of freedom.
+     * @param p the cumulative probability, in (0, 1)
+     * @param degreesOfFreedom the degrees of freedom (positive)
+     */
+    public static double studentTQuantile(double p, long degreesOfFreedom) {
+        Preconditions.checkArgument(p > 0.0 && p < 1.0, "Probability not in (0, 1) range");
+        Preconditions.checkArgument(degreesOfFreedom > 0, "Non-positive degrees of freedom");
+        if (degreesOfFreedom == 1) {
+            return Math.tan(Math.PI * (p - 0.5));
+        }
+        if (degreesOfFreedom == 2) {
+            return (2 * p - 1) / Math.sqrt(2 * p * (1 - p));
+        }
+        double z = normalQuantile(p);
+        double n = degreesOfFreedom;
+        double z2 = z * z;
+        double g1 = (z2 + 1) * z / 4;
+        double g2 = ((5 * z2 + 16) * z2 + 3) * z / 96;
+        double g3 = (((3 * z2 + 19) * z2 + 17) * z2 - 15) * z / 384;
+        double g4 = ((((79 * z2 + 776) * z2 + 1482) * z2 - 1920) * z2 - 945) * z / 92160;
+        return z + (g1 + (g2 + (g3 + g4 / n) / n) / n) / n;
+    }
+}
@@ -0,0 +1,123 @@
+package gr.forth.ics.jbenchy.stats;
+
+import com.google.common.base.Preconditions;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The Mann-Whitney U test (also known as the Wilcoxon rank-sum test), a non-parametric test of
+ * whether two independent samples come from the same distribution. Unlike a t-test, it does not
+ * assume normality, so it is robust to the skewed, heavy-tailed distributions that timing
+ * measurements typically follow.
+ * <p>
+ * The p-value is computed through the normal approximation of the U statistic, with correction
+ * for ties and for continuity; this is accurate for samples of about ten or more elements each.
+ *
+ * @author andreou
+ */
+public class MannWhitney {
+    private MannWhitney() {
+    }
+
+    /**
+     * Returns the U statistic of the first sample, i.e. the number of pairs <tt>(x[i], y[j])</tt>
+     * with <tt>x[i] &gt; y[j]</tt>, with ties counting as one half.
+     */
+    public static double u(double[] x, double[] y) {
+        checkSamples(x, y);
+        double[] ranks = ranks(x, y);
+        double rankSum = 0.0;
+        for (int i = 0; i < x.length; i++) {
+            rankSum += ranks[i];
+        }
+        return rankSum - x.length * (x.length + 1.0) / 2.0;
+    }
+
+    /**
+     * Returns the two-sided p-value of the hypothesis that both samples come from the same
+     * distribution. Small values (e.g. less than 0.05) indicate that the samples differ
+     * significantly. If all values are equal, 1.0 is returned.
+     */
+    public static double pValue(double[] x, double[] y) {
+        checkSamples(x, y);
+        final int n1 = x.length;
+        final int n2 = y.length;
+        final double n = n1 + n2;
+        double u = u(x, y);
+        double mean = n1 * (double) n2 / 2.0;
+        double variance = n1 * (double) n2 / 12.0 * ((n + 1) - tieCorrection(x, y) / (n * (n - 1)));
+        if (variance <= 0.0) {
+            return 1.0;
+        }
+        double z = (Math.abs(u - mean) - 0.5) / Math.sqrt(variance);
+        if (z <= 0.0) {
+            return 1.0;
+        }
+        return Math.min(1.0, 2.0 * (1.0 - Distributions.normalCdf(z)));
+    }
+
+    private static void checkSamples(double[] x, double[] y) {
+        Preconditions.checkNotNull(x, "x");
+        Preconditions.checkNotNull(y, "y");
+        Preconditions.checkArgument(x.length > 0 && y.length > 0, "Empty sample");
+    }
+
+    /**
+     * Returns the ranks of the values of x followed by the values of y, in the pooled sample.
+     * Tied values get the average of their ranks.
+     */
+    private static double[] ranks(double[] x, double[] y) {
+        final int n = x.length + y.length;
+        final double[] pooled = pooled(x, y);
+        Integer[] indexes = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            indexes[i] = i;
+        }
+        Arrays.sort(indexes, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Double.compare(pooled[a], pooled[b]);
+            }
+        });
+        double[] ranks = new double[n];
+        int i = 0;
+        while (i < n) {
+            int j = i;
+            while (j + 1 < n && pooled[indexes[j + 1]] == pooled[indexes[i]]) {
+                j++;
+            }
+            double rank = (i + j) / 2.0 + 1.0;
+            for (int k = i; k <= j; k++) {
+                ranks[indexes[k]] = rank;
+            }
+            i = j + 1;
+        }
+        return ranks;
+    }
+
+    /**
+     * Returns the sum of <tt>t^3 - t</tt> over all groups of <tt>t</tt> tied values.
+     */
+    private static double tieCorrection(double[] x, double[] y) {
+        double[] pooled = pooled(x, y);
+        Arrays.sort(pooled);
+        double correction = 0.0;
+        int i = 0;
+        while (i < pooled.length) {
+            int j = i;
+            while (j + 1 < pooled.length && pooled[j + 1] == pooled[i]) {
+                j++;
+            }
+            double t = j - i + 1;
+            correction += t * t * t - t;
+            i = j + 1;
+        }
+        return correction;
+    }
+
+    private static double[] pooled(double[] x, double[] y) {
+        double[] pooled = new double[x.length + y.length];
+        System.arraycopy(x, 0, pooled, 0, x.length);
+        System.arraycopy(y, 0, pooled, x.length, y.length);
+        return pooled;
+    }
+}
@@ -0,0 +1,236 @@
+package gr.forth.ics.jbenchy.stats;
+
+import com.google.common.base.Preconditions;
+import gr.forth.ics.jbenchy.Aggregator;
+import gr.forth.ics.jbenchy.Filter;
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.StringUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares the measurements of a baseline against those of a candidate (for example, two versions
+ * of the code under test, distinguished by a recorded variable), and flags statistically significant
+ * regressions.
+ * <p>
+ * Both sides are selected from the same aggregator through filters, and compared separately for
+ * each combination of values of some grouping variables:
+ * <pre>
+ * RegressionDetector detector = new RegressionDetector(aggregator, Variables.ELAPSED_TIME)
+ *     .withThreshold(0.05);
+ * for (Record regression : detector.regressions(
+ *         Filters.eq("VERSION", "1.0"), Filters.eq("VERSION", "1.1"), "CAR", "CARGO")) {
+ *     System.out.println(regression);
+ * }
+ * </pre>
+ * For each group, the candidate-to-baseline ratio of means is reported, along with a bootstrap
+ * confidence interval of the ratio, and the p-value of a {@link MannWhitney Mann-Whitney} test. A
+ * group is flagged as a regression if the difference is significant, and the whole confidence
+ * interval lies beyond the threshold, in the bad direction. The raw samples are read with a single
+ * {@link gr.forth.ics.jbenchy.Aggregate#values(Object) values} report per side.
+ *
+ * @author andreou
+ */
+public class RegressionDetector {
+    /**
+     * The key of the lower bound of the confidence interval of the ratio.
+     */
+    public static final String RATIO_LOW = "RATIO_LOW";
+
+    /**
+     * The key of the upper bound of the confidence interval of the ratio.
+     */
+    public static final String RATIO_HIGH = "RATIO_HIGH";
+
+    /**
+     * The key of the p-value of the Mann-Whitney test.
+     */
+    public static final String P_VALUE = "P_VALUE";
+
+    /**
+     * The key of the number of baseline samples.
+     */
+    public static final String BASELINE_SAMPLES = "BASELINE_SAMPLES";
+
+    /**
+     * The key of the number of candidate samples.
+     */
+    public static final String CANDIDATE_SAMPLES = "CANDIDATE_SAMPLES";
+
+    /**
+     * The key of whether the group is a regression (a Boolean).
+     */
+    public static final String REGRESSION = "REGRESSION";
+
+    private final Aggregator aggregator;
+    private final String measuredVariable;
+    private double significance = 0.05;
+    private double threshold = 0.0;
+    private double confidence = 0.95;
+    private boolean higherIsBetter;
+    private int resamples = 1000;
+    private long seed = 0L;
+
+    /**
+     * Creates a regression detector.
+     * @param aggregator the aggregator that contains both the baseline and the candidate samples
+     * @param measuredVariable the (numeric) variable to compare
+     */
+    public RegressionDetector(Aggregator aggregator, Object measuredVariable) {
+        this.aggregator = Preconditions.checkNotNull(aggregator, "aggregator");
+        this.measuredVariable = StringUtils.normalizeVariable(measuredVariable);
+    }
+
+    /**
+     * Sets the significance level of the Mann-Whitney test (default is 0.05).
+     * @return this
+     */
+    public RegressionDetector withSignificance(double significance) {
+        Preconditions.checkArgument(significance > 0.0 && significance < 1.0, "Significance not in (0, 1) range");
+        this.significance = significance;
+        return this;
+    }
+
+    /**
+     * Sets the relative change below which a difference is not considered a regression, even if
+     * significant; for example, 0.05 ignores slowdowns of less than 5%. Default is zero.
+     * @return this
+     */
+    public RegressionDetector withThreshold(double threshold) {
+        Preconditions.checkArgument(threshold >= 0.0, "Negative threshold");
+        this.threshold = threshold;
+        return this;
+    }
+
+    /**
+     * Sets the confidence level of the confidence interval of the ratio (default is 0.95).
+     * @return this
+     */
+    public RegressionDetector withConfidence(double confidence) {
+        Preconditions.checkArgument(confidence > 0.0 && confidence < 1.0, "Confidence not in (0, 1) range");
+        this.confidence = confidence;
+        return this;
+    }
+
+    /**
+     * Sets whether greater values of the measured variable are better, as with throughput.
+     * Default is false, as with elapsed time.
+     * @return this
+     */
+    public RegressionDetector withHigherIsBetter(boolean higherIsBetter) {
+        this.higherIsBetter = higherIsBetter;
+        return this;
+    }
+
+    /**
+     * Sets the number of bootstrap resamples (default is 1000), and the seed of their random
+     * generator (default is zero), which makes the confidence intervals reproducible.
+     * @return this
+     */
+    public RegressionDetector withResamples(int resamples, long seed) {
+        Preconditions.checkArgument(resamples > 0, "Non-positive resamples");
+        this.resamples = resamples;
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Compares the candidate to the baseline, for each combination of values of the grouping
+     * variables that appears in both sides.
+     *
+     * @param baseline selects the baseline samples
+     * @param candidate selects the candidate samples
+     * @param groupBy the grouping variables; if none, all samples of each side are compared at once
+     * @return one record per group, in the order the groups appear in the baseline, containing the
+     * values of the grouping variables, the candidate-to-baseline ratio of means as
+     * {@link Record#getValue() value}, and the {@link #RATIO_LOW}, {@link #RATIO_HIGH}, {@link #P_VALUE},
+     * {@link #BASELINE_SAMPLES}, {@link #CANDIDATE_SAMPLES} and {@link #REGRESSION} keys
+     */
+    public Records compare(Filter baseline, Filter candidate, Object... groupBy) {
+        Preconditions.checkNotNull(baseline, "baseline");
+        Preconditions.checkNotNull(candidate, "candidate");
+        Map<List<Object>, double[]> baselineSamples = samples(baseline, groupBy);
+        Map<List<Object>, double[]> candidateSamples = samples(candidate, groupBy);
+        Random random = new Random(seed);
+        List<Record> results = new ArrayList<Record>(baselineSamples.size());
+        for (Map.Entry<List<Object>, double[]> entry : baselineSamples.entrySet()) {
+            double[] x = entry.getValue();
+            double[] y = candidateSamples.get(entry.getKey());
+            if (y == null) {
+                continue;
+            }
+            Record record = new Record();
+            for (int i = 0; i < groupBy.length; i++) {
+                record.add(groupBy[i], entry.getKey().get(i));
+            }
+            double ratio = mean(y) / mean(x);
+            double[] interval = Bootstrap.ratioOfMeansInterval(x, y, confidence, resamples, random);
+            double p = MannWhitney.pValue(x, y);
+            boolean regression = p < significance && (higherIsBetter ?
+                interval[1] < 1.0 - threshold :
+                interval[0] > 1.0 + threshold);
+            record.putValue(ratio);
+            record.add(RATIO_LOW, interval[0]);
+            record.add(RATIO_HIGH, interval[1]);
+            record.add(P_VALUE, p);
+            record.add(BASELINE_SAMPLES, x.length);
+            record.add(CANDIDATE_SAMPLES, y.length);
+            record.add(REGRESSION, regression);
+            results.add(record);
+        }
+        return new Records(results, Arrays.asList(groupBy));
+    }
+
+    /**
+     * Like {@link #compare(Filter, Filter, Object[])}, but returns only the groups that are
+     * flagged as regressions.
+     */
+    public Records regressions(Filter baseline, Filter candidate, Object... groupBy) {
+        List<Record> regressions = new ArrayList<Record>();
+        for (Record record : compare(baseline, candidate, groupBy)) {
+            if (Boolean.TRUE.equals(record.get(REGRESSION))) {
+                regressions.add(record);
+            }
+        }
+        return new Records(regressions, Arrays.asList(groupBy));
+    }
+
+    private Map<List<Object>, double[]> samples(Filter filter, Object... groupBy) {
+        Map<List<Object>, List<Double>> groups = new LinkedHashMap<List<Object>, List<Double>>();
+        for (Record record : aggregator.filtered(filter).valuesOf(measuredVariable).per(groupBy)) {
+            List<Object> key = new ArrayList<Object>(groupBy.length);
+            for (Object variable : groupBy) {
+                key.add(record.get(variable));
+            }
+            List<Double> values = groups.get(key);
+            if (values == null) {
+                values = new ArrayList<Double>();
+                groups.put(key, values);
+            }
+            values.add(((Number) record.getValue()).doubleValue());
+        }
+        Map<List<Object>, double[]> samples = new LinkedHashMap<List<Object>, double[]>();
+        for (Map.Entry<List<Object>, List<Double>> entry : groups.entrySet()) {
+            List<Double> values = entry.getValue();
+            double[] array = new double[values.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = values.get(i);
+            }
+            samples.put(entry.getKey(), array);
+        }
+        return samples;
+    }
+
+    private static double mean(double[] sample) {
+        double sum = 0.0;
+        for (double value : sample) {
+            sum += value;
+        }
+        return sum / sample.length;
+    }
+}
@@ -0,0 +1,137 @@
+package gr.forth.ics.jbenchy.stats;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Incrementally maintained statistics (count, mean, variance, min, max) of a stream of
+ * samples. Uses Welford's method, so it is numerically stable and needs constant space
+ * regardless of the number of samples.
+ *
+ * @author andreou
+ */
+public class RunningStatistics {
+    private long count;
+    private double mean;
+    private double m2;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    /**
+     * Creates an empty RunningStatistics.
+     */
+    public RunningStatistics() {
+    }
+
+    /**
+     * Adds a sample.
+     * @param value the sample to add
+     * @return this
+     */
+    public RunningStatistics add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        if (count == 1) {
+            min = max = value;
+        } else {
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Discards all samples.
+     */
+    public void clear() {
+        count = 0;
+        mean = m2 = 0.0;
+        min = max = Double.NaN;
+    }
+
+    /**
+     * Returns the number of samples.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the arithmetic mean of the samples, or <tt>NaN</tt> if there are none.
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * Returns the (unbiased) sample variance, or <tt>NaN</tt> if there are less than two samples.
+     */
+    public double getVariance() {
+        return count < 2 ? Double.NaN : m2 / (count - 1);
+    }
+
+    /**
+     * Returns the sample standard deviation, or <tt>NaN</tt> if there are less than two samples.
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Returns the minimum sample, or <tt>NaN</tt> if there are none.
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Returns the maximum sample, or <tt>NaN</tt> if there are none.
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the half-width of the confidence interval of the mean, at the specified
+     * confidence level (using Student's t distribution).
+     * @param confidence the confidence level, e.g. 0.95
+     * @return the half-width of the confidence interval, or <tt>NaN</tt> if there are less
+     * than two samples
+     */
+    public double getConfidenceHalfWidth(double confidence) {
+        Preconditions.checkArgument(confidence > 0.0 && confidence < 1.0,
+                "Confidence not in (0, 1) range");
+        if (count < 2) {
+            return Double.NaN;
+        }
+        double t = Distributions.studentTQuantile((1.0 + confidence) / 2.0, count - 1);
+        return t * getStandardDeviation() / Math.sqrt(count);
+    }
+
+    /**
+     * Returns the half-width of the confidence interval of the mean, relative to the
+     * (absolute) mean. For example, 0.02 means that the true mean lies within &plusmn;2%
+     * of the measured mean with the given confidence.
+     * @param confidence the confidence level, e.g. 0.95
+     * @return the relative half-width, or <tt>NaN</tt> if there are less than two samples,
+     * or positive infinity if the mean is zero while samples differ
+     */
+    public double getRelativeConfidenceHalfWidth(double confidence) {
+        double halfWidth = getConfidenceHalfWidth(confidence);
+        if (halfWidth == 0.0) {
+            return 0.0;
+        }
+        return halfWidth / Math.abs(mean);
+    }
+
+    @Override
+    public String toString() {
+        return "[count=" + count + ", mean=" + getMean() + ", stddev=" + getStandardDeviation() +
+                ", min=" + min + ", max=" + max + "]";
+    }
+}
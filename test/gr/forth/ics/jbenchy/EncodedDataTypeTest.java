@@ -0,0 +1,61 @@
+package gr.forth.ics.jbenchy;
+
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class EncodedDataTypeTest extends TestCase {
+    private final List<String> values = new ArrayList<String>();
+    private final EncodedDataType type = DataTypes.encodedString(8).bind(new EncodedDataType.Dictionary() {
+        public int encode(String value) {
+            int code = codeOf(value);
+            if (code < 0) {
+                values.add(value);
+                code = values.size() - 1;
+            }
+            return code;
+        }
+
+        public int codeOf(String value) {
+            return values.indexOf(value);
+        }
+
+        public String decode(int code) {
+            return values.get(code);
+        }
+
+        public int size() {
+            return values.size();
+        }
+    });
+
+    public void testFiltersOnCodes() {
+        type.encode("FIAT");
+        type.encode("BMW");
+        type.encode("AUDI");
+        Schema schema = new Schema().add("CAR", type);
+        assertEquals("CAR=1", Filters.eq("CAR", "BMW").toSql(schema));
+        assertEquals("CAR<>0", Filters.notEq("CAR", "FIAT").toSql(schema));
+        assertEquals("0=1", Filters.eq("CAR", "OPEL").toSql(schema));
+        assertEquals("0=0", Filters.notEq("CAR", "OPEL").toSql(schema));
+        assertEquals("CAR IN (1,2)", Filters.lt("CAR", "FIAT").toSql(schema));
+        assertEquals("0=1", Filters.gt("CAR", "FIAT").toSql(schema));
+    }
+
+    public void testEncode() {
+        assertEquals(0, type.encode("FIAT"));
+        assertEquals(0, type.encode("FIAT"));
+        assertSame(type.decode(0), type.decode(type.encode("FIAT")));
+        try {
+            type.encode("MERCEDES-BENZ");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testFromName() {
+        assertSame(DataTypes.SMALL_STRING, DataTypes.fromName("SMALL_STRING"));
+        assertEquals(8, ((EncodedDataType) DataTypes.fromName(type.getName())).getSize());
+        assertEquals("DECIMAL(6, 2)", DataTypes.fromName("DECIMAL(6, 2)").getName());
+    }
+}
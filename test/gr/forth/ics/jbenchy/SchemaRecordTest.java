@@ -0,0 +1,73 @@
+package gr.forth.ics.jbenchy;
+
+import junit.framework.TestCase;
+
+public class SchemaRecordTest extends TestCase {
+    private final Schema schema = new Schema().
+            add("CAR", DataTypes.SMALL_STRING).
+            add("CARGO", DataTypes.INTEGER).
+            add("TIME", DataTypes.DOUBLE);
+
+    public void testSlots() {
+        SchemaRecord record = schema.newRecord();
+        int cargo = record.indexOf("cargo");
+        int time = record.indexOf("Time");
+        assertEquals(1, cargo);
+        record.add("car", "FIAT").set(cargo, 40L).set(time, 1.5);
+        assertTrue(record.isComplete());
+        assertEquals(Integer.valueOf(40), record.get("CARGO"));
+        assertEquals(1.5, record.getDouble(time));
+        assertEquals("40", record.toString(cargo));
+        assertEquals(3, record.size());
+    }
+
+    public void testReset() {
+        SchemaRecord record = schema.newRecord();
+        record.add("CAR", "FIAT").add("CARGO", 10);
+        record.reset();
+        assertTrue(record.isEmpty());
+        assertNull(record.get("CAR"));
+        assertFalse(record.containsKey("CARGO"));
+    }
+
+    public void testCopyIsDetached() {
+        SchemaRecord record = schema.newRecord();
+        record.add("CAR", "FIAT").add("CARGO", 10);
+        Record copy = record.copy();
+        record.reset();
+        assertEquals("FIAT", copy.get("car"));
+        assertEquals(10, copy.get("cargo"));
+        assertFalse(copy instanceof SchemaRecord);
+    }
+
+    public void testUnknownVariable() {
+        try {
+            schema.newRecord().add("DRIVER", "Alonso");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            schema.newRecord().set(0, 1L);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testVariableHandles() {
+        Variable cargo = schema.variable("cargo");
+        assertSame(cargo, schema.variable("CARGO"));
+        assertEquals("CARGO", cargo.getName());
+        assertEquals(1, cargo.getIndex());
+        assertEquals(DataTypes.INTEGER, schema.getTypeOf(cargo));
+
+        SchemaRecord record = schema.newRecord();
+        record.add(cargo, 40);
+        assertEquals(40, record.get(cargo));
+        assertEquals(40, record.get("Cargo"));
+
+        Record plain = new Record().add(cargo, 10);
+        assertEquals(10, plain.get("cargo"));
+        assertTrue(plain.containsKey(cargo));
+        assertEquals("CARGO=10", Filters.eq(cargo, 10).toSql(schema));
+    }
+}
@@ -0,0 +1,141 @@
+package gr.forth.ics.jbenchy.binary;
+
+import gr.forth.ics.jbenchy.Aggregate;
+import gr.forth.ics.jbenchy.Aggregator;
+import gr.forth.ics.jbenchy.DataTypes;
+import gr.forth.ics.jbenchy.Database;
+import gr.forth.ics.jbenchy.DbFactories;
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.Schema;
+import gr.forth.ics.jbenchy.SchemaRecord;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class BinaryFormatTest extends TestCase {
+    private File file;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = File.createTempFile("BinaryFormatTest", ".jbc");
+    }
+
+    @Override
+    protected void tearDown() {
+        file.delete();
+    }
+
+    public void testAggregatorRoundTrip() throws IOException {
+        Schema schema = new Schema().
+                add("CAR", DataTypes.encodedString(10)).
+                add("CARGO", DataTypes.INTEGER).
+                add("DISTANCE", DataTypes.LONG).
+                add("TIME", DataTypes.DOUBLE).
+                add("START", DataTypes.TIMESTAMP);
+        Aggregator source = DbFactories.columnar().getOrCreate("BinaryFormatTest").forceCreate(schema, "SOURCE");
+        SchemaRecord record = schema.newRecord();
+        final int rows = (1 << 16) + 10;
+        for (int i = 0; i < rows; i++) {
+            record.set(0, i % 3 == 0 ? "FIAT" : "BMW");
+            record.set(1, i % 7);
+            record.set(2, i * 1000000007L);
+            record.set(3, i / 4.0);
+            record.set(4, new Timestamp(1000L * (i % 10)));
+            source.record(record);
+        }
+        assertEquals(rows, BinaryWriter.export(source, file));
+
+        Database derby = DbFactories.localDerby().getOrCreate("build/test/BinaryFormatTest");
+        Aggregator copy = BinaryReader.importInto(derby, file, "COPY");
+        for (Aggregate aggregate : new Aggregate[] { Aggregate.count(), Aggregate.sum("CARGO"),
+                Aggregate.max("DISTANCE"), Aggregate.sum("TIME"), Aggregate.max("START") }) {
+            assertEquals(aggregate.toString(), source.report(aggregate, "CAR").toString(),
+                    copy.report(aggregate, "CAR").toString());
+        }
+        derby.delete("COPY");
+        derby.shutDown();
+    }
+
+    public void testRecordsRoundTrip() throws IOException {
+        List<Record> list = new ArrayList<Record>();
+        list.add(new Record(1.5).add("NAME", "\u03b1\u03b2").add("SIZE", 1).add("COUNT", 3L));
+        list.add(new Record(null).add("NAME", null).add("SIZE", 2).add("COUNT", 4));
+        list.add(new Record(-2.0).add("NAME", "x").add("SIZE", Integer.MIN_VALUE).add("COUNT", Long.MAX_VALUE));
+        assertEquals(3, BinaryWriter.write(new Records(list, Arrays.asList("NAME", "SIZE", "COUNT")), file));
+
+        BinaryReader reader = BinaryReader.open(file);
+        assertEquals("STRING(2)", reader.getSchema().getTypeOf("NAME").getName());
+        assertEquals("INTEGER", reader.getSchema().getTypeOf("SIZE").getName());
+        assertEquals("LONG", reader.getSchema().getTypeOf("COUNT").getName());
+        assertTrue(reader.hasValue());
+        reader.close();
+
+        Records records = BinaryReader.readRecords(file);
+        assertEquals(Arrays.asList("NAME", "SIZE", "COUNT"), records.getVariables());
+        assertEquals("{NAME=\u03b1\u03b2, SIZE=1, COUNT=3, <value>=1.5}", records.list().get(0).toString());
+        assertEquals("{SIZE=2, COUNT=4}", records.list().get(1).toString());
+        assertEquals("{NAME=x, SIZE=-2147483648, COUNT=9223372036854775807, <value>=-2.0}",
+                records.list().get(2).toString());
+    }
+
+    public void testRanges() throws IOException {
+        Schema schema = new Schema().add("N", DataTypes.LONG).add("X", DataTypes.DOUBLE);
+        BinaryWriter writer = BinaryWriter.create(file, schema, null);
+        SchemaRecord record = schema.newRecord();
+        for (int i = 0; i < 3 << 16; i++) {
+            writer.write(record.set(0, i).set(1, -i / 2.0));
+        }
+        writer.close();
+
+        BinaryReader reader = BinaryReader.open(file).withRange("n", 70000, 70009.5);
+        List<Long> values = new ArrayList<Long>();
+        while (reader.next(record)) {
+            values.add(record.getLong(0));
+        }
+        reader.close();
+        assertEquals(10, values.size());
+        assertEquals(70000L, (long) values.get(0));
+        assertEquals(70009L, (long) values.get(9));
+        assertEquals(2, reader.getSkippedChunkCount());
+
+        reader = BinaryReader.open(file).withRange("X", null, -90000.0).withRange("N", null, 180001);
+        int count = 0;
+        while (reader.next(record)) {
+            count++;
+        }
+        reader.close();
+        assertEquals(2, count);
+        assertEquals(2, reader.getSkippedChunkCount());
+    }
+
+    public void testNumericConversions() throws IOException {
+        Schema schema = new Schema().add("N", DataTypes.LONG).add("X", DataTypes.DOUBLE);
+        BinaryWriter writer = BinaryWriter.create(file, schema, null);
+        SchemaRecord record = schema.newRecord();
+        writer.write(record.set(0, 7).set(1, 2.5));
+        writer.close();
+
+        Schema decimals = new Schema().add("N", DataTypes.decimal(15, 8)).add("X", DataTypes.decimal(15, 8));
+        SchemaRecord converted = decimals.newRecord();
+        BinaryReader reader = BinaryReader.open(file);
+        assertTrue(reader.next(converted));
+        assertEquals(new BigDecimal("7"), converted.get(0));
+        assertEquals(new BigDecimal("2.5"), converted.get(1));
+        assertFalse(reader.next(converted));
+        reader.close();
+
+        Schema swapped = new Schema().add("N", DataTypes.DOUBLE).add("X", DataTypes.INTEGER);
+        SchemaRecord primitives = swapped.newRecord();
+        reader = BinaryReader.open(file);
+        assertTrue(reader.next(primitives));
+        assertEquals(7.0, primitives.getDouble(0));
+        assertEquals(2L, primitives.getLong(1));
+        reader.close();
+    }
+}
@@ -0,0 +1,152 @@
+package gr.forth.ics.jbenchy.csv;
+
+import gr.forth.ics.jbenchy.Aggregate;
+import gr.forth.ics.jbenchy.Aggregator;
+import gr.forth.ics.jbenchy.DataTypes;
+import gr.forth.ics.jbenchy.Database;
+import gr.forth.ics.jbenchy.DbFactories;
+import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.Schema;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class CsvLoaderTest extends TestCase {
+    private File file;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = File.createTempFile("CsvLoaderTest", ".csv");
+    }
+
+    @Override
+    protected void tearDown() {
+        file.delete();
+    }
+
+    private void write(String contents) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(contents.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private List<List<String>> read(CsvFormat format, int windowSize) throws IOException {
+        CsvReader reader = new CsvReader(file, format, windowSize);
+        List<List<String>> records = new ArrayList<List<String>>();
+        while (reader.next()) {
+            List<String> fields = new ArrayList<String>();
+            for (int i = 0; i < reader.getFieldCount(); i++) {
+                fields.add(reader.getString(i));
+            }
+            records.add(fields);
+        }
+        reader.close();
+        return records;
+    }
+
+    public void testFields() throws IOException {
+        write("a,\"b,\"\"c\"\"\r\nd\",e\r\n\r\n\"\"\n,x,\n\u03b1\u03b2,2");
+        for (int windowSize : new int[] { 1 << 10, 24 }) {
+            List<List<String>> records = read(CsvFormat.csv(), windowSize);
+            assertEquals(4, records.size());
+            assertEquals("[a, b,\"c\"\r\nd, e]", records.get(0).toString());
+            assertEquals("[]", records.get(1).toString());
+            assertEquals("[, x, ]", records.get(2).toString());
+            assertEquals("[\u03b1\u03b2, 2]", records.get(3).toString());
+        }
+        write("a\t\"b\"\n");
+        assertEquals("[[a, \"b\"]]", read(CsvFormat.tsv(), 1 << 10).toString());
+    }
+
+    public void testNumbers() throws IOException {
+        Random random = new Random(1);
+        StringBuilder csv = new StringBuilder();
+        List<Double> doubles = new ArrayList<Double>();
+        for (int i = 0; i < 1000; i++) {
+            double d = i % 3 == 0 ? random.nextGaussian() * 1e6 : Math.round(random.nextDouble() * 1e6) / 1e3;
+            doubles.add(d);
+            csv.append(d).append(',').append(random.nextLong()).append('\n');
+        }
+        csv.append("1e-300, -9223372036854775808\n 0.1 ,+7\n");
+        write(csv.toString());
+        CsvReader reader = new CsvReader(file, CsvFormat.csv());
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(reader.next());
+            assertEquals(doubles.get(i), reader.getDouble(0));
+            assertEquals(Long.parseLong(reader.getString(1)), reader.getLong(1));
+        }
+        assertTrue(reader.next());
+        assertEquals(1e-300, reader.getDouble(0));
+        assertEquals(Long.MIN_VALUE, reader.getLong(1));
+        assertTrue(reader.next());
+        assertEquals(0.1, reader.getDouble(0));
+        assertEquals(7, reader.getLong(1));
+        try {
+            reader.getLong(0);
+            fail();
+        } catch (NumberFormatException expected) {
+        }
+        reader.close();
+    }
+
+    public void testLoad() throws IOException {
+        write("TIME,IGNORED,CAR,CARGO\n1.5,x,FIAT,10\n2.5,y,BMW,10\n3,z,FIAT,20\n");
+        Schema schema = new Schema().
+                add("CAR", DataTypes.encodedString(10)).
+                add("CARGO", DataTypes.INTEGER).
+                add("TIME", DataTypes.DOUBLE);
+        Database[] databases = { DbFactories.columnar().getOrCreate("CsvLoaderTest"),
+                DbFactories.localDerby().getOrCreate("build/test/CsvLoaderTest") };
+        for (Database db : databases) {
+            Aggregator aggregator = db.forceCreate(schema, "LOADED");
+            final long[] reported = new long[1];
+            assertEquals(3, db.load(aggregator, file, CsvFormat.csv(), new LoadProgress() {
+                public void progress(long records, long bytes, long totalBytes, long elapsedNanos) {
+                    assertEquals(bytes, totalBytes);
+                    reported[0] = records;
+                }
+            }));
+            assertEquals(3, reported[0]);
+            Records records = aggregator.report(Aggregate.sum("TIME"), "CAR");
+            assertEquals("BMW", records.list().get(0).get("CAR"));
+            assertEquals(2.5, records.list().get(0).getValue());
+            assertEquals(4.5, records.list().get(1).getValue());
+            db.delete("LOADED");
+            db.shutDown();
+        }
+    }
+
+    public void testOutOfRange() throws IOException {
+        write("CARGO,SMALL\n3000000000,1\n");
+        Schema schema = new Schema().
+                add("CARGO", DataTypes.INTEGER).
+                add("SMALL", DataTypes.SHORT);
+        Database db = DbFactories.columnar().getOrCreate("CsvLoaderTest");
+        Aggregator aggregator = db.forceCreate(schema, "LOADED");
+        try {
+            db.load(aggregator, file, CsvFormat.csv());
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().startsWith("Invalid value of variable 'CARGO'"));
+        }
+        write("CARGO,SMALL\n2147483647,-32769\n");
+        try {
+            db.load(aggregator, file, CsvFormat.csv());
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().startsWith("Invalid value of variable 'SMALL'"));
+        }
+        write("CARGO,SMALL\n2147483647,-32768\n");
+        assertEquals(1, db.load(aggregator, file, CsvFormat.csv()));
+        assertEquals(-32768, ((Number) aggregator.report(Aggregate.min("SMALL")).list().get(0).getValue()).intValue());
+        db.delete("LOADED");
+        db.shutDown();
+    }
+}
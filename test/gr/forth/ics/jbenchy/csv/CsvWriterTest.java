@@ -0,0 +1,90 @@
+package gr.forth.ics.jbenchy.csv;
+
+import gr.forth.ics.jbenchy.Aggregate;
+import gr.forth.ics.jbenchy.Aggregator;
+import gr.forth.ics.jbenchy.DataTypes;
+import gr.forth.ics.jbenchy.Database;
+import gr.forth.ics.jbenchy.DbFactories;
+import gr.forth.ics.jbenchy.Filters;
+import gr.forth.ics.jbenchy.Schema;
+import gr.forth.ics.jbenchy.SchemaRecord;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class CsvWriterTest extends TestCase {
+    private File file;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = File.createTempFile("CsvWriterTest", ".csv");
+    }
+
+    @Override
+    protected void tearDown() {
+        file.delete();
+    }
+
+    public void testNumbers() throws IOException {
+        double[] doubles = { 0.1, -2.5, 3, 1e20, 1e-7, 123456.789, Double.NaN, -0.0, Math.PI, 1.0 / 3 };
+        Schema schema = new Schema().add("X", DataTypes.DOUBLE).add("N", DataTypes.LONG);
+        CsvWriter writer = CsvWriter.open(file, schema, null, CsvFormat.csv());
+        SchemaRecord record = schema.newRecord();
+        for (int i = 0; i < doubles.length; i++) {
+            writer.write(record.set(0, doubles[i]).set(1, i == 0 ? Long.MIN_VALUE : -i * 1000000007L));
+        }
+        writer.close();
+        assertEquals(doubles.length, writer.getRecordCount());
+
+        CsvReader reader = new CsvReader(file, CsvFormat.csv());
+        assertTrue(reader.next());
+        assertEquals("X", reader.getString(0));
+        String[] expected = { "0.1", "-2.5", "3.0", "1.0E20", "0.0000001", "123456.789", "NaN", "-0.0" };
+        for (int i = 0; i < doubles.length; i++) {
+            assertTrue(reader.next());
+            if (i < expected.length) {
+                assertEquals(expected[i], reader.getString(0));
+            }
+            assertEquals(String.valueOf(doubles[i]), String.valueOf(Double.parseDouble(reader.getString(0))));
+            assertEquals(i == 0 ? Long.MIN_VALUE : -i * 1000000007L, Long.parseLong(reader.getString(1)));
+        }
+        assertFalse(reader.next());
+        reader.close();
+    }
+
+    public void testReportRoundTrip() throws IOException {
+        Schema schema = new Schema().
+                add("NAME", DataTypes.string(20)).
+                add("SIZE", DataTypes.INTEGER).
+                add("TIME", DataTypes.DOUBLE);
+        Database db = DbFactories.columnar().getOrCreate("CsvWriterTest");
+        Aggregator source = db.forceCreate(schema, "SOURCE");
+        Random random = new Random(1);
+        SchemaRecord record = schema.newRecord();
+        for (int i = 0; i < 5000; i++) {
+            record.set(0, i % 3 == 0 ? "a,\"b\"" : "\u03b1" + (i % 5));
+            record.set(1, i % 7);
+            record.set(2, Math.round(random.nextGaussian() * 1e6) / 1e3);
+            source.record(record);
+        }
+        assertEquals(5000, CsvWriter.write(source.cursor(Aggregate.values("TIME"), "NAME", "SIZE"),
+                file, CsvFormat.csv()));
+
+        Aggregator copy = db.forceCreate(schema, "COPY");
+        assertEquals(5000, db.load(copy, file, CsvFormat.csv()));
+        for (Aggregate aggregate : new Aggregate[] { Aggregate.count(), Aggregate.sum("TIME"), Aggregate.max("TIME") }) {
+            assertEquals(source.report(aggregate, "NAME", "SIZE").toString(),
+                    copy.report(aggregate, "NAME", "SIZE").toString());
+        }
+
+        assertEquals(source.filtered(Filters.eq("SIZE", 3)).report(Aggregate.count(), "NAME").list().size(),
+                CsvWriter.write(source.filtered(Filters.eq("SIZE", 3)).cursor(Aggregate.count(), "NAME"),
+                file, CsvFormat.tsv().withHeader(false)));
+        try {
+            CsvWriter.write(source.cursor(Aggregate.values("NAME")), file, CsvFormat.csv().withoutQuotes());
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package gr.forth.ics.jbenchy.diagram;
+
+import gr.forth.ics.jbenchy.Aggregate;
+import gr.forth.ics.jbenchy.Aggregator;
+import gr.forth.ics.jbenchy.DataTypes;
+import gr.forth.ics.jbenchy.DbFactories;
+import gr.forth.ics.jbenchy.Orders;
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.Schema;
+import gr.forth.ics.jbenchy.SchemaRecord;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class DiagramFactoryTest extends TestCase {
+    public void testOneVariableWithTwoIndices() {
+        List<Record> list = new ArrayList<Record>();
+        for (int i = 0; i < 10; i++) {
+            list.add(new Record(i * 1.5).add("A", i));
+        }
+        //renderers index 1D diagrams with the int[2] they use for 2D ones
+        Diagram line = DiagramFactory.newDiagram(new Records(list, Arrays.asList("A")));
+        assertEquals(2, line.getRecordAt(2, 0).get("A"));
+        assertEquals(3.0, line.getValueAt(2, 0));
+        assertEquals(3.0, line.getValueAt(2));
+    }
+
+    public void testCursorAndRecords() {
+        Schema schema = new Schema().
+                add("SIZE", DataTypes.INTEGER).
+                add("NAME", DataTypes.string(10)).
+                add("TIME", DataTypes.DOUBLE);
+        Aggregator aggregator = DbFactories.columnar().getOrCreate("DiagramFactoryTest").forceCreate(schema, "TIMES");
+        SchemaRecord record = schema.newRecord();
+        for (int i = 0; i < 2000; i++) {
+            aggregator.record(record.set(0, (i * 7) % 50).set(1, "n" + (i % 13)).set(2, i / 8.0));
+        }
+        Diagram fromRecords = DiagramFactory.newDiagram(aggregator.report(Aggregate.average("TIME"), "SIZE", "NAME"),
+                Orders.desc("SIZE"), Orders.asc("NAME"));
+        Diagram fromCursor = DiagramFactory.newDiagram(aggregator.cursor(Aggregate.average("TIME"), "SIZE", "NAME"),
+                Arrays.asList(Orders.desc("SIZE"), Orders.asc("NAME")));
+        assertEquals(50, fromCursor.getDomainSize(0));
+        assertEquals(13, fromCursor.getDomainSize(1));
+        assertEquals(49, fromCursor.getDomain(0).get(0));
+        for (int v = 0; v < 2; v++) {
+            assertEquals(fromRecords.getDomain(v), fromCursor.getDomain(v));
+        }
+        for (int i = 0; i < 50; i++) {
+            for (int j = 0; j < 13; j++) {
+                assertEquals(String.valueOf(fromRecords.getRecordAt(i, j)), String.valueOf(fromCursor.getRecordAt(i, j)));
+                assertEquals(fromRecords.getValueAt(i, j), fromCursor.getValueAt(i, j));
+            }
+        }
+
+        Diagram line = DiagramFactory.newDiagram(aggregator.cursor(Aggregate.average("TIME"), "SIZE"));
+        assertEquals(3, line.getRecordAt(3, 0).get("SIZE"));
+        assertEquals(line.getValueAt(3), line.getValueAt(3, 0));
+    }
+}
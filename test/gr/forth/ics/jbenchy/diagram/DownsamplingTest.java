@@ -0,0 +1,42 @@
+package gr.forth.ics.jbenchy.diagram;
+
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Records;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class DownsamplingTest extends TestCase {
+    public void testSpikesAreKept() {
+        List<Record> list = new ArrayList<Record>();
+        for (int i = 0; i < 200000; i++) {
+            double value = Math.sin(i / 1000.0) + (i == 123457 ? 50 : 0) - (i == 7001 ? 30 : 0);
+            list.add(new Record(value).add("T", i).add("HOST", i % 2 == 0 ? "a" : "b"));
+        }
+        Diagram diagram = DiagramFactory.newDiagram(new Records(list, Arrays.asList("T")));
+        Diagram lttb = Downsampling.lttb(diagram, 500);
+        assertEquals(500, lttb.getDomainSize(0));
+        assertTrue(lttb.getDomain(0).contains(123457));
+        assertTrue(lttb.getDomain(0).contains(7001));
+        assertEquals(0, lttb.getDomain(0).get(0));
+        assertEquals(199999, lttb.getDomain(0).get(499));
+        int spike = lttb.getDomain(0).indexOf(123457);
+        assertEquals(diagram.getValueAt(123457), lttb.getValueAt(spike));
+        assertEquals(123457, lttb.getRecordAt(spike).get("T"));
+
+        Diagram minMax = Downsampling.minMax(diagram, 500);
+        assertTrue(minMax.getDomainSize(0) <= 502);
+        assertTrue(minMax.getDomain(0).contains(123457));
+        assertTrue(minMax.getDomain(0).contains(7001));
+
+        Diagram series = DiagramFactory.newDiagram(new Records(list, Arrays.asList("T", "HOST")));
+        Diagram both = Downsampling.lttb(series, 100);
+        assertTrue(both.getDomainSize(0) <= 200);
+        assertTrue(both.getDomain(0).contains(123457));
+        assertTrue(both.getDomain(0).contains(7001));
+        assertEquals(2, both.getDomainSize(1));
+
+        assertEquals(diagram.getDomainSize(0), Downsampling.lttb(diagram, 300000).getDomainSize(0));
+    }
+}
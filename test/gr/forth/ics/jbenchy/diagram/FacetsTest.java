@@ -0,0 +1,68 @@
+package gr.forth.ics.jbenchy.diagram;
+
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.diagram.gnuplot.GnuPlotWriter;
+import gr.forth.ics.jbenchy.diagram.gnuplot.GnuPlotWriter.GnuPlotFiles;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class FacetsTest extends TestCase {
+    public void testFacets() throws IOException {
+        List<Record> list = new ArrayList<Record>();
+        for (int size = 1; size <= 4; size++) {
+            for (String algorithm : new String[] { "a", "b" }) {
+                for (String machine : new String[] { "m1", "m2" }) {
+                    for (int threads = 1; threads <= 3; threads++) {
+                        if (machine.equals("m2") && threads == 3) {
+                            continue;
+                        }
+                        list.add(new Record(size * 100.0 / threads).add("SIZE", size).add("ALGORITHM", algorithm).
+                                add("MACHINE", machine).add("THREADS", threads));
+                    }
+                }
+            }
+        }
+        Diagram diagram = DiagramFactory.newDiagram(new Records(list,
+                Arrays.asList("SIZE", "ALGORITHM", "MACHINE", "THREADS"))).withTitle("T");
+        Facets facets = Facets.of(diagram, "SIZE", "ALGORITHM");
+        assertEquals(Arrays.asList("MACHINE", "THREADS"), facets.getFacetVariables());
+        assertEquals(2, facets.getRows());
+        assertEquals(3, facets.getColumns());
+        assertEquals(5, facets.getFacets().size());
+
+        Facets.Facet facet = facets.getFacets().get(4);
+        assertEquals(Arrays.<Object>asList("m2", 2), facet.getValues());
+        assertEquals(1, facet.getRow());
+        assertEquals(1, facet.getColumn());
+        Diagram slice = facet.getDiagram();
+        assertEquals("T (MACHINE=m2, THREADS=2)", slice.getTitle());
+        assertEquals(Arrays.asList("SIZE", "ALGORITHM"), slice.getVariables());
+        assertEquals(4, slice.getDomainSize(0));
+        assertEquals(150.0, slice.getValueAt(2, 1));
+        assertEquals("b", slice.getRecordAt(2, 1).get("ALGORITHM"));
+
+        try {
+            Facets.of(diagram, "SIZE", null, "MACHINE");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+
+        File folder = File.createTempFile("FacetsTest", "");
+        folder.delete();
+        GnuPlotWriter writer = new GnuPlotWriter(folder);
+        List<GnuPlotFiles> files = writer.writeFacets(Facets.of(diagram, "SIZE", null), "times", null);
+        assertEquals(11, files.size());
+        assertEquals(new File(folder, "times-0-0.plt"), files.get(0).getCommandFile());
+        assertTrue(files.get(10).getCommandFile().isFile());
+        for (File file : folder.listFiles()) {
+            file.delete();
+        }
+        new File(folder, "eps").delete();
+        folder.delete();
+    }
+}
@@ -0,0 +1,59 @@
+package gr.forth.ics.jbenchy.diagram;
+
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Records;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class MultiDimensionalArrayTest extends TestCase {
+    public void testDenseAndSparse() {
+        final int[] sizes = { 40, 30, 20 };
+        MultiDimensionalArray<Integer> dense = MultiDimensionalArray.create(24000, sizes);
+        MultiDimensionalArray<Integer> sparse = MultiDimensionalArray.create(100, sizes);
+        MultiDimensionalArray.Doubles doubles = MultiDimensionalArray.createDoubles(100, sizes);
+        assertFalse(dense.isSparse());
+        assertTrue(sparse.isSparse());
+        assertTrue(doubles.isSparse());
+
+        Random random = new Random(1);
+        int[] index = new int[3];
+        for (int i = 0; i < 5000; i++) {
+            index[0] = random.nextInt(40);
+            index[1] = random.nextInt(30);
+            index[2] = random.nextInt(20);
+            dense.put(i, index);
+            sparse.put(i, index);
+            doubles.put(i / 2.0, index);
+        }
+        for (index[0] = 0; index[0] < 40; index[0]++) {
+            for (index[1] = 0; index[1] < 30; index[1]++) {
+                for (index[2] = 0; index[2] < 20; index[2]++) {
+                    Integer value = dense.get(index);
+                    assertEquals(value, sparse.get(index));
+                    assertEquals(value == null ? Double.NaN : value / 2.0, doubles.get(index));
+                }
+            }
+        }
+        try {
+            sparse.get(0, 30, 0);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+    }
+
+    public void testHugeSparseDiagram() {
+        List<Record> list = new ArrayList<Record>();
+        for (int i = 0; i < 3000; i++) {
+            list.add(new Record(i * 1.5).add("A", i).add("B", -i).add("C", i % 1000));
+        }
+        Diagram diagram = DiagramFactory.newDiagram(new Records(list, Arrays.asList("A", "B", "C")));
+        assertEquals(3000, diagram.getDomainSize(0));
+        assertEquals(1.5 * 2999, diagram.getValueAt(2999, 0, 999));
+        assertEquals(2999, diagram.getRecordAt(2999, 0, 999).get("A"));
+        assertTrue(Double.isNaN(diagram.getValueAt(0, 0, 0)));
+        assertNull(diagram.getRecordAt(0, 0, 0));
+    }
+}
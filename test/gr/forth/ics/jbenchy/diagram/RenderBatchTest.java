@@ -0,0 +1,75 @@
+package gr.forth.ics.jbenchy.diagram;
+
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.diagram.gnuplot.GnuPlotWriter;
+import gr.forth.ics.jbenchy.diagram.jfreechart.ChartRenderer;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class RenderBatchTest extends TestCase {
+    private File folder;
+
+    @Override
+    protected void setUp() throws IOException {
+        folder = File.createTempFile("RenderBatchTest", "");
+        folder.delete();
+    }
+
+    @Override
+    protected void tearDown() {
+        delete(folder);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    public void testRender() throws IOException {
+        GnuPlotWriter writer = new GnuPlotWriter(folder);
+        ChartRenderer charts = ChartRenderer.lines(new File(folder, "png")).withSize(200, 150);
+        DiagramRenderer plots = writer.newRenderer(null);
+        RenderBatch batch = new RenderBatch().withThreads(4);
+        List<String> expected = new ArrayList<String>();
+        for (int d = 20; d > 0; d--) {
+            List<Record> list = new ArrayList<Record>();
+            for (int i = 0; i < 50; i++) {
+                list.add(new Record(i * d).add("X", i).add("S", i % 3));
+            }
+            Diagram diagram = DiagramFactory.newDiagram(new Records(list, Arrays.asList("X", "S")));
+            batch.add(diagram, "d" + d, plots).add(diagram, "d" + d, charts);
+            expected.add("load 'd" + d + ".plt'");
+        }
+        try {
+            batch.add(DiagramFactory.newDiagram(new Records(new ArrayList<Record>(), Arrays.asList("X"))), "d1", plots);
+            fail();
+        } catch (IllegalArgumentException expectedException) {
+        }
+        assertEquals(40, batch.size());
+        batch.render();
+
+        List<String> lines = new ArrayList<String>();
+        BufferedReader in = new BufferedReader(new FileReader(writer.createMasterPlotFile("all.plt")));
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            lines.add(line);
+        }
+        in.close();
+        assertEquals(expected, lines);
+        for (int d = 1; d <= 20; d++) {
+            assertTrue(new File(folder, "d" + d + ".dat").length() > 0);
+            assertTrue(charts.getFile("d" + d).length() > 0);
+        }
+    }
+}
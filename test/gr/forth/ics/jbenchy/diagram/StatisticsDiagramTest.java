@@ -0,0 +1,107 @@
+package gr.forth.ics.jbenchy.diagram;
+
+import gr.forth.ics.jbenchy.Aggregate;
+import gr.forth.ics.jbenchy.Aggregator;
+import gr.forth.ics.jbenchy.DataTypes;
+import gr.forth.ics.jbenchy.DbFactories;
+import gr.forth.ics.jbenchy.Schema;
+import gr.forth.ics.jbenchy.SchemaRecord;
+import gr.forth.ics.jbenchy.diagram.gnuplot.GnuPlotContext;
+import gr.forth.ics.jbenchy.diagram.gnuplot.GnuPlotWriter;
+import gr.forth.ics.jbenchy.diagram.gnuplot.GnuPlotWriter.GnuPlotFiles;
+import gr.forth.ics.jbenchy.diagram.jfreechart.Datasets;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import junit.framework.TestCase;
+import org.jfree.data.category.IntervalCategoryDataset;
+import org.jfree.data.statistics.StatisticalCategoryDataset;
+
+public class StatisticsDiagramTest extends TestCase {
+    public void testStatistics() throws IOException {
+        Schema schema = new Schema().
+                add("SIZE", DataTypes.INTEGER).
+                add("NAME", DataTypes.string(10)).
+                add("TIME", DataTypes.DOUBLE);
+        Aggregator aggregator = DbFactories.columnar().getOrCreate("StatisticsDiagramTest").forceCreate(schema, "TIMES");
+        SchemaRecord record = schema.newRecord();
+        for (int i = 0; i < 1000; i++) {
+            aggregator.record(record.set(0, i % 10).set(1, "n" + (i % 3)).set(2, (i * 37) % 101 / 4.0));
+        }
+        StatisticsDiagram diagram = DiagramFactory.newStatisticsDiagram(
+                aggregator.cursor(Aggregate.values("TIME"), "SIZE", "NAME"),
+                Statistic.MEAN, Statistic.STDDEV, Statistic.MIN, Statistic.MAX, Statistic.percentile(50));
+        assertEquals(Arrays.asList(Statistic.MEAN, Statistic.STDDEV, Statistic.MIN, Statistic.MAX,
+                Statistic.percentile(50)), diagram.getStatistics());
+        assertEquals("P50", Statistic.percentile(50).getName());
+        assertEquals("P99.9", Statistic.percentile(99.9).getName());
+
+        Diagram averages = DiagramFactory.newDiagram(aggregator.cursor(Aggregate.average("TIME"), "SIZE", "NAME"));
+        Diagram minimums = DiagramFactory.newDiagram(aggregator.cursor(Aggregate.min("TIME"), "SIZE", "NAME"));
+        Diagram maximums = DiagramFactory.newDiagram(aggregator.cursor(Aggregate.max("TIME"), "SIZE", "NAME"));
+        assertEquals(averages.getDomain(0), diagram.getDomain(0));
+        assertEquals(averages.getDomain(1), diagram.getDomain(1));
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 3; j++) {
+                final double mean = diagram.getStatisticAt(Statistic.MEAN, i, j);
+                assertEquals(averages.getValueAt(i, j), mean, 1e-9);
+                assertEquals(mean, diagram.getValueAt(i, j));
+                assertEquals(minimums.getValueAt(i, j), diagram.getStatisticAt(Statistic.MIN, i, j));
+                assertEquals(maximums.getValueAt(i, j), diagram.getStatisticAt(Statistic.MAX, i, j));
+                final double median = diagram.getStatisticAt(Statistic.percentile(50), i, j);
+                assertTrue(median >= diagram.getStatisticAt(Statistic.MIN, i, j));
+                assertTrue(median <= diagram.getStatisticAt(Statistic.MAX, i, j));
+                final double deviation = diagram.getStatisticAt(Statistic.STDDEV, i, j);
+                assertEquals(mean - deviation, Statistic.STDDEV.lowerBoundAt(diagram, i, j), 1e-9);
+                assertEquals(mean + deviation, Statistic.STDDEV.upperBoundAt(diagram, i, j), 1e-9);
+            }
+        }
+        try {
+            diagram.getStatisticAt(Statistic.COUNT, 0, 0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            DiagramFactory.newStatisticsDiagram(aggregator.cursor(Aggregate.average("TIME"), "SIZE"), Statistic.MEAN);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+
+        StatisticalCategoryDataset statistical = Datasets.newStatisticalCategoryDataset(diagram);
+        assertEquals(diagram.getStatisticAt(Statistic.STDDEV, 4, 2),
+                statistical.getStdDevValue(2, 4).doubleValue(), 1e-9);
+        IntervalCategoryDataset interval = Datasets.newIntervalCategoryDataset(diagram, Statistic.MIN, Statistic.MAX);
+        assertEquals(diagram.getStatisticAt(Statistic.MAX, 4, 2), interval.getEndValue(2, 4).doubleValue());
+
+        File folder = File.createTempFile("StatisticsDiagramTest", "");
+        folder.delete();
+        GnuPlotWriter writer = new GnuPlotWriter(folder);
+        GnuPlotFiles errorBars = writer.writeDiagram(diagram, "errorbars",
+                new GnuPlotContext().setErrorBars(Statistic.STDDEV, Statistic.STDDEV));
+        assertTrue(read(errorBars.getCommandFile()).contains("yerrorbars"));
+        GnuPlotFiles bands = writer.writeDiagram(diagram, "bands",
+                new GnuPlotContext().setBands(Statistic.MIN, Statistic.MAX));
+        assertTrue(read(bands.getCommandFile()).contains("filledcurves"));
+        for (File file : folder.listFiles()) {
+            file.delete();
+        }
+        new File(folder, "eps").delete();
+        folder.delete();
+    }
+
+    private static String read(File file) throws IOException {
+        StringBuilder text = new StringBuilder();
+        BufferedReader in = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                text.append(line).append('\n');
+            }
+        } finally {
+            in.close();
+        }
+        return text.toString();
+    }
+}
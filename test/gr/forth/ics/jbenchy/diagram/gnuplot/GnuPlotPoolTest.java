@@ -0,0 +1,103 @@
+package gr.forth.ics.jbenchy.diagram.gnuplot;
+
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.diagram.DiagramFactory;
+import gr.forth.ics.jbenchy.diagram.RenderBatch;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class GnuPlotPoolTest extends TestCase {
+    //a fake gnuplot, which writes the commands of each plot to its output file, and fails on "ERROR"
+    private static final String FAKE_GNUPLOT =
+            "out=\n" +
+            "while IFS= read -r line; do\n" +
+            "  case \"$line\" in\n" +
+            "    \"set output '\"*) out=${line#set output \\'}; out=${out%\\'}; : > \"$out\" ;;\n" +
+            "    \"set output\") out= ;;\n" +
+            "    \"print \"*) echo jbenchy:done ;;\n" +
+            "    quit) exit 0 ;;\n" +
+            "    *ERROR*) echo \"line 0: invalid command\" >&2 ;;\n" +
+            "    *) if [ -n \"$out\" ]; then printf '%s\\n' \"$line\" >> \"$out\"; fi ;;\n" +
+            "  esac\n" +
+            "done\n";
+
+    private File folder;
+
+    @Override
+    protected void setUp() throws IOException {
+        folder = File.createTempFile("GnuPlotPoolTest", "");
+        folder.delete();
+        folder.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() {
+        for (File file : folder.listFiles()) {
+            file.delete();
+        }
+        folder.delete();
+    }
+
+    public void testFakeGnuPlot() throws IOException {
+        if (File.separatorChar != '/' || !new File("/bin/sh").exists()) {
+            return;
+        }
+        File script = new File(folder, "gnuplot.sh");
+        FileWriter writer = new FileWriter(script);
+        writer.write(FAKE_GNUPLOT);
+        writer.close();
+
+        GnuPlotPool pool = new GnuPlotPool(folder, 3).withCommand("/bin/sh", script.getPath());
+        try {
+            RenderBatch batch = new RenderBatch().withThreads(3);
+            for (int d = 0; d < 12; d++) {
+                List<Record> list = new ArrayList<Record>();
+                for (int i = 0; i < 10; i++) {
+                    list.add(new Record(i * d).add("X", i).add("S", i % 2 == 0 ? "even" : "odd"));
+                }
+                batch.add(DiagramFactory.newDiagram(new Records(list, Arrays.asList("X", "S"))), "d" + d, pool);
+            }
+            batch.render();
+            assertTrue(pool.getStartedProcessCount() <= 3);
+
+            List<String> lines = read(pool.getFile("d3"));
+            String plot = lines.get(lines.indexOf("0\t0.0") - 1);
+            assertTrue(plot, plot.startsWith("plot '-' using 1:2 title 'even' "));
+            assertTrue(plot, plot.contains(", '-' using 1:2 title 'odd' "));
+            assertEquals(lines.indexOf("8\t24.0") + 1, lines.indexOf("e"));
+            assertTrue(lines.contains("9\t27.0"));
+
+            DiagramFactory.DiagramImpl failing = DiagramFactory.newDiagram(new Records(Arrays.asList(new Record(1).add("X", 1)),
+                    Arrays.asList("X"))).withTitle("ERROR");
+            try {
+                pool.render(failing, "failing");
+                fail();
+            } catch (IOException expected) {
+            }
+            final int started = pool.getStartedProcessCount();
+            pool.render(failing.withTitle("OK"), "ok");
+            assertTrue(read(pool.getFile("ok")).contains("1\t1.0"));
+            assertTrue(pool.getStartedProcessCount() <= started + 1);
+        } finally {
+            pool.close();
+        }
+    }
+
+    private static List<String> read(File file) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader in = new BufferedReader(new FileReader(file));
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            lines.add(line);
+        }
+        in.close();
+        return lines;
+    }
+}
@@ -0,0 +1,80 @@
+package gr.forth.ics.jbenchy.excel;
+
+import gr.forth.ics.jbenchy.DataTypes;
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.Schema;
+import gr.forth.ics.jbenchy.SchemaRecord;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class ExcelWriterTest extends TestCase {
+    private File file;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = File.createTempFile("ExcelWriterTest", ".xml");
+    }
+
+    @Override
+    protected void tearDown() {
+        file.delete();
+    }
+
+    private String read() throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            in.read(bytes);
+        } finally {
+            in.close();
+        }
+        return new String(bytes, "UTF-8");
+    }
+
+    private static int count(String string, String part) {
+        int count = 0;
+        for (int i = string.indexOf(part); i >= 0; i = string.indexOf(part, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    public void testSheets() throws IOException {
+        Schema schema = new Schema().add("NAME", DataTypes.SMALL_STRING).add("SIZE", DataTypes.INTEGER);
+        ExcelWriter writer = ExcelWriter.open(file, schema, DataTypes.FLOAT).withSheetRows(3);
+        SchemaRecord record = schema.newRecord();
+        for (int i = 0; i < 5; i++) {
+            record.set(0, "a<" + i);
+            record.set(1, i);
+            record.putValue(i / 2f);
+            writer.write(record);
+        }
+        writer.close();
+        assertEquals(3, writer.getSheetCount());
+        String xml = read();
+        assertEquals(3, count(xml, "<Worksheet"));
+        assertEquals(3, count(xml, "<Data ss:Type=\"String\">VALUE</Data>"));
+        assertEquals(5, count(xml, "<Data ss:Type=\"String\">a&lt;"));
+        assertTrue(xml.contains("<Data ss:Type=\"Number\">4</Data>"));
+        assertTrue(xml.contains("<Data ss:Type=\"Number\">1.5</Data>"));
+        assertTrue(xml.endsWith("</Workbook>\n"));
+    }
+
+    public void testRecords() throws IOException {
+        List<Record> list = new ArrayList<Record>();
+        list.add(new Record().add("NAME", "12").add("TIME", 1.25));
+        list.add(new Record().add("NAME", "x").add("TIME", 2L));
+        ExcelWriter.write(new Records(list, Arrays.asList("NAME", "TIME")), file);
+        String xml = read();
+        assertEquals(1, count(xml, "<Worksheet"));
+        assertTrue(xml.contains("<Data ss:Type=\"String\">12</Data>"));
+        assertTrue(xml.contains("<Data ss:Type=\"Number\">1.25</Data>"));
+        assertTrue(xml.contains("<Data ss:Type=\"Number\">2.0</Data>"));
+    }
+}
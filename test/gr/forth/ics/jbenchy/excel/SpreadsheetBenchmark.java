@@ -0,0 +1,61 @@
+package gr.forth.ics.jbenchy.excel;
+
+import gr.forth.ics.jbenchy.DataTypes;
+import gr.forth.ics.jbenchy.Schema;
+import gr.forth.ics.jbenchy.SchemaRecord;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.Random;
+
+/**
+ * Writes a synthetic report (a timestamp, a repeated name, a parameter and a timing per record)
+ * with {@link ExcelWriter} and {@link XlsxWriter}, and prints the size and write time of each file.
+ *
+ * @author andreou
+ */
+public class SpreadsheetBenchmark {
+    public static void main(String[] args) throws IOException {
+        final int records = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        Schema schema = new Schema().
+                add("WHEN", DataTypes.TIMESTAMP).
+                add("BENCHMARK", DataTypes.SMALL_STRING).
+                add("SIZE", DataTypes.INTEGER);
+        File xml = File.createTempFile("SpreadsheetBenchmark", ".xml");
+        File xlsx = File.createTempFile("SpreadsheetBenchmark", ".xlsx");
+        long start = System.currentTimeMillis();
+        for (int run = 0; run < 3; run++) {
+            for (File file : new File[] { xml, xlsx }) {
+                Random random = new Random(0);
+                SchemaRecord record = schema.newRecord();
+                long time = System.nanoTime();
+                if (file == xml) {
+                    ExcelWriter writer = ExcelWriter.open(file, schema, DataTypes.DOUBLE);
+                    for (int i = 0; i < records; i++) {
+                        writer.write(fill(record, start, i, random));
+                    }
+                    writer.close();
+                } else {
+                    XlsxWriter writer = XlsxWriter.open(file, schema, DataTypes.DOUBLE);
+                    for (int i = 0; i < records; i++) {
+                        writer.write(fill(record, start, i, random));
+                    }
+                    writer.close();
+                }
+                time = System.nanoTime() - time;
+                System.out.printf("%s: %,d records, %.1f MB in %.0f ms%n", file == xml ? "ExcelWriter" : "XlsxWriter",
+                        records, file.length() / 1e6, time / 1e6);
+            }
+        }
+        xml.delete();
+        xlsx.delete();
+    }
+
+    private static SchemaRecord fill(SchemaRecord record, long start, int i, Random random) {
+        record.set(0, new Timestamp(start + i * 10L));
+        record.set(1, "benchmark" + (i % 50));
+        record.set(2, 1 << (i % 16));
+        record.putValue(Math.round(random.nextGaussian() * 1e6) / 1e3);
+        return record;
+    }
+}
@@ -0,0 +1,75 @@
+package gr.forth.ics.jbenchy.excel;
+
+import gr.forth.ics.jbenchy.DataTypes;
+import gr.forth.ics.jbenchy.Schema;
+import gr.forth.ics.jbenchy.SchemaRecord;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import junit.framework.TestCase;
+
+public class XlsxWriterTest extends TestCase {
+    private File file;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = File.createTempFile("XlsxWriterTest", ".xlsx");
+    }
+
+    @Override
+    protected void tearDown() {
+        file.delete();
+    }
+
+    private static String read(ZipFile zip, String name) throws IOException {
+        ZipEntry entry = zip.getEntry(name);
+        assertNotNull(name, entry);
+        InputStream in = zip.getInputStream(entry);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int read; (read = in.read(buffer)) > 0; ) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toString("UTF-8");
+    }
+
+    public void testWorkbook() throws IOException {
+        Schema schema = new Schema().add("NAME", DataTypes.SMALL_STRING).add("SIZE", DataTypes.INTEGER);
+        XlsxWriter writer = XlsxWriter.open(file, schema, DataTypes.DOUBLE).withSheetRows(3);
+        SchemaRecord record = schema.newRecord();
+        for (int i = 0; i < 5; i++) {
+            record.set(0, i % 2 == 0 ? "even" : "a&b");
+            record.set(1, i);
+            record.putValue(i / 2.0);
+            writer.write(record);
+        }
+        writer.close();
+        assertEquals(3, writer.getSheetCount());
+        //NAME, SIZE, VALUE, even, a&b
+        assertEquals(5, writer.getSharedStringCount());
+
+        ZipFile zip = new ZipFile(file);
+        try {
+            assertTrue(read(zip, "[Content_Types].xml").contains("/xl/worksheets/sheet3.xml"));
+            assertTrue(read(zip, "xl/workbook.xml").contains("name=\"AggregatorResults (3)\""));
+            read(zip, "_rels/.rels");
+            read(zip, "xl/_rels/workbook.xml.rels");
+            read(zip, "xl/styles.xml");
+            String strings = read(zip, "xl/sharedStrings.xml");
+            assertTrue(strings.contains("count=\"14\" uniqueCount=\"5\""));
+            assertTrue(strings.contains("<t xml:space=\"preserve\">a&amp;b</t>"));
+            String sheet = read(zip, "xl/worksheets/sheet1.xml");
+            assertTrue(sheet.contains("state=\"frozen\""));
+            assertTrue(sheet.contains("<row><c t=\"s\" s=\"1\"><v>0</v></c><c t=\"s\" s=\"1\"><v>1</v></c>" +
+                    "<c t=\"s\" s=\"1\"><v>2</v></c></row>"));
+            assertTrue(sheet.contains("<row><c t=\"s\"><v>4</v></c><c><v>1</v></c><c><v>0.5</v></c></row>"));
+            assertTrue(read(zip, "xl/worksheets/sheet3.xml").contains("<c><v>4</v></c>"));
+        } finally {
+            zip.close();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package gr.forth.ics.jbenchy.impl.columnar;
+
+import gr.forth.ics.jbenchy.DataTypes;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.BitSet;
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class CodecTest extends TestCase {
+    private static final Codec[] CODECS = { Codec.BIT_PACKING, Codec.DELTA_OF_DELTA, Codec.XOR };
+
+    public void testRoundTrips() {
+        Random random = new Random(42);
+        long[][] inputs = new long[4][1000];
+        for (int i = 0; i < 1000; i++) {
+            inputs[0][i] = random.nextLong();
+            inputs[1][i] = 1000000000L * i + random.nextInt(1000);
+            inputs[2][i] = Double.doubleToRawLongBits(10 + random.nextGaussian());
+            inputs[3][i] = i % 3 == 0 ? Long.MIN_VALUE : (i % 3 == 1 ? Long.MAX_VALUE : 0);
+        }
+        inputs[2][7] = Double.doubleToRawLongBits(Double.NaN);
+        for (Codec codec : CODECS) {
+            for (long[] input : inputs) {
+                long[] decoded = new long[input.length];
+                codec.decode(LongBuffer.wrap(codec.encode(input, input.length)), decoded, input.length);
+                for (int i = 0; i < input.length; i++) {
+                    assertEquals(codec + " at " + i, input[i], decoded[i]);
+                }
+                long[] encoded = codec.encode(input, input.length);
+                LongBuffer direct = ByteBuffer.allocateDirect(encoded.length * 8).
+                        order(ByteOrder.nativeOrder()).asLongBuffer();
+                direct.put(encoded);
+                codec.decode(direct, decoded, input.length);
+                for (int i = 0; i < input.length; i++) {
+                    assertEquals(codec + " at " + i, input[i], decoded[i]);
+                }
+            }
+        }
+    }
+
+    public void testSealedSegments() {
+        FixedColumn timestamps = new FixedColumn("T", DataTypes.LONG);
+        FixedColumn timings = new FixedColumn("TIME", DataTypes.DOUBLE);
+        final int rows = FixedColumn.SEGMENT_ROWS * 4;
+        for (int i = 0; i < rows; i++) {
+            timestamps.appendLong(1300000000000000000L + 1000L * i + (i % 10 == 0 ? 3 : 0));
+            timings.appendDouble(i % 100 < 90 ? 2.5 : 2.75);
+        }
+        long raw = (long) rows * 8;
+        assertTrue(timestamps.getFootprint() * 5 < raw);
+        assertTrue(timings.getFootprint() * 5 < raw);
+        for (int i = 0; i < rows; i += 997) {
+            assertEquals(1300000000000000000L + 1000L * i + (i % 10 == 0 ? 3 : 0), timestamps.getLong(i));
+            assertEquals(i % 100 < 90 ? 2.5 : 2.75, timings.getDouble(i));
+        }
+        int[] unordered = { 70000, 10, FixedColumn.SEGMENT_ROWS * 3 + 5, 70001, 11 };
+        long[] longs = new long[unordered.length];
+        double[] doubles = new double[unordered.length];
+        timestamps.getLongs(unordered, unordered.length, longs);
+        timings.getDoubles(unordered, unordered.length, doubles);
+        for (int j = 0; j < unordered.length; j++) {
+            assertEquals(timestamps.getLong(unordered[j]), longs[j]);
+            assertEquals(timings.getDouble(unordered[j]), doubles[j]);
+        }
+        BitSet selection = new BitSet();
+        timings.select(">", 2.5, selection);
+        assertEquals(rows / 100 * 10, selection.cardinality());
+    }
+}
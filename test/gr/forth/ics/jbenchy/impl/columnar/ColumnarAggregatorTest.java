@@ -0,0 +1,100 @@
+package gr.forth.ics.jbenchy.impl.columnar;
+
+import gr.forth.ics.jbenchy.Aggregate;
+import gr.forth.ics.jbenchy.Aggregator;
+import gr.forth.ics.jbenchy.DataTypes;
+import gr.forth.ics.jbenchy.Database;
+import gr.forth.ics.jbenchy.DbFactories;
+import gr.forth.ics.jbenchy.Filters;
+import gr.forth.ics.jbenchy.Orders;
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.Schema;
+import gr.forth.ics.jbenchy.SchemaRecord;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+public class ColumnarAggregatorTest extends TestCase {
+    private Database db;
+    private Aggregator aggregator;
+
+    @Override
+    protected void setUp() {
+        db = DbFactories.columnar().getOrCreate("ColumnarAggregatorTest");
+        aggregator = db.create(new Schema().
+                add("CAR", DataTypes.SMALL_STRING).
+                add("CARGO", DataTypes.INTEGER).
+                add("TIME", DataTypes.DOUBLE), "RACES");
+        String[] cars = { "FIAT", "BMW", "FIAT", "BMW", "FIAT" };
+        int[] cargos = { 10, 10, 20, 20, 20 };
+        for (int i = 0; i < cars.length; i++) {
+            aggregator.record(new Record().add("CAR", cars[i]).add("CARGO", cargos[i]).add("TIME", i + 1.0));
+        }
+    }
+
+    @Override
+    protected void tearDown() {
+        db.shutDown();
+    }
+
+    public void testAggregates() {
+        Records records = aggregator.report(Aggregate.sum("TIME"), "CAR");
+        assertEquals(2, records.list().size());
+        assertEquals("BMW", records.list().get(0).get("CAR"));
+        assertEquals(6.0, records.list().get(0).getValue());
+        assertEquals(9.0, records.list().get(1).getValue());
+        assertEquals(16, aggregator.report(Aggregate.average("CARGO")).list().get(0).getValue());
+        assertEquals(3, aggregator.filtered(Filters.eq("CAR", "FIAT")).report(Aggregate.count()).list().get(0).getValue());
+    }
+
+    public void testNestedFilters() {
+        Records records = aggregator.filtered(Filters.and(Filters.gt("TIME", 2),
+                Filters.or(Filters.eq("CAR", "BMW"), Filters.lt("CARGO", 20)))).report(Aggregate.count());
+        assertEquals(1, records.list().get(0).getValue());
+    }
+
+    public void testOrdersAndDomains() {
+        Records records = aggregator.ordered(Orders.desc()).report(Aggregate.count(), "CARGO");
+        assertEquals(20, records.list().get(0).get("CARGO"));
+        assertEquals(Arrays.asList("FIAT", "BMW"), aggregator.ordered(Orders.desc("CAR")).domainOf("CAR", String.class));
+    }
+
+    public void testDelete() {
+        aggregator.filtered(Filters.eq("CARGO", 20)).deleteRecords();
+        assertEquals(2, aggregator.report(Aggregate.count()).list().get(0).getValue());
+        assertEquals(Arrays.asList(10), aggregator.domainOf("CARGO", Integer.class));
+    }
+
+    public void testManyGroups() {
+        for (int i = 0; i < 5000; i++) {
+            aggregator.record(new Record().add("CAR", "C" + (i % 50)).add("CARGO", i % 40).add("TIME", i));
+        }
+        Records records = aggregator.filtered(Filters.gt("TIME", 5)).report(Aggregate.count(), "CAR", "CARGO");
+        assertEquals(200, records.list().size());
+        assertEquals("C0", records.list().get(0).get("CAR"));
+        assertEquals(0, records.list().get(0).get("CARGO"));
+        assertEquals(24, records.list().get(0).getValue());
+        assertEquals(40, aggregator.domainOf("CARGO", Integer.class).size());
+    }
+
+    public void testFailedRecordKeepsRowsAligned() {
+        Schema schema = new Schema().add("N", DataTypes.INTEGER).add("T", DataTypes.TIMESTAMP);
+        Aggregator timed = db.create(schema, "TIMED");
+        timed.record(schema.newRecord().set(0, 1).set(1, new Timestamp(1000L)));
+        SchemaRecord invalid = schema.newRecord().set(0, 2).set(1, "garbage");
+        try {
+            timed.record(invalid);
+            fail();
+        } catch (RuntimeException expected) {
+        }
+        timed.record(schema.newRecord().set(0, 3).set(1, new Timestamp(3000L)));
+        assertEquals(2, timed.report(Aggregate.count()).list().get(0).getValue());
+        Records records = timed.report(Aggregate.max("T"), "N");
+        assertEquals(2, records.list().size());
+        assertEquals(1, records.list().get(0).get("N"));
+        assertEquals(new Timestamp(1000L), records.list().get(0).getValue());
+        assertEquals(3, records.list().get(1).get("N"));
+        assertEquals(new Timestamp(3000L), records.list().get(1).getValue());
+    }
+}
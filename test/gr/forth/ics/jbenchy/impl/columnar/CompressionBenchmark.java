@@ -0,0 +1,52 @@
+package gr.forth.ics.jbenchy.impl.columnar;
+
+import gr.forth.ics.jbenchy.Aggregate;
+import gr.forth.ics.jbenchy.DataTypes;
+import gr.forth.ics.jbenchy.Filters;
+import gr.forth.ics.jbenchy.Schema;
+import gr.forth.ics.jbenchy.SchemaRecord;
+import java.sql.Timestamp;
+import java.util.Random;
+
+/**
+ * Records a synthetic measurement trace (a timestamp, a parameter, a nanosecond timing and a
+ * relative error per record) in a columnar aggregator, and prints the footprint of its columns
+ * against their raw size, and the throughput of filtered scans.
+ *
+ * @author andreou
+ */
+public class CompressionBenchmark {
+    public static void main(String[] args) {
+        final int records = args.length > 0 ? Integer.parseInt(args[0]) : 4000000;
+        Schema schema = new Schema().
+                add("WHEN", DataTypes.TIMESTAMP).
+                add("SIZE", DataTypes.INTEGER).
+                add("NANOS", DataTypes.LONG).
+                add("ERROR", DataTypes.DOUBLE);
+        ColumnarAggregator aggregator = new ColumnarAggregator(schema, "TRACE");
+        Random random = new Random(0);
+        SchemaRecord record = schema.newRecord();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < records; i++) {
+            record.set(0, new Timestamp(start + i * 10L));
+            record.set(1, 1 << (i % 16));
+            record.set(2, 200000L + random.nextInt(5000));
+            record.set(3, Math.round(random.nextGaussian() * 1000) / 1000.0);
+            aggregator.record(record);
+        }
+        long raw = records * (8L + 4 + 8 + 8);
+        System.out.printf("%d records: %.1f MB raw, %.1f MB stored (%.1fx)%n", records, raw / 1e6,
+                aggregator.getFootprint() / 1e6, (double) raw / aggregator.getFootprint());
+        for (String variable : schema.getVariables()) {
+            StoredColumn column = (StoredColumn) aggregator.getColumn(variable);
+            System.out.printf("  %s: %.1f MB%n", variable, column.getFootprint() / 1e6);
+        }
+        for (int run = 0; run < 5; run++) {
+            long time = System.nanoTime();
+            Object average = aggregator.filtered(Filters.gt("NANOS", 202500L)).
+                    report(Aggregate.average("ERROR"), "SIZE").list().get(0).getValue();
+            time = System.nanoTime() - time;
+            System.out.printf("scan: %.1f M records/s (%s)%n", records * 1e3 / time, average);
+        }
+    }
+}
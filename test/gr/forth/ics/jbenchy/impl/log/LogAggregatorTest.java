@@ -0,0 +1,80 @@
+package gr.forth.ics.jbenchy.impl.log;
+
+import gr.forth.ics.jbenchy.Aggregate;
+import gr.forth.ics.jbenchy.Aggregator;
+import gr.forth.ics.jbenchy.DataTypes;
+import gr.forth.ics.jbenchy.Database;
+import gr.forth.ics.jbenchy.DbFactories;
+import gr.forth.ics.jbenchy.Filters;
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Schema;
+import java.io.File;
+import java.io.RandomAccessFile;
+import junit.framework.TestCase;
+
+public class LogAggregatorTest extends TestCase {
+    private final Schema schema = new Schema().
+            add("CAR", DataTypes.SMALL_STRING).
+            add("CARGO", DataTypes.INTEGER).
+            add("TIME", DataTypes.DOUBLE);
+    private File directory;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = File.createTempFile("jbenchy", "log");
+        directory.delete();
+    }
+
+    @Override
+    protected void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    private Aggregator createRaces() {
+        Aggregator races = DbFactories.mappedLog().getOrCreate(directory.getPath()).create(schema, "RACES");
+        races.record(new Record().add("CAR", "FIAT").add("CARGO", 10).add("TIME", 1.0));
+        races.record(new Record().add("CAR", "BMW").add("CARGO", 20).add("TIME", 2.0));
+        races.record(new Record().add("CAR", "FIAT").add("CARGO", 30).add("TIME", 4.0));
+        return races;
+    }
+
+    public void testReopen() {
+        createRaces();
+        DbFactories.mappedLog().get(directory.getPath()).shutDown();
+
+        Database db = DbFactories.mappedLog().get(directory.getPath());
+        Aggregator races = db.get("races");
+        assertEquals(DataTypes.SMALL_STRING, races.getSchema().getTypeOf("CAR"));
+        assertEquals(7.0, races.report(Aggregate.sum("TIME")).list().get(0).getValue());
+        assertEquals(5.0, races.filtered(Filters.eq("CAR", "FIAT")).
+                report(Aggregate.sum("TIME")).list().get(0).getValue());
+        db.shutDown();
+    }
+
+    public void testRecoversFromTornRecord() throws Exception {
+        createRaces();
+        DbFactories.mappedLog().get(directory.getPath()).shutDown();
+        //tear the last record, as if the process crashed while writing it
+        Layout layout = new Layout(schema);
+        RandomAccessFile segment = new RandomAccessFile(new File(directory, "RACES.0.seg"), "rw");
+        segment.seek(layout.getHeaderSize() + 2 * layout.getRecordSize() + layout.getOffset(1));
+        segment.writeInt(31);
+        segment.close();
+
+        Database db = DbFactories.mappedLog().get(directory.getPath());
+        Aggregator races = db.get("RACES");
+        assertEquals(2, races.report(Aggregate.count()).list().get(0).getValue());
+        races.record(new Record().add("CAR", "AUDI").add("CARGO", 40).add("TIME", 8.0));
+        assertEquals(11.0, races.report(Aggregate.sum("TIME")).list().get(0).getValue());
+        db.shutDown();
+
+        db = DbFactories.mappedLog().get(directory.getPath());
+        assertEquals(3, db.get("RACES").report(Aggregate.count()).list().get(0).getValue());
+        assertTrue(db.delete("RACES"));
+        assertNull(db.get("RACES"));
+        db.shutDown();
+    }
+}
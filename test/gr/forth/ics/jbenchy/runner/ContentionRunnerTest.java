@@ -0,0 +1,78 @@
+package gr.forth.ics.jbenchy.runner;
+
+import gr.forth.ics.jbenchy.Aggregate;
+import gr.forth.ics.jbenchy.Aggregator;
+import gr.forth.ics.jbenchy.DataTypes;
+import gr.forth.ics.jbenchy.Database;
+import gr.forth.ics.jbenchy.DbFactories;
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.Schema;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+public class ContentionRunnerTest extends TestCase {
+    private Database db;
+    private Aggregator aggregator;
+
+    @Override
+    protected void setUp() {
+        db = DbFactories.columnar().getOrCreate("ContentionRunnerTest");
+        aggregator = db.forceCreate(new Schema().
+                add("N", DataTypes.INTEGER).
+                add("OPS", DataTypes.DOUBLE).
+                add(ThroughputRunner.OPERATIONS, DataTypes.LONG).
+                add(ThroughputRunner.WINDOW_NANOS, DataTypes.LONG).
+                add(ContentionRunner.THREADS, DataTypes.INTEGER).
+                add(ContentionRunner.THREAD_ID, DataTypes.INTEGER), "WINDOWS");
+    }
+
+    @Override
+    protected void tearDown() {
+        db.shutDown();
+    }
+
+    private ThroughputRunner newThroughputRunner() {
+        return new ThroughputRunner(aggregator, "OPS").
+                withWindow(2, TimeUnit.MILLISECONDS).withWindows(2).withWarmupWindows(1);
+    }
+
+    public void testThreadsAndWindows() throws Exception {
+        Records summary = new ContentionRunner(newThroughputRunner(), 4).withThreadCounts(1, 3).
+                run(new Sweep().vary("N", 1, 2), new Benchmark() {
+            public Object run(Record cell) {
+                return cell.get("N");
+            }
+        });
+        assertEquals(4, summary.list().size());
+        assertEquals(Arrays.asList("N", ContentionRunner.THREADS), summary.getVariables());
+        int[] threads = { 1, 3, 1, 3 };
+        for (int i = 0; i < threads.length; i++) {
+            Record record = summary.list().get(i);
+            assertEquals(i / 2 + 1, record.get("N"));
+            assertEquals(threads[i], record.get(ContentionRunner.THREADS));
+            assertEquals(2L, record.get(Runner.SAMPLES));
+        }
+        //one sample per worker and measured window
+        Records counts = aggregator.report(Aggregate.count(), "N", ContentionRunner.THREADS, ContentionRunner.THREAD_ID);
+        assertEquals(2 * (1 + 3), counts.list().size());
+        for (Record record : counts) {
+            assertEquals(2, record.getValue());
+            assertTrue((Integer) record.get(ContentionRunner.THREAD_ID) < (Integer) record.get(ContentionRunner.THREADS));
+        }
+    }
+
+    public void testErrorsAreRethrown() throws Exception {
+        try {
+            new ContentionRunner(newThroughputRunner(), 2).run(new Sweep().vary("N", 1), new Benchmark() {
+                public Object run(Record cell) {
+                    throw new StackOverflowError("worker");
+                }
+            });
+            fail();
+        } catch (StackOverflowError expected) {
+            assertEquals("worker", expected.getMessage());
+        }
+    }
+}
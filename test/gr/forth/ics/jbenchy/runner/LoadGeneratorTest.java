@@ -0,0 +1,86 @@
+package gr.forth.ics.jbenchy.runner;
+
+import gr.forth.ics.jbenchy.Aggregate;
+import gr.forth.ics.jbenchy.Aggregator;
+import gr.forth.ics.jbenchy.DataTypes;
+import gr.forth.ics.jbenchy.Database;
+import gr.forth.ics.jbenchy.DbFactories;
+import gr.forth.ics.jbenchy.Filters;
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.Schema;
+import gr.forth.ics.jbenchy.fluent.ReportBuilder;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+public class LoadGeneratorTest extends TestCase {
+    private static final long STALL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private Database db;
+    private Aggregator aggregator;
+
+    @Override
+    protected void setUp() {
+        db = DbFactories.columnar().getOrCreate("LoadGeneratorTest");
+        aggregator = db.forceCreate(new Schema().
+                add("N", DataTypes.INTEGER).
+                add(LoadGenerator.SERVICE_TIME, DataTypes.LONG).
+                add(LoadGenerator.RESPONSE_TIME, DataTypes.LONG).
+                add(LoadGenerator.BACKFILLED, DataTypes.INTEGER), "REQUESTS");
+    }
+
+    @Override
+    protected void tearDown() {
+        db.shutDown();
+    }
+
+    /**
+     * Returns a request that stalls for 10 milliseconds the first time it is sent.
+     */
+    private static Benchmark stallingOnce() {
+        return new Benchmark() {
+            private boolean stalled;
+
+            public Object run(Record cell) throws InterruptedException {
+                if (!stalled) {
+                    stalled = true;
+                    TimeUnit.NANOSECONDS.sleep(STALL_NANOS);
+                }
+                return null;
+            }
+        };
+    }
+
+    private static int count(ReportBuilder reports) {
+        return (Integer) reports.report(Aggregate.count()).list().get(0).getValue();
+    }
+
+    public void testLateRequests() throws Exception {
+        //1000 requests per second for 50 milliseconds
+        Records summary = new LoadGenerator(aggregator, 1000).withDuration(50, TimeUnit.MILLISECONDS).
+                run(new Sweep().vary("N", 1), stallingOnce());
+        Record record = summary.list().get(0);
+        assertEquals(50L, record.get(Runner.SAMPLES));
+        assertEquals(0, record.get(LoadGenerator.BACKFILLED));
+        assertEquals(50, count(aggregator));
+        //the requests intended during the stall were sent after it, and their response times include the delay
+        assertTrue(count(aggregator.filtered(Filters.gt(LoadGenerator.RESPONSE_TIME, STALL_NANOS / 2))) >= 5);
+    }
+
+    public void testBackfill() throws Exception {
+        Records summary = new LoadGenerator(aggregator, 1000).withDuration(50, TimeUnit.MILLISECONDS).
+                withBackfill(true).run(new Sweep().vary("N", 1), stallingOnce());
+        Record record = summary.list().get(0);
+        assertEquals(50L, record.get(Runner.SAMPLES));
+        final int backfilled = (Integer) record.get(LoadGenerator.BACKFILLED);
+        //the send times of (at least) the 9 requests after the first passed during the stall
+        assertTrue(String.valueOf(backfilled), backfilled >= 9);
+        assertEquals(50, count(aggregator));
+        ReportBuilder synthesized = aggregator.filtered(Filters.eq(LoadGenerator.BACKFILLED, 1));
+        assertEquals(backfilled, count(synthesized));
+        Records times = synthesized.report(Aggregate.values(LoadGenerator.SERVICE_TIME), LoadGenerator.RESPONSE_TIME);
+        for (Record sample : times) {
+            assertEquals(sample.get(LoadGenerator.RESPONSE_TIME), sample.getValue());
+        }
+    }
+}
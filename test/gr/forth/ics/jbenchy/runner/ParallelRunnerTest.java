@@ -0,0 +1,93 @@
+package gr.forth.ics.jbenchy.runner;
+
+import gr.forth.ics.jbenchy.Aggregate;
+import gr.forth.ics.jbenchy.Aggregator;
+import gr.forth.ics.jbenchy.DataTypes;
+import gr.forth.ics.jbenchy.Database;
+import gr.forth.ics.jbenchy.DbFactories;
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.Schema;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+public class ParallelRunnerTest extends TestCase {
+    private Database db;
+    private Aggregator aggregator;
+
+    @Override
+    protected void setUp() {
+        db = DbFactories.columnar().getOrCreate("ParallelRunnerTest");
+        aggregator = db.forceCreate(new Schema().
+                add("N", DataTypes.INTEGER).
+                add("TIME", DataTypes.LONG).
+                add(ParallelRunner.CPU_SET, DataTypes.SMALL_STRING).
+                add(ParallelRunner.CONCURRENCY, DataTypes.INTEGER), "SAMPLES");
+    }
+
+    @Override
+    protected void tearDown() {
+        db.shutDown();
+    }
+
+    public void testCellsAndTags() throws Exception {
+        final AtomicInteger executions = new AtomicInteger();
+        Runner runner = new Runner(aggregator, "TIME").withWarmup(2).withSampling(SamplingPolicy.fixed(7));
+        Records summary = new ParallelRunner(runner, 3).withPinning(false).
+                run(new Sweep().vary("N", 1, 2, 3, 4, 5), new Benchmark() {
+            public Object run(Record cell) {
+                executions.incrementAndGet();
+                return cell.get("N");
+            }
+        });
+        assertEquals(5 * (2 + 7), executions.get());
+        assertEquals(5, summary.list().size());
+        for (int i = 0; i < 5; i++) {
+            Record record = summary.list().get(i);
+            assertEquals(i + 1, record.get("N"));
+            assertEquals(7L, record.get(Runner.SAMPLES));
+            assertEquals(ParallelRunner.ANY_CPU, record.get(ParallelRunner.CPU_SET));
+            assertEquals(3, record.get(ParallelRunner.CONCURRENCY));
+        }
+        Records counts = aggregator.report(Aggregate.count(), "N", ParallelRunner.CPU_SET, ParallelRunner.CONCURRENCY);
+        assertEquals(5, counts.list().size());
+        for (Record record : counts) {
+            assertEquals(7, record.getValue());
+            assertEquals(ParallelRunner.ANY_CPU, record.get(ParallelRunner.CPU_SET));
+            assertEquals(3, record.get(ParallelRunner.CONCURRENCY));
+        }
+    }
+
+    public void testCalibration() throws Exception {
+        Runner runner = new Runner(aggregator, "TIME").withSampling(SamplingPolicy.fixed(4));
+        ParallelRunner.Calibration calibration = new ParallelRunner(runner, 2).withPinning(false).
+                calibrate(new Record().add("N", 1), new Benchmark() {
+            public Object run(Record cell) {
+                return null;
+            }
+        });
+        assertEquals(2, calibration.getConcurrency());
+        Records counts = aggregator.report(Aggregate.count(), ParallelRunner.CONCURRENCY);
+        assertEquals(1, counts.list().get(0).get(ParallelRunner.CONCURRENCY));
+        assertEquals(4, counts.list().get(0).getValue());
+        assertEquals(2, counts.list().get(1).get(ParallelRunner.CONCURRENCY));
+        assertEquals(2 * 4, counts.list().get(1).getValue());
+    }
+
+    public void testErrorsAreRethrown() throws Exception {
+        Runner runner = new Runner(aggregator, "TIME").withSampling(SamplingPolicy.fixed(3));
+        try {
+            new ParallelRunner(runner, 2).withPinning(false).run(new Sweep().vary("N", 1, 2, 3), new Benchmark() {
+                public Object run(Record cell) {
+                    if (cell.get("N").equals(2)) {
+                        throw new StackOverflowError("cell 2");
+                    }
+                    return null;
+                }
+            });
+            fail();
+        } catch (StackOverflowError expected) {
+            assertEquals("cell 2", expected.getMessage());
+        }
+    }
+}
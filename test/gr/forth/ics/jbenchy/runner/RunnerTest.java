@@ -0,0 +1,76 @@
+package gr.forth.ics.jbenchy.runner;
+
+import gr.forth.ics.jbenchy.Aggregate;
+import gr.forth.ics.jbenchy.Aggregator;
+import gr.forth.ics.jbenchy.DataTypes;
+import gr.forth.ics.jbenchy.Database;
+import gr.forth.ics.jbenchy.DbFactories;
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.Schema;
+import gr.forth.ics.jbenchy.stats.RunningStatistics;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+public class RunnerTest extends TestCase {
+    public void testSamplingPolicies() {
+        RunningStatistics stats = new RunningStatistics();
+        SamplingPolicy fixed = SamplingPolicy.fixed(3);
+        for (int i = 0; i < 3; i++) {
+            assertFalse(fixed.isSatisfied(stats, 0));
+            stats.add(10.0);
+        }
+        assertTrue(fixed.isSatisfied(stats, 0));
+
+        SamplingPolicy adaptive = SamplingPolicy.adaptive(0.01);
+        stats.clear();
+        for (int i = 0; i < 4; i++) {
+            stats.add(10.0);
+        }
+        assertFalse(adaptive.isSatisfied(stats, 0));
+        stats.add(10.0);
+        assertTrue(adaptive.isSatisfied(stats, 0));
+
+        stats.clear();
+        for (int i = 0; i < 20; i++) {
+            stats.add(i % 2 == 0 ? 1.0 : 100.0);
+        }
+        assertFalse(adaptive.isSatisfied(stats, 0));
+        assertTrue(adaptive.withMaxSamples(20).isSatisfied(stats, 0));
+        SamplingPolicy budgeted = SamplingPolicy.adaptive(0.01).withTimeBudget(1, TimeUnit.MILLISECONDS);
+        assertFalse(budgeted.isSatisfied(stats, TimeUnit.MICROSECONDS.toNanos(999)));
+        assertTrue(budgeted.isSatisfied(stats, TimeUnit.MILLISECONDS.toNanos(1)));
+    }
+
+    public void testSamplesPerCell() throws Exception {
+        Database db = DbFactories.columnar().getOrCreate("RunnerTest");
+        Aggregator aggregator = db.forceCreate(new Schema().
+                add("CAR", DataTypes.SMALL_STRING).
+                add("CARGO", DataTypes.INTEGER).
+                add("TIME", DataTypes.LONG), "SAMPLES");
+        final List<Record> executed = new ArrayList<Record>();
+        Records summary = new Runner(aggregator, "TIME").withWarmup(2).withSampling(SamplingPolicy.fixed(5)).
+                run(new Sweep().vary("CAR", "FIAT", "BMW").vary("CARGO", 10, 20, 30), new Benchmark() {
+            public Object run(Record cell) {
+                executed.add(cell);
+                return cell.get("CARGO");
+            }
+        });
+        assertEquals(6 * (2 + 5), executed.size());
+        assertEquals("FIAT", executed.get(0).get("CAR"));
+        assertEquals(20, executed.get(7).get("CARGO"));
+        assertEquals(6, summary.list().size());
+        for (Record record : summary) {
+            assertEquals(5L, record.get(Runner.SAMPLES));
+            assertTrue(((Number) record.getValue()).doubleValue() >= 0.0);
+        }
+        Records counts = aggregator.report(Aggregate.count(), "CAR", "CARGO");
+        assertEquals(6, counts.list().size());
+        for (Record record : counts) {
+            assertEquals(5, record.getValue());
+        }
+        db.shutDown();
+    }
+}
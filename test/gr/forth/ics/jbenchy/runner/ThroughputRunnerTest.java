@@ -0,0 +1,74 @@
+package gr.forth.ics.jbenchy.runner;
+
+import gr.forth.ics.jbenchy.Aggregate;
+import gr.forth.ics.jbenchy.Aggregator;
+import gr.forth.ics.jbenchy.DataTypes;
+import gr.forth.ics.jbenchy.Database;
+import gr.forth.ics.jbenchy.DbFactories;
+import gr.forth.ics.jbenchy.Record;
+import gr.forth.ics.jbenchy.Records;
+import gr.forth.ics.jbenchy.Schema;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import junit.framework.TestCase;
+
+public class ThroughputRunnerTest extends TestCase {
+    public void testWindows() throws Exception {
+        Database db = DbFactories.columnar().getOrCreate("ThroughputRunnerTest");
+        Aggregator aggregator = db.forceCreate(new Schema().
+                add("N", DataTypes.INTEGER).
+                add("OPS", DataTypes.DOUBLE).
+                add(ThroughputRunner.OPERATIONS, DataTypes.LONG).
+                add(ThroughputRunner.WINDOW_NANOS, DataTypes.LONG), "WINDOWS");
+        final AtomicLong executions = new AtomicLong();
+        final long window = TimeUnit.MILLISECONDS.toNanos(5);
+        Records summary = new ThroughputRunner(aggregator, "OPS").
+                withWindow(5, TimeUnit.MILLISECONDS).withWindows(3).withWarmupWindows(1).
+                run(new Sweep().vary("N", 1, 2), new Benchmark() {
+            public Object run(Record cell) {
+                executions.incrementAndGet();
+                return cell;
+            }
+        });
+        assertEquals(2, summary.list().size());
+        for (Record record : summary) {
+            assertEquals(3L, record.get(Runner.SAMPLES));
+            assertTrue(((Number) record.getValue()).doubleValue() > 0.0);
+        }
+        Records counts = aggregator.report(Aggregate.count(), "N");
+        assertEquals(3, counts.list().get(0).getValue());
+        assertEquals(3, counts.list().get(1).getValue());
+        long recordedOperations = ((Number) aggregator.report(Aggregate.sum(ThroughputRunner.OPERATIONS)).
+                list().get(0).getValue()).longValue();
+        //the warmup windows execute the benchmark too, but are not recorded
+        assertTrue(recordedOperations > 0);
+        assertTrue(recordedOperations < executions.get());
+        long shortestWindow = ((Number) aggregator.report(Aggregate.min(ThroughputRunner.WINDOW_NANOS)).
+                list().get(0).getValue()).longValue();
+        assertTrue(shortestWindow >= window);
+
+        Record sample = new ThroughputRunner(aggregator, "OPS").withWindow(2, TimeUnit.MILLISECONDS).
+                measureWindow(new Record().add("N", 3), new Benchmark() {
+            public Object run(Record cell) {
+                return null;
+            }
+        }, new Blackhole());
+        assertEquals(3, sample.get("N"));
+        long operations = (Long) sample.get(ThroughputRunner.OPERATIONS);
+        long nanos = (Long) sample.get(ThroughputRunner.WINDOW_NANOS);
+        assertEquals(operations * 1e9 / nanos, (Double) sample.get("OPS"), 1e-6);
+        db.shutDown();
+    }
+
+    public void testBlackhole() {
+        Blackhole blackhole = new Blackhole();
+        for (int i = 0; i < 1000; i++) {
+            blackhole.consume(i);
+            blackhole.consume(i * 0.5);
+            blackhole.consume(i % 2 == 0);
+            blackhole.consume(Integer.valueOf(i));
+        }
+        //some references are published, but the primitive checks never match
+        assertEquals("[Blackhole*]", blackhole.toString());
+    }
+}
@@ -0,0 +1,38 @@
+package gr.forth.ics.jbenchy.stats;
+
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class MannWhitneyTest extends TestCase {
+    public void testSeparatedSamples() {
+        double[] x = { 1, 2, 3, 4, 5 };
+        double[] y = { 6, 7, 8, 9, 10 };
+        assertEquals(0.0, MannWhitney.u(x, y));
+        assertEquals(25.0, MannWhitney.u(y, x));
+        //z = (12.5 - 0.5) / sqrt(25 * 11 / 12)
+        assertEquals(0.01219, MannWhitney.pValue(x, y), 1e-4);
+        assertEquals(MannWhitney.pValue(x, y), MannWhitney.pValue(y, x), 1e-12);
+    }
+
+    public void testTies() {
+        double[] x = { 1, 2, 2, 3 };
+        double[] y = { 2, 3, 3, 4 };
+        //pairs with x > y: 2 vs 2 (twice) count 1, 3 vs 2, 3 vs 3 (twice) count 2
+        assertEquals(3.0, MannWhitney.u(x, y));
+        assertEquals(1.0, MannWhitney.pValue(new double[] { 5, 5 }, new double[] { 5, 5, 5 }));
+    }
+
+    public void testNormalCdf() {
+        assertEquals(0.5, Distributions.normalCdf(0.0), 1e-7);
+        assertEquals(0.975, Distributions.normalCdf(1.959964), 1e-6);
+        assertEquals(0.01, Distributions.normalCdf(-2.326348), 1e-6);
+    }
+
+    public void testBootstrapRatio() {
+        double[] baseline = { 10, 11, 9, 10, 10, 11, 9, 10 };
+        double[] candidate = { 20, 22, 18, 20, 20, 22, 18, 20 };
+        double[] interval = Bootstrap.ratioOfMeansInterval(baseline, candidate, 0.95, 1000, new Random(0));
+        assertTrue(interval[0] <= 2.0 && 2.0 <= interval[1]);
+        assertTrue(interval[0] > 1.8 && interval[1] < 2.2);
+    }
+}
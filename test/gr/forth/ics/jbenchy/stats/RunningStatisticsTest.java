@@ -0,0 +1,46 @@
+package gr.forth.ics.jbenchy.stats;
+
+import junit.framework.TestCase;
+
+public class RunningStatisticsTest extends TestCase {
+    public void testMoments() {
+        RunningStatistics stats = new RunningStatistics();
+        for (double x : new double[] { 2, 4, 4, 4, 5, 5, 7, 9 }) {
+            stats.add(x);
+        }
+        assertEquals(8, stats.getCount());
+        assertEquals(5.0, stats.getMean(), 1e-12);
+        assertEquals(32.0 / 7.0, stats.getVariance(), 1e-12);
+        assertEquals(2.0, stats.getMin());
+        assertEquals(9.0, stats.getMax());
+    }
+
+    public void testEmpty() {
+        RunningStatistics stats = new RunningStatistics();
+        assertTrue(Double.isNaN(stats.getMean()));
+        stats.add(1.0);
+        assertTrue(Double.isNaN(stats.getVariance()));
+        assertTrue(Double.isNaN(stats.getConfidenceHalfWidth(0.95)));
+    }
+
+    public void testConfidenceInterval() {
+        RunningStatistics stats = new RunningStatistics();
+        for (double x : new double[] { 10, 12, 11, 9, 13, 10, 11, 12, 10, 12 }) {
+            stats.add(x);
+        }
+        //t(0.975, 9) = 2.262, s = 1.2472
+        assertEquals(2.262 * 1.2472 / Math.sqrt(10), stats.getConfidenceHalfWidth(0.95), 1e-3);
+        assertEquals(stats.getConfidenceHalfWidth(0.95) / 11.0,
+                stats.getRelativeConfidenceHalfWidth(0.95), 1e-12);
+    }
+
+    public void testQuantiles() {
+        assertEquals(1.959964, Distributions.normalQuantile(0.975), 1e-6);
+        assertEquals(-2.326348, Distributions.normalQuantile(0.01), 1e-6);
+        assertEquals(12.706, Distributions.studentTQuantile(0.975, 1), 1e-3);
+        assertEquals(4.303, Distributions.studentTQuantile(0.975, 2), 1e-3);
+        assertEquals(3.182, Distributions.studentTQuantile(0.975, 3), 1e-2);
+        assertEquals(2.228, Distributions.studentTQuantile(0.975, 10), 1e-3);
+        assertEquals(1.984, Distributions.studentTQuantile(0.975, 100), 1e-3);
+    }
+}